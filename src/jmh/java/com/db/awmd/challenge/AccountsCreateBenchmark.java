@@ -0,0 +1,57 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * ACCOUNT CREATION COST, MEASURED IN BATCHES OF NEW ACCOUNTS ON A REPOSITORY EMPTIED BEFORE EVERY ITERATION
+ * SO THE TABLE SIZE DOES NOT GROW WITH THE LENGTH OF THE RUN
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, batchSize = AccountsCreateBenchmark.BATCH)
+@Measurement(iterations = 10, batchSize = AccountsCreateBenchmark.BATCH)
+@Fork(1)
+public class AccountsCreateBenchmark {
+
+    static final int BATCH = 100_000;
+
+    @Param({"locking", "optimistic"})
+    public String repository;
+
+    private AccountsRepository accountsRepository;
+
+    private final AtomicLong ids = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void createRepository() {
+        this.accountsRepository = BenchmarkRepositories.create(repository);
+    }
+
+    @Setup(Level.Iteration)
+    public void clearAccounts() {
+        this.accountsRepository.clearAccounts();
+    }
+
+    @Benchmark
+    public void createAccount() {
+        accountsRepository.createAccount(new Account("Id-" + ids.incrementAndGet(), BigDecimal.TEN));
+    }
+}
@@ -0,0 +1,129 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.config.FxRateCache;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.InvalidAccountException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.AccountsAggregates;
+import com.db.awmd.challenge.service.AccountsMetrics;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.TransferJournal;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * REPOSITORY CALLS AND ALLOCATIONS PER TRANSFER THROUGH THE SERVICE: THE REPOSITORY IS WRAPPED IN A PROXY COUNTING
+ * THE ACCOUNT LOOKUPS (getAccount) DONE BY THE SERVICE, REPORTED AS lookups NEXT TO transfers. RUN WITH THE gc
+ * PROFILER (ON BY DEFAULT IN build.gradle) FOR THE ALLOCATIONS PER OPERATION
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountsLookupBenchmark {
+
+    private static final ThreadLocal<Lookups> LOOKUPS = new ThreadLocal<>();
+
+    @Param({"locking", "optimistic"})
+    public String repository;
+
+    private AccountsService accountsService;
+
+    private NotificationDispatcher notificationDispatcher;
+
+    private final Transfer transfer = new Transfer("Id-1", "Id-2", BigDecimal.ONE);
+
+    private final Transfer missingAccount = new Transfer("Id-1", "Id-404", BigDecimal.ONE);
+
+    @Setup(Level.Trial)
+    public void createAccounts() {
+        AccountsProperties properties = new AccountsProperties();
+        properties.getNotifications().setBackpressure(AccountsProperties.Backpressure.DROP_OLDEST);
+        properties.getJournal().setEnabled(false);
+        FxRateCache fxRateCache = FxRateCache.loadOnce(properties);
+        AccountsRepository target = BenchmarkRepositories.create(repository, properties, fxRateCache);
+        AccountsRepository counting = (AccountsRepository) Proxy.newProxyInstance(AccountsRepository.class.getClassLoader(),
+                new Class<?>[]{AccountsRepository.class}, (proxy, method, args) -> {
+                    Lookups lookups = LOOKUPS.get();
+                    if (lookups != null && method.getName().equals("getAccount")) {
+                        lookups.lookups++;
+                    }
+                    try {
+                        return method.invoke(target, args);
+                    } catch (InvocationTargetException ite) {
+                        throw ite.getCause();
+                    }
+                });
+        this.notificationDispatcher = new NotificationDispatcher(BenchmarkRepositories.NO_NOTIFICATIONS, target, properties);
+        this.accountsService = new AccountsService(counting, this.notificationDispatcher, new TransferJournal(properties),
+                new AccountsAggregates(target, properties),
+                new AccountsMetrics(new CompositeMeterRegistry(), target, this.notificationDispatcher, properties),
+                fxRateCache, properties);
+        this.accountsService.createAccount(new Account("Id-1", new BigDecimal(1_000_000_000)));
+        this.accountsService.createAccount(new Account("Id-2", new BigDecimal(1_000_000_000)));
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDispatcher() throws InterruptedException {
+        this.notificationDispatcher.close();
+    }
+
+    /**
+     * PER-THREAD COUNTERS, REPORTED BY JMH AS SECONDARY RESULTS
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Lookups {
+
+        public long lookups;
+
+        public long transfers;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.lookups = 0;
+            this.transfers = 0;
+            LOOKUPS.set(this);
+        }
+    }
+
+    @Benchmark
+    public void transfer(Lookups lookups) {
+        accountsService.transfer(transfer);
+        lookups.transfers++;
+    }
+
+    @Benchmark
+    public Object transferMissingAccount(Lookups lookups) {
+        lookups.transfers++;
+        try {
+            accountsService.transfer(missingAccount);
+            return null;
+        } catch (InvalidAccountException iae) {
+            return iae;
+        }
+    }
+}
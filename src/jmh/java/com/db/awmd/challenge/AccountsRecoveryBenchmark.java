@@ -0,0 +1,82 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepositoryDurable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * STARTUP OF THE DURABLE REPOSITORY: REPLAY OF THE WHOLE LOG AGAINST LOADING A SNAPSHOT
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class AccountsRecoveryBenchmark {
+
+    @Param({"1000000"})
+    public int accounts;
+
+    @Param({"log", "snapshot"})
+    public String recovery;
+
+    private AccountsProperties properties;
+
+    @Setup(Level.Trial)
+    public void createAccounts() throws Exception {
+        this.properties = new AccountsProperties();
+        this.properties.getWal().setDirectory(Files.createTempDirectory("accounts-recovery").toString());
+        this.properties.getWal().setSnapshotInterval(Duration.ZERO);
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties)) {
+            //MANY CONCURRENT CREATIONS, SO THE GROUP COMMIT KEEPS THE SETUP SHORT
+            ExecutorService executor = Executors.newFixedThreadPool(64);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 64; t++) {
+                int thread = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = thread; i < accounts; i += 64) {
+                        repository.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+            if (recovery.equals("snapshot")) {
+                repository.snapshot();
+            }
+        }
+    }
+
+    @Benchmark
+    public AccountsRepositoryDurable recover() throws IOException {
+        AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties);
+        repository.close();
+        return repository;
+    }
+}
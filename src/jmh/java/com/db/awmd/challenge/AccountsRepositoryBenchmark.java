@@ -0,0 +1,143 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * READ AND TRANSFER THROUGHPUT OF THE REPOSITORY IMPLEMENTATIONS UNDER THE DIFFERENT WORKLOADS,
+ * THE NUMBER OF THREADS IS GIVEN BY THE jmhThreads GRADLE PROPERTY
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountsRepositoryBenchmark {
+
+    private static final int OPERATIONS_PER_THREAD = 1 << 16;
+
+    private static final String[] CURRENCIES = {"EUR", "USD", "GBP", "JPY"};
+
+    @Param({"locking", "optimistic", "durable", "offheap", "sharded"})
+    public String repository;
+
+    @Param({"uniform", "zipfian", "merchant", "disjoint"})
+    public String workload;
+
+    /**
+     * accounts.hot-accounts.detect-threshold OF THE "locking" AND "durable" REPOSITORIES, 0 KEEPS EVERY CREDIT
+     * UNDER THE STRIPE LOCKS
+     */
+    @Param({"0", "1000"})
+    public int hotThreshold;
+
+    @Param({"10000"})
+    public int accounts;
+
+    /**
+     * CURRENCIES THE ACCOUNTS ARE SPREAD OVER IN ROUND ROBIN, WITH 4 MOST TRANSFERS ARE CONVERTED
+     */
+    @Param({"1", "4"})
+    public int currencies;
+
+    private AccountsRepository accountsRepository;
+
+    private String[] accountIds;
+
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void createAccounts() {
+        AccountsProperties properties = new AccountsProperties();
+        properties.getHotAccounts().setDetectThreshold(hotThreshold);
+        try {
+            Path rates = Files.createTempFile("accounts-benchmark", ".properties");
+            rates.toFile().deleteOnExit();
+            Files.write(rates, Arrays.asList("USD=1.0842", "GBP=0.8561", "JPY=161.37"), StandardCharsets.UTF_8);
+            properties.getFx().setRatesFile(rates.toString());
+            properties.getFx().setRefreshInterval(Duration.ZERO);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+        this.accountsRepository = BenchmarkRepositories.create(repository, properties);
+        this.accountIds = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            this.accountIds[i] = "Id-" + i;
+            //LARGE ENOUGH FOR A TRANSFER NEVER TO BE REJECTED
+            this.accountsRepository.createAccount(new Account(this.accountIds[i], new BigDecimal(1_000_000_000),
+                    CURRENCIES[i % currencies]));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void closeRepository() throws IOException {
+        BenchmarkRepositories.close(accountsRepository);
+    }
+
+    /**
+     * PRE-BUILT OPERATIONS OF A BENCHMARK THREAD, USED IN ROUND ROBIN
+     */
+    @State(Scope.Thread)
+    public static class ThreadOperations {
+
+        private Transfer[] transfers;
+
+        private String[] reads;
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void prepare(AccountsRepositoryBenchmark benchmark) {
+            int[][] pairs = Workloads.pairs(benchmark.workload, benchmark.accounts,
+                    benchmark.threads.getAndIncrement(), OPERATIONS_PER_THREAD);
+            this.transfers = new Transfer[OPERATIONS_PER_THREAD];
+            this.reads = new String[OPERATIONS_PER_THREAD];
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                this.transfers[i] = new Transfer(benchmark.accountIds[pairs[0][i]], benchmark.accountIds[pairs[1][i]], BigDecimal.ONE);
+                this.reads[i] = benchmark.accountIds[pairs[0][i]];
+            }
+        }
+
+        private int next() {
+            return next++ & (OPERATIONS_PER_THREAD - 1);
+        }
+    }
+
+    @Benchmark
+    public Account getAccount(ThreadOperations operations) {
+        return accountsRepository.getAccount(operations.reads[operations.next()]);
+    }
+
+    @Benchmark
+    public TransferResult transfer(ThreadOperations operations) {
+        return accountsRepository.transfer(operations.transfers[operations.next()]);
+    }
+}
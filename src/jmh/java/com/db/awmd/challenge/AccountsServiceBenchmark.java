@@ -0,0 +1,136 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.config.FxRateCache;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.AccountsAggregates;
+import com.db.awmd.challenge.service.AccountsMetrics;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.TransferJournal;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import io.micrometer.prometheus.PrometheusConfig;
+import io.micrometer.prometheus.PrometheusMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * TRANSFER THROUGH THE SERVICE, INCLUDING THE ACCOUNT VALIDATIONS DONE BEFORE THE REPOSITORY CALL. THE METRICS
+ * PARAMETER COMPARES NO-OP METERS AGAINST THE PROMETHEUS REGISTRY, TO MEASURE THE COST OF THE INSTRUMENTATION, THE
+ * JOURNAL PARAMETER THE COST OF THE APPENDS TO THE TRANSFER JOURNAL
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AccountsServiceBenchmark {
+
+    private static final int OPERATIONS_PER_THREAD = 1 << 16;
+
+    @Param({"locking", "optimistic"})
+    public String repository;
+
+    @Param({"uniform", "zipfian", "disjoint"})
+    public String workload;
+
+    @Param({"10000"})
+    public int accounts;
+
+    @Param({"none", "prometheus"})
+    public String metrics;
+
+    @Param({"false", "true"})
+    public boolean journal;
+
+    private AccountsService accountsService;
+
+    private NotificationDispatcher notificationDispatcher;
+
+    private TransferJournal transferJournal;
+
+    private String[] accountIds;
+
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void createAccounts() {
+        AccountsProperties properties = new AccountsProperties();
+        //ONLY THE HAND-OFF TO THE DISPATCHER IS MEASURED, A FULL QUEUE MUST NOT SPILL TO DISK
+        properties.getNotifications().setBackpressure(AccountsProperties.Backpressure.DROP_OLDEST);
+        properties.getJournal().setEnabled(journal);
+        FxRateCache fxRateCache = FxRateCache.loadOnce(properties);
+        AccountsRepository accountsRepository = BenchmarkRepositories.create(repository, properties, fxRateCache);
+        this.notificationDispatcher = new NotificationDispatcher(BenchmarkRepositories.NO_NOTIFICATIONS, accountsRepository, properties);
+        MeterRegistry registry = metrics.equals("prometheus") ? new PrometheusMeterRegistry(PrometheusConfig.DEFAULT)
+                : new CompositeMeterRegistry();
+        this.transferJournal = new TransferJournal(properties);
+        this.accountsService = new AccountsService(accountsRepository, this.notificationDispatcher, this.transferJournal,
+                new AccountsAggregates(accountsRepository, properties),
+                new AccountsMetrics(registry, accountsRepository, this.notificationDispatcher, properties),
+                fxRateCache, properties);
+        this.accountIds = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            this.accountIds[i] = "Id-" + i;
+            this.accountsService.createAccount(new Account(this.accountIds[i], new BigDecimal(1_000_000_000)));
+        }
+    }
+
+    /**
+     * THE JOURNAL IS NOT BOUNDED, IT IS EMPTIED AFTER EVERY ITERATION SO A TRIAL DOES NOT FILL THE HEAP
+     */
+    @TearDown(Level.Iteration)
+    public void clearJournal() {
+        this.transferJournal.clear();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopDispatcher() throws InterruptedException {
+        this.notificationDispatcher.close();
+    }
+
+    /**
+     * PRE-BUILT TRANSFERS OF A BENCHMARK THREAD, USED IN ROUND ROBIN
+     */
+    @State(Scope.Thread)
+    public static class ThreadTransfers {
+
+        private Transfer[] transfers;
+
+        private int next;
+
+        @Setup(Level.Trial)
+        public void prepare(AccountsServiceBenchmark benchmark) {
+            int[][] pairs = Workloads.pairs(benchmark.workload, benchmark.accounts,
+                    benchmark.threads.getAndIncrement(), OPERATIONS_PER_THREAD);
+            this.transfers = new Transfer[OPERATIONS_PER_THREAD];
+            for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                this.transfers[i] = new Transfer(benchmark.accountIds[pairs[0][i]], benchmark.accountIds[pairs[1][i]], BigDecimal.ONE);
+            }
+        }
+    }
+
+    @Benchmark
+    public void transfer(ThreadTransfers transfers) {
+        accountsService.transfer(transfers.transfers[transfers.next++ & (OPERATIONS_PER_THREAD - 1)]);
+    }
+}
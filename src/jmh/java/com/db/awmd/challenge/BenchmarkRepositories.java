@@ -0,0 +1,91 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.config.FxRateCache;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryDurable;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryOffHeap;
+import com.db.awmd.challenge.repository.AccountsRepositoryOptimistic;
+import com.db.awmd.challenge.repository.AccountsRepositorySharded;
+import com.db.awmd.challenge.service.NotificationService;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+
+/**
+ * CREATES THE REPOSITORY IMPLEMENTATIONS UNDER BENCHMARK, OUTSIDE OF SPRING
+ */
+final class BenchmarkRepositories {
+
+    static final NotificationService NO_NOTIFICATIONS = (account, transferDescription) -> {
+    };
+
+    private BenchmarkRepositories() {
+    }
+
+    /**
+     * THIS METHOD CREATE A REPOSITORY BY THE NAME USED IN THE accounts.repository PROPERTY
+     *
+     * @param name Repository name
+     * @return repository
+     */
+    static AccountsRepository create(String name) {
+        return create(name, new AccountsProperties());
+    }
+
+    /**
+     * THIS METHOD CREATE A REPOSITORY BY THE NAME USED IN THE accounts.repository PROPERTY
+     *
+     * @param name       Repository name
+     * @param properties Tuning properties
+     * @return repository
+     */
+    static AccountsRepository create(String name, AccountsProperties properties) {
+        return create(name, properties, FxRateCache.loadOnce(properties));
+    }
+
+    /**
+     * THIS METHOD CREATE A REPOSITORY BY THE NAME USED IN THE accounts.repository PROPERTY, CONVERTING WITH THE SAME
+     * RATES AS THE SERVICE IT IS BENCHMARKED WITH
+     *
+     * @param name        Repository name
+     * @param properties  Tuning properties
+     * @param fxRateCache Exchange rates shared with the service
+     * @return repository
+     */
+    static AccountsRepository create(String name, AccountsProperties properties, FxRateCache fxRateCache) {
+        switch (name) {
+            case "locking":
+                return new AccountsRepositoryInMemory(properties, fxRateCache);
+            case "optimistic":
+                return new AccountsRepositoryOptimistic(properties, fxRateCache);
+            case "durable":
+                try {
+                    properties.getWal().setDirectory(Files.createTempDirectory("accounts-benchmark").toString());
+                    return new AccountsRepositoryDurable(properties, fxRateCache);
+                } catch (IOException ioe) {
+                    throw new UncheckedIOException(ioe);
+                }
+            case "offheap":
+                return new AccountsRepositoryOffHeap(properties, fxRateCache);
+            case "sharded":
+                return new AccountsRepositorySharded(properties, fxRateCache);
+            default:
+                throw new IllegalArgumentException("Unknown repository " + name);
+        }
+    }
+
+    /**
+     * THIS METHOD RELEASE THE RESOURCES OF A REPOSITORY, THE WRITE-AHEAD LOG OF THE DURABLE ONE OR THE SHARD THREADS
+     *
+     * @param repository Repository
+     */
+    static void close(AccountsRepository repository) throws IOException {
+        if (repository instanceof Closeable) {
+            ((Closeable) repository).close();
+        }
+    }
+}
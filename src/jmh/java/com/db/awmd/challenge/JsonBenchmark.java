@@ -0,0 +1,89 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.service.AccountResponseCache;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JACKSON (DE)SERIALIZATION OF THE REQUEST AND RESPONSE BODIES OF THE ACCOUNTS ENDPOINTS, IN EVERY FORMAT THEY
+ * ACCEPT
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JsonBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    private String format;
+
+    private ObjectMapper objectMapper;
+
+    private byte[] accountBody;
+
+    private byte[] transferBody;
+
+    private final Account account = new Account("Id-123", new BigDecimal("1000.25"));
+
+    private final AccountResponseCache accountResponseCache = new AccountResponseCache(new AccountsProperties(), new ObjectMapper());
+
+    @Setup
+    public void setUp() throws IOException {
+        switch (format) {
+            case "cbor":
+                objectMapper = new ObjectMapper(new CBORFactory());
+                break;
+            case "smile":
+                objectMapper = new ObjectMapper(new SmileFactory());
+                break;
+            default:
+                objectMapper = new ObjectMapper();
+        }
+        accountBody = objectMapper.writeValueAsBytes(account);
+        transferBody = objectMapper.writeValueAsBytes(new Transfer("Id-123", "Id-1234", new BigDecimal("10.50")));
+    }
+
+    @Benchmark
+    public Account readAccount() throws IOException {
+        return objectMapper.readValue(accountBody, Account.class);
+    }
+
+    @Benchmark
+    public byte[] writeAccount() throws IOException {
+        return objectMapper.writeValueAsBytes(account);
+    }
+
+    /**
+     * GET /v1/accounts/{accountId} OF AN ACCOUNT THAT DID NOT CHANGE SINCE ITS LAST READ, ALWAYS JSON
+     */
+    @Benchmark
+    public byte[] writeCachedAccount() {
+        return accountResponseCache.json(account);
+    }
+
+    @Benchmark
+    public Transfer readTransfer() throws IOException {
+        return objectMapper.readValue(transferBody, Transfer.class);
+    }
+}
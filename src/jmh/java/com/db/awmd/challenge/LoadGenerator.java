@@ -0,0 +1,472 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.config.FxRateCache;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.service.AccountsAggregates;
+import com.db.awmd.challenge.service.AccountsMetrics;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.TransferJournal;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LOAD GENERATOR AND SOAK TEST OF THE TRANSFERS, RUN WITH: gradle loadTest -PloadArgs="--workload=zipfian --threads=8"
+ * <p>
+ * IT CREATES THE ACCOUNTS AND DRIVES TRANSFERS AGAINST AN AccountsService BUILT IN THIS JVM (--target=service, ON ANY
+ * --repository) OR AGAINST A RUNNING SERVER (--target=http, --url). EVERY THREAD PLAYS ITS OWN SEQUENCE OF TRANSFERS,
+ * GENERATED FROM --seed AND THE THREAD INDEX BY Workloads, OR READ FROM A TRACE (--trace, ONE accountFromId,accountToId,amount
+ * PER LINE) WHERE EVERY SOURCE ACCOUNT IS PLAYED BY A SINGLE THREAD IN THE ORDER OF THE TRACE. THE SAME ARGUMENTS SEND
+ * THE SAME TRANSFERS, ONLY THEIR INTERLEAVING BETWEEN THREADS CHANGES.
+ * <p>
+ * THE LATENCIES GO TO AN HdrHistogram. WITH --rate EVERY THREAD SENDS AT A FIXED RATE AND A LATENCY IS MEASURED FROM
+ * THE TIME ITS TRANSFER WAS DUE, NOT FROM WHEN IT WAS SENT, SO A STALL COUNTS FOR EVERY TRANSFER IT DELAYED. EVERY
+ * --report-interval THE THROUGHPUT, PERCENTILES AND OUTCOMES ARE PRINTED AND THE INVARIANTS ARE CHECKED ON A SCAN OF
+ * EVERY ACCOUNT AT ONE POINT IN TIME: THE TOTAL BALANCE IS THE ONE AFTER THE ACCOUNTS WERE CREATED AND NO BALANCE IS
+ * NEGATIVE. THE EXIT STATUS IS 1 IF ANY CHECK FAILED
+ */
+public final class LoadGenerator {
+
+    private static final long HIGHEST_LATENCY = TimeUnit.MINUTES.toNanos(1);
+
+    private static final int SEQUENCE_SIZE = 1 << 16;
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final Map<String, String> options;
+
+    private final Recorder latencies = new Recorder(HIGHEST_LATENCY, 3);
+
+    private final Map<String, LongAdder> outcomes = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean stop = new AtomicBoolean();
+
+    private LoadGenerator(Map<String, String> options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Arguments are --name=value, not " + arg);
+            }
+            options.put(arg.substring(2, arg.indexOf('=')), arg.substring(arg.indexOf('=') + 1));
+        }
+        boolean violated = new LoadGenerator(options).run();
+        System.exit(violated ? 1 : 0);
+    }
+
+    private String option(String name, String defaultValue) {
+        return options.getOrDefault(name, defaultValue);
+    }
+
+    /**
+     * THIS METHOD RUN THE LOAD AND PRINT THE REPORTS
+     *
+     * @return true if an invariant was violated
+     */
+    private boolean run() throws Exception {
+        int threads = Integer.parseInt(option("threads", "4"));
+        long seed = Long.parseLong(option("seed", "42"));
+        Duration duration = DurationStyle.detectAndParse(option("duration", "60s"));
+        Duration reportInterval = DurationStyle.detectAndParse(option("report-interval", "10s"));
+        long transfersLimit = Long.parseLong(option("transfers", "0"));
+        double rate = Double.parseDouble(option("rate", "0"));
+        BigDecimal balance = new BigDecimal(option("balance", "1000000"));
+
+        Transfer[][] sequences;
+        Set<String> accountIds;
+        boolean cycle;
+        String trace = options.get("trace");
+        if (trace != null) {
+            accountIds = new LinkedHashSet<>();
+            sequences = readTrace(trace, threads, accountIds);
+            cycle = false;
+        } else {
+            int accounts = Integer.parseInt(option("accounts", "10000"));
+            accountIds = new LinkedHashSet<>();
+            for (int i = 0; i < accounts; i++) {
+                accountIds.add("Id-" + i);
+            }
+            sequences = generate(new ArrayList<>(accountIds), threads, seed);
+            cycle = true;
+        }
+
+        Target target = "http".equals(option("target", "service"))
+                ? new HttpTarget(option("url", "http://localhost:18080"))
+                : new ServiceTarget(option("repository", "locking"), Boolean.parseBoolean(option("journal", "false")));
+        System.out.printf("Creating %d accounts with %s each%n", accountIds.size(), balance);
+        target.createAccounts(accountIds, balance, threads);
+        Scan expected = target.scan();
+        System.out.printf("%d accounts, total balance %s%n", expected.accounts, expected.total);
+
+        long perThread = transfersLimit > 0 ? (transfersLimit + threads - 1) / threads : Long.MAX_VALUE;
+        long intervalNanos = rate > 0 ? (long) (1e9 / rate) : 0;
+        Thread[] workers = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            Transfer[] sequence = sequences[i];
+            workers[i] = new Thread(() -> drive(target, sequence, cycle, perThread, intervalNanos), "load-" + i);
+        }
+        latencies.reset();
+        long started = System.nanoTime();
+        long deadline = started + duration.toNanos();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+
+        Histogram total = new Histogram(HIGHEST_LATENCY, 3);
+        Histogram interval = null;
+        boolean violated = false;
+        boolean running = true;
+        while (running) {
+            long now = System.nanoTime();
+            long next = Math.min(deadline, now + reportInterval.toNanos());
+            running = false;
+            for (Thread worker : workers) {
+                worker.join(Math.max(1, TimeUnit.NANOSECONDS.toMillis(next - System.nanoTime())));
+                running |= worker.isAlive();
+            }
+            if (System.nanoTime() >= deadline) {
+                stop.set(true);
+                for (Thread worker : workers) {
+                    worker.join();
+                }
+                running = false;
+            }
+            interval = latencies.getIntervalHistogram(interval);
+            total.add(interval);
+            System.out.printf("[%6.1fs] %s%n", (System.nanoTime() - started) / 1e9, summary(interval, interval.getEndTimeStamp() - interval.getStartTimeStamp()));
+            violated |= !check(target.scan(), expected);
+        }
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+        System.out.printf("Total     %s%n", summary(total, elapsedMillis));
+        System.out.printf("Outcomes  %s%n", new TreeMap<>(outcomes));
+        target.close();
+        return violated;
+    }
+
+    /**
+     * THIS METHOD SEND THE TRANSFERS OF A THREAD UNTIL THE END OF THE RUN, ITS LIMIT OR THE END OF THE TRACE
+     */
+    private void drive(Target target, Transfer[] sequence, boolean cycle, long limit, long intervalNanos) {
+        long start = System.nanoTime();
+        for (long i = 0; i < limit && !stop.get(); i++) {
+            if (!cycle && i == sequence.length) {
+                return;
+            }
+            long due = System.nanoTime();
+            if (intervalNanos > 0) {
+                due = start + i * intervalNanos;
+                long wait = due - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            String outcome;
+            try {
+                outcome = target.transfer(sequence[(int) (i % sequence.length)]);
+            } catch (RuntimeException | IOException e) {
+                outcome = e.getClass().getSimpleName();
+            }
+            latencies.recordValue(Math.min(HIGHEST_LATENCY, System.nanoTime() - due));
+            LongAdder count = outcomes.get(outcome);
+            if (count == null) {
+                count = outcomes.computeIfAbsent(outcome, key -> new LongAdder());
+            }
+            count.increment();
+        }
+    }
+
+    /**
+     * THIS METHOD GENERATE THE TRANSFERS OF EVERY THREAD, WITH AMOUNTS BETWEEN 1, THE MINIMUM, AND --max-amount
+     */
+    private Transfer[][] generate(List<String> accountIds, int threads, long seed) {
+        String workload = option("workload", "uniform");
+        long maxCents = new BigDecimal(option("max-amount", "100")).movePointRight(2).longValueExact();
+        int[] shards = null;
+        if ("crossshard".equals(workload)) {
+            //SAME PLACEMENT AS AccountsRepositorySharded
+            int count = Integer.parseInt(option("shards", Integer.toString(new AccountsProperties().getSharded().getShards())));
+            shards = new int[accountIds.size()];
+            for (int i = 0; i < shards.length; i++) {
+                int hash = accountIds.get(i).hashCode();
+                shards[i] = Math.floorMod(hash ^ (hash >>> 16), count);
+            }
+        }
+        Transfer[][] sequences = new Transfer[threads][];
+        for (int thread = 0; thread < threads; thread++) {
+            int[][] pairs = Workloads.pairs(workload, accountIds.size(), seed, thread, SEQUENCE_SIZE, shards);
+            SplittableRandom amounts = new SplittableRandom(seed ^ thread);
+            sequences[thread] = new Transfer[SEQUENCE_SIZE];
+            for (int i = 0; i < SEQUENCE_SIZE; i++) {
+                sequences[thread][i] = new Transfer(accountIds.get(pairs[0][i]), accountIds.get(pairs[1][i]),
+                        BigDecimal.valueOf(amounts.nextLong(100, maxCents + 1), 2));
+            }
+        }
+        return sequences;
+    }
+
+    /**
+     * THIS METHOD READ A TRACE, THE TRANSFERS OF A SOURCE ACCOUNT GO TO ONE THREAD IN THE ORDER OF THE FILE
+     */
+    private static Transfer[][] readTrace(String file, int threads, Set<String> accountIds) throws IOException {
+        List<List<Transfer>> lists = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            lists.add(new ArrayList<>());
+        }
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(file), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(",");
+                if (line.isEmpty() || line.startsWith("#") || fields[0].equals("accountFromId")) {
+                    continue;
+                }
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException("Trace lines are accountFromId,accountToId,amount, not " + line);
+                }
+                Transfer transfer = new Transfer(fields[0].trim(), fields[1].trim(), new BigDecimal(fields[2].trim()));
+                accountIds.add(transfer.getAccountFromId());
+                accountIds.add(transfer.getAccountToId());
+                lists.get(Math.floorMod(transfer.getAccountFromId().hashCode(), threads)).add(transfer);
+            }
+        }
+        Transfer[][] sequences = new Transfer[threads][];
+        for (int i = 0; i < threads; i++) {
+            sequences[i] = lists.get(i).toArray(new Transfer[0]);
+        }
+        return sequences;
+    }
+
+    private static String summary(Histogram histogram, long millis) {
+        StringBuilder summary = new StringBuilder();
+        summary.append(String.format("%d transfers, %.0f/s, latency us", histogram.getTotalCount(),
+                histogram.getTotalCount() * 1000.0 / Math.max(1, millis)));
+        for (double percentile : PERCENTILES) {
+            summary.append(String.format(" p%s %.1f", percentile == (long) percentile ? Long.toString((long) percentile) : percentile,
+                    histogram.getValueAtPercentile(percentile) / 1000.0));
+        }
+        return summary.append(String.format(" max %.1f", histogram.getMaxValue() / 1000.0)).toString();
+    }
+
+    private static boolean check(Scan scan, Scan expected) {
+        boolean conserved = scan.total.compareTo(expected.total) == 0 && scan.accounts == expected.accounts;
+        if (!conserved) {
+            System.out.printf("VIOLATED: %d accounts with total balance %s, expected %d with %s%n",
+                    scan.accounts, scan.total, expected.accounts, expected.total);
+        }
+        if (scan.negative > 0) {
+            System.out.printf("VIOLATED: %d accounts with a negative balance%n", scan.negative);
+        }
+        return conserved && scan.negative == 0;
+    }
+
+    /**
+     * BALANCES OF EVERY ACCOUNT AT ONE POINT IN TIME
+     */
+    private static final class Scan {
+
+        private long accounts;
+
+        private BigDecimal total = BigDecimal.ZERO;
+
+        private long negative;
+
+        private void add(BigDecimal balance) {
+            accounts++;
+            total = total.add(balance);
+            if (balance.signum() < 0) {
+                negative++;
+            }
+        }
+    }
+
+    /**
+     * WHAT THE TRANSFERS ARE SENT TO
+     */
+    private interface Target {
+
+        void createAccounts(Set<String> accountIds, BigDecimal balance, int threads) throws Exception;
+
+        /**
+         * @return outcome counted in the report
+         */
+        String transfer(Transfer transfer) throws IOException;
+
+        Scan scan() throws IOException;
+
+        void close() throws Exception;
+    }
+
+    /**
+     * AccountsService AND REPOSITORY BUILT IN THIS JVM, WITHOUT SPRING, NOTIFICATIONS OR METERS
+     */
+    private static final class ServiceTarget implements Target {
+
+        private final AccountsRepository accountsRepository;
+
+        private final NotificationDispatcher notificationDispatcher;
+
+        private final AccountsService accountsService;
+
+        private ServiceTarget(String repository, boolean journal) {
+            AccountsProperties properties = new AccountsProperties();
+            properties.getNotifications().setBackpressure(AccountsProperties.Backpressure.DROP_OLDEST);
+            //THE JOURNAL KEEPS EVERY TRANSFER, A SOAK TEST WOULD FILL THE HEAP
+            properties.getJournal().setEnabled(journal);
+            FxRateCache fxRateCache = FxRateCache.loadOnce(properties);
+            this.accountsRepository = BenchmarkRepositories.create(repository, properties, fxRateCache);
+            this.notificationDispatcher = new NotificationDispatcher(BenchmarkRepositories.NO_NOTIFICATIONS,
+                    accountsRepository, properties);
+            this.accountsService = new AccountsService(accountsRepository, notificationDispatcher,
+                    new TransferJournal(properties), new AccountsAggregates(accountsRepository, properties),
+                    new AccountsMetrics(new CompositeMeterRegistry(), accountsRepository, notificationDispatcher, properties),
+                    fxRateCache, properties);
+        }
+
+        @Override
+        public void createAccounts(Set<String> accountIds, BigDecimal balance, int threads) {
+            for (String accountId : accountIds) {
+                accountsService.createAccount(new Account(accountId, balance));
+            }
+        }
+
+        @Override
+        public String transfer(Transfer transfer) {
+            accountsService.transfer(transfer);
+            return "OK";
+        }
+
+        @Override
+        public Scan scan() {
+            Scan scan = new Scan();
+            accountsRepository.forEachAccount(account -> scan.add(account.getBalance()));
+            return scan;
+        }
+
+        @Override
+        public void close() throws Exception {
+            notificationDispatcher.close();
+            BenchmarkRepositories.close(accountsRepository);
+        }
+    }
+
+    /**
+     * SERVER RUNNING AT A URL, THE OUTCOMES ARE THE HTTP STATUSES. THE BALANCES ARE SCANNED WITH THE CSV EXPORT
+     */
+    private static final class HttpTarget implements Target {
+
+        private final String url;
+
+        private final ObjectMapper objectMapper = new ObjectMapper();
+
+        private HttpTarget(String url) {
+            this.url = url + "/v1/accounts";
+        }
+
+        @Override
+        public void createAccounts(Set<String> accountIds, BigDecimal balance, int threads) throws InterruptedException {
+            String[] ids = accountIds.toArray(new String[0]);
+            Thread[] creators = new Thread[threads];
+            for (int i = 0; i < threads; i++) {
+                int first = i;
+                creators[i] = new Thread(() -> {
+                    for (int j = first; j < ids.length; j += threads) {
+                        //AN ACCOUNT LEFT BY A PREVIOUS RUN IS A BAD_REQUEST, IT IS KEPT WITH ITS BALANCE
+                        post(url, new Account(ids[j], balance));
+                    }
+                });
+                creators[i].start();
+            }
+            for (Thread creator : creators) {
+                creator.join();
+            }
+        }
+
+        @Override
+        public String transfer(Transfer transfer) {
+            return Integer.toString(post(url + "/transfer", transfer));
+        }
+
+        private int post(String target, Object body) {
+            try {
+                HttpURLConnection connection = (HttpURLConnection) new URL(target).openConnection();
+                connection.setRequestMethod("POST");
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(objectMapper.writeValueAsBytes(body));
+                }
+                int status = connection.getResponseCode();
+                //A CONNECTION IS ONLY REUSED ONCE ITS RESPONSE WAS READ TO THE END
+                drain(status >= 400 ? connection.getErrorStream() : connection.getInputStream());
+                return status;
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        }
+
+        @Override
+        public Scan scan() throws IOException {
+            Scan scan = new Scan();
+            HttpURLConnection connection = (HttpURLConnection) new URL(url + "/export?format=csv").openConnection();
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                //accountId,balance AFTER A HEADER
+                String line = reader.readLine();
+                while ((line = reader.readLine()) != null) {
+                    scan.add(new BigDecimal(line.substring(line.lastIndexOf(',') + 1)));
+                }
+            }
+            return scan;
+        }
+
+        private static void drain(InputStream in) throws IOException {
+            if (in != null) {
+                try (InputStream body = in) {
+                    byte[] buffer = new byte[1024];
+                    while (body.read(buffer) >= 0) {
+                        //DISCARDED
+                    }
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.db.awmd.challenge;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.db.awmd.challenge.domain.Transfer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * COST FOR THE REQUEST THREAD OF THE LOG LINE AccountsController WROTE PER TRANSFER: AT INFO WITH A SYNCHRONOUS
+ * APPENDER (BEFORE), AT INFO THROUGH THE ASYNC APPENDER OF logback-spring.xml, AND AT DEBUG WITH INFO ENABLED (AFTER).
+ * THE LINES ARE FORMATTED WITH THE SPRING BOOT CONSOLE PATTERN AND WRITTEN TO A STREAM THAT DISCARDS THEM, SO THE
+ * COST OF THE TERMINAL OR THE DISK IS LEFT OUT
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoggingBenchmark {
+
+    @Param({"sync", "async", "debug"})
+    public String logging;
+
+    private final Transfer transfer = new Transfer("Id-123", "Id-1234", new BigDecimal("10.50"));
+
+    private LoggerContext context;
+
+    private Logger log;
+
+    @Setup
+    public void configure() {
+        this.context = new LoggerContext();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{yyyy-MM-dd HH:mm:ss.SSS} %5p %pid --- [%15.15t] %-40.40logger{39} : %m%n");
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> output = new OutputStreamAppender<>();
+        output.setContext(context);
+        output.setEncoder(encoder);
+        output.setOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        });
+        output.start();
+        Appender<ILoggingEvent> appender = output;
+        if (logging.equals("async")) {
+            AsyncAppender async = new AsyncAppender();
+            async.setContext(context);
+            async.setQueueSize(8192);
+            async.setDiscardingThreshold(0);
+            async.setNeverBlock(true);
+            async.addAppender(output);
+            async.start();
+            appender = async;
+        }
+        this.log = context.getLogger("com.db.awmd.challenge.web.AccountsController");
+        this.log.setLevel(Level.INFO);
+        this.log.addAppender(appender);
+    }
+
+    @TearDown
+    public void stop() {
+        context.stop();
+    }
+
+    @Benchmark
+    public void transferLogLine() {
+        if (logging.equals("debug")) {
+            log.debug("Transfer {} from {} to {}", transfer.getAmount(), transfer.getAccountFromId(), transfer.getAccountToId());
+        } else {
+            log.info("Transfer {} from {} to {}", transfer.getAmount(), transfer.getAccountFromId(), transfer.getAccountToId());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.exception.TooManyRequestsException;
+import com.db.awmd.challenge.service.TransferAdmission;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * COST OF THE ADMISSION OF A TRANSFER: admitted SOURCE ACCOUNTS ARE PICKED UNIFORMLY AMONG accounts, MORE
+ * ACCOUNTS THAN RATE LIMIT BUCKETS EVICT ONE ON MOST TRANSFERS. rejected IS A SINGLE ACCOUNT FAR ABOVE THE
+ * DEFAULT RATE
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferAdmissionBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int accounts;
+
+    private String[] accountIds;
+
+    private TransferAdmission admission;
+
+    private TransferAdmission limited;
+
+    @Setup
+    public void setup() {
+        AccountsProperties properties = new AccountsProperties();
+        this.limited = new TransferAdmission(new SimpleMeterRegistry(), properties);
+        //NO ACCOUNT OF admitted GOES ABOVE THIS RATE, ITS BUCKETS ARE STILL LOOKED UP AND UPDATED
+        properties.getAdmission().setAccountRate(1e9);
+        this.admission = new TransferAdmission(new SimpleMeterRegistry(), properties);
+        this.accountIds = new String[accounts];
+        for (int i = 0; i < accounts; i++) {
+            this.accountIds[i] = "Id-" + i;
+        }
+    }
+
+    @Benchmark
+    public long admitted() {
+        String accountId = accountIds[ThreadLocalRandom.current().nextInt(accounts)];
+        try {
+            long admitted = admission.acquire(accountId);
+            admission.release(admitted);
+            return admitted;
+        } catch (TooManyRequestsException tmre) {
+            return tmre.getRetryAfterNanos();
+        }
+    }
+
+    @Benchmark
+    public long rejected() {
+        try {
+            long admitted = limited.acquire("Id-hot");
+            limited.release(admitted);
+            return admitted;
+        } catch (TooManyRequestsException tmre) {
+            return tmre.getRetryAfterNanos();
+        }
+    }
+}
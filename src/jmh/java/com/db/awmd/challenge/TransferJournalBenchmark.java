@@ -0,0 +1,69 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Currencies;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferPage;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.service.TransferJournal;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * STATEMENT PAGES OF AN ACCOUNT WITH A LONG HISTORY, AT RANDOM CURSORS. THE ACCOUNT IS "Id-0", A MERCHANT ACCOUNT
+ * CREDITED BY EVERY TRANSFER OF THE JOURNAL. THE COST OF THE APPENDS IS THE journal PARAMETER OF
+ * AccountsServiceBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class TransferJournalBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int history;
+
+    @Param({"100", "1000"})
+    public int limit;
+
+    private static final TransferResult APPLIED = TransferResult.applied(Currencies.DEFAULT_NUMERIC_CODE);
+
+    private TransferJournal journal;
+
+    private Transfer[] transfers;
+
+    @Setup(Level.Trial)
+    public void appendHistory() {
+        AccountsProperties properties = new AccountsProperties();
+        properties.getJournal().setEnabled(true);
+        this.journal = new TransferJournal(properties);
+        this.transfers = new Transfer[1 << 16];
+        for (int i = 0; i < transfers.length; i++) {
+            this.transfers[i] = new Transfer("Id-" + (i % 10000 + 1), "Id-0", new BigDecimal(i % 1000 + 1));
+        }
+        for (int i = 0; i < history; i++) {
+            this.journal.append(this.transfers[i & (transfers.length - 1)], APPLIED, System.currentTimeMillis());
+        }
+    }
+
+    @Benchmark
+    public TransferPage statement() {
+        return journal.statement("Id-0", ThreadLocalRandom.current().nextInt(history - limit), limit);
+    }
+}
@@ -0,0 +1,120 @@
+package com.db.awmd.challenge;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * ACCOUNT SELECTION PATTERNS USED BY THE BENCHMARKS, EVERY THREAD GETS ITS OWN PRE-COMPUTED SEQUENCE OF
+ * (FROM, TO) ACCOUNT INDEXES SO THAT THE GENERATION COST IS NOT MEASURED
+ * <ul>
+ * <li>uniform: every account has the same probability</li>
+ * <li>zipfian: a few hot accounts take most of the traffic (exponent 0.99, as in YCSB)</li>
+ * <li>merchant: uniform "from" accounts, zipfian "to" accounts, a few merchant accounts receive most credits</li>
+ * <li>disjoint: every thread transfers back and forth between its own pair of accounts</li>
+ * <li>hotpair: every thread transfers back and forth between the first two accounts</li>
+ * <li>crossshard: uniform accounts of two different shards of the sharded repository</li>
+ * </ul>
+ */
+final class Workloads {
+
+    private static final double ZIPFIAN_EXPONENT = 0.99;
+
+    private Workloads() {
+    }
+
+    /**
+     * THIS METHOD GENERATE THE ACCOUNT PAIRS OF A THREAD
+     *
+     * @param workload Workload name
+     * @param accounts Number of accounts
+     * @param thread   Thread index, starting at 0
+     * @param size     Number of pairs, a power of two
+     * @return pairs as {from[], to[]}
+     */
+    static int[][] pairs(String workload, int accounts, int thread, int size) {
+        return pairs(workload, accounts, 0, thread, size, null);
+    }
+
+    /**
+     * THIS METHOD GENERATE THE ACCOUNT PAIRS OF A THREAD, THE SAME SEED AND THREAD ALWAYS GIVE THE SAME PAIRS
+     *
+     * @param workload Workload name
+     * @param accounts Number of accounts
+     * @param seed     Seed of the run
+     * @param thread   Thread index, starting at 0
+     * @param size     Number of pairs
+     * @param shards   Shard of every account for crossshard, null otherwise
+     * @return pairs as {from[], to[]}
+     */
+    static int[][] pairs(String workload, int accounts, long seed, int thread, int size, int[] shards) {
+        int[] from = new int[size];
+        int[] to = new int[size];
+        SplittableRandom random = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + thread);
+        double[] cdf = "zipfian".equals(workload) || "merchant".equals(workload) ? zipfianCdf(accounts) : null;
+        for (int i = 0; i < size; i++) {
+            switch (workload) {
+                case "uniform":
+                    from[i] = random.nextInt(accounts);
+                    to[i] = (from[i] + 1 + random.nextInt(accounts - 1)) % accounts;
+                    break;
+                case "zipfian":
+                    from[i] = sample(cdf, random);
+                    do {
+                        to[i] = sample(cdf, random);
+                    } while (to[i] == from[i]);
+                    break;
+                case "merchant":
+                    to[i] = sample(cdf, random);
+                    do {
+                        from[i] = random.nextInt(accounts);
+                    } while (to[i] == from[i]);
+                    break;
+                case "disjoint":
+                    if (2 * thread + 1 >= accounts) {
+                        throw new IllegalArgumentException("disjoint workload needs 2 accounts per thread");
+                    }
+                    from[i] = 2 * thread + (i & 1);
+                    to[i] = 2 * thread + 1 - (i & 1);
+                    break;
+                case "hotpair":
+                    from[i] = random.nextInt(2);
+                    to[i] = 1 - from[i];
+                    break;
+                case "crossshard":
+                    if (shards == null) {
+                        throw new IllegalArgumentException("crossshard workload needs the shard of every account");
+                    }
+                    from[i] = random.nextInt(accounts);
+                    int attempts = 0;
+                    do {
+                        if (++attempts > 1000) {
+                            throw new IllegalArgumentException("crossshard workload needs accounts in 2 shards");
+                        }
+                        to[i] = random.nextInt(accounts);
+                    } while (shards[to[i]] == shards[from[i]]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown workload " + workload);
+            }
+        }
+        return new int[][]{from, to};
+    }
+
+    private static double[] zipfianCdf(int accounts) {
+        double[] cdf = new double[accounts];
+        double sum = 0;
+        for (int i = 0; i < accounts; i++) {
+            sum += 1 / Math.pow(i + 1, ZIPFIAN_EXPONENT);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < accounts; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, SplittableRandom random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(index < 0 ? -index - 1 : index, cdf.length - 1);
+    }
+}
@@ -0,0 +1,351 @@
+package com.db.awmd.challenge.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * TUNING PROPERTIES OF THE ACCOUNTS MODULE, BOUND FROM THE "accounts" SECTION OF application.yml
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "accounts")
+public class AccountsProperties {
+
+    /**
+     * ACCOUNTS REPOSITORY IMPLEMENTATION: "locking" (STRIPED LOCKS, DEFAULT), "optimistic" (LOCK-FREE CAS),
+     * "durable" (STRIPED LOCKS PLUS WRITE-AHEAD LOG), "offheap" (STRIPED LOCKS, ACCOUNTS OUTSIDE OF THE HEAP)
+     * OR "sharded" (SINGLE-WRITER THREAD PER SHARD)
+     */
+    private String repository = "locking";
+
+    /**
+     * NUMBER OF LOCKS SHARED BY ALL ACCOUNTS, ROUNDED UP TO A POWER OF TWO
+     */
+    private int lockStripes = 1024;
+
+    /**
+     * MAXIMUM NUMBER OF TRANSFERS ACCEPTED IN ONE BATCH
+     */
+    private int maxBatchSize = 10000;
+
+    /**
+     * MAXIMUM NUMBER OF ACCOUNT IDS IN ONE QUERY, THE ACCOUNTS ARE READ AT ONCE SO THEY ARE ALL IN MEMORY BEFORE THE
+     * RESPONSE IS WRITTEN. EVERY ACCOUNT IS EXPORTED BY GET /v1/accounts/export INSTEAD
+     */
+    private int maxQuerySize = 10000;
+
+    private Notifications notifications = new Notifications();
+
+    private Wal wal = new Wal();
+
+    private Idempotency idempotency = new Idempotency();
+
+    private OffHeap offHeap = new OffHeap();
+
+    private Sharded sharded = new Sharded();
+
+    private HotAccounts hotAccounts = new HotAccounts();
+
+    private Metrics metrics = new Metrics();
+
+    private Web web = new Web();
+
+    private AccessLog accessLog = new AccessLog();
+
+    private ResponseCache responseCache = new ResponseCache();
+
+    private Journal journal = new Journal();
+
+    private Aggregates aggregates = new Aggregates();
+
+    private Admission admission = new Admission();
+
+    private Fx fx = new Fx();
+
+    /**
+     * ASYNCHRONOUS DISPATCH OF THE TRANSFER NOTIFICATIONS
+     */
+    @Data
+    public static class Notifications {
+
+        /**
+         * SIZE OF THE RING BUFFER BETWEEN THE TRANSFERS AND THE DISPATCH WORKERS, ROUNDED UP TO A POWER OF TWO
+         */
+        private int queueCapacity = 65536;
+
+        private int workers = 2;
+
+        /**
+         * MAXIMUM NUMBER OF NOTIFICATIONS TAKEN FROM THE QUEUE AND COALESCED PER ACCOUNT IN ONE DISPATCH
+         */
+        private int batchSize = 256;
+
+        private Backpressure backpressure = Backpressure.SPILL;
+
+        /**
+         * FILE RECEIVING THE NOTIFICATIONS THAT DID NOT FIT IN THE QUEUE WITH THE SPILL POLICY. EMPTY FOR
+         * notifications.spill IN THE wal.directory OF THE INSTANCE, SO TWO INSTANCES NEVER SHARE IT
+         */
+        private String spillFile = "";
+    }
+
+    /**
+     * WRITE-AHEAD LOG AND SNAPSHOTS OF THE "durable" REPOSITORY
+     */
+    @Data
+    public static class Wal {
+
+        /**
+         * DIRECTORY OF THE LOG SEGMENTS AND THE SNAPSHOTS
+         */
+        private String directory = "data";
+
+        /**
+         * TIME THE LOG WAITS FOR MORE RECORDS BEFORE A FSYNC, ZERO FSYNCS AS SOON AS THE PREVIOUS ONE FINISHED
+         */
+        private Duration fsyncInterval = Duration.ZERO;
+
+        /**
+         * NUMBER OF PENDING RECORDS THAT TRIGGERS THE FSYNC BEFORE THE INTERVAL ENDS
+         */
+        private int batchSize = 4096;
+
+        /**
+         * TIME BETWEEN SNAPSHOTS OF THE ACCOUNTS, ON STARTUP ONLY THE LOG WRITTEN AFTER THE LAST ONE IS REPLAYED.
+         * ZERO DISABLES THE PERIODIC SNAPSHOTS
+         */
+        private Duration snapshotInterval = Duration.ofMinutes(10);
+    }
+
+    /**
+     * CACHE OF THE OUTCOMES OF THE TRANSFERS SENT WITH AN Idempotency-Key HEADER
+     */
+    @Data
+    public static class Idempotency {
+
+        /**
+         * MAXIMUM NUMBER OF KEYS KEPT, THE LEAST RECENTLY USED ONES ARE EVICTED FIRST
+         */
+        private int maxKeys = 100000;
+
+        /**
+         * TIME A KEY IS KEPT SINCE ITS FIRST REQUEST
+         */
+        private Duration ttl = Duration.ofHours(1);
+
+        private int stripes = 64;
+    }
+
+    /**
+     * ACCOUNT TABLE OF THE "offheap" REPOSITORY
+     */
+    @Data
+    public static class OffHeap {
+
+        /**
+         * NUMBER OF ACCOUNTS THE INDEX IS SIZED FOR, IT DOUBLES WHEN THEY ARE EXCEEDED
+         */
+        private int expectedAccounts = 1 << 20;
+    }
+
+    /**
+     * PARTITIONS OF THE "sharded" REPOSITORY
+     */
+    @Data
+    public static class Sharded {
+
+        /**
+         * NUMBER OF SHARDS, EACH ONE OWNED BY ITS OWN THREAD
+         */
+        private int shards = Runtime.getRuntime().availableProcessors();
+    }
+
+    /**
+     * ACCOUNTS CREDITED BY MOST TRANSFERS, WHOSE CREDITS THE "locking" AND "durable" REPOSITORIES SPREAD OVER CELLS
+     */
+    @Data
+    public static class HotAccounts {
+
+        /**
+         * ACCOUNTS HOT FROM THEIR CREATION, AS FEE COLLECTION OR MERCHANT OMNIBUS ACCOUNTS
+         */
+        private List<String> ids = new ArrayList<>();
+
+        /**
+         * NUMBER OF CREDITS OF AN ACCOUNT THAT HAD TO WAIT FOR ITS LOCK BEFORE IT IS HOT, ZERO DISABLES THE DETECTION
+         */
+        private int detectThreshold = 1000;
+
+        /**
+         * NUMBER OF CREDIT CELLS OF A HOT ACCOUNT, ROUNDED UP TO A POWER OF TWO
+         */
+        private int cells = 16;
+    }
+
+    /**
+     * INSTRUMENTATION OF THE ACCOUNT OPERATIONS
+     */
+    @Data
+    public static class Metrics {
+
+        /**
+         * ONE OPERATION IN THIS NUMBER IS TIMED, ROUNDED UP TO A POWER OF TWO. 1 TIMES EVERY OPERATION
+         */
+        private int sampleRate = 16;
+    }
+
+    /**
+     * EXECUTION OF THE REST REQUESTS
+     */
+    @Data
+    public static class Web {
+
+        /**
+         * "platform" (TOMCAT THREAD POOL, DEFAULT) OR "virtual" (A VIRTUAL THREAD PER REQUEST, JAVA 21 OR LATER)
+         */
+        private String executor = "platform";
+    }
+
+    /**
+     * SAMPLED ACCESS LOG OF THE REST REQUESTS
+     */
+    @Data
+    public static class AccessLog {
+
+        /**
+         * ONE REQUEST IN THIS NUMBER IS LOGGED, ROUNDED UP TO A POWER OF TWO. 0 TURNS THE ACCESS LOG OFF
+         */
+        private int sampleRate = 128;
+    }
+
+    /**
+     * SERIALIZED JSON OF THE ACCOUNTS RETURNED BY GET /v1/accounts/{accountId}, ONE VERSION PER ACCOUNT
+     */
+    @Data
+    public static class ResponseCache {
+
+        /**
+         * MAXIMUM NUMBER OF ACCOUNTS KEPT, THE LEAST RECENTLY READ ONES ARE EVICTED FIRST
+         */
+        private int maxEntries = 100000;
+
+        private Duration ttl = Duration.ofMinutes(10);
+
+        private int stripes = 64;
+    }
+
+    /**
+     * IN-MEMORY JOURNAL OF THE APPLIED TRANSFERS, READ BY GET /v1/accounts/{accountId}/transfers
+     */
+    @Data
+    public static class Journal {
+
+        /**
+         * FALSE KEEPS NO HISTORY, THE JOURNAL TAKES AROUND 70 BYTES OF HEAP PER TRANSFER KEPT
+         */
+        private boolean enabled = false;
+
+        /**
+         * TRANSFERS KEPT, ROUNDED UP TO CHUNKS OF 65536. ONCE THEY ARE KEPT THE OLDEST CHUNK IS EVICTED FOR THE NEXT ONE
+         */
+        private long maxTransfers = 10_000_000;
+
+        /**
+         * MAXIMUM NUMBER OF TRANSFERS IN A STATEMENT PAGE
+         */
+        private int maxPageSize = 1000;
+    }
+
+    /**
+     * RUNNING AGGREGATES OF THE ACCOUNTS AND THEIR VERIFICATION
+     */
+    @Data
+    public static class Aggregates {
+
+        /**
+         * TIME BETWEEN TWO SCANS OF EVERY ACCOUNT CHECKING THE TOTAL BALANCE, ZERO DISABLES THEM. A SCAN READS EVERY
+         * ACCOUNT AND PAUSES THE TRANSFERS TO START, SO THEY ARE OFF UNLESS ASKED FOR
+         */
+        private Duration verifyInterval = Duration.ZERO;
+    }
+
+    /**
+     * LIMITS CHECKED BEFORE A TRANSFER REACHES THE REPOSITORY, A REJECTED TRANSFER GETS TOO_MANY_REQUESTS
+     */
+    @Data
+    public static class Admission {
+
+        /**
+         * TRANSFERS PER SECOND SUSTAINED BY EVERY SOURCE ACCOUNT, 0 DISABLES THE RATE LIMIT
+         */
+        private double accountRate = 1000;
+
+        /**
+         * TRANSFERS A SOURCE ACCOUNT IDLE LONG ENOUGH CAN SEND AT ONCE
+         */
+        private int accountBurst = 100;
+
+        /**
+         * NUMBER OF RATE LIMIT BUCKETS, ROUNDED UP TO A POWER OF TWO. THE MOST IDLE ONES ARE EVICTED WHEN THEY ARE ALL USED
+         */
+        private int buckets = 65536;
+
+        private int initialConcurrency = 256;
+
+        private int minConcurrency = 16;
+
+        /**
+         * HIGHEST LIMIT OF THE TRANSFERS IN PROGRESS, 0 DISABLES THE CONCURRENCY LIMIT
+         */
+        private int maxConcurrency = 4096;
+
+        /**
+         * LATENCY OF A TRANSFER ABOVE WHICH THE LIMIT OF THE TRANSFERS IN PROGRESS DECREASES
+         */
+        private Duration latencyThreshold = Duration.ofMillis(100);
+    }
+
+    /**
+     * EXCHANGE RATES OF THE TRANSFERS BETWEEN ACCOUNTS OF DIFFERENT CURRENCIES
+     */
+    @Data
+    public static class Fx {
+
+        /**
+         * PROPERTIES FILE WITH ONE CODE=RATE LINE PER CURRENCY, THE RATE IN UNITS OF THE CURRENCY PER EUR. EMPTY ONLY
+         * KNOWS EUR, THE DEFAULT CURRENCY
+         */
+        private String ratesFile = "";
+
+        /**
+         * TIME BETWEEN TWO CHECKS OF THE RATES FILE, A CHANGED FILE REPLACES THE RATES. ZERO NEVER RELOADS IT
+         */
+        private Duration refreshInterval = Duration.ofMinutes(1);
+    }
+
+    /**
+     * WHAT A TRANSFER DOES WHEN THE NOTIFICATION QUEUE IS FULL
+     */
+    public enum Backpressure {
+
+        /**
+         * WAIT UNTIL A WORKER MAKES ROOM, TRANSFERS SLOW DOWN TO THE NOTIFICATION RATE
+         */
+        BLOCK,
+
+        /**
+         * DISCARD THE OLDEST QUEUED NOTIFICATION
+         */
+        DROP_OLDEST,
+
+        /**
+         * APPEND THE NOTIFICATION TO THE SPILL FILE, RELOADED WHEN THE QUEUE IS EMPTY AGAIN
+         */
+        SPILL
+    }
+}
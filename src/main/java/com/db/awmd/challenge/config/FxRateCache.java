@@ -0,0 +1,172 @@
+package com.db.awmd.challenge.config;
+
+import com.db.awmd.challenge.domain.FxRates;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * EXCHANGE RATES LOADED FROM accounts.fx.rates-file. THE RATES ARE AN IMMUTABLE FxRates PUBLISHED THROUGH A
+ * VOLATILE FIELD: A TRANSFER READS IT ONCE AND CONVERTS WITH THAT TABLE, A REFRESH BUILDS A NEW TABLE ON THE SIDE AND
+ * SWAPS THE REFERENCE, SO READERS NEVER WAIT AND NEVER SEE HALF A RELOAD.
+ * <p>
+ * A THREAD CHECKS THE MODIFICATION TIME OF THE FILE EVERY accounts.fx.refresh-interval. THE FILE MUST BE VALID ON
+ * STARTUP; A LATER ONE THAT DOES NOT LOAD IS LOGGED AND THE CURRENT RATES ARE KEPT
+ */
+@Slf4j
+@Component
+public class FxRateCache implements Closeable {
+
+    private final Path file;
+
+    private final ScheduledExecutorService refresher;
+
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile FxRates rates;
+
+    /**
+     * MODIFICATION TIME OF THE LOADED FILE, ONLY READ AND WRITTEN UNDER THE REFRESH LOCK
+     */
+    private FileTime loadedModified;
+
+    @Autowired
+    public FxRateCache(AccountsProperties properties) {
+        this(properties, properties.getFx().getRefreshInterval());
+    }
+
+    private FxRateCache(AccountsProperties properties, Duration interval) {
+        AccountsProperties.Fx fx = properties.getFx();
+        if (fx.getRatesFile() == null || fx.getRatesFile().isEmpty()) {
+            this.file = null;
+            this.rates = FxRates.of(Collections.emptyMap());
+            this.refresher = null;
+            return;
+        }
+        this.file = Paths.get(fx.getRatesFile());
+        try {
+            this.loadedModified = Files.getLastModifiedTime(file);
+            this.rates = load(file);
+        } catch (IOException ioe) {
+            throw new UncheckedIOException("Exchange rates " + file + " can not be read", ioe);
+        }
+        log.info("Loaded {} exchange rates from {}", rates.getRates().size(), file);
+        if (interval.isZero()) {
+            this.refresher = null;
+        } else {
+            this.refresher = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "accounts-fx-refresh");
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.refresher.scheduleWithFixedDelay(this::scheduledRefresh, interval.toMillis(), interval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * THIS METHOD LOAD THE RATES WITHOUT A REFRESH THREAD, SO THE CACHE HOLDS NOTHING TO CLOSE. FOR A REPOSITORY
+     * CREATED OUTSIDE OF SPRING WITHOUT THE SHARED CACHE, ITS RATES ONLY CHANGE WHEN refresh IS CALLED
+     *
+     * @param properties Properties with the rates file
+     * @return cache
+     */
+    public static FxRateCache loadOnce(AccountsProperties properties) {
+        return new FxRateCache(properties, Duration.ZERO);
+    }
+
+    /**
+     * CURRENT RATES, A SINGLE VOLATILE READ
+     */
+    public FxRates current() {
+        return rates;
+    }
+
+    /**
+     * THIS METHOD LOAD THE RATES FILE AGAIN IF IT CHANGED SINCE IT WAS LOADED AND REPLACE THE RATES
+     *
+     * @return true if the rates were replaced
+     * @throws IOException              if the file can not be read
+     * @throws IllegalArgumentException if the file has an invalid rate, the current rates are kept
+     */
+    public boolean refresh() throws IOException {
+        if (file == null) {
+            return false;
+        }
+        refreshLock.lock();
+        try {
+            FileTime modified = Files.getLastModifiedTime(file);
+            if (modified.equals(loadedModified)) {
+                return false;
+            }
+            FxRates loaded = load(file);
+            //THE SWAP, TRANSFERS IN PROGRESS FINISH WITH THE TABLE THEY READ
+            rates = loaded;
+            loadedModified = modified;
+            return true;
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    private void scheduledRefresh() {
+        try {
+            if (refresh()) {
+                log.info("Reloaded {} exchange rates from {}", rates.getRates().size(), file);
+            }
+        } catch (IOException | RuntimeException e) {
+            log.error("Exchange rates {} can not be reloaded, the current ones are kept", file, e);
+        }
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        if (refresher != null) {
+            refresher.shutdownNow();
+        }
+    }
+
+    /**
+     * THIS METHOD READ A RATES FILE, ONE CODE=RATE PROPERTY PER CURRENCY
+     *
+     * @param file Rates file
+     * @return rates
+     */
+    private static FxRates load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        Map<String, BigDecimal> rates = new HashMap<>();
+        for (String code : properties.stringPropertyNames()) {
+            try {
+                rates.put(code.trim(), new BigDecimal(properties.getProperty(code).trim()));
+            } catch (NumberFormatException nfe) {
+                throw new IllegalArgumentException("Exchange rate of " + code + " is not a number");
+            }
+        }
+        return FxRates.of(rates);
+    }
+}
@@ -0,0 +1,53 @@
+package com.db.awmd.challenge.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * RUNS THE REQUESTS ON VIRTUAL THREADS INSTEAD OF THE TOMCAT THREAD POOL WHEN accounts.web.executor IS "virtual".
+ * <p>
+ * A REQUEST WAITING FOR A STRIPE LOCK, THE WRITE-AHEAD LOG OR A SHARD THEN RELEASES ITS CARRIER THREAD, SO THE NUMBER
+ * OF REQUESTS IN FLIGHT IS BOUNDED BY server.tomcat.max-connections AND NOT BY server.tomcat.threads.max. THE
+ * REPOSITORIES ONLY BLOCK ON java.util.concurrent LOCKS AND FUTURES, NEVER INSIDE synchronized, SO THEY DO NOT PIN
+ * THE CARRIER THREADS. THE EXECUTOR IS LOOKED UP BY REFLECTION TO KEEP THE BUILD ON JAVA 8, THE APPLICATION MUST RUN
+ * ON JAVA 21 OR LATER IN THIS MODE
+ */
+@Slf4j
+@Configuration
+@ConditionalOnProperty(prefix = "accounts.web", name = "executor", havingValue = "virtual")
+public class WebExecutorConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService virtualThreadExecutor() {
+        ExecutorService executor = newVirtualThreadPerTaskExecutor();
+        log.info("Requests run on virtual threads");
+        return executor;
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandler(ExecutorService virtualThreadExecutor) {
+        return protocolHandler -> protocolHandler.setExecutor(virtualThreadExecutor);
+    }
+
+    /**
+     * THIS METHOD CREATE AN EXECUTOR STARTING A VIRTUAL THREAD PER TASK
+     *
+     * @return the executor
+     * @throws IllegalStateException if the running JVM has no virtual threads
+     */
+    public static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException e) {
+            throw new IllegalStateException("accounts.web.executor=virtual needs Java 21 or later, running on "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+}
@@ -3,31 +3,37 @@ package com.db.awmd.challenge.domain;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import java.math.BigDecimal;
-import javax.validation.constraints.Min;
-import javax.validation.constraints.NotNull;
 import lombok.Data;
-import org.hibernate.validator.constraints.NotEmpty;
 
+/**
+ * CHECKED BY RequestValidation WHEN CREATED: ID NOT EMPTY, BALANCE NOT NEGATIVE, KNOWN CURRENCY.
+ * AN ACCOUNT WITHOUT CURRENCY IS IN THE DEFAULT ONE, THE CURRENCY OF AN ACCOUNT NEVER CHANGES
+ */
 @Data
 public class Account {
 
-  @NotNull
-  @NotEmpty
   private final String accountId;
 
-  @NotNull
-  @Min(value = 0, message = "Initial balance must be positive.")
   private BigDecimal balance;
 
+  private final String currency;
+
   public Account(String accountId) {
     this.accountId = accountId;
     this.balance = BigDecimal.ZERO;
+    this.currency = Currencies.DEFAULT;
+  }
+
+  public Account(String accountId, BigDecimal balance) {
+    this(accountId, balance, null);
   }
 
   @JsonCreator
   public Account(@JsonProperty("accountId") String accountId,
-    @JsonProperty("balance") BigDecimal balance) {
+    @JsonProperty("balance") BigDecimal balance,
+    @JsonProperty("currency") String currency) {
     this.accountId = accountId;
     this.balance = balance;
+    this.currency = currency == null ? Currencies.DEFAULT : currency;
   }
 }
@@ -0,0 +1,34 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * RUNNING AGGREGATES OF THE ACCOUNTS AND THE TRANSFERS, WITH THE LAST VERIFICATION OF THE TOTAL BALANCES. THE
+ * AMOUNTS ARE KEYED BY CURRENCY CODE, THE VOLUMES COUNTED IN THE CURRENCY OF THE "FROM" ACCOUNT
+ */
+@Data
+public class Aggregates {
+
+    private final long accounts;
+
+    /**
+     * SUM OF THE INITIAL BALANCES OF EACH CURRENCY, ONLY CHANGED BY THE TRANSFERS BETWEEN TWO CURRENCIES
+     */
+    private final Map<String, BigDecimal> totalBalance;
+
+    private final long transfers;
+
+    private final Map<String, BigDecimal> transferVolume;
+
+    private final long lastMinuteTransfers;
+
+    private final Map<String, BigDecimal> lastMinuteVolume;
+
+    /**
+     * NULL UNTIL THE FIRST VERIFICATION
+     */
+    private final Verification verification;
+}
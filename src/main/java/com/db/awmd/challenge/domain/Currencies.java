@@ -0,0 +1,127 @@
+package com.db.awmd.challenge.domain;
+
+import com.db.awmd.challenge.exception.InvalidCurrencyException;
+
+import java.math.BigInteger;
+import java.util.Currency;
+
+/**
+ * ISO 4217 CURRENCIES OF THE ACCOUNTS. THE REPOSITORIES STORE THE NUMERIC CODE (978 FOR EUR), AN INT THAT INDEXES
+ * THE EXCHANGE RATE TABLE DIRECTLY, AND ONLY TURN IT BACK INTO THE ALPHABETIC CODE WHEN AN ACCOUNT IS READ. AMOUNTS
+ * ARE KEPT IN THE MINOR UNITS OF THEIR CURRENCY, WITH ITS DEFAULT FRACTION DIGITS (2 FOR EUR, 0 FOR JPY, 3 FOR KWD);
+ * THE CURRENCIES WITHOUT, LIKE GOLD (XAU), ARE NOT SUPPORTED
+ */
+public final class Currencies {
+
+    /**
+     * CURRENCY OF THE ACCOUNTS AND TRANSFERS WITHOUT ONE, AND OF EVERY ACCOUNT CREATED BEFORE THERE WERE CURRENCIES
+     */
+    public static final String DEFAULT = "EUR";
+
+    public static final int DEFAULT_NUMERIC_CODE = 978;
+
+    /**
+     * HIGHEST ISO 4217 NUMERIC CODE PLUS ONE
+     */
+    public static final int NUMERIC_CODES = 1000;
+
+    /**
+     * ALPHABETIC CODE BY NUMERIC CODE, NULL FOR THE NUMERIC CODES NOT USED OR SHARED BY SEVERAL CURRENCIES
+     */
+    private static final String[] CODES = new String[NUMERIC_CODES];
+
+    /**
+     * NUMBER OF DECIMALS OF THE MINOR UNIT BY NUMERIC CODE
+     */
+    private static final int[] SCALES = new int[NUMERIC_CODES];
+
+    /**
+     * MINOR UNITS IN ONE UNIT BY NUMERIC CODE, 10 TO THE POWER OF THE SCALE
+     */
+    private static final long[] UNITS = new long[NUMERIC_CODES];
+
+    static {
+        boolean[] shared = new boolean[NUMERIC_CODES];
+        for (Currency currency : Currency.getAvailableCurrencies()) {
+            int numericCode = currency.getNumericCode();
+            if (numericCode > 0 && numericCode < NUMERIC_CODES && currency.getDefaultFractionDigits() >= 0) {
+                shared[numericCode] |= CODES[numericCode] != null;
+                CODES[numericCode] = currency.getCurrencyCode();
+                SCALES[numericCode] = currency.getDefaultFractionDigits();
+                UNITS[numericCode] = BigInteger.TEN.pow(SCALES[numericCode]).longValueExact();
+            }
+        }
+        for (int i = 0; i < NUMERIC_CODES; i++) {
+            if (shared[i]) {
+                CODES[i] = null;
+            }
+        }
+    }
+
+    private Currencies() {
+    }
+
+    /**
+     * THIS METHOD RETURN THE NUMERIC CODE OF A CURRENCY
+     *
+     * @param code Alphabetic code, null for the default currency
+     * @return numeric code, or 0 if the currency is unknown
+     */
+    public static int find(String code) {
+        if (code == null) {
+            return DEFAULT_NUMERIC_CODE;
+        }
+        int numericCode;
+        try {
+            numericCode = Currency.getInstance(code).getNumericCode();
+        } catch (IllegalArgumentException iae) {
+            return 0;
+        }
+        return numericCode > 0 && numericCode < NUMERIC_CODES && code.equals(CODES[numericCode]) ? numericCode : 0;
+    }
+
+    /**
+     * THIS METHOD RETURN THE NUMERIC CODE OF A CURRENCY
+     *
+     * @param code Alphabetic code, null for the default currency
+     * @return numeric code
+     * @throws InvalidCurrencyException if the currency is unknown
+     */
+    public static int numericCode(String code) {
+        int numericCode = find(code);
+        if (numericCode == 0) {
+            throw new InvalidCurrencyException("unknown currency " + code);
+        }
+        return numericCode;
+    }
+
+    /**
+     * THIS METHOD RETURN THE ALPHABETIC CODE OF A NUMERIC CODE RETURNED BY find, WITHOUT ALLOCATING
+     *
+     * @param numericCode Numeric code
+     * @return alphabetic code
+     */
+    public static String code(int numericCode) {
+        return CODES[numericCode];
+    }
+
+    /**
+     * THIS METHOD RETURN THE NUMBER OF DECIMALS OF THE MINOR UNIT OF A CURRENCY, THE SCALE ITS AMOUNTS ARE STORED WITH
+     *
+     * @param numericCode Numeric code returned by find
+     * @return scale
+     */
+    public static int scale(int numericCode) {
+        return SCALES[numericCode];
+    }
+
+    /**
+     * THIS METHOD RETURN ONE UNIT OF A CURRENCY IN ITS MINOR UNITS, THE SMALLEST AMOUNT OF A TRANSFER
+     *
+     * @param numericCode Numeric code returned by find
+     * @return 10 to the power of the scale
+     */
+    public static long unit(int numericCode) {
+        return UNITS[numericCode];
+    }
+}
@@ -0,0 +1,165 @@
+package com.db.awmd.challenge.domain;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * IMMUTABLE TABLE OF EXCHANGE RATES, REPLACED AS A WHOLE WHEN THE RATES CHANGE. THE RATES ARE GIVEN IN UNITS OF EVERY
+ * CURRENCY PER UNIT OF THE DEFAULT ONE; THE CROSS RATE OF EVERY PAIR IS COMPUTED ONCE, WITH BigDecimal, BETWEEN THE
+ * MINOR UNITS OF THE TWO CURRENCIES AND KEPT AS A FIXED-POINT LONG MULTIPLIER WITH FRACTION_BITS BINARY DECIMALS.
+ * <p>
+ * A CONVERSION IS TWO ARRAY READS TO FIND THE PAIR BY NUMERIC CODE, A MULTIPLICATION, AN ADDITION AND A SHIFT, THE
+ * RESULT ROUNDED HALF UP TO THE MINOR UNIT. AMOUNTS WHOSE PRODUCT DOES NOT FIT IN A LONG, ABOVE 2^31 MINOR UNITS
+ * FOR A RATE CLOSE TO 1, TAKE AN EXACT BigInteger PATH WITH THE SAME RESULT
+ */
+public final class FxRates {
+
+    public static final int FRACTION_BITS = 32;
+
+    /**
+     * RESULT OF convert WHEN ONE OF THE CURRENCIES HAS NO RATE
+     */
+    public static final long NO_RATE = -1;
+
+    /**
+     * RESULT OF convert WHEN THE CONVERTED AMOUNT DOES NOT FIT IN A LONG
+     */
+    public static final long OUT_OF_RANGE = -2;
+
+    private static final long HALF = 1L << (FRACTION_BITS - 1);
+
+    private static final BigInteger BIG_HALF = BigInteger.valueOf(HALF);
+
+    private static final BigDecimal ONE_FIXED = new BigDecimal(BigInteger.ONE.shiftLeft(FRACTION_BITS));
+
+    /**
+     * POSITION OF EVERY CURRENCY IN THE TABLE BY NUMERIC CODE, -1 WITHOUT RATE
+     */
+    private final int[] positions = new int[Currencies.NUMERIC_CODES];
+
+    private final int size;
+
+    /**
+     * MULTIPLIER OF EVERY PAIR, AT from * size + to
+     */
+    private final long[] multipliers;
+
+    /**
+     * HIGHEST AMOUNT OF EVERY PAIR WHOSE PRODUCT FITS IN A LONG
+     */
+    private final long[] limits;
+
+    private final Map<String, BigDecimal> rates;
+
+    private FxRates(Map<String, BigDecimal> rates) {
+        Arrays.fill(this.positions, -1);
+        this.size = rates.size();
+        this.multipliers = new long[size * size];
+        this.limits = new long[size * size];
+        int[] numericCodes = new int[size];
+        BigDecimal[] values = new BigDecimal[size];
+        int position = 0;
+        for (Map.Entry<String, BigDecimal> rate : rates.entrySet()) {
+            numericCodes[position] = Currencies.numericCode(rate.getKey());
+            values[position] = rate.getValue();
+            this.positions[numericCodes[position]] = position;
+            position++;
+        }
+        for (int from = 0; from < size; from++) {
+            for (int to = 0; to < size; to++) {
+                //MINOR UNITS TO MINOR UNITS, 1 EUR CENT IS 1.6 JPY BUT 1 EUR IS 100 CENTS
+                BigDecimal cross = values[to].divide(values[from], MathContext.DECIMAL128).scaleByPowerOfTen(
+                        Currencies.scale(numericCodes[to]) - Currencies.scale(numericCodes[from]));
+                long multiplier;
+                try {
+                    multiplier = cross.multiply(ONE_FIXED).setScale(0, RoundingMode.HALF_UP).longValueExact();
+                } catch (ArithmeticException ae) {
+                    multiplier = 0;
+                }
+                if (multiplier <= 0) {
+                    throw new IllegalArgumentException("Exchange rate from " + Currencies.code(numericCodes[from])
+                            + " to " + Currencies.code(numericCodes[to]) + " is out of range");
+                }
+                this.multipliers[from * size + to] = multiplier;
+                this.limits[from * size + to] = (Long.MAX_VALUE - HALF) / multiplier;
+            }
+        }
+        this.rates = Collections.unmodifiableMap(rates);
+    }
+
+    /**
+     * THIS METHOD BUILD A TABLE, THE DEFAULT CURRENCY IS ADDED WITH RATE 1 IF IT IS NOT GIVEN
+     *
+     * @param rates Units of every currency per unit of the default currency, by alphabetic code
+     * @return table
+     * @throws IllegalArgumentException if a currency is unknown, a rate is not positive, the rate of the default
+     *                                  currency is not 1 or a cross rate can not be represented
+     */
+    public static FxRates of(Map<String, BigDecimal> rates) {
+        Map<String, BigDecimal> sorted = new TreeMap<>();
+        sorted.put(Currencies.DEFAULT, BigDecimal.ONE);
+        for (Map.Entry<String, BigDecimal> rate : rates.entrySet()) {
+            if (Currencies.find(rate.getKey()) == 0) {
+                throw new IllegalArgumentException("Unknown currency " + rate.getKey());
+            }
+            if (rate.getValue() == null || rate.getValue().signum() <= 0) {
+                throw new IllegalArgumentException("Exchange rate of " + rate.getKey() + " must be positive");
+            }
+            if (rate.getKey().equals(Currencies.DEFAULT) && rate.getValue().compareTo(BigDecimal.ONE) != 0) {
+                throw new IllegalArgumentException("Exchange rate of " + Currencies.DEFAULT + " must be 1");
+            }
+            sorted.put(rate.getKey(), rate.getValue());
+        }
+        return new FxRates(sorted);
+    }
+
+    /**
+     * THIS METHOD TELL IF A CURRENCY HAS A RATE
+     *
+     * @param numericCode Numeric code of the currency
+     * @return true if amounts can be converted from and to the currency
+     */
+    public boolean has(int numericCode) {
+        return numericCode > 0 && numericCode < Currencies.NUMERIC_CODES && positions[numericCode] >= 0;
+    }
+
+    /**
+     * THIS METHOD CONVERT AN AMOUNT BETWEEN TWO CURRENCIES, AN AMOUNT IN THE SAME CURRENCY IS RETURNED AS IS
+     *
+     * @param amount Amount in minor units, not negative
+     * @param from   Numeric code of the currency of the amount
+     * @param to     Numeric code of the currency to convert it to
+     * @return converted amount in minor units, NO_RATE or OUT_OF_RANGE
+     */
+    public long convert(long amount, int from, int to) {
+        if (from == to) {
+            return amount;
+        }
+        int fromPosition = positions[from];
+        int toPosition = positions[to];
+        if (fromPosition < 0 || toPosition < 0) {
+            return NO_RATE;
+        }
+        int pair = fromPosition * size + toPosition;
+        long multiplier = multipliers[pair];
+        if (amount <= limits[pair]) {
+            return (amount * multiplier + HALF) >>> FRACTION_BITS;
+        }
+        BigInteger converted = BigInteger.valueOf(amount).multiply(BigInteger.valueOf(multiplier))
+                .add(BIG_HALF).shiftRight(FRACTION_BITS);
+        return converted.bitLength() < Long.SIZE ? converted.longValue() : OUT_OF_RANGE;
+    }
+
+    /**
+     * RATES THE TABLE WAS BUILT FROM, BY ALPHABETIC CODE
+     */
+    public Map<String, BigDecimal> getRates() {
+        return rates;
+    }
+}
@@ -0,0 +1,60 @@
+package com.db.awmd.challenge.domain;
+
+import com.db.awmd.challenge.exception.InvalidBalanceException;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * CONVERSIONS BETWEEN THE BIGDECIMAL AMOUNTS OF THE API AND THE FIXED-POINT LONG MINOR UNITS USED INTERNALLY
+ * (WITH SCALE 2, 123.45 IS STORED AS 12345). ROUNDING AND OVERFLOW ARE NEVER SILENT
+ */
+public final class Money {
+
+    private Money() {
+    }
+
+    /**
+     * THIS METHOD CONVERT AN AMOUNT TO MINOR UNITS
+     *
+     * @param amount The amount
+     * @param scale  Number of decimals of the minor unit
+     * @return amount in minor units
+     * @throws InvalidBalanceException if the amount has more decimals than the scale or does not fit in a long
+     */
+    public static long toMinorUnits(BigDecimal amount, int scale) {
+        try {
+            return amount.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+        } catch (ArithmeticException ae) {
+            if (amount.stripTrailingZeros().scale() > scale) {
+                throw new InvalidBalanceException("amount " + amount.toPlainString() + " can not have more than " + scale + " decimals");
+            }
+            throw new InvalidBalanceException("amount " + amount.toPlainString() + " is out of range");
+        }
+    }
+
+    /**
+     * THIS METHOD CONVERT MINOR UNITS BACK TO AN AMOUNT, WITHOUT TRAILING ZEROS (12300 WITH SCALE 2 IS 123)
+     *
+     * @param minorUnits Amount in minor units
+     * @param scale      Number of decimals of the minor unit
+     * @return amount
+     */
+    public static BigDecimal toAmount(long minorUnits, int scale) {
+        BigDecimal amount = BigDecimal.valueOf(minorUnits, scale).stripTrailingZeros();
+        return amount.scale() < 0 ? amount.setScale(0) : amount;
+    }
+
+    /**
+     * THIS METHOD ADD TWO AMOUNTS IN MINOR UNITS
+     *
+     * @throws InvalidBalanceException if the result does not fit in a long
+     */
+    public static long add(long balance, long amount) {
+        try {
+            return Math.addExact(balance, amount);
+        } catch (ArithmeticException ae) {
+            throw new InvalidBalanceException("account balance out of range");
+        }
+    }
+}
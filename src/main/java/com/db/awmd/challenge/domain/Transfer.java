@@ -3,42 +3,47 @@ package com.db.awmd.challenge.domain;
 import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
-import org.hibernate.validator.constraints.NotEmpty;
 
-import javax.validation.constraints.Min;
-import javax.validation.constraints.NotNull;
 import java.math.BigDecimal;
 
 /**
- * THE TRANSFER REQUEST BODY OBJECT
+ * THE TRANSFER REQUEST BODY OBJECT, CHECKED BY RequestValidation: BOTH IDS NOT EMPTY, AMOUNT AT LEAST 1, KNOWN
+ * CURRENCY IF ANY. THE AMOUNT IS IN THE CURRENCY OF THE "FROM" ACCOUNT, A TRANSFER WITH A CURRENCY IS REJECTED IF
+ * IT IS NOT THAT ONE
  */
 @Data
 public class Transfer {
 
-    @NotNull
-    @NotEmpty
     private final String accountFromId;
 
-    @NotNull
-    @NotEmpty
     private final String accountToId;
 
-    @NotNull
-    @Min(value = 1, message = "Transfer must be greater than 0.")
     private BigDecimal amount;
 
+    /**
+     * NULL FOR THE CURRENCY OF THE "FROM" ACCOUNT, WHATEVER IT IS
+     */
+    private final String currency;
+
     public Transfer(String accountFromId, String  accountToId){
         this.accountFromId = accountFromId;
         this.accountToId = accountToId;
         this.amount = BigDecimal.ZERO;
+        this.currency = null;
+    }
+
+    public Transfer(String accountFromId, String accountToId, BigDecimal amount) {
+        this(accountFromId, accountToId, amount, null);
     }
 
     @JsonCreator
     public Transfer(@JsonProperty("accountFromId") String accountFromId,
                     @JsonProperty("accountToId") String accountToId,
-                    @JsonProperty("amount") BigDecimal amount) {
+                    @JsonProperty("amount") BigDecimal amount,
+                    @JsonProperty("currency") String currency) {
         this.accountFromId = accountFromId;
         this.accountToId = accountToId;
         this.amount = amount;
+        this.currency = currency;
     }
 }
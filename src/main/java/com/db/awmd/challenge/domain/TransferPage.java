@@ -0,0 +1,19 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * PAGE OF THE TRANSFERS OF AN ACCOUNT, next IS THE CURSOR OF THE FOLLOWING PAGE OR NULL IF THIS IS THE LAST ONE.
+ * truncated TELLS THAT TRANSFERS AFTER THE CURSOR WERE EVICTED FROM THE JOURNAL AND ARE MISSING FROM THE PAGE
+ */
+@Data
+public class TransferPage {
+
+    private final List<TransferRecord> transfers;
+
+    private final Long next;
+
+    private final boolean truncated;
+}
@@ -0,0 +1,30 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * APPLIED TRANSFER AS KEPT IN THE TRANSFER JOURNAL, id IS ITS POSITION IN THE JOURNAL. THE AMOUNT IS IN THE
+ * CURRENCY OF THE "FROM" ACCOUNT AND THE CREDITED AMOUNT IN THE ONE OF THE "TO" ACCOUNT, THE SAME UNLESS THEY DIFFER
+ */
+@Data
+public class TransferRecord {
+
+    private final long id;
+
+    private final String accountFromId;
+
+    private final String accountToId;
+
+    private final BigDecimal amount;
+
+    private final String currency;
+
+    private final BigDecimal creditedAmount;
+
+    private final String creditedCurrency;
+
+    private final Instant timestamp;
+}
@@ -0,0 +1,101 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+
+/**
+ * OUTCOME OF A TRANSFER AS RETURNED BY THE REPOSITORY: ITS STATUS AND, ONCE APPLIED, THE CURRENCIES OF BOTH ACCOUNTS
+ * AND THE AMOUNT CREDITED WHEN THEY DIFFER. THE RESULTS THAT CREDIT THE AMOUNT ITSELF ARE SHARED, ONE PER STATUS AND
+ * ONE PER CURRENCY, SO ONLY A TRANSFER BETWEEN TWO CURRENCIES ALLOCATES ITS OWN
+ */
+@Getter
+@ToString
+public final class TransferResult {
+
+    private static final TransferResult[] FAILURES = new TransferResult[TransferStatus.values().length];
+
+    private static final TransferResult[] APPLIED = new TransferResult[Currencies.NUMERIC_CODES];
+
+    static {
+        for (TransferStatus status : TransferStatus.values()) {
+            FAILURES[status.ordinal()] = new TransferResult(status, 0, 0, null);
+        }
+        for (int numericCode = 0; numericCode < Currencies.NUMERIC_CODES; numericCode++) {
+            String code = Currencies.code(numericCode);
+            if (code != null) {
+                APPLIED[numericCode] = new TransferResult(TransferStatus.OK, numericCode, numericCode, null);
+            }
+        }
+    }
+
+    private final TransferStatus status;
+
+    /**
+     * CURRENCY OF THE "FROM" ACCOUNT, THE ONE OF THE AMOUNT. NULL IF THE TRANSFER WAS NOT APPLIED
+     */
+    private final String currency;
+
+    /**
+     * CURRENCY OF THE "TO" ACCOUNT. NULL IF THE TRANSFER WAS NOT APPLIED
+     */
+    private final String creditedCurrency;
+
+    /**
+     * AMOUNT CREDITED TO THE "TO" ACCOUNT. NULL WHEN BOTH ACCOUNTS HAVE THE SAME CURRENCY, THE CREDIT IS THE AMOUNT
+     */
+    private final BigDecimal creditedAmount;
+
+    /**
+     * NUMERIC CODES OF currency AND creditedCurrency, 0 IF THE TRANSFER WAS NOT APPLIED
+     */
+    private final int currencyNumericCode;
+
+    private final int creditedCurrencyNumericCode;
+
+    private TransferResult(TransferStatus status, int currency, int creditedCurrency, BigDecimal creditedAmount) {
+        this.status = status;
+        this.currency = currency == 0 ? null : Currencies.code(currency);
+        this.creditedCurrency = creditedCurrency == 0 ? null : Currencies.code(creditedCurrency);
+        this.creditedAmount = creditedAmount;
+        this.currencyNumericCode = currency;
+        this.creditedCurrencyNumericCode = creditedCurrency;
+    }
+
+    /**
+     * THIS METHOD RETURN THE RESULT OF A TRANSFER THAT WAS NOT APPLIED
+     *
+     * @param status Reason of the rejection
+     * @return shared result
+     */
+    public static TransferResult of(TransferStatus status) {
+        return FAILURES[status.ordinal()];
+    }
+
+    /**
+     * THIS METHOD RETURN THE RESULT OF A TRANSFER APPLIED BETWEEN TWO ACCOUNTS OF THE SAME CURRENCY
+     *
+     * @param currency Numeric code of the currency
+     * @return shared result
+     */
+    public static TransferResult applied(int currency) {
+        return APPLIED[currency];
+    }
+
+    /**
+     * THIS METHOD RETURN THE RESULT OF A TRANSFER APPLIED BETWEEN TWO CURRENCIES
+     *
+     * @param fromCurrency   Numeric code of the currency of the "from" account
+     * @param toCurrency     Numeric code of the currency of the "to" account
+     * @param creditedAmount Amount credited to the "to" account
+     * @return result
+     */
+    public static TransferResult converted(int fromCurrency, int toCurrency, BigDecimal creditedAmount) {
+        return new TransferResult(TransferStatus.OK, fromCurrency, toCurrency, creditedAmount);
+    }
+
+    public boolean isConverted() {
+        return creditedAmount != null;
+    }
+}
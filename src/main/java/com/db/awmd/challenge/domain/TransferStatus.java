@@ -0,0 +1,44 @@
+package com.db.awmd.challenge.domain;
+
+/**
+ * OUTCOME OF A TRANSFER
+ */
+public enum TransferStatus {
+
+    OK,
+
+    /**
+     * MISSING ACCOUNT IDS OR AMOUNT, OR AMOUNT LOWER THAN 1
+     */
+    INVALID_TRANSFER,
+
+    SAME_ACCOUNT,
+
+    FROM_ACCOUNT_NOT_FOUND,
+
+    TO_ACCOUNT_NOT_FOUND,
+
+    ACCOUNTS_NOT_FOUND,
+
+    INSUFFICIENT_FUNDS,
+
+    /**
+     * THE AMOUNT OR THE RESULTING BALANCE CAN NOT BE REPRESENTED IN MINOR UNITS
+     */
+    INVALID_AMOUNT,
+
+    /**
+     * THE CURRENCY OF THE TRANSFER IS NOT THE ONE OF THE "FROM" ACCOUNT
+     */
+    CURRENCY_MISMATCH,
+
+    /**
+     * NO EXCHANGE RATE BETWEEN THE CURRENCIES OF THE ACCOUNTS
+     */
+    NO_EXCHANGE_RATE,
+
+    /**
+     * VALID TRANSFER OF AN ALL-OR-NOTHING BATCH THAT WAS NOT APPLIED BECAUSE ANOTHER TRANSFER FAILED
+     */
+    NOT_APPLIED
+}
@@ -0,0 +1,47 @@
+package com.db.awmd.challenge.domain;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * OUTCOME OF A COMPARISON OF THE RUNNING TOTAL BALANCE OF EACH CURRENCY AGAINST A SCAN OF EVERY ACCOUNT, THE
+ * AMOUNTS ARE KEYED BY CURRENCY CODE
+ */
+@Data
+public class Verification {
+
+    private final Instant verifiedAt;
+
+    /**
+     * WORST STATUS OF THE CURRENCIES
+     */
+    private final Status status;
+
+    private final Map<String, Status> currencies;
+
+    private final Map<String, BigDecimal> expectedTotal;
+
+    private final Map<String, BigDecimal> scannedTotal;
+
+    private final long scannedAccounts;
+
+    private final long durationMillis;
+
+    public enum Status {
+
+        CONSISTENT,
+
+        /**
+         * THE SCANNED TOTAL IS NOT THE RUNNING TOTAL, MONEY WAS CREATED OR LOST
+         */
+        VIOLATED,
+
+        /**
+         * ACCOUNTS WERE CREATED, OR TRANSFERS BETWEEN TWO CURRENCIES COUNTED, DURING THE SCAN, IT CAN NOT BE COMPARED
+         */
+        INCONCLUSIVE
+    }
+}
@@ -0,0 +1,11 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * EXCEPTION THROWN WHEN A REQUEST REUSES THE IDEMPOTENCY KEY OF A REQUEST THAT IS STILL RUNNING
+ */
+public class IdempotencyKeyInProgressException extends RuntimeException {
+
+    public IdempotencyKeyInProgressException(String message) {
+        super(message);
+    }
+}
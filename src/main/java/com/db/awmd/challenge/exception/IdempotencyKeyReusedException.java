@@ -0,0 +1,11 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * EXCEPTION THROWN WHEN AN IDEMPOTENCY KEY IS REUSED WITH A DIFFERENT REQUEST
+ */
+public class IdempotencyKeyReusedException extends RuntimeException {
+
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
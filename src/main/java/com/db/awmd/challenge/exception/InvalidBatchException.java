@@ -0,0 +1,11 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * EXCEPTION THROWN WHEN A BATCH OF TRANSFERS IS EMPTY OR TOO BIG, OR A QUERY HAS TOO MANY ACCOUNT IDS
+ */
+public class InvalidBatchException extends RuntimeException {
+
+    public InvalidBatchException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * EXCEPTION THROWN WHEN A CURRENCY IS UNKNOWN, HAS NO EXCHANGE RATE OR IS NOT THE ONE OF THE ACCOUNT
+ */
+public class InvalidCurrencyException extends RuntimeException {
+
+    public InvalidCurrencyException(String message) {
+        super(message);
+    }
+}
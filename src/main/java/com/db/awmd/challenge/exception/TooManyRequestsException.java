@@ -0,0 +1,22 @@
+package com.db.awmd.challenge.exception;
+
+/**
+ * EXCEPTION THROWN WHEN A TRANSFER IS SHED BEFORE IT REACHES THE REPOSITORY, BECAUSE ITS ACCOUNT SENDS TOO MANY TRANSFERS
+ * OR TOO MANY ARE IN PROGRESS. IT HAS NO STACK TRACE, SHEDDING MUST COST LESS THAN THE TRANSFER
+ */
+public class TooManyRequestsException extends RuntimeException {
+
+    private final long retryAfterNanos;
+
+    public TooManyRequestsException(String message, long retryAfterNanos) {
+        super(message, null, false, false);
+        this.retryAfterNanos = retryAfterNanos;
+    }
+
+    /**
+     * TIME AFTER WHICH THE TRANSFER COULD BE ADMITTED, 0 IF UNKNOWN
+     */
+    public long getRetryAfterNanos() {
+        return retryAfterNanos;
+    }
+}
@@ -0,0 +1,147 @@
+package com.db.awmd.challenge.repository;
+
+/**
+ * MUTABLE STATE OF AN ACCOUNT INSIDE THE LOCKING AND SHARDED REPOSITORIES, THE BALANCE IS ONLY READ AND WRITTEN
+ * UNDER THE STRIPE LOCK OF THE ACCOUNT, OR BY THE THREAD THAT OWNS ITS SHARD
+ */
+class AccountEntry {
+
+    final String accountId;
+
+    /**
+     * NUMERIC CODE OF THE CURRENCY
+     */
+    final int currency;
+
+    long balance;
+
+    /**
+     * SNAPSHOT EPOCH OF THE LAST CHANGE, AND THE BALANCE THE ACCOUNT HAD WHEN THAT EPOCH STARTED
+     */
+    int epoch;
+
+    long preImage;
+
+    /**
+     * SNAPSHOT EPOCH THE ACCOUNT WAS CREATED IN, 0 FOR AN ACCOUNT RESTORED AT STARTUP
+     */
+    int createdEpoch;
+
+    /**
+     * CELLS OF A HOT ACCOUNT, CREDITED UNDER THE STRIPE LOCK OF THE "FROM" ACCOUNT ONLY. NULL WHILE THE ACCOUNT IS
+     * NOT HOT, ONCE SET IT IS NEVER CLEARED
+     */
+    volatile CreditCells credits;
+
+    /**
+     * UPPER ESTIMATE OF THE BALANCE OF A HOT ACCOUNT, FOR THE OVERFLOW CHECK OF A CREDIT THAT DOES NOT HOLD ITS STRIPE
+     * LOCK. RAISED BY THE CREDITS OF THE BALANCE AND BEFORE A FOLD, SET TO THE BALANCE ONCE THE FOLD IS DONE
+     */
+    volatile long balanceBound;
+
+    /**
+     * CREDITS THAT HAD TO WAIT FOR THE STRIPE LOCK, TO DETECT A HOT ACCOUNT. ONLY CHANGED UNDER THE STRIPE LOCK
+     */
+    int contendedCredits;
+
+    AccountEntry(String accountId, int currency, long balance) {
+        this.accountId = accountId;
+        this.currency = currency;
+        this.balance = balance;
+        this.balanceBound = balance;
+    }
+
+    /**
+     * THIS METHOD RECORD THE EPOCH THE ACCOUNT IS CREATED IN. MUST BE CALLED UNDER THE STRIPE LOCK BEFORE THE ACCOUNT
+     * IS PUBLISHED
+     *
+     * @param current Current epoch of the repository
+     */
+    void create(int current) {
+        this.createdEpoch = current;
+        touch(current);
+    }
+
+    /**
+     * THIS METHOD RETURN TRUE IF THE ACCOUNT EXISTED WHEN AN EPOCH STARTED. AN EPOCH ONLY STARTS AFTER THE SNAPSHOT
+     * OF THE PREVIOUS ONE ENDED, SO AN ACCOUNT CREATED AFTER THE SNAPSHOT EPOCH IS IN THAT VERY EPOCH. MUST BE CALLED
+     * UNDER THE STRIPE LOCK
+     *
+     * @param snapshot Epoch of the snapshot
+     * @return true if the snapshot includes the account
+     */
+    boolean existedAt(int snapshot) {
+        return this.createdEpoch != snapshot;
+    }
+
+    /**
+     * THIS METHOD KEEP THE BALANCE AS OF THE START OF THE EPOCH BEFORE ITS FIRST CHANGE IN THE EPOCH, SO A
+     * SNAPSHOT OF THE EPOCH CAN STILL READ IT. MUST BE CALLED UNDER THE STRIPE LOCK BEFORE CHANGING THE BALANCE
+     *
+     * @param current Current epoch of the repository
+     */
+    void touch(int current) {
+        if (this.epoch != current) {
+            this.preImage = this.balance;
+            this.epoch = current;
+        }
+    }
+
+    /**
+     * THIS METHOD RETURN THE BALANCE AS OF THE START OF THE EPOCH, THE CREDIT CELLS ARE EMPTY WHEN AN EPOCH STARTS
+     * SO THEY ARE NOT INCLUDED. MUST BE CALLED UNDER THE STRIPE LOCK
+     *
+     * @param snapshot Epoch of the snapshot
+     * @return balance
+     */
+    long balanceAt(int snapshot) {
+        return this.epoch == snapshot ? this.preImage : this.balance;
+    }
+
+    /**
+     * THIS METHOD ADD A CREDIT TO THE BALANCE. MUST BE CALLED UNDER THE STRIPE LOCK
+     *
+     * @param amount Credited amount in minor units
+     */
+    void credit(long amount) {
+        this.balance += amount;
+        if (this.credits != null && this.balance > this.balanceBound) {
+            this.balanceBound = this.balance;
+        }
+    }
+
+    /**
+     * THIS METHOD RETURN THE BALANCE PLUS THE CREDITS NOT FOLDED YET. MUST BE CALLED UNDER THE STRIPE LOCK
+     *
+     * @return balance
+     */
+    long total() {
+        CreditCells cells = this.credits;
+        return cells == null ? this.balance : this.balance + cells.sum();
+    }
+
+    /**
+     * THIS METHOD MOVE THE CREDITS NOT FOLDED YET TO THE BALANCE, SO A DEBIT CAN CHECK IT, AND BRING THE BOUND BACK
+     * TO THE BALANCE. MUST BE CALLED UNDER THE STRIPE LOCK
+     *
+     * @param current Current epoch of the repository
+     */
+    void fold(int current) {
+        CreditCells cells = this.credits;
+        if (cells != null) {
+            //A CREDIT READS THE CELLS BEFORE THE BOUND, SO A FOLDED CREDIT IS IN ONE OF THEM
+            long pending = cells.sum();
+            if (pending > 0 && this.balance + pending > this.balanceBound) {
+                this.balanceBound = this.balance + pending;
+            }
+            long credited = cells.drain();
+            if (credited != 0) {
+                touch(current);
+                this.balance += credited;
+            }
+            if (this.balanceBound != this.balance) {
+                this.balanceBound = this.balance;
+            }
+        }
+    }
+}
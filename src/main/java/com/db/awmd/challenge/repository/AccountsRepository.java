@@ -2,10 +2,14 @@ package com.db.awmd.challenge.repository;
 
 import com.db.awmd.challenge.domain.Account;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.InvalidBalanceException;
 
 import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface AccountsRepository {
 
@@ -13,7 +17,49 @@ public interface AccountsRepository {
 
   Account getAccount(String accountId);
 
-  void transfer(Transfer transfer) throws InvalidBalanceException;
+  /**
+   * THIS METHOD RETURN THE ACCOUNTS AS THEY ALL WERE AT ONE POINT IN TIME, NO TRANSFER BETWEEN THEM IS HALF SEEN
+   *
+   * @param accountIds The account ids
+   * @return the accounts that exist, in the order of the ids
+   */
+  List<Account> getAccounts(Collection<String> accountIds);
+
+  /**
+   * THIS METHOD GIVE EVERY ACCOUNT TO THE CONSUMER, AS THEY ALL WERE AT ONE POINT IN TIME, IN NO PARTICULAR ORDER
+   *
+   * @param consumer Receives the accounts, from the calling thread
+   */
+  void forEachAccount(Consumer<Account> consumer);
+
+  /**
+   * THIS METHOD TRANSFER AMOUNT BETWEEN TWO ACCOUNTS, LOOKING UP EVERY ACCOUNT ONLY ONCE
+   *
+   * @param transfer The transfer
+   * @return status OK and the credited amount if the transfer was applied, otherwise the reason it was rejected
+   * @throws InvalidBalanceException if the amount can not be represented in minor units
+   */
+  TransferResult transfer(Transfer transfer) throws InvalidBalanceException;
+
+  /**
+   * THIS METHOD APPLY A BATCH OF TRANSFERS IN ORDER, LOCKING EVERY INVOLVED ACCOUNT ONLY ONCE. WHEN ATOMIC,
+   * EITHER ALL THE TRANSFERS ARE APPLIED OR NONE; OTHERWISE EVERY TRANSFER IS APPLIED OR REJECTED ON ITS OWN
+   *
+   * @param transfers The transfers
+   * @param atomic    All-or-nothing
+   * @return the result of every transfer, in the same order
+   */
+  TransferResult[] transfer(List<Transfer> transfers, boolean atomic);
 
   void clearAccounts();
+
+  /**
+   * NUMBER OF ACCOUNTS, APPROXIMATE WHILE ACCOUNTS ARE CREATED
+   */
+  int countAccounts();
+
+  /**
+   * NUMBER OF TIMES AN OPERATION HAD TO WAIT FOR OR RETRY BECAUSE OF A CONCURRENT OPERATION
+   */
+  long getContentionCount();
 }
@@ -0,0 +1,308 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.config.FxRateCache;
+import com.db.awmd.challenge.domain.TransferStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LOCKING REPOSITORY THAT SURVIVES A RESTART: EVERY CHANGE IS APPENDED TO A WRITE-AHEAD LOG UNDER THE SAME STRIPE
+ * LOCKS THAT APPLY IT, SO THE LOG ORDER OF THE CHANGES OF AN ACCOUNT IS THE ORDER THEY WERE APPLIED, AND THE
+ * OPERATION RETURNS ONCE ITS RECORD IS ON DISK. THE MAP STAYS THE SERVING STRUCTURE, THE LOG IS ONLY READ ON STARTUP.
+ * THE LOCKS ARE RELEASED BEFORE WAITING FOR THE FSYNC, SO A READER CAN SEE A CHANGE THAT IS NOT DURABLE YET.
+ * <p>
+ * SNAPSHOTS ARE EPOCH BASED: ALL THE STRIPES ARE LOCKED ONLY TO START A NEW EPOCH AND A NEW LOG SEGMENT, THEN THE
+ * ACCOUNTS ARE WRITTEN WHILE TRANSFERS GO ON. AN ACCOUNT CHANGED IN THE NEW EPOCH KEEPS ITS BALANCE AS OF THE START
+ * OF THE EPOCH, SO THE SNAPSHOT IS EXACTLY THE STATE AT THE START OF THE NEW SEGMENT. ON STARTUP THE LATEST
+ * SNAPSHOT IS LOADED AND ONLY THE SEGMENTS FROM ITS ONE ARE REPLAYED.
+ * <p>
+ * A CREATE RECORDS THE CURRENCY OF THE ACCOUNT AND A CONVERTED TRANSFER THE CREDITED AMOUNT WITH THE DEBITED ONE,
+ * THE REPLAY NEVER DEPENDS ON THE RATES
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(prefix = "accounts", name = "repository", havingValue = "durable")
+public class AccountsRepositoryDurable extends AccountsRepositoryInMemory implements Closeable {
+
+    private static final byte CREATE = 1;
+
+    private static final byte TRANSFER = 2;
+
+    private static final byte BATCH = 3;
+
+    private static final byte CLEAR = 4;
+
+    /**
+     * TRANSFER AND BATCH WHOSE CREDITED AMOUNTS ARE NOT THE DEBITED ONES, WITH BOTH
+     */
+    private static final byte CONVERTED_TRANSFER = 5;
+
+    private static final byte CONVERTED_BATCH = 6;
+
+    private final Path directory;
+
+    private final WriteAheadLog writeAheadLog;
+
+    private final ScheduledExecutorService snapshotScheduler;
+
+    public AccountsRepositoryDurable(AccountsProperties properties) throws IOException {
+        this(properties, FxRateCache.loadOnce(properties));
+    }
+
+    @Autowired
+    public AccountsRepositoryDurable(AccountsProperties properties, FxRateCache fxRateCache) throws IOException {
+        super(properties, fxRateCache);
+        AccountsProperties.Wal wal = properties.getWal();
+        this.directory = Paths.get(wal.getDirectory());
+        Files.createDirectories(this.directory);
+        long started = System.nanoTime();
+        long fromSegment = 0;
+        Path snapshot = SnapshotFile.latest(this.directory);
+        if (snapshot != null) {
+            fromSegment = SnapshotFile.load(snapshot,
+                    (accountId, currency, balance) -> restore(newEntry(accountId, currency, balance)));
+            log.info("Loaded {} accounts from {}", accounts.size(), snapshot);
+        }
+        SnapshotFile.deleteOthers(this.directory, snapshot);
+        this.writeAheadLog = new WriteAheadLog(this.directory, wal.getFsyncInterval(), wal.getBatchSize());
+        long records = this.writeAheadLog.replay(fromSegment, this::replay);
+        log.info("Replayed {} records from {}, {} accounts, recovered in {} ms", records, this.directory,
+                accounts.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        this.writeAheadLog.start();
+        if (wal.getSnapshotInterval().isZero()) {
+            this.snapshotScheduler = null;
+        } else {
+            this.snapshotScheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "accounts-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long interval = wal.getSnapshotInterval().toMillis();
+            this.snapshotScheduler.scheduleWithFixedDelay(this::scheduledSnapshot, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * THIS METHOD WRITE A SNAPSHOT OF THE ACCOUNTS AND DELETE THE LOG SEGMENTS IT COVERS. TRANSFERS ARE ONLY
+     * PAUSED WHILE THE EPOCH AND THE LOG SEGMENT ARE SWITCHED
+     *
+     * @return snapshot file
+     */
+    public Path snapshot() throws IOException {
+        snapshotLock.lock();
+        try {
+            int snapshotEpoch;
+            long segment;
+            lockStripes.lockAll();
+            try {
+                //THE CELLS OF THE HOT ACCOUNTS ONLY HOLD CREDITS OF THE NEW EPOCH, NOT COVERED BY THE SNAPSHOT
+                foldHotAccounts();
+                snapshotEpoch = ++epoch;
+                segment = writeAheadLog.roll();
+            } finally {
+                lockStripes.unlockAll();
+            }
+            //THE SNAPSHOT ONLY REPLACES THE OLD SEGMENTS ONCE THEY ARE COMPLETE ON DISK
+            writeAheadLog.awaitRolled(segment);
+            Path file;
+            try (SnapshotFile.Writer writer = SnapshotFile.create(directory, segment)) {
+                for (AccountEntry account : accounts.values()) {
+                    long balance;
+                    int stripe = lockStripes.indexOf(account.accountId);
+                    lockStripes.lock(stripe);
+                    try {
+                        balance = account.balanceAt(snapshotEpoch);
+                    } finally {
+                        lockStripes.unlock(stripe);
+                    }
+                    writer.write(account.accountId, account.currency, balance);
+                }
+                file = writer.commit();
+            }
+            SnapshotFile.deleteOthers(directory, file);
+            writeAheadLog.deleteSegmentsBefore(segment);
+            return file;
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    private void scheduledSnapshot() {
+        try {
+            long started = System.nanoTime();
+            Path file = snapshot();
+            log.info("Snapshot {} written in {} ms", file, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (IOException | UncheckedIOException e) {
+            log.error("Snapshot of the accounts failed", e);
+        }
+    }
+
+    @Override
+    public void clearAccounts() {
+        long journaled;
+        lockStripes.lockAll();
+        try {
+            //JOURNALED FIRST, A FAILED LOG LEAVES THE ACCOUNTS UNTOUCHED
+            journaled = writeAheadLog.append(new byte[]{CLEAR});
+            accounts.clear();
+            hotAccounts.clear();
+        } finally {
+            lockStripes.unlockAll();
+        }
+        commit(journaled);
+    }
+
+    @PreDestroy
+    @Override
+    public void close() throws IOException {
+        if (snapshotScheduler != null) {
+            snapshotScheduler.shutdown();
+            try {
+                snapshotScheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        writeAheadLog.close();
+    }
+
+    @Override
+    long journalCreate(AccountEntry account) {
+        byte[] id = account.accountId.getBytes(StandardCharsets.UTF_8);
+        return writeAheadLog.append(ByteBuffer.allocate(1 + 4 + id.length + 2 + 8)
+                .put(CREATE).putInt(id.length).put(id).putShort((short) account.currency)
+                .putLong(account.balance).array());
+    }
+
+    /**
+     * A TRANSFER CREDITING THE DEBITED AMOUNT KEEPS THE SHORTER RECORD
+     */
+    @Override
+    long journalTransfer(AccountEntry fromAccount, AccountEntry toAccount, long amount, long credit) {
+        byte[] from = fromAccount.accountId.getBytes(StandardCharsets.UTF_8);
+        byte[] to = toAccount.accountId.getBytes(StandardCharsets.UTF_8);
+        boolean converted = credit != amount;
+        ByteBuffer record = ByteBuffer.allocate(1 + 4 + from.length + 4 + to.length + 8 + (converted ? 8 : 0))
+                .put(converted ? CONVERTED_TRANSFER : TRANSFER)
+                .putInt(from.length).put(from).putInt(to.length).put(to).putLong(amount);
+        if (converted) {
+            record.putLong(credit);
+        }
+        return writeAheadLog.append(record.array());
+    }
+
+    /**
+     * THE APPLIED TRANSFERS OF A BATCH ARE ONE RECORD, SO AN ALL-OR-NOTHING BATCH IS ALSO ALL-OR-NOTHING ON REPLAY
+     */
+    @Override
+    long journalBatch(AccountEntry[] fromAccounts, AccountEntry[] toAccounts, long[] amounts, long[] credits,
+                      TransferStatus[] statuses) {
+        int count = 0;
+        int size = 1 + 4;
+        boolean converted = false;
+        byte[][] ids = new byte[2 * statuses.length][];
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == TransferStatus.OK) {
+                ids[2 * i] = fromAccounts[i].accountId.getBytes(StandardCharsets.UTF_8);
+                ids[2 * i + 1] = toAccounts[i].accountId.getBytes(StandardCharsets.UTF_8);
+                size += 4 + ids[2 * i].length + 4 + ids[2 * i + 1].length + 8;
+                converted |= credits[i] != amounts[i];
+                count++;
+            }
+        }
+        if (count == 0) {
+            return 0;
+        }
+        ByteBuffer record = ByteBuffer.allocate(size + (converted ? 8 * count : 0))
+                .put(converted ? CONVERTED_BATCH : BATCH).putInt(count);
+        for (int i = 0; i < statuses.length; i++) {
+            if (statuses[i] == TransferStatus.OK) {
+                record.putInt(ids[2 * i].length).put(ids[2 * i])
+                        .putInt(ids[2 * i + 1].length).put(ids[2 * i + 1]).putLong(amounts[i]);
+                if (converted) {
+                    record.putLong(credits[i]);
+                }
+            }
+        }
+        return writeAheadLog.append(record.array());
+    }
+
+    @Override
+    void commit(long journaled) {
+        if (journaled != 0) {
+            writeAheadLog.awaitDurable(journaled);
+        }
+    }
+
+    /**
+     * THIS METHOD APPLY A RECORD OF THE LOG ON STARTUP, BEFORE THE REPOSITORY IS VISIBLE TO ANY OTHER THREAD
+     *
+     * @param record Record payload
+     */
+    private void replay(ByteBuffer record) {
+        byte type = record.get();
+        switch (type) {
+            case CREATE:
+                restore(newEntry(readId(record), record.getShort(), record.getLong()));
+                break;
+            case TRANSFER:
+                replayTransfer(record, false);
+                break;
+            case CONVERTED_TRANSFER:
+                replayTransfer(record, true);
+                break;
+            case BATCH:
+            case CONVERTED_BATCH:
+                for (int count = record.getInt(); count > 0; count--) {
+                    replayTransfer(record, type == CONVERTED_BATCH);
+                }
+                break;
+            case CLEAR:
+                accounts.clear();
+                hotAccounts.clear();
+                break;
+            default:
+                throw new IllegalStateException("Unknown write-ahead log record type " + type);
+        }
+    }
+
+    private void restore(AccountEntry account) {
+        accounts.put(account.accountId, account);
+        if (account.credits != null) {
+            hotAccounts.add(account);
+        }
+    }
+
+    /**
+     * @param converted True if the credited amount follows the debited one
+     */
+    private void replayTransfer(ByteBuffer record, boolean converted) {
+        AccountEntry fromAccount = accounts.get(readId(record));
+        AccountEntry toAccount = accounts.get(readId(record));
+        long amount = record.getLong();
+        fromAccount.balance -= amount;
+        toAccount.credit(converted ? record.getLong() : amount);
+    }
+
+    private static String readId(ByteBuffer record) {
+        byte[] id = new byte[record.getInt()];
+        record.get(id);
+        return new String(id, StandardCharsets.UTF_8);
+    }
+}
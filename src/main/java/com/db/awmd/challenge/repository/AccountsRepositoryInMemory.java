@@ -1,71 +1,520 @@
 package com.db.awmd.challenge.repository;
 
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.config.FxRateCache;
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Currencies;
+import com.db.awmd.challenge.domain.FxRates;
+import com.db.awmd.challenge.domain.Money;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.InvalidBalanceException;
-import com.db.awmd.challenge.service.NotificationService;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Repository;
 
-import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
+/**
+ * REPOSITORY THAT GUARDS EVERY ACCOUNT WITH THE LOCK STRIPE OF ITS ID.
+ * <p>
+ * A HOT ACCOUNT, CREDITED BY MOST TRANSFERS, WOULD SERIALIZE THEM ALL ON ITS STRIPE. ITS CREDITS GO TO STRIPED
+ * CELLS INSTEAD, UNDER THE "FROM" STRIPE LOCK ONLY, AND ARE FOLDED INTO THE BALANCE UNDER ITS OWN STRIPE LOCK BEFORE
+ * A DEBIT; READS ADD THE CELLS TO THE BALANCE. ACCOUNTS ARE HOT WHEN CONFIGURED SO, OR ONCE ENOUGH OF THEIR CREDITS
+ * HAD TO WAIT FOR THEIR STRIPE.
+ * <p>
+ * A TRANSFER BETWEEN TWO CURRENCIES IS CONVERTED BEFORE THE LOCKS ARE TAKEN, WITH THE RATES CURRENT WHEN IT STARTED:
+ * THE "FROM" ACCOUNT IS DEBITED THE AMOUNT AND THE "TO" ACCOUNT IS CREDITED THE CONVERTED AMOUNT
+ */
+@Slf4j
 @Repository
+@ConditionalOnProperty(prefix = "accounts", name = "repository", havingValue = "locking", matchIfMissing = true)
 public class AccountsRepositoryInMemory implements AccountsRepository {
 
-    private final Map<String, Account> accounts = new ConcurrentHashMap<>();
+    final Map<String, AccountEntry> accounts = new ConcurrentHashMap<>();
+
+    /**
+     * ACCOUNTS WITH CREDIT CELLS
+     */
+    final Set<AccountEntry> hotAccounts = ConcurrentHashMap.newKeySet();
+
+    final LockStripes lockStripes;
+
+
+    final FxRateCache fxRateCache;
+
+    /**
+     * SNAPSHOT EPOCH, ONLY CHANGED WITH ALL THE STRIPES LOCKED SO IT IS READ UNDER ANY STRIPE LOCK
+     */
+    int epoch;
+
+    /**
+     * HELD WHILE A SNAPSHOT OF AN EPOCH IS READ, A NEW EPOCH WOULD OVERWRITE THE BALANCES IT NEEDS
+     */
+    final ReentrantLock snapshotLock = new ReentrantLock();
+
+    private final Set<String> configuredHotAccounts;
+
+    private final int detectThreshold;
+
+    private final int creditCells;
+
+    public AccountsRepositoryInMemory(AccountsProperties properties) {
+        this(properties, FxRateCache.loadOnce(properties));
+    }
 
     @Autowired
-    private NotificationService notificationService;
+    public AccountsRepositoryInMemory(AccountsProperties properties, FxRateCache fxRateCache) {
+        this.lockStripes = new LockStripes(properties.getLockStripes());
+        this.fxRateCache = fxRateCache;
+        this.configuredHotAccounts = new HashSet<>(properties.getHotAccounts().getIds());
+        this.detectThreshold = properties.getHotAccounts().getDetectThreshold();
+        this.creditCells = properties.getHotAccounts().getCells();
+    }
 
     @Override
     public void createAccount(Account account) throws DuplicateAccountIdException {
-        Account previousAccount = accounts.putIfAbsent(account.getAccountId(), account);
+        int currency = Currencies.numericCode(account.getCurrency());
+        AccountEntry entry = newEntry(account.getAccountId(), currency,
+                Money.toMinorUnits(account.getBalance(), Currencies.scale(currency)));
+        AccountEntry previousAccount;
+        long journaled = 0;
+        //UNDER THE STRIPE LOCK, SO NO TRANSFER OF THE NEW ACCOUNT CAN BE JOURNALED BEFORE ITS CREATION
+        int stripe = lockStripes.indexOf(entry.accountId);
+        lockStripes.lock(stripe);
+        try {
+            entry.create(epoch);
+            previousAccount = accounts.putIfAbsent(entry.accountId, entry);
+            if (previousAccount == null) {
+                if (entry.credits != null) {
+                    hotAccounts.add(entry);
+                }
+                try {
+                    journaled = journalCreate(entry);
+                } catch (RuntimeException e) {
+                    //NOT JOURNALED, STILL UNDER THE LOCK SO NO TRANSFER SAW THE ACCOUNT
+                    accounts.remove(entry.accountId, entry);
+                    hotAccounts.remove(entry);
+                    throw e;
+                }
+            }
+        } finally {
+            lockStripes.unlock(stripe);
+        }
         if (previousAccount != null) {
             throw new DuplicateAccountIdException(
                     "Account id " + account.getAccountId() + " already exists!");
         }
+        commit(journaled);
     }
 
     @Override
     public Account getAccount(String accountId) {
-        return accounts.get(accountId);
+        AccountEntry account = accounts.get(accountId);
+        if (account == null) {
+            return null;
+        }
+        long balance;
+        int stripe = lockStripes.indexOf(accountId);
+        lockStripes.lock(stripe);
+        try {
+            balance = account.total();
+        } finally {
+            lockStripes.unlock(stripe);
+        }
+        return new Account(accountId, Money.toAmount(balance, Currencies.scale(account.currency)),
+                Currencies.code(account.currency));
+    }
+
+    /**
+     * THIS METHOD READ THE ACCOUNTS WITH ALL THEIR STRIPES LOCKED, SO NO TRANSFER INVOLVING THEM IS IN PROGRESS
+     *
+     * @param accountIds The account ids
+     * @return the accounts that exist, in the order of the ids
+     */
+    @Override
+    public List<Account> getAccounts(Collection<String> accountIds) {
+        String[] ids = accountIds.toArray(new String[0]);
+        AccountEntry[] entries = new AccountEntry[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            entries[i] = ids[i] == null ? null : accounts.get(ids[i]);
+            if (entries[i] == null) {
+                ids[i] = null;
+            }
+        }
+        long[] balances = new long[ids.length];
+        int[] stripes = lockStripes.stripesOf(ids);
+        lockStripes.lock(stripes);
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                if (entries[i] != null) {
+                    balances[i] = entries[i].total();
+                }
+            }
+        } finally {
+            lockStripes.unlock(stripes);
+        }
+        List<Account> result = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            if (entries[i] != null) {
+                result.add(new Account(ids[i], Money.toAmount(balances[i], Currencies.scale(entries[i].currency)),
+                        Currencies.code(entries[i].currency)));
+            }
+        }
+        return result;
     }
 
     /**
-     * THIS METHOD TRANSFER AMOUNT BETWEEN TWO ACCOUNTS
+     * THIS METHOD START A NEW EPOCH AND GIVE EVERY ACCOUNT AS OF ITS START TO THE CONSUMER, WHILE TRANSFERS GO ON.
+     * TRANSFERS ARE ONLY PAUSED TO START THE EPOCH. THE ACCOUNTS CREATED SINCE THE EPOCH STARTED ARE NOT GIVEN. A
+     * SCHEDULED SNAPSHOT OF THE "durable" REPOSITORY WAITS FOR THE END
+     *
+     * @param consumer Receives the accounts, from the calling thread
+     */
+    @Override
+    public void forEachAccount(Consumer<Account> consumer) {
+        snapshotLock.lock();
+        try {
+            int snapshotEpoch;
+            lockStripes.lockAll();
+            try {
+                foldHotAccounts();
+                snapshotEpoch = ++epoch;
+            } finally {
+                lockStripes.unlockAll();
+            }
+            for (AccountEntry account : accounts.values()) {
+                long balance;
+                int stripe = lockStripes.indexOf(account.accountId);
+                lockStripes.lock(stripe);
+                try {
+                    if (!account.existedAt(snapshotEpoch)) {
+                        continue;
+                    }
+                    balance = account.balanceAt(snapshotEpoch);
+                } finally {
+                    lockStripes.unlock(stripe);
+                }
+                consumer.accept(new Account(account.accountId,
+                        Money.toAmount(balance, Currencies.scale(account.currency)),
+                        Currencies.code(account.currency)));
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * THIS METHOD TRANSFER AMOUNT BETWEEN TWO ACCOUNTS, EVERY ACCOUNT IS LOOKED UP ONLY ONCE
      *
      * @param transfer The transfer object
-     * @throws InvalidBalanceException
+     * @return the result of the transfer
+     * @throws InvalidBalanceException if the amount can not be represented in minor units
      */
     @Override
-    public void transfer(Transfer transfer) throws InvalidBalanceException {
-        //READ, VALIDATE BALANCE AND UPDATE "FROM" ACCOUNT IN THREAD-SAFE MODE, USING COMPUTE METHOD FROM CONCURRENTHASMAP COLLECTION
-        Account fromAccount = accounts.compute(transfer.getAccountFromId(), (key, val)
-                -> {
-            if (val.getBalance().subtract(transfer.getAmount()).compareTo(BigDecimal.ZERO) < 0) {
-                throw new InvalidBalanceException("account balance can not be negative");
-            }
-            val.setBalance(val.getBalance().subtract(transfer.getAmount()));
-            return val;
-        });
-        //READ AND UPDATE "TO" ACCOUNT IN THREAD-SAFE MODE, USING COMPUTE METHOD FROM CONCURRENTHASMAP COLLECTION
-        Account toAccount = accounts.compute(transfer.getAccountToId(), (key, val)
-                -> {
-            val.setBalance(val.getBalance().add(transfer.getAmount()));
-            return val;
-        });
-        //NOTIFY TRANSFER WAS SUCCESSFUL
-        this.notificationService.notifyAboutTransfer(fromAccount, "transfers to account " + transfer.getAccountToId() + " finish successfully");
-        this.notificationService.notifyAboutTransfer(toAccount, "transfers from account " + transfer.getAccountFromId() + " finish successfully");
+    public TransferResult transfer(Transfer transfer) throws InvalidBalanceException {
+        AccountEntry fromAccount = transfer.getAccountFromId() == null ? null : accounts.get(transfer.getAccountFromId());
+        AccountEntry toAccount = transfer.getAccountToId() == null ? null : accounts.get(transfer.getAccountToId());
+        TransferStatus status = Transfers.check(transfer, fromAccount != null, toAccount != null);
+        if (status != null) {
+            return TransferResult.of(status);
+        }
+        //THE ONLY CONVERSIONS OF THE TRANSFER, EVERYTHING UNDER THE LOCKS IS LONG ARITHMETIC
+        long amount = Money.toMinorUnits(transfer.getAmount(), Currencies.scale(fromAccount.currency));
+        status = Transfers.checkCurrency(transfer, fromAccount.currency);
+        if (status != null) {
+            return TransferResult.of(status);
+        }
+        long credit = fxRateCache.current().convert(amount, fromAccount.currency, toAccount.currency);
+        if (credit < 0) {
+            return TransferResult.of(Transfers.conversionFailure(credit));
+        }
+        int fromStripe = lockStripes.indexOf(transfer.getAccountFromId());
+        CreditCells credits = toAccount.credits;
+        if (credits != null) {
+            status = transferToHotAccount(fromAccount, toAccount, credits, fromStripe, amount, credit);
+            return status == TransferStatus.OK
+                    ? Transfers.applied(fromAccount.currency, toAccount.currency, credit)
+                    : TransferResult.of(status);
+        }
+        //LOCK BOTH STRIPES IN ASCENDING ORDER, DEBIT, BALANCE CHECK AND CREDIT ARE ONE ATOMIC STEP FOR ANY READER
+        int toStripe = lockStripes.indexOf(transfer.getAccountToId());
+        long journaled;
+        boolean toContended = lockStripes.lock(fromStripe, toStripe);
+        try {
+            fromAccount.fold(epoch);
+            if (fromAccount.balance < amount) {
+                return TransferResult.of(TransferStatus.INSUFFICIENT_FUNDS);
+            }
+            if (toAccount.total() > Long.MAX_VALUE - credit) {
+                return TransferResult.of(TransferStatus.INVALID_AMOUNT);
+            }
+            fromAccount.touch(epoch);
+            toAccount.touch(epoch);
+            fromAccount.balance -= amount;
+            toAccount.credit(credit);
+            try {
+                journaled = journalTransfer(fromAccount, toAccount, amount, credit);
+            } catch (RuntimeException e) {
+                //NOT JOURNALED, UNDONE BEFORE THE LOCKS ARE RELEASED SO NOBODY SAW IT
+                fromAccount.balance += amount;
+                toAccount.balance -= credit;
+                throw e;
+            }
+            if (toContended) {
+                detectHotAccount(toAccount);
+            }
+        } finally {
+            lockStripes.unlock(fromStripe, toStripe);
+        }
+        commit(journaled);
+        return Transfers.applied(fromAccount.currency, toAccount.currency, credit);
+    }
 
+    /**
+     * THIS METHOD TRANSFER AMOUNT TO A HOT ACCOUNT, ONLY THE STRIPE OF THE "FROM" ACCOUNT IS LOCKED. THE CREDIT IS
+     * ADDED WHILE IT IS HELD, SO A THREAD HOLDING EVERY STRIPE NEVER SEES THE AMOUNT IN NEITHER ACCOUNT
+     */
+    private TransferStatus transferToHotAccount(AccountEntry fromAccount, AccountEntry toAccount, CreditCells credits,
+                                                int fromStripe, long amount, long credit) {
+        long journaled;
+        lockStripes.lock(fromStripe);
+        try {
+            fromAccount.fold(epoch);
+            if (fromAccount.balance < amount) {
+                return TransferStatus.INSUFFICIENT_FUNDS;
+            }
+            //THE BALANCE IS NOT READ WITHOUT ITS LOCK, ITS BOUND IS READ AFTER THE CELLS A FOLD MAY BE EMPTYING
+            long pending = credits.sum();
+            if (pending > Long.MAX_VALUE - credit - toAccount.balanceBound) {
+                return TransferStatus.INVALID_AMOUNT;
+            }
+            fromAccount.touch(epoch);
+            fromAccount.balance -= amount;
+            credits.add(credit);
+            try {
+                journaled = journalTransfer(fromAccount, toAccount, amount, credit);
+            } catch (RuntimeException e) {
+                //A FOLD MAY HAVE DRAINED THE CREDIT MEANWHILE, THE NEGATIVE CELL STILL CANCELS IT IN THE TOTAL
+                fromAccount.balance += amount;
+                credits.add(-credit);
+                throw e;
+            }
+        } finally {
+            lockStripes.unlock(fromStripe);
+        }
+        commit(journaled);
+        return TransferStatus.OK;
+    }
+
+    /**
+     * THIS METHOD APPLY A BATCH OF TRANSFERS UNDER THE STRIPE LOCKS OF ALL THE INVOLVED ACCOUNTS, TAKEN ONCE
+     *
+     * @param transfers The transfers
+     * @param atomic    All-or-nothing
+     * @return the result of every transfer
+     */
+    @Override
+    public TransferResult[] transfer(List<Transfer> transfers, boolean atomic) {
+        int size = transfers.size();
+        TransferStatus[] statuses = new TransferStatus[size];
+        AccountEntry[] fromAccounts = new AccountEntry[size];
+        AccountEntry[] toAccounts = new AccountEntry[size];
+        long[] amounts = new long[size];
+        long[] credits = new long[size];
+        //IDS OF THE TRANSFERS TO APPLY, TWO PER TRANSFER, TO COMPUTE THE STRIPES TO LOCK
+        String[] lockedIds = new String[2 * size];
+        //THE WHOLE BATCH IS CONVERTED WITH THE SAME RATES
+        FxRates rates = fxRateCache.current();
+        boolean valid = true;
+        for (int i = 0; i < size; i++) {
+            Transfer transfer = transfers.get(i);
+            fromAccounts[i] = transfer.getAccountFromId() == null ? null : accounts.get(transfer.getAccountFromId());
+            toAccounts[i] = transfer.getAccountToId() == null ? null : accounts.get(transfer.getAccountToId());
+            statuses[i] = Transfers.check(transfer, fromAccounts[i] != null, toAccounts[i] != null);
+            if (statuses[i] == null) {
+                try {
+                    amounts[i] = Money.toMinorUnits(transfer.getAmount(), Currencies.scale(fromAccounts[i].currency));
+                    statuses[i] = Transfers.checkCurrency(transfer, fromAccounts[i].currency);
+                } catch (InvalidBalanceException ibe) {
+                    statuses[i] = TransferStatus.INVALID_AMOUNT;
+                }
+            }
+            if (statuses[i] == null) {
+                credits[i] = rates.convert(amounts[i], fromAccounts[i].currency, toAccounts[i].currency);
+                if (credits[i] < 0) {
+                    statuses[i] = Transfers.conversionFailure(credits[i]);
+                } else {
+                    lockedIds[2 * i] = transfer.getAccountFromId();
+                    lockedIds[2 * i + 1] = transfer.getAccountToId();
+                }
+            }
+            valid &= statuses[i] == null;
+        }
+        if (atomic && !valid) {
+            return Transfers.notApplied(statuses);
+        }
+        int[] stripes = lockStripes.stripesOf(lockedIds);
+        long journaled;
+        lockStripes.lock(stripes);
+        try {
+            for (int i = 0; i < size; i++) {
+                if (statuses[i] != null) {
+                    continue;
+                }
+                fromAccounts[i].fold(epoch);
+                if (fromAccounts[i].balance < amounts[i]) {
+                    statuses[i] = TransferStatus.INSUFFICIENT_FUNDS;
+                } else if (toAccounts[i].total() > Long.MAX_VALUE - credits[i]) {
+                    statuses[i] = TransferStatus.INVALID_AMOUNT;
+                } else {
+                    fromAccounts[i].touch(epoch);
+                    toAccounts[i].touch(epoch);
+                    fromAccounts[i].balance -= amounts[i];
+                    toAccounts[i].credit(credits[i]);
+                    statuses[i] = TransferStatus.OK;
+                }
+                if (atomic && statuses[i] != TransferStatus.OK) {
+                    //UNDO THE APPLIED TRANSFERS IN REVERSE ORDER, STILL UNDER THE LOCKS SO NOBODY SAW THEM
+                    for (int j = i - 1; j >= 0; j--) {
+                        fromAccounts[j].balance += amounts[j];
+                        toAccounts[j].balance -= credits[j];
+                        statuses[j] = null;
+                    }
+                    return Transfers.notApplied(statuses);
+                }
+            }
+            try {
+                journaled = journalBatch(fromAccounts, toAccounts, amounts, credits, statuses);
+            } catch (RuntimeException e) {
+                //NOT JOURNALED, UNDO THE APPLIED TRANSFERS IN REVERSE ORDER BEFORE THE LOCKS ARE RELEASED
+                for (int j = size - 1; j >= 0; j--) {
+                    if (statuses[j] == TransferStatus.OK) {
+                        fromAccounts[j].balance += amounts[j];
+                        toAccounts[j].balance -= credits[j];
+                    }
+                }
+                throw e;
+            }
+        } finally {
+            lockStripes.unlock(stripes);
+        }
+        commit(journaled);
+        TransferResult[] results = new TransferResult[size];
+        for (int i = 0; i < size; i++) {
+            results[i] = statuses[i] == TransferStatus.OK
+                    ? Transfers.applied(fromAccounts[i].currency, toAccounts[i].currency, credits[i])
+                    : TransferResult.of(statuses[i]);
+        }
+        return results;
     }
 
     @Override
     public void clearAccounts() {
         accounts.clear();
+        hotAccounts.clear();
+    }
+
+    /**
+     * THIS METHOD CREATE THE ENTRY OF A NEW ACCOUNT, WITH CREDIT CELLS IF IT IS CONFIGURED AS HOT. THE CALLER ADDS
+     * IT TO hotAccounts ONCE IT IS IN THE MAP
+     *
+     * @param accountId The account id
+     * @param currency  Numeric code of the currency
+     * @param balance   Balance in minor units
+     * @return entry
+     */
+    AccountEntry newEntry(String accountId, int currency, long balance) {
+        AccountEntry entry = new AccountEntry(accountId, currency, balance);
+        if (configuredHotAccounts.contains(accountId)) {
+            entry.credits = new CreditCells(creditCells);
+        }
+        return entry;
+    }
+
+    /**
+     * THIS METHOD FOLD THE CREDIT CELLS OF EVERY HOT ACCOUNT, MUST BE CALLED WITH ALL THE STRIPES LOCKED
+     */
+    void foldHotAccounts() {
+        for (AccountEntry account : hotAccounts) {
+            account.fold(epoch);
+        }
+    }
+
+    /**
+     * CALLED UNDER THE STRIPE LOCK OF AN ACCOUNT WHOSE CREDIT HAD TO WAIT FOR THE LOCK
+     */
+    private void detectHotAccount(AccountEntry account) {
+        if (detectThreshold > 0 && account.credits == null && ++account.contendedCredits >= detectThreshold) {
+            account.balanceBound = account.balance;
+            account.credits = new CreditCells(creditCells);
+            hotAccounts.add(account);
+            log.info("Account {} is hot, its credits are striped", account.accountId);
+        }
+    }
+
+    /**
+     * CALLED UNDER THE STRIPE LOCK OF A NEW ACCOUNT, A DURABLE SUBCLASS RECORDS THE CREATION HERE
+     *
+     * @param account The created account
+     * @return token given to commit once the locks are released
+     */
+    long journalCreate(AccountEntry account) {
+        return 0;
+    }
+
+    /**
+     * CALLED UNDER THE STRIPE LOCKS OF BOTH ACCOUNTS, AFTER THE TRANSFER WAS APPLIED. IF IT THROWS, THE CALLER UNDOES
+     * THE TRANSFER BEFORE RELEASING THE LOCKS
+     *
+     * @param fromAccount Account from where the money was transferred
+     * @param toAccount   Account to which the money was transferred
+     * @param amount      Debited amount in minor units
+     * @param credit      Credited amount in minor units, the amount unless the currencies differ
+     * @return token given to commit once the locks are released
+     */
+    long journalTransfer(AccountEntry fromAccount, AccountEntry toAccount, long amount, long credit) {
+        return 0;
+    }
+
+    /**
+     * CALLED UNDER THE STRIPE LOCKS OF A BATCH, AFTER ITS TRANSFERS WERE APPLIED. ONLY THE TRANSFERS WITH STATUS OK
+     * CHANGED THE BALANCES
+     *
+     * @return token given to commit once the locks are released
+     */
+    long journalBatch(AccountEntry[] fromAccounts, AccountEntry[] toAccounts, long[] amounts, long[] credits,
+                      TransferStatus[] statuses) {
+        return 0;
+    }
+
+    /**
+     * CALLED WITHOUT LOCKS BEFORE AN OPERATION RETURNS, A DURABLE SUBCLASS WAITS HERE UNTIL THE RECORD IS ON DISK
+     *
+     * @param journaled Token returned by the journal method
+     */
+    void commit(long journaled) {
+    }
+
+    @Override
+    public int countAccounts() {
+        return accounts.size();
+    }
+
+    @Override
+    public long getContentionCount() {
+        return lockStripes.getContendedCount();
     }
 
 }
@@ -0,0 +1,381 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.config.FxRateCache;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Currencies;
+import com.db.awmd.challenge.domain.FxRates;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InvalidBalanceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * LOCKING REPOSITORY WHOSE ACCOUNTS LIVE OUTSIDE OF THE JAVA HEAP, SO THE HEAP FOOTPRINT AND THE GC PAUSES DO NOT
+ * GROW WITH THE NUMBER OF ACCOUNTS. THE IDS ARE INTERNED TO DENSE INTS BY AN OFF-HEAP TABLE AND THE BALANCES ARE
+ * GUARDED BY THE STRIPE OF THEIR DENSE INT, WITH THE SAME LOCK ORDER AND STATUSES AS THE "locking" REPOSITORY.
+ * <p>
+ * CALLERS THAT TRANSFER BETWEEN THE SAME ACCOUNTS MANY TIMES CAN INTERN THE IDS ONCE AND TRANSFER BY DENSE INT,
+ * SKIPPING THE HASHING AND THE KEY COMPARISON OF EVERY LOOKUP. A DENSE INT IS NO LONGER VALID AFTER clearAccounts.
+ * THE AMOUNT OF A TRANSFER BY DENSE INT IS IN THE CURRENCY OF THE "FROM" ACCOUNT, AS ANY OTHER
+ */
+@Repository
+@ConditionalOnProperty(prefix = "accounts", name = "repository", havingValue = "offheap")
+public class AccountsRepositoryOffHeap implements AccountsRepository {
+
+    private final OffHeapAccountTable table;
+
+    private final LockStripes lockStripes;
+
+    private final FxRateCache fxRateCache;
+
+    /**
+     * SNAPSHOT EPOCH, ONLY CHANGED WITH ALL THE STRIPES LOCKED SO IT CAN BE READ UNDER ANY STRIPE LOCK
+     */
+    private int epoch;
+
+    /**
+     * ONE SCAN AT A TIME, AND NO clearAccounts DURING A SCAN THAT WOULD GIVE ITS DENSE INTS TO OTHER ACCOUNTS
+     */
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+
+    public AccountsRepositoryOffHeap(AccountsProperties properties) {
+        this(properties, FxRateCache.loadOnce(properties));
+    }
+
+    @Autowired
+    public AccountsRepositoryOffHeap(AccountsProperties properties, FxRateCache fxRateCache) {
+        this.table = new OffHeapAccountTable(properties.getOffHeap().getExpectedAccounts());
+        this.lockStripes = new LockStripes(properties.getLockStripes());
+        this.fxRateCache = fxRateCache;
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        //THE BALANCE IS WRITTEN BEFORE THE ID IS PUBLISHED IN THE INDEX, NO STRIPE LOCK NEEDED
+        int currency = Currencies.numericCode(account.getCurrency());
+        long balance = Money.toMinorUnits(account.getBalance(), Currencies.scale(currency));
+        if (table.insert(account.getAccountId(), currency, balance) == OffHeapAccountTable.NOT_FOUND) {
+            throw new DuplicateAccountIdException(
+                    "Account id " + account.getAccountId() + " already exists!");
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        int account = table.find(accountId);
+        if (account == OffHeapAccountTable.NOT_FOUND) {
+            return null;
+        }
+        int currency = table.currency(account);
+        return new Account(accountId, Money.toAmount(balance(account), Currencies.scale(currency)),
+                Currencies.code(currency));
+    }
+
+    /**
+     * THIS METHOD READ THE ACCOUNTS WITH ALL THEIR STRIPES LOCKED, SO NO TRANSFER INVOLVING THEM IS IN PROGRESS
+     *
+     * @param accountIds The account ids
+     * @return the accounts that exist, in the order of the ids
+     */
+    @Override
+    public List<Account> getAccounts(Collection<String> accountIds) {
+        String[] ids = accountIds.toArray(new String[0]);
+        int[] denseAccounts = new int[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            denseAccounts[i] = ids[i] == null ? OffHeapAccountTable.NOT_FOUND : table.find(ids[i]);
+        }
+        long[] balances = new long[ids.length];
+        int[] stripes = lockStripes.stripesOf(denseAccounts);
+        lockStripes.lock(stripes);
+        try {
+            for (int i = 0; i < ids.length; i++) {
+                if (denseAccounts[i] != OffHeapAccountTable.NOT_FOUND) {
+                    balances[i] = table.balance(denseAccounts[i]);
+                }
+            }
+        } finally {
+            lockStripes.unlock(stripes);
+        }
+        List<Account> result = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            if (denseAccounts[i] != OffHeapAccountTable.NOT_FOUND) {
+                int currency = table.currency(denseAccounts[i]);
+                result.add(new Account(ids[i], Money.toAmount(balances[i], Currencies.scale(currency)),
+                        Currencies.code(currency)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * THIS METHOD START A NEW EPOCH AND GIVE EVERY ACCOUNT AS OF ITS START TO THE CONSUMER, WHILE TRANSFERS GO ON.
+     * TRANSFERS ARE ONLY PAUSED TO START THE EPOCH, THE ACCOUNTS CREATED AFTER IT HAVE HIGHER DENSE INTS AND ARE LEFT OUT
+     *
+     * @param consumer Receives the accounts, from the calling thread
+     */
+    @Override
+    public void forEachAccount(Consumer<Account> consumer) {
+        snapshotLock.lock();
+        try {
+            int snapshotEpoch;
+            int size;
+            lockStripes.lockAll();
+            try {
+                snapshotEpoch = ++epoch;
+                size = table.size();
+            } finally {
+                lockStripes.unlockAll();
+            }
+            for (int account = 0; account < size; account++) {
+                long balance;
+                int stripe = lockStripes.indexOf(account);
+                lockStripes.lock(stripe);
+                try {
+                    balance = table.balanceAt(account, snapshotEpoch);
+                } finally {
+                    lockStripes.unlock(stripe);
+                }
+                int currency = table.currency(account);
+                consumer.accept(new Account(table.accountId(account),
+                        Money.toAmount(balance, Currencies.scale(currency)), Currencies.code(currency)));
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * THIS METHOD RETURN THE DENSE INT OF AN ACCOUNT, TO TRANSFER BY DENSE INT
+     *
+     * @param accountId The account id
+     * @return dense int, or -1 if the account does not exist
+     */
+    public int intern(String accountId) {
+        return table.find(accountId);
+    }
+
+    /**
+     * THIS METHOD RETURN THE BALANCE OF AN ACCOUNT KNOWN BY ITS DENSE INT
+     *
+     * @param account Dense int
+     * @return balance in minor units
+     */
+    public long balance(int account) {
+        int stripe = lockStripes.indexOf(account);
+        lockStripes.lock(stripe);
+        try {
+            return table.balance(account);
+        } finally {
+            lockStripes.unlock(stripe);
+        }
+    }
+
+    @Override
+    public TransferResult transfer(Transfer transfer) throws InvalidBalanceException {
+        int fromAccount = transfer.getAccountFromId() == null ? -1 : table.find(transfer.getAccountFromId());
+        int toAccount = transfer.getAccountToId() == null ? -1 : table.find(transfer.getAccountToId());
+        TransferStatus status = Transfers.check(transfer, fromAccount >= 0, toAccount >= 0);
+        if (status != null) {
+            return TransferResult.of(status);
+        }
+        int fromCurrency = table.currency(fromAccount);
+        int toCurrency = table.currency(toAccount);
+        long amount = Money.toMinorUnits(transfer.getAmount(), Currencies.scale(fromCurrency));
+        status = Transfers.checkCurrency(transfer, fromCurrency);
+        if (status != null) {
+            return TransferResult.of(status);
+        }
+        long credit = fxRateCache.current().convert(amount, fromCurrency, toCurrency);
+        if (credit < 0) {
+            return TransferResult.of(Transfers.conversionFailure(credit));
+        }
+        status = apply(fromAccount, toAccount, amount, credit);
+        return status == TransferStatus.OK
+                ? Transfers.applied(fromCurrency, toCurrency, credit) : TransferResult.of(status);
+    }
+
+    /**
+     * THIS METHOD TRANSFER AMOUNT BETWEEN TWO ACCOUNTS KNOWN BY THEIR DENSE INTS
+     *
+     * @param fromAccount Dense int of the account from where the money is transferred
+     * @param toAccount   Dense int of the account to which the money is transferred
+     * @param amount      Amount in minor units of the currency of the "from" account, at least one unit
+     * @return the status of the transfer
+     */
+    public TransferStatus transfer(int fromAccount, int toAccount, long amount) {
+        int size = table.size();
+        boolean fromExists = fromAccount >= 0 && fromAccount < size;
+        boolean toExists = toAccount >= 0 && toAccount < size;
+        if (amount < (fromExists ? Currencies.unit(table.currency(fromAccount)) : 1)) {
+            return TransferStatus.INVALID_TRANSFER;
+        }
+        if (fromAccount == toAccount) {
+            return TransferStatus.SAME_ACCOUNT;
+        }
+        if (!fromExists) {
+            return toExists ? TransferStatus.FROM_ACCOUNT_NOT_FOUND : TransferStatus.ACCOUNTS_NOT_FOUND;
+        }
+        if (!toExists) {
+            return TransferStatus.TO_ACCOUNT_NOT_FOUND;
+        }
+        long credit = fxRateCache.current().convert(amount, table.currency(fromAccount), table.currency(toAccount));
+        if (credit < 0) {
+            return Transfers.conversionFailure(credit);
+        }
+        return apply(fromAccount, toAccount, amount, credit);
+    }
+
+    private TransferStatus apply(int fromAccount, int toAccount, long amount, long credit) {
+        int fromStripe = lockStripes.indexOf(fromAccount);
+        int toStripe = lockStripes.indexOf(toAccount);
+        lockStripes.lock(fromStripe, toStripe);
+        try {
+            long fromBalance = table.balance(fromAccount);
+            long toBalance = table.balance(toAccount);
+            if (fromBalance < amount) {
+                return TransferStatus.INSUFFICIENT_FUNDS;
+            }
+            if (toBalance > Long.MAX_VALUE - credit) {
+                return TransferStatus.INVALID_AMOUNT;
+            }
+            table.touch(fromAccount, epoch);
+            table.touch(toAccount, epoch);
+            table.balance(fromAccount, fromBalance - amount);
+            table.balance(toAccount, toBalance + credit);
+        } finally {
+            lockStripes.unlock(fromStripe, toStripe);
+        }
+        return TransferStatus.OK;
+    }
+
+    /**
+     * THIS METHOD APPLY A BATCH OF TRANSFERS UNDER THE STRIPE LOCKS OF ALL THE INVOLVED ACCOUNTS, TAKEN ONCE
+     *
+     * @param transfers The transfers
+     * @param atomic    All-or-nothing
+     * @return the result of every transfer
+     */
+    @Override
+    public TransferResult[] transfer(List<Transfer> transfers, boolean atomic) {
+        int size = transfers.size();
+        TransferStatus[] statuses = new TransferStatus[size];
+        int[] fromAccounts = new int[size];
+        int[] toAccounts = new int[size];
+        long[] amounts = new long[size];
+        long[] credits = new long[size];
+        //DENSE INTS OF THE TRANSFERS TO APPLY, TWO PER TRANSFER, TO COMPUTE THE STRIPES TO LOCK
+        int[] lockedAccounts = new int[2 * size];
+        Arrays.fill(lockedAccounts, -1);
+        FxRates rates = fxRateCache.current();
+        boolean valid = true;
+        for (int i = 0; i < size; i++) {
+            Transfer transfer = transfers.get(i);
+            fromAccounts[i] = transfer.getAccountFromId() == null ? -1 : table.find(transfer.getAccountFromId());
+            toAccounts[i] = transfer.getAccountToId() == null ? -1 : table.find(transfer.getAccountToId());
+            statuses[i] = Transfers.check(transfer, fromAccounts[i] >= 0, toAccounts[i] >= 0);
+            if (statuses[i] == null) {
+                try {
+                    int fromCurrency = table.currency(fromAccounts[i]);
+                    amounts[i] = Money.toMinorUnits(transfer.getAmount(), Currencies.scale(fromCurrency));
+                    statuses[i] = Transfers.checkCurrency(transfer, fromCurrency);
+                } catch (InvalidBalanceException ibe) {
+                    statuses[i] = TransferStatus.INVALID_AMOUNT;
+                }
+            }
+            if (statuses[i] == null) {
+                credits[i] = rates.convert(amounts[i], table.currency(fromAccounts[i]), table.currency(toAccounts[i]));
+                if (credits[i] < 0) {
+                    statuses[i] = Transfers.conversionFailure(credits[i]);
+                } else {
+                    lockedAccounts[2 * i] = fromAccounts[i];
+                    lockedAccounts[2 * i + 1] = toAccounts[i];
+                }
+            }
+            valid &= statuses[i] == null;
+        }
+        if (atomic && !valid) {
+            return Transfers.notApplied(statuses);
+        }
+        int[] stripes = lockStripes.stripesOf(lockedAccounts);
+        lockStripes.lock(stripes);
+        try {
+            for (int i = 0; i < size; i++) {
+                if (statuses[i] != null) {
+                    continue;
+                }
+                long fromBalance = table.balance(fromAccounts[i]);
+                long toBalance = table.balance(toAccounts[i]);
+                if (fromBalance < amounts[i]) {
+                    statuses[i] = TransferStatus.INSUFFICIENT_FUNDS;
+                } else if (toBalance > Long.MAX_VALUE - credits[i]) {
+                    statuses[i] = TransferStatus.INVALID_AMOUNT;
+                } else {
+                    table.touch(fromAccounts[i], epoch);
+                    table.touch(toAccounts[i], epoch);
+                    table.balance(fromAccounts[i], fromBalance - amounts[i]);
+                    table.balance(toAccounts[i], toBalance + credits[i]);
+                    statuses[i] = TransferStatus.OK;
+                }
+                if (atomic && statuses[i] != TransferStatus.OK) {
+                    //UNDO THE APPLIED TRANSFERS IN REVERSE ORDER, STILL UNDER THE LOCKS SO NOBODY SAW THEM
+                    for (int j = i - 1; j >= 0; j--) {
+                        table.balance(fromAccounts[j], table.balance(fromAccounts[j]) + amounts[j]);
+                        table.balance(toAccounts[j], table.balance(toAccounts[j]) - credits[j]);
+                        statuses[j] = null;
+                    }
+                    return Transfers.notApplied(statuses);
+                }
+            }
+        } finally {
+            lockStripes.unlock(stripes);
+        }
+        TransferResult[] results = new TransferResult[size];
+        for (int i = 0; i < size; i++) {
+            results[i] = statuses[i] == TransferStatus.OK
+                    ? Transfers.applied(table.currency(fromAccounts[i]), table.currency(toAccounts[i]), credits[i])
+                    : TransferResult.of(statuses[i]);
+        }
+        return results;
+    }
+
+    /**
+     * THIS METHOD REMOVE ALL THE ACCOUNTS, THE OFF-HEAP MEMORY IS KEPT FOR THE NEXT ONES
+     */
+    @Override
+    public void clearAccounts() {
+        snapshotLock.lock();
+        try {
+            lockStripes.lockAll();
+            try {
+                table.clear();
+            } finally {
+                lockStripes.unlockAll();
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    @Override
+    public int countAccounts() {
+        return table.size();
+    }
+
+    @Override
+    public long getContentionCount() {
+        return lockStripes.getContendedCount();
+    }
+}
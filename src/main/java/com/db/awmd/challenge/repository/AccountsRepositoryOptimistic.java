@@ -0,0 +1,580 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.config.FxRateCache;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Currencies;
+import com.db.awmd.challenge.domain.FxRates;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InvalidBalanceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * LOCK-FREE ACCOUNTS REPOSITORY, EVERY ACCOUNT IS AN ATOMIC REFERENCE TO AN IMMUTABLE (BALANCE, VERSION) SNAPSHOT
+ * WITH THE BALANCE IN LONG MINOR UNITS.
+ * A TRANSFER INSTALLS A DESCRIPTOR ON ITS ACCOUNTS (IN ACCOUNT ID ORDER), DECIDES IT WITH A SINGLE CAS AND
+ * THEN REPLACES THE SNAPSHOTS. THREADS FINDING A PENDING DESCRIPTOR HELP TO COMPLETE IT INSTEAD OF WAITING,
+ * READERS NEVER WAIT AND NEVER WRITE, BUT A READ OF SEVERAL ACCOUNTS THAT KEEP CHANGING FALLS BACK TO A DESCRIPTOR.
+ * THE CURRENCY OF AN ACCOUNT IS PART OF ITS REFERENCE, A TRANSFER IS CONVERTED ONCE BEFORE ITS FIRST ATTEMPT.
+ * <p>
+ * A SCAN OF EVERY ACCOUNT READS THEM AS OF AN EPOCH INSTEAD: IT ADVANCES THE EPOCH, EVERY TRANSFER IS DECIDED WITH THE
+ * EPOCH IT READ ONCE INSTALLED, AND WHILE THE SCAN RUNS THE SNAPSHOTS REPLACED BY THE LATER TRANSFERS STAY LINKED
+ * FROM THEIR REPLACEMENTS. THE SCAN STREAMS THE ACCOUNTS ONE BY ONE, TAKING THE NEWEST SNAPSHOT OLDER THAN ITS EPOCH,
+ * SO IT NEITHER RETRIES NOR BLOCKS THE TRANSFERS, ONLY HELPS THE PENDING ONES IT MEETS TO BE DECIDED
+ */
+@Repository
+@ConditionalOnProperty(prefix = "accounts", name = "repository", havingValue = "optimistic")
+public class AccountsRepositoryOptimistic implements AccountsRepository {
+
+    private static final Comparator<AccountRef> ACCOUNT_ID_ORDER = Comparator.comparing(account -> account.accountId);
+
+    /**
+     * DOUBLE READS OF SEVERAL ACCOUNTS TRIED BEFORE READING THEM THROUGH A DESCRIPTOR
+     */
+    private static final int MAX_READ_ATTEMPTS = 3;
+
+    private final Map<String, AccountRef> accounts = new ConcurrentHashMap<>();
+
+    private final LongAdder conflicts = new LongAdder();
+
+    /**
+     * EPOCH THE TRANSFERS ARE DECIDED IN, ADVANCED BY EVERY SCAN
+     */
+    private final AtomicLong epoch = new AtomicLong(1);
+
+    /**
+     * EPOCH OF THE SCAN IN PROGRESS, Long.MAX_VALUE WHEN NONE: THE TRANSFERS DECIDED FROM IT KEEP THE SNAPSHOTS THEY
+     * REPLACE
+     */
+    private volatile long scanEpoch = Long.MAX_VALUE;
+
+    /**
+     * ONE SCAN AT A TIME, TRANSFERS NEVER TAKE IT
+     */
+    private final ReentrantLock scanLock = new ReentrantLock();
+
+    private final FxRateCache fxRateCache;
+
+    public AccountsRepositoryOptimistic(AccountsProperties properties) {
+        this(properties, FxRateCache.loadOnce(properties));
+    }
+
+    @Autowired
+    public AccountsRepositoryOptimistic(AccountsProperties properties, FxRateCache fxRateCache) {
+        this.fxRateCache = fxRateCache;
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        int currency = Currencies.numericCode(account.getCurrency());
+        Snapshot snapshot = new Snapshot(Money.toMinorUnits(account.getBalance(), Currencies.scale(currency)), 0, null, 0,
+                epoch.get(), null);
+        AccountRef previousAccount = accounts.putIfAbsent(account.getAccountId(),
+                new AccountRef(account.getAccountId(), currency, snapshot));
+        if (previousAccount != null) {
+            throw new DuplicateAccountIdException(
+                    "Account id " + account.getAccountId() + " already exists!");
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        AccountRef account = accounts.get(accountId);
+        if (account == null) {
+            return null;
+        }
+        return new Account(accountId,
+                Money.toAmount(account.get().visibleBalance(), Currencies.scale(account.currency)),
+                Currencies.code(account.currency));
+    }
+
+    /**
+     * THIS METHOD READ THE SNAPSHOTS OF THE ACCOUNTS TWICE, THEY WERE ALL CURRENT AT THE SAME TIME IF NONE WAS REPLACED
+     * IN BETWEEN. AFTER MAX_READ_ATTEMPTS FAILED READS THE ACCOUNTS ARE READ THROUGH A DESCRIPTOR THAT CHANGES
+     * NOTHING, WHICH SUCCEEDS LIKE A TRANSFER DOES
+     *
+     * @param accountIds The account ids
+     * @return the accounts that exist, in the order of the ids
+     */
+    @Override
+    public List<Account> getAccounts(Collection<String> accountIds) {
+        String[] ids = accountIds.toArray(new String[0]);
+        AccountRef[] refs = new AccountRef[ids.length];
+        Snapshot[] snapshots = new Snapshot[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            refs[i] = ids[i] == null ? null : accounts.get(ids[i]);
+        }
+        boolean consistent = false;
+        for (int attempt = 0; !consistent && attempt < MAX_READ_ATTEMPTS; attempt++) {
+            for (int i = 0; i < refs.length; i++) {
+                if (refs[i] != null) {
+                    snapshots[i] = settled(refs[i]);
+                }
+            }
+            consistent = true;
+            for (int i = 0; consistent && i < refs.length; i++) {
+                consistent = refs[i] == null || refs[i].get() == snapshots[i];
+            }
+            if (!consistent) {
+                conflicts.increment();
+            }
+        }
+        if (!consistent) {
+            read(refs, snapshots);
+        }
+        List<Account> result = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            if (refs[i] != null) {
+                result.add(new Account(ids[i], Money.toAmount(snapshots[i].balance, Currencies.scale(refs[i].currency)),
+                        Currencies.code(refs[i].currency)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * THIS METHOD GIVE EVERY ACCOUNT AS OF A NEW EPOCH, ONE AT A TIME: AN ACCOUNT IS READ JUST BEFORE IT IS GIVEN TO
+     * THE CONSUMER AND NOTHING IS HELD FOR THE OTHERS
+     *
+     * @param consumer Receives the accounts, from the calling thread
+     */
+    @Override
+    public void forEachAccount(Consumer<Account> consumer) {
+        scanLock.lock();
+        try {
+            long scan = epoch.get() + 1;
+            //BEFORE THE EPOCH, A TRANSFER DECIDED IN IT ALREADY KEEPS THE SNAPSHOTS IT REPLACES
+            scanEpoch = scan;
+            epoch.set(scan);
+            try {
+                for (AccountRef account : accounts.values()) {
+                    Snapshot snapshot = asOf(account, scan);
+                    if (snapshot != null) {
+                        consumer.accept(new Account(account.accountId,
+                                Money.toAmount(snapshot.balance, Currencies.scale(account.currency)),
+                                Currencies.code(account.currency)));
+                    }
+                }
+            } finally {
+                scanEpoch = Long.MAX_VALUE;
+            }
+        } finally {
+            scanLock.unlock();
+        }
+    }
+
+    /**
+     * THIS METHOD RETURN THE SNAPSHOT OF AN ACCOUNT BEFORE AN EPOCH, A PENDING TRANSFER IS DECIDED FIRST
+     *
+     * @param account The account reference
+     * @param scan    Epoch of the scan
+     * @return snapshot, null if the account was created from the epoch
+     */
+    private Snapshot asOf(AccountRef account, long scan) {
+        Snapshot snapshot = account.get();
+        Descriptor pending = snapshot.owner;
+        if (pending != null) {
+            complete(pending);
+            long decided = pending.status.get();
+            if (decided != Descriptor.FAILED && decided < scan) {
+                return snapshot.apply(snapshot.pendingDelta, decided, null);
+            }
+            for (int i = 0; i < pending.accounts.length; i++) {
+                if (pending.accounts[i] == account) {
+                    snapshot = pending.expected[i];
+                }
+            }
+        }
+        while (snapshot != null && snapshot.epoch >= scan) {
+            snapshot = snapshot.previous;
+        }
+        return snapshot;
+    }
+
+    /**
+     * THIS METHOD READ THE SNAPSHOTS THROUGH A DESCRIPTOR WITHOUT CHANGE OF BALANCE, RETRYING LIKE A TRANSFER
+     *
+     * @param refs      The account references, null entries are ignored
+     * @param snapshots Receives the snapshot of every reference
+     */
+    private void read(AccountRef[] refs, Snapshot[] snapshots) {
+        Map<AccountRef, Integer> positions = new IdentityHashMap<>();
+        for (AccountRef ref : refs) {
+            if (ref != null) {
+                positions.put(ref, -1);
+            }
+        }
+        AccountRef[] distinct = positions.keySet().toArray(new AccountRef[0]);
+        Arrays.sort(distinct, ACCOUNT_ID_ORDER);
+        for (int i = 0; i < distinct.length; i++) {
+            positions.put(distinct[i], i);
+        }
+        while (true) {
+            Snapshot[] expected = new Snapshot[distinct.length];
+            for (int i = 0; i < distinct.length; i++) {
+                expected[i] = settled(distinct[i]);
+            }
+            if (complete(new Descriptor(distinct, expected, new long[distinct.length]))) {
+                for (int i = 0; i < refs.length; i++) {
+                    if (refs[i] != null) {
+                        snapshots[i] = expected[positions.get(refs[i])];
+                    }
+                }
+                return;
+            }
+            conflicts.increment();
+        }
+    }
+
+    /**
+     * THIS METHOD TRANSFER AMOUNT BETWEEN TWO ACCOUNTS, RETRYING WHEN A CONCURRENT TRANSFER CHANGED ANY OF THEM
+     *
+     * @param transfer The transfer object
+     * @return the result of the transfer
+     * @throws InvalidBalanceException if the amount can not be represented in minor units
+     */
+    @Override
+    public TransferResult transfer(Transfer transfer) throws InvalidBalanceException {
+        AccountRef fromAccount = transfer.getAccountFromId() == null ? null : accounts.get(transfer.getAccountFromId());
+        AccountRef toAccount = transfer.getAccountToId() == null ? null : accounts.get(transfer.getAccountToId());
+        TransferStatus status = Transfers.check(transfer, fromAccount != null, toAccount != null);
+        if (status != null) {
+            return TransferResult.of(status);
+        }
+        long amount = Money.toMinorUnits(transfer.getAmount(), Currencies.scale(fromAccount.currency));
+        status = Transfers.checkCurrency(transfer, fromAccount.currency);
+        if (status != null) {
+            return TransferResult.of(status);
+        }
+        long credit = fxRateCache.current().convert(amount, fromAccount.currency, toAccount.currency);
+        if (credit < 0) {
+            return TransferResult.of(Transfers.conversionFailure(credit));
+        }
+        //INSTALL ORDER FOLLOWS THE ACCOUNT ID ORDER, SO HELPING CHAINS CAN NOT FORM A CYCLE
+        boolean fromFirst = transfer.getAccountFromId().compareTo(transfer.getAccountToId()) < 0;
+        AccountRef[] refs = fromFirst ? new AccountRef[]{fromAccount, toAccount} : new AccountRef[]{toAccount, fromAccount};
+        while (true) {
+            Snapshot from = settled(fromAccount);
+            Snapshot to = settled(toAccount);
+            if (from.balance < amount) {
+                return TransferResult.of(TransferStatus.INSUFFICIENT_FUNDS);
+            }
+            if (to.balance > Long.MAX_VALUE - credit) {
+                return TransferResult.of(TransferStatus.INVALID_AMOUNT);
+            }
+            Descriptor descriptor = fromFirst
+                    ? new Descriptor(refs, new Snapshot[]{from, to}, new long[]{-amount, credit})
+                    : new Descriptor(refs, new Snapshot[]{to, from}, new long[]{credit, -amount});
+            if (complete(descriptor)) {
+                return Transfers.applied(fromAccount.currency, toAccount.currency, credit);
+            }
+            conflicts.increment();
+        }
+    }
+
+    /**
+     * THIS METHOD APPLY A BATCH OF TRANSFERS AS ONE DESCRIPTOR OVER ALL THE INVOLVED ACCOUNTS: THE TRANSFERS ARE
+     * EVALUATED IN ORDER ON PRIVATE COPIES OF THE BALANCES, THEN THE NET CHANGE OF EVERY ACCOUNT IS COMMITTED AT ONCE
+     *
+     * @param transfers The transfers
+     * @param atomic    All-or-nothing
+     * @return the result of every transfer
+     */
+    @Override
+    public TransferResult[] transfer(List<Transfer> transfers, boolean atomic) {
+        int size = transfers.size();
+        TransferStatus[] checks = new TransferStatus[size];
+        AccountRef[] fromAccounts = new AccountRef[size];
+        AccountRef[] toAccounts = new AccountRef[size];
+        long[] amounts = new long[size];
+        long[] credits = new long[size];
+        Map<AccountRef, Integer> positions = new IdentityHashMap<>();
+        FxRates rates = fxRateCache.current();
+        boolean valid = true;
+        for (int i = 0; i < size; i++) {
+            Transfer transfer = transfers.get(i);
+            fromAccounts[i] = transfer.getAccountFromId() == null ? null : accounts.get(transfer.getAccountFromId());
+            toAccounts[i] = transfer.getAccountToId() == null ? null : accounts.get(transfer.getAccountToId());
+            checks[i] = Transfers.check(transfer, fromAccounts[i] != null, toAccounts[i] != null);
+            if (checks[i] == null) {
+                try {
+                    amounts[i] = Money.toMinorUnits(transfer.getAmount(), Currencies.scale(fromAccounts[i].currency));
+                    checks[i] = Transfers.checkCurrency(transfer, fromAccounts[i].currency);
+                } catch (InvalidBalanceException ibe) {
+                    checks[i] = TransferStatus.INVALID_AMOUNT;
+                }
+            }
+            if (checks[i] == null) {
+                credits[i] = rates.convert(amounts[i], fromAccounts[i].currency, toAccounts[i].currency);
+                if (credits[i] < 0) {
+                    checks[i] = Transfers.conversionFailure(credits[i]);
+                } else {
+                    positions.put(fromAccounts[i], -1);
+                    positions.put(toAccounts[i], -1);
+                }
+            }
+            valid &= checks[i] == null;
+        }
+        if (atomic && !valid) {
+            return Transfers.notApplied(checks);
+        }
+        AccountRef[] refs = positions.keySet().toArray(new AccountRef[0]);
+        Arrays.sort(refs, ACCOUNT_ID_ORDER);
+        for (int i = 0; i < refs.length; i++) {
+            positions.put(refs[i], i);
+        }
+        while (true) {
+            TransferStatus[] statuses = checks.clone();
+            Snapshot[] expected = new Snapshot[refs.length];
+            long[] balances = new long[refs.length];
+            for (int i = 0; i < refs.length; i++) {
+                expected[i] = settled(refs[i]);
+                balances[i] = expected[i].balance;
+            }
+            for (int i = 0; i < size; i++) {
+                if (statuses[i] != null) {
+                    continue;
+                }
+                int from = positions.get(fromAccounts[i]);
+                int to = positions.get(toAccounts[i]);
+                if (balances[from] - amounts[i] < 0) {
+                    statuses[i] = TransferStatus.INSUFFICIENT_FUNDS;
+                } else if (balances[to] > Long.MAX_VALUE - credits[i]) {
+                    statuses[i] = TransferStatus.INVALID_AMOUNT;
+                } else {
+                    balances[from] -= amounts[i];
+                    balances[to] += credits[i];
+                    statuses[i] = TransferStatus.OK;
+                }
+                if (atomic && statuses[i] != TransferStatus.OK) {
+                    //NOTHING WAS WRITTEN YET, THE EARLIER TRANSFERS ONLY CHANGED THE PRIVATE BALANCES
+                    for (int j = 0; j < i; j++) {
+                        statuses[j] = null;
+                    }
+                    return Transfers.notApplied(statuses);
+                }
+            }
+            long[] deltas = new long[refs.length];
+            for (int i = 0; i < refs.length; i++) {
+                deltas[i] = balances[i] - expected[i].balance;
+            }
+            //ACCOUNTS WITHOUT NET CHANGE STAY IN THE DESCRIPTOR, THEIR BALANCE WAS USED TO DECIDE THE STATUSES
+            if (complete(new Descriptor(refs, expected, deltas))) {
+                TransferResult[] results = new TransferResult[size];
+                for (int i = 0; i < size; i++) {
+                    results[i] = statuses[i] == TransferStatus.OK
+                            ? Transfers.applied(fromAccounts[i].currency, toAccounts[i].currency, credits[i])
+                            : TransferResult.of(statuses[i]);
+                }
+                return results;
+            }
+            conflicts.increment();
+        }
+    }
+
+    @Override
+    public void clearAccounts() {
+        accounts.clear();
+    }
+
+    @Override
+    public int countAccounts() {
+        return accounts.size();
+    }
+
+    /**
+     * NUMBER OF TRANSFER ATTEMPTS THAT FAILED BECAUSE A CONCURRENT TRANSFER WON THE RACE AND HAD TO BE RETRIED
+     */
+    @Override
+    public long getContentionCount() {
+        return conflicts.sum();
+    }
+
+    /**
+     * THIS METHOD RETURN THE CURRENT SNAPSHOT OF THE ACCOUNT, HELPING ANY PENDING TRANSFER TO FINISH FIRST
+     *
+     * @param account The account reference
+     * @return snapshot without pending transfer
+     */
+    private Snapshot settled(AccountRef account) {
+        while (true) {
+            Snapshot current = account.get();
+            if (current.owner == null) {
+                return current;
+            }
+            complete(current.owner);
+        }
+    }
+
+    /**
+     * THIS METHOD DRIVE A TRANSFER DESCRIPTOR TO THE END, IT CAN BE RUN BY ANY NUMBER OF THREADS AT THE SAME TIME
+     *
+     * @param descriptor The transfer descriptor
+     * @return true if the transfer was applied
+     */
+    private boolean complete(Descriptor descriptor) {
+        if (descriptor.status.get() == Descriptor.UNDECIDED) {
+            boolean installed = true;
+            for (int i = 0; installed && i < descriptor.accounts.length; i++) {
+                installed = install(descriptor, i);
+            }
+            //READ ONCE INSTALLED: A SCAN THAT READ ONE OF THE ACCOUNTS BEFORE HAS ALREADY ADVANCED IT
+            descriptor.status.compareAndSet(Descriptor.UNDECIDED, installed ? epoch.get() : Descriptor.FAILED);
+        }
+        long decided = descriptor.status.get();
+        boolean succeeded = decided != Descriptor.FAILED;
+        boolean scanned = decided >= scanEpoch;
+        for (int i = 0; i < descriptor.accounts.length; i++) {
+            Snapshot expected = descriptor.expected[i];
+            release(descriptor, descriptor.accounts[i], succeeded
+                    ? expected.apply(descriptor.deltas[i], decided, scanned ? expected : null) : expected);
+        }
+        return succeeded;
+    }
+
+    private boolean install(Descriptor descriptor, int index) {
+        AccountRef account = descriptor.accounts[index];
+        Snapshot expected = descriptor.expected[index];
+        while (descriptor.status.get() == Descriptor.UNDECIDED) {
+            Snapshot current = account.get();
+            if (current.owner == descriptor) {
+                return true;
+            }
+            if (current == expected) {
+                if (account.compareAndSet(expected,
+                        new Snapshot(expected.balance, expected.version, descriptor, descriptor.deltas[index],
+                                expected.epoch, null))) {
+                    return true;
+                }
+            } else if (current.owner != null) {
+                complete(current.owner);
+            } else {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private void release(Descriptor descriptor, AccountRef account, Snapshot replacement) {
+        Snapshot current = account.get();
+        if (current.owner == descriptor) {
+            account.compareAndSet(current, replacement);
+        }
+    }
+
+    /**
+     * THE REFERENCE HOLDING THE CURRENT SNAPSHOT OF AN ACCOUNT
+     */
+    private static final class AccountRef extends AtomicReference<Snapshot> {
+
+        private final String accountId;
+
+        /**
+         * NUMERIC CODE OF THE CURRENCY
+         */
+        private final int currency;
+
+        private AccountRef(String accountId, int currency, Snapshot snapshot) {
+            super(snapshot);
+            this.accountId = accountId;
+            this.currency = currency;
+        }
+    }
+
+    /**
+     * IMMUTABLE STATE OF AN ACCOUNT, WHEN OWNED BY A PENDING TRANSFER THE BALANCE IS THE PRE-TRANSFER BALANCE
+     */
+    private static final class Snapshot {
+
+        private final long balance;
+
+        private final long version;
+
+        private final Descriptor owner;
+
+        private final long pendingDelta;
+
+        /**
+         * EPOCH OF THE TRANSFER THAT PRODUCED IT, OR OF THE CREATE
+         */
+        private final long epoch;
+
+        /**
+         * SNAPSHOT IT REPLACED WHILE A SCAN OLDER THAN ITS EPOCH RAN, NULL OTHERWISE
+         */
+        private final Snapshot previous;
+
+        private Snapshot(long balance, long version, Descriptor owner, long pendingDelta, long epoch,
+                         Snapshot previous) {
+            this.balance = balance;
+            this.version = version;
+            this.owner = owner;
+            this.pendingDelta = pendingDelta;
+            this.epoch = epoch;
+            this.previous = previous;
+        }
+
+        private Snapshot apply(long delta, long epoch, Snapshot previous) {
+            return new Snapshot(balance + delta, version + 1, null, 0, epoch, previous);
+        }
+
+        /**
+         * BALANCE SEEN BY A READER, A DECIDED BUT NOT YET RELEASED TRANSFER IS ALREADY VISIBLE
+         */
+        private long visibleBalance() {
+            Descriptor pending = owner;
+            if (pending != null && pending.status.get() > Descriptor.UNDECIDED) {
+                return balance + pendingDelta;
+            }
+            return balance;
+        }
+    }
+
+    /**
+     * A MULTI-ACCOUNT TRANSFER IN PROGRESS, ACCOUNTS ARE KEPT IN ACCOUNT ID ORDER WITH THE SNAPSHOT THEY MUST STILL
+     * HAVE AND THE CHANGE OF BALANCE TO APPLY
+     */
+    private static final class Descriptor {
+
+        private static final long UNDECIDED = 0;
+
+        private static final long FAILED = -1;
+
+        /**
+         * UNDECIDED, FAILED OR THE EPOCH THE TRANSFER SUCCEEDED IN
+         */
+        private final AtomicLong status = new AtomicLong(UNDECIDED);
+
+        private final AccountRef[] accounts;
+
+        private final Snapshot[] expected;
+
+        private final long[] deltas;
+
+        private Descriptor(AccountRef[] accounts, Snapshot[] expected, long[] deltas) {
+            this.accounts = accounts;
+            this.expected = expected;
+            this.deltas = deltas;
+        }
+    }
+}
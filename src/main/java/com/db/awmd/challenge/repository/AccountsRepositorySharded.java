@@ -0,0 +1,539 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.config.FxRateCache;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Currencies;
+import com.db.awmd.challenge.domain.FxRates;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.InvalidBalanceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * REPOSITORY PARTITIONED IN SHARDS BY ACCOUNT ID HASH, EVERY SHARD OWNED BY ONE THREAD THAT APPLIES ITS CHANGES IN
+ * ORDER WITHOUT LOCKS. A TRANSFER INSIDE A SHARD IS ONE TASK OF THAT SHARD. A TRANSFER BETWEEN SHARDS IS TWO-PHASE:
+ * THE "FROM" SHARD RESERVES THE AMOUNT BY DEBITING IT AND FORWARDS THE CREDIT TO THE "TO" SHARD, WHICH COMMITS IT OR
+ * SENDS THE RESERVATION BACK TO BE RELEASED. UNTIL THE CREDIT IS COMMITTED THE AMOUNT IS IN NEITHER ACCOUNT. THE
+ * "TO" SHARD CONVERTS THE AMOUNT TO ITS CURRENCY WITH THE RATES READ WHEN THE TRANSFER STARTED.
+ * <p>
+ * BATCHES AND clearAccounts PARK THE SHARDS THEY TOUCH IN ASCENDING ORDER AND WORK ON THEIR ACCOUNTS DIRECTLY, WITH
+ * THE SAME STATUSES AND ALL-OR-NOTHING UNDO AS THE "locking" REPOSITORY. A READ OF SEVERAL ACCOUNTS ALSO HOLDS BACK
+ * THE NEW TRANSFERS BETWEEN SHARDS AND WAITS FOR THE ONES IN PROGRESS, SO NO AMOUNT IS MISSING FROM WHAT IT READS.
+ * <p>
+ * A SCAN OF EVERY ACCOUNT ONLY DOES SO TO START A SNAPSHOT EPOCH, LIKE THE "locking" REPOSITORY: EVERY CHANGE KEEPS
+ * THE BALANCE AS OF THE START OF THE EPOCH, AND THE SCAN READS THE ACCOUNTS OF ONE SHARD AT A TIME, A PAGE PER TASK OF
+ * THE SHARD
+ */
+@Repository
+@ConditionalOnProperty(prefix = "accounts", name = "repository", havingValue = "sharded")
+public class AccountsRepositorySharded implements AccountsRepository, Closeable {
+
+    private static final long QUIESCE_PAUSE_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    /**
+     * ACCOUNTS READ BY ONE TASK OF A SHARD DURING A SCAN
+     */
+    private static final int SCAN_PAGE_SIZE = 1024;
+
+    private final Shard[] shards;
+
+
+    private final LongAdder contended = new LongAdder();
+
+    /**
+     * TRANSFERS BETWEEN SHARDS IN PROGRESS, AND READS OF SEVERAL ACCOUNTS WAITING FOR THEM TO FINISH. A SINGLE
+     * COUNTER, AS A LongAdder SUM IS NOT AN ATOMIC READ
+     */
+    private final AtomicInteger crossShardTransfers = new AtomicInteger();
+
+    private final AtomicInteger quiescingReads = new AtomicInteger();
+
+    /**
+     * SNAPSHOT EPOCH, ONLY CHANGED WITH ALL THE SHARDS PARKED SO IT IS READ BY ANY SHARD THREAD OR PARKING THREAD
+     */
+    private int epoch;
+
+    /**
+     * HELD WHILE A SNAPSHOT OF AN EPOCH IS READ, A NEW EPOCH WOULD OVERWRITE THE BALANCES IT NEEDS
+     */
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+
+    private final FxRateCache fxRateCache;
+
+    public AccountsRepositorySharded(AccountsProperties properties) {
+        this(properties, FxRateCache.loadOnce(properties));
+    }
+
+    @Autowired
+    public AccountsRepositorySharded(AccountsProperties properties, FxRateCache fxRateCache) {
+        this.shards = new Shard[Math.max(1, properties.getSharded().getShards())];
+        for (int i = 0; i < shards.length; i++) {
+            this.shards[i] = new Shard("accounts-shard-" + i, contended);
+        }
+        this.fxRateCache = fxRateCache;
+    }
+
+    @Override
+    public void createAccount(Account account) throws DuplicateAccountIdException {
+        String accountId = account.getAccountId();
+        int currency = Currencies.numericCode(account.getCurrency());
+        AccountEntry entry = new AccountEntry(accountId, currency,
+                Money.toMinorUnits(account.getBalance(), Currencies.scale(currency)));
+        Shard shard = shards[shardOf(accountId)];
+        if (!shard.call(() -> {
+            entry.create(epoch);
+            return shard.accounts.putIfAbsent(accountId, entry) == null;
+        })) {
+            throw new DuplicateAccountIdException(
+                    "Account id " + accountId + " already exists!");
+        }
+    }
+
+    @Override
+    public Account getAccount(String accountId) {
+        Shard shard = shards[shardOf(accountId)];
+        return shard.call(() -> {
+            AccountEntry account = shard.accounts.get(accountId);
+            return account == null ? null
+                    : new Account(accountId, Money.toAmount(account.balance, Currencies.scale(account.currency)),
+                    Currencies.code(account.currency));
+        });
+    }
+
+    /**
+     * THIS METHOD READ THE ACCOUNTS WITH THEIR SHARDS PARKED, ONCE NO TRANSFER BETWEEN SHARDS IS IN PROGRESS
+     *
+     * @param accountIds The account ids
+     * @return the accounts that exist, in the order of the ids
+     */
+    @Override
+    public List<Account> getAccounts(Collection<String> accountIds) {
+        String[] ids = accountIds.toArray(new String[0]);
+        boolean[] parked = new boolean[shards.length];
+        for (String accountId : ids) {
+            if (accountId != null) {
+                parked[shardOf(accountId)] = true;
+            }
+        }
+        long[] balances = new long[ids.length];
+        AccountEntry[] entries = new AccountEntry[ids.length];
+        quiescingReads.incrementAndGet();
+        try {
+            while (crossShardTransfers.get() != 0) {
+                LockSupport.parkNanos(QUIESCE_PAUSE_NANOS);
+            }
+            CountDownLatch[] resumes = park(parked);
+            try {
+                for (int i = 0; i < ids.length; i++) {
+                    entries[i] = ids[i] == null ? null : entry(ids[i]);
+                    if (entries[i] != null) {
+                        balances[i] = entries[i].balance;
+                    }
+                }
+            } finally {
+                resume(resumes);
+            }
+        } finally {
+            quiescingReads.decrementAndGet();
+        }
+        List<Account> result = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            if (entries[i] != null) {
+                result.add(new Account(ids[i], Money.toAmount(balances[i], Currencies.scale(entries[i].currency)),
+                        Currencies.code(entries[i].currency)));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * THIS METHOD START A NEW EPOCH AND GIVE EVERY ACCOUNT AS OF ITS START TO THE CONSUMER, WHILE TRANSFERS GO ON.
+     * TRANSFERS ARE ONLY PAUSED TO START THE EPOCH, ONCE NO TRANSFER BETWEEN SHARDS IS IN PROGRESS. THE ACCOUNTS
+     * CREATED SINCE THE EPOCH STARTED ARE NOT GIVEN
+     *
+     * @param consumer Receives the accounts, from the calling thread
+     */
+    @Override
+    public void forEachAccount(Consumer<Account> consumer) {
+        snapshotLock.lock();
+        try {
+            int snapshotEpoch;
+            quiescingReads.incrementAndGet();
+            try {
+                while (crossShardTransfers.get() != 0) {
+                    LockSupport.parkNanos(QUIESCE_PAUSE_NANOS);
+                }
+                boolean[] parked = new boolean[shards.length];
+                Arrays.fill(parked, true);
+                CountDownLatch[] resumes = park(parked);
+                try {
+                    snapshotEpoch = ++epoch;
+                } finally {
+                    resume(resumes);
+                }
+            } finally {
+                quiescingReads.decrementAndGet();
+            }
+            AccountEntry[] page = new AccountEntry[SCAN_PAGE_SIZE];
+            long[] balances = new long[SCAN_PAGE_SIZE];
+            boolean[] existed = new boolean[SCAN_PAGE_SIZE];
+            for (Shard shard : shards) {
+                Iterator<AccountEntry> entries = shard.accounts.values().iterator();
+                while (entries.hasNext()) {
+                    int size = 0;
+                    while (size < SCAN_PAGE_SIZE && entries.hasNext()) {
+                        page[size++] = entries.next();
+                    }
+                    int read = size;
+                    //THE BALANCES ARE ONLY READ BY THE SHARD THREAD
+                    shard.call(() -> {
+                        for (int i = 0; i < read; i++) {
+                            existed[i] = page[i].existedAt(snapshotEpoch);
+                            balances[i] = page[i].balanceAt(snapshotEpoch);
+                        }
+                        return null;
+                    });
+                    for (int i = 0; i < size; i++) {
+                        if (existed[i]) {
+                            consumer.accept(new Account(page[i].accountId,
+                                    Money.toAmount(balances[i], Currencies.scale(page[i].currency)),
+                                    Currencies.code(page[i].currency)));
+                        }
+                        page[i] = null;
+                    }
+                }
+            }
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+
+    /**
+     * THIS METHOD TRANSFER AMOUNT BETWEEN TWO ACCOUNTS, IN ONE SHARD TASK OR IN TWO PHASES BETWEEN TWO SHARDS
+     *
+     * @param transfer The transfer object
+     * @return the result of the transfer
+     * @throws InvalidBalanceException if the amount can not be represented in minor units
+     */
+    @Override
+    public TransferResult transfer(Transfer transfer) throws InvalidBalanceException {
+        //CHECKS OF THE IDS AND THE AMOUNT ONLY, THE SHARDS CHECK THE ACCOUNTS
+        TransferStatus status = Transfers.check(transfer, true, true);
+        if (status != null) {
+            return TransferResult.of(status);
+        }
+        String fromId = transfer.getAccountFromId();
+        String toId = transfer.getAccountToId();
+        Shard fromShard = shards[shardOf(fromId)];
+        Shard toShard = shards[shardOf(toId)];
+        FxRates rates = fxRateCache.current();
+        if (fromShard == toShard) {
+            return fromShard.call(() -> {
+                AccountEntry fromAccount = fromShard.accounts.get(fromId);
+                AccountEntry toAccount = fromShard.accounts.get(toId);
+                TransferStatus failure = Transfers.check(transfer, fromAccount != null, toAccount != null);
+                if (failure != null) {
+                    return TransferResult.of(failure);
+                }
+                //IN THE MINOR UNITS OF THE "FROM" ACCOUNT, AN INVALID AMOUNT IS THROWN TO THE CALLER
+                long amount = Money.toMinorUnits(transfer.getAmount(), Currencies.scale(fromAccount.currency));
+                failure = Transfers.checkCurrency(transfer, fromAccount.currency);
+                if (failure != null) {
+                    return TransferResult.of(failure);
+                }
+                long credit = rates.convert(amount, fromAccount.currency, toAccount.currency);
+                if (credit < 0) {
+                    return TransferResult.of(Transfers.conversionFailure(credit));
+                }
+                if (fromAccount.balance < amount) {
+                    return TransferResult.of(TransferStatus.INSUFFICIENT_FUNDS);
+                }
+                if (toAccount.balance > Long.MAX_VALUE - credit) {
+                    return TransferResult.of(TransferStatus.INVALID_AMOUNT);
+                }
+                fromAccount.touch(epoch);
+                toAccount.touch(epoch);
+                fromAccount.balance -= amount;
+                toAccount.balance += credit;
+                return Transfers.applied(fromAccount.currency, toAccount.currency, credit);
+            });
+        }
+        CompletableFuture<TransferResult> result = new CompletableFuture<>();
+        startCrossShardTransfer();
+        fromShard.submit(() -> {
+            AccountEntry fromAccount = fromShard.accounts.get(fromId);
+            long amount;
+            try {
+                amount = fromAccount == null ? 0
+                        : Money.toMinorUnits(transfer.getAmount(), Currencies.scale(fromAccount.currency));
+            } catch (InvalidBalanceException ibe) {
+                //A MISSING ACCOUNT IS REPORTED BEFORE THE AMOUNT, AS BY THE OTHER REPOSITORIES
+                toShard.submit(() -> {
+                    if (toShard.accounts.containsKey(toId)) {
+                        failCrossShardTransfer(result, ibe);
+                    } else {
+                        endCrossShardTransfer(result, TransferResult.of(TransferStatus.TO_ACCOUNT_NOT_FOUND));
+                    }
+                });
+                return;
+            }
+            TransferStatus fromFailure = fromAccount == null ? TransferStatus.FROM_ACCOUNT_NOT_FOUND
+                    : Transfers.checkCurrency(transfer, fromAccount.currency);
+            if (fromFailure != null || fromAccount.balance < amount) {
+                //NOTHING RESERVED, THE "TO" SHARD ONLY TELLS WHICH FAILURE IS REPORTED
+                boolean fromExists = fromAccount != null;
+                int fromCurrency = fromExists ? fromAccount.currency : 0;
+                TransferStatus reported = fromFailure != null ? fromFailure : TransferStatus.INSUFFICIENT_FUNDS;
+                toShard.submit(() -> {
+                    AccountEntry toAccount = toShard.accounts.get(toId);
+                    TransferStatus failure = Transfers.check(transfer, fromExists, toAccount != null);
+                    if (failure == null && reported == TransferStatus.INSUFFICIENT_FUNDS) {
+                        long credit = rates.convert(amount, fromCurrency, toAccount.currency);
+                        failure = credit < 0 ? Transfers.conversionFailure(credit) : null;
+                    }
+                    endCrossShardTransfer(result, TransferResult.of(failure != null ? failure : reported));
+                });
+                return;
+            }
+            //PHASE 1: RESERVE
+            fromAccount.touch(epoch);
+            fromAccount.balance -= amount;
+            int fromCurrency = fromAccount.currency;
+            toShard.submit(() -> {
+                AccountEntry toAccount = toShard.accounts.get(toId);
+                long credit = toAccount == null ? 0 : rates.convert(amount, fromCurrency, toAccount.currency);
+                if (toAccount != null && credit >= 0 && toAccount.balance <= Long.MAX_VALUE - credit) {
+                    //PHASE 2: COMMIT
+                    toAccount.touch(epoch);
+                    toAccount.balance += credit;
+                    endCrossShardTransfer(result, Transfers.applied(fromCurrency, toAccount.currency, credit));
+                    return;
+                }
+                TransferStatus failure = toAccount == null ? TransferStatus.TO_ACCOUNT_NOT_FOUND
+                        : credit < 0 ? Transfers.conversionFailure(credit) : TransferStatus.INVALID_AMOUNT;
+                fromShard.submit(() -> {
+                    //PHASE 2: RELEASE
+                    fromAccount.touch(epoch);
+                    fromAccount.balance += amount;
+                    endCrossShardTransfer(result, TransferResult.of(failure));
+                });
+            });
+        });
+        return Shard.await(result);
+    }
+
+    /**
+     * THIS METHOD APPLY A BATCH OF TRANSFERS WITH ALL THE SHARDS OF THE INVOLVED ACCOUNTS PARKED, TAKEN ONCE
+     *
+     * @param transfers The transfers
+     * @param atomic    All-or-nothing
+     * @return the result of every transfer
+     */
+    @Override
+    public TransferResult[] transfer(List<Transfer> transfers, boolean atomic) {
+        int size = transfers.size();
+        boolean[] parked = new boolean[shards.length];
+        for (Transfer transfer : transfers) {
+            if (transfer.getAccountFromId() != null) {
+                parked[shardOf(transfer.getAccountFromId())] = true;
+            }
+            if (transfer.getAccountToId() != null) {
+                parked[shardOf(transfer.getAccountToId())] = true;
+            }
+        }
+        CountDownLatch[] resumes = park(parked);
+        try {
+            TransferStatus[] statuses = new TransferStatus[size];
+            AccountEntry[] fromAccounts = new AccountEntry[size];
+            AccountEntry[] toAccounts = new AccountEntry[size];
+            long[] amounts = new long[size];
+            long[] credits = new long[size];
+            FxRates rates = fxRateCache.current();
+            boolean valid = true;
+            for (int i = 0; i < size; i++) {
+                Transfer transfer = transfers.get(i);
+                fromAccounts[i] = transfer.getAccountFromId() == null ? null : entry(transfer.getAccountFromId());
+                toAccounts[i] = transfer.getAccountToId() == null ? null : entry(transfer.getAccountToId());
+                statuses[i] = Transfers.check(transfer, fromAccounts[i] != null, toAccounts[i] != null);
+                if (statuses[i] == null) {
+                    try {
+                        amounts[i] = Money.toMinorUnits(transfer.getAmount(),
+                                Currencies.scale(fromAccounts[i].currency));
+                        statuses[i] = Transfers.checkCurrency(transfer, fromAccounts[i].currency);
+                    } catch (InvalidBalanceException ibe) {
+                        statuses[i] = TransferStatus.INVALID_AMOUNT;
+                    }
+                }
+                if (statuses[i] == null) {
+                    credits[i] = rates.convert(amounts[i], fromAccounts[i].currency, toAccounts[i].currency);
+                    if (credits[i] < 0) {
+                        statuses[i] = Transfers.conversionFailure(credits[i]);
+                    }
+                }
+                valid &= statuses[i] == null;
+            }
+            if (atomic && !valid) {
+                return Transfers.notApplied(statuses);
+            }
+            for (int i = 0; i < size; i++) {
+                if (statuses[i] != null) {
+                    continue;
+                }
+                if (fromAccounts[i].balance < amounts[i]) {
+                    statuses[i] = TransferStatus.INSUFFICIENT_FUNDS;
+                } else if (toAccounts[i].balance > Long.MAX_VALUE - credits[i]) {
+                    statuses[i] = TransferStatus.INVALID_AMOUNT;
+                } else {
+                    fromAccounts[i].touch(epoch);
+                    toAccounts[i].touch(epoch);
+                    fromAccounts[i].balance -= amounts[i];
+                    toAccounts[i].balance += credits[i];
+                    statuses[i] = TransferStatus.OK;
+                }
+                if (atomic && statuses[i] != TransferStatus.OK) {
+                    //UNDO THE APPLIED TRANSFERS IN REVERSE ORDER, STILL PARKED SO NOBODY SAW THEM
+                    for (int j = i - 1; j >= 0; j--) {
+                        fromAccounts[j].balance += amounts[j];
+                        toAccounts[j].balance -= credits[j];
+                        statuses[j] = null;
+                    }
+                    return Transfers.notApplied(statuses);
+                }
+            }
+            TransferResult[] results = new TransferResult[size];
+            for (int i = 0; i < size; i++) {
+                results[i] = statuses[i] == TransferStatus.OK
+                        ? Transfers.applied(fromAccounts[i].currency, toAccounts[i].currency, credits[i])
+                        : TransferResult.of(statuses[i]);
+            }
+            return results;
+        } finally {
+            resume(resumes);
+        }
+    }
+
+    @Override
+    public void clearAccounts() {
+        boolean[] parked = new boolean[shards.length];
+        Arrays.fill(parked, true);
+        CountDownLatch[] resumes = park(parked);
+        try {
+            for (Shard shard : shards) {
+                shard.accounts.clear();
+            }
+        } finally {
+            resume(resumes);
+        }
+    }
+
+    @Override
+    public int countAccounts() {
+        int count = 0;
+        for (Shard shard : shards) {
+            count += shard.call(shard.accounts::size);
+        }
+        return count;
+    }
+
+    @Override
+    public long getContentionCount() {
+        return contended.sum();
+    }
+
+    @PreDestroy
+    @Override
+    public void close() {
+        for (Shard shard : shards) {
+            shard.close();
+        }
+    }
+
+    private int shardOf(String accountId) {
+        int hash = accountId.hashCode();
+        return Math.floorMod(hash ^ (hash >>> 16), shards.length);
+    }
+
+    /**
+     * THIS METHOD COUNT A TRANSFER BETWEEN SHARDS IN PROGRESS, WAITING WHILE A READ OF SEVERAL ACCOUNTS NEEDS NONE
+     */
+    private void startCrossShardTransfer() {
+        while (true) {
+            crossShardTransfers.incrementAndGet();
+            if (quiescingReads.get() == 0) {
+                return;
+            }
+            crossShardTransfers.decrementAndGet();
+            while (quiescingReads.get() != 0) {
+                LockSupport.parkNanos(QUIESCE_PAUSE_NANOS);
+            }
+        }
+    }
+
+    private void endCrossShardTransfer(CompletableFuture<TransferResult> future, TransferResult result) {
+        crossShardTransfers.decrementAndGet();
+        future.complete(result);
+    }
+
+    private void failCrossShardTransfer(CompletableFuture<TransferResult> future, RuntimeException failure) {
+        crossShardTransfers.decrementAndGet();
+        future.completeExceptionally(failure);
+    }
+
+    /**
+     * MUST BE CALLED WITH THE SHARD OF THE ACCOUNT PARKED
+     */
+    private AccountEntry entry(String accountId) {
+        return shards[shardOf(accountId)].accounts.get(accountId);
+    }
+
+    /**
+     * THIS METHOD PARK THE SHARDS IN ASCENDING ORDER
+     *
+     * @param parked Shards to park
+     * @return latches that resume the parked shards
+     */
+    private CountDownLatch[] park(boolean[] parked) {
+        CountDownLatch[] resumes = new CountDownLatch[shards.length];
+        try {
+            for (int i = 0; i < shards.length; i++) {
+                if (parked[i]) {
+                    resumes[i] = shards[i].park();
+                }
+            }
+        } catch (RuntimeException re) {
+            resume(resumes);
+            throw re;
+        }
+        return resumes;
+    }
+
+    private static void resume(CountDownLatch[] resumes) {
+        for (CountDownLatch resume : resumes) {
+            if (resume != null) {
+                resume.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * CREDITS OF A HOT ACCOUNT NOT FOLDED INTO ITS BALANCE YET, SPREAD OVER CELLS AS IN LongAdder SO THAT THREADS
+ * CREDITING THE SAME ACCOUNT DO NOT CONTEND ON ONE LOCK OR ONE CACHE LINE. A THREAD ALWAYS ADDS TO THE CELL OF
+ * ITS ID, EVERY CELL IS ON ITS OWN CACHE LINE
+ */
+final class CreditCells {
+
+    /**
+     * LONGS PER CACHE LINE, ONLY THE FIRST ONE OF EVERY LINE IS A CELL
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells;
+
+    private final int mask;
+
+    CreditCells(int cells) {
+        int size = 1;
+        while (size < cells) {
+            size <<= 1;
+        }
+        this.cells = new AtomicLongArray(size * PADDING);
+        this.mask = size - 1;
+    }
+
+    void add(long amount) {
+        long id = Thread.currentThread().getId();
+        int hash = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        cells.getAndAdd(((hash ^ (hash >>> 16)) & mask) * PADDING, amount);
+    }
+
+    /**
+     * SUM OF THE CELLS, CREDITS ADDED WHILE IT IS COMPUTED MAY OR MAY NOT BE INCLUDED
+     */
+    long sum() {
+        long sum = 0;
+        for (int cell = 0; cell <= mask; cell++) {
+            sum += cells.get(cell * PADDING);
+        }
+        return sum;
+    }
+
+    /**
+     * THIS METHOD EMPTY THE CELLS, EVERY CREDIT IS EITHER RETURNED OR LEFT IN ITS CELL
+     *
+     * @return sum of the emptied cells
+     */
+    long drain() {
+        long sum = 0;
+        for (int cell = 0; cell <= mask; cell++) {
+            if (cells.get(cell * PADDING) != 0) {
+                sum += cells.getAndSet(cell * PADDING, 0);
+            }
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,183 @@
+package com.db.awmd.challenge.repository;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * FIXED SET OF LOCKS SHARED BY ALL THE ACCOUNTS, EVERY ACCOUNT IS GUARDED BY THE STRIPE ITS ID HASHES TO.
+ * WHEN MORE THAN ONE STRIPE IS NEEDED THEY ARE ALWAYS TAKEN IN ASCENDING INDEX ORDER, SO TWO THREADS
+ * LOCKING THE SAME ACCOUNTS IN OPPOSITE DIRECTIONS CAN NOT DEADLOCK
+ */
+class LockStripes {
+
+    private final ReentrantLock[] locks;
+
+    private final int mask;
+
+    private final LongAdder contended = new LongAdder();
+
+    LockStripes(int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.locks = new ReentrantLock[size];
+        for (int i = 0; i < size; i++) {
+            this.locks[i] = new ReentrantLock();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * THIS METHOD RETURN THE STRIPE THAT GUARDS THE ACCOUNT
+     *
+     * @param accountId The account id
+     * @return stripe index
+     */
+    int indexOf(String accountId) {
+        return indexOf(accountId.hashCode());
+    }
+
+    /**
+     * THIS METHOD RETURN THE STRIPE THAT GUARDS AN ACCOUNT KNOWN BY AN INT, A HASH OR AN INTERNED ID
+     *
+     * @param key The account key
+     * @return stripe index
+     */
+    int indexOf(int key) {
+        return (key ^ (key >>> 16)) & this.mask;
+    }
+
+    /**
+     * THIS METHOD LOCK A STRIPE
+     *
+     * @param stripe The stripe
+     * @return true if the stripe was held by another thread
+     */
+    boolean lock(int stripe) {
+        ReentrantLock lock = this.locks[stripe];
+        //COUNT THE CONTENDED ACQUISITIONS ONLY, THE UNCONTENDED PATH STAYS A SINGLE CAS
+        if (!lock.tryLock()) {
+            this.contended.increment();
+            lock.lock();
+            return true;
+        }
+        return false;
+    }
+
+    void unlock(int stripe) {
+        this.locks[stripe].unlock();
+    }
+
+    /**
+     * THIS METHOD LOCK TWO STRIPES IN ASCENDING ORDER, A SHARED STRIPE IS LOCKED ONLY ONCE
+     *
+     * @param first  First stripe
+     * @param second Second stripe
+     * @return true if the second stripe was held by another thread
+     */
+    boolean lock(int first, int second) {
+        if (first == second) {
+            return lock(first);
+        }
+        if (first < second) {
+            lock(first);
+            return lock(second);
+        }
+        boolean contended = lock(second);
+        lock(first);
+        return contended;
+    }
+
+    void unlock(int first, int second) {
+        unlock(first);
+        if (first != second) {
+            unlock(second);
+        }
+    }
+
+    /**
+     * THIS METHOD LOCK A SET OF STRIPES
+     *
+     * @param stripes Distinct stripes in ascending order
+     */
+    void lock(int[] stripes) {
+        for (int stripe : stripes) {
+            lock(stripe);
+        }
+    }
+
+    void unlock(int[] stripes) {
+        for (int i = stripes.length - 1; i >= 0; i--) {
+            unlock(stripes[i]);
+        }
+    }
+
+    /**
+     * THIS METHOD LOCK EVERY STRIPE IN ASCENDING ORDER, NO ACCOUNT CAN BE READ OR CHANGED UNTIL unlockAll
+     */
+    void lockAll() {
+        for (int stripe = 0; stripe < this.locks.length; stripe++) {
+            lock(stripe);
+        }
+    }
+
+    void unlockAll() {
+        for (int stripe = this.locks.length - 1; stripe >= 0; stripe--) {
+            unlock(stripe);
+        }
+    }
+
+    /**
+     * THIS METHOD RETURN THE DISTINCT STRIPES OF THE ACCOUNTS IN ASCENDING ORDER, READY TO BE LOCKED
+     *
+     * @param accountIds The account ids, null entries are ignored
+     * @return distinct stripes
+     */
+    int[] stripesOf(String[] accountIds) {
+        int[] stripes = new int[accountIds.length];
+        int count = 0;
+        for (String accountId : accountIds) {
+            if (accountId != null) {
+                stripes[count++] = indexOf(accountId);
+            }
+        }
+        return ascending(stripes, count);
+    }
+
+    /**
+     * THIS METHOD RETURN THE DISTINCT STRIPES OF THE ACCOUNTS IN ASCENDING ORDER, READY TO BE LOCKED
+     *
+     * @param keys The account keys, negative entries are ignored
+     * @return distinct stripes
+     */
+    int[] stripesOf(int[] keys) {
+        int[] stripes = new int[keys.length];
+        int count = 0;
+        for (int key : keys) {
+            if (key >= 0) {
+                stripes[count++] = indexOf(key);
+            }
+        }
+        return ascending(stripes, count);
+    }
+
+    private static int[] ascending(int[] stripes, int count) {
+        Arrays.sort(stripes, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++) {
+            if (distinct == 0 || stripes[distinct - 1] != stripes[i]) {
+                stripes[distinct++] = stripes[i];
+            }
+        }
+        return Arrays.copyOf(stripes, distinct);
+    }
+
+    /**
+     * NUMBER OF LOCK ACQUISITIONS THAT HAD TO WAIT FOR ANOTHER THREAD
+     */
+    long getContendedCount() {
+        return this.contended.sum();
+    }
+}
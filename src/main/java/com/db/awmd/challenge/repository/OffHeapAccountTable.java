@@ -0,0 +1,332 @@
+package com.db.awmd.challenge.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * ACCOUNT TABLE OUTSIDE OF THE JAVA HEAP. EVERY ACCOUNT ID IS INTERNED TO A DENSE INT, ITS NUMBER IN CREATION ORDER,
+ * THAT ADDRESSES A FIXED-WIDTH RECORD [BALANCE][CURRENCY:16 | KEY OFFSET:48][EPOCH][PRE-IMAGE], THE LAST TWO AS IN
+ * AccountEntry SO A SCAN READS THE BALANCES AS OF THE START OF ITS EPOCH. THE IDS ARE STORED ONCE, AS
+ * [LENGTH][UTF-8 BYTES], IN A KEY ARENA, AND AN OPEN-ADDRESSING INDEX OF [HASH][DENSE INT + 1] SLOTS WITH LINEAR
+ * PROBING MAPS THEM BACK.
+ * INDEX, ARENA AND RECORDS ARE DIRECT BUFFERS ALLOCATED IN CHUNKS, SO THE HEAP ONLY HOLDS THE CHUNK REFERENCES.
+ * <p>
+ * THE INDEX AND THE ARENA ARE GUARDED BY A STAMPED LOCK: LOOKUPS ARE OPTIMISTIC READS, INSERTS AND RESIZES TAKE THE
+ * WRITE LOCK. THE BALANCES ARE NOT GUARDED HERE, THE CALLER READS AND WRITES THEM UNDER ITS OWN LOCKS
+ */
+class OffHeapAccountTable {
+
+    static final int NOT_FOUND = -1;
+
+    private static final int RECORD_SIZE = 32;
+
+    private static final int EPOCH = 16;
+
+    private static final int PRE_IMAGE = 24;
+
+    private static final int RECORDS_PER_CHUNK = 1 << 20;
+
+    private static final int ARENA_CHUNK_SIZE = 1 << 26;
+
+    private static final int MAX_INDEX_SLOTS = 1 << 28;
+
+    private static final int CURRENCY_SHIFT = 48;
+
+    private static final long KEY_OFFSET_MASK = (1L << CURRENCY_SHIFT) - 1;
+
+    private final StampedLock lock = new StampedLock();
+
+    private ByteBuffer index;
+
+    private int indexMask;
+
+    private ByteBuffer[] records = new ByteBuffer[0];
+
+    private ByteBuffer[] arena = new ByteBuffer[0];
+
+    private long arenaEnd;
+
+    private volatile int size;
+
+    /**
+     * @param expectedAccounts Number of accounts the index is sized for before its first resize
+     */
+    OffHeapAccountTable(int expectedAccounts) {
+        int slots = 16;
+        while (slots < expectedAccounts * 2 && slots < MAX_INDEX_SLOTS) {
+            slots <<= 1;
+        }
+        this.index = ByteBuffer.allocateDirect(slots * 8);
+        this.indexMask = slots - 1;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * THIS METHOD RETURN THE DENSE INT OF AN ACCOUNT ID
+     *
+     * @param accountId The account id
+     * @return dense int, or NOT_FOUND
+     */
+    int find(String accountId) {
+        int hash = hash(accountId);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                int found = probe(accountId, hash);
+                if (lock.validate(stamp)) {
+                    return found;
+                }
+            } catch (RuntimeException re) {
+                //A CONCURRENT RESIZE MOVED THE DATA UNDER THE OPTIMISTIC READ, RETRY UNDER THE READ LOCK
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            return probe(accountId, hash);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * THIS METHOD ADD AN ACCOUNT
+     *
+     * @param accountId The account id
+     * @param currency  Numeric code of the currency
+     * @param balance   Initial balance
+     * @return dense int of the new account, or NOT_FOUND if the id already exists
+     */
+    int insert(String accountId, int currency, long balance) {
+        int hash = hash(accountId);
+        byte[] key = accountId.getBytes(StandardCharsets.UTF_8);
+        long stamp = lock.writeLock();
+        try {
+            if (probe(accountId, hash) != NOT_FOUND) {
+                return NOT_FOUND;
+            }
+            if ((long) (size + 1) * 2 > indexMask + 1) {
+                resize();
+            }
+            int account = size;
+            if (account == (long) records.length * RECORDS_PER_CHUNK) {
+                records = Arrays.copyOf(records, records.length + 1);
+                records[records.length - 1] = ByteBuffer.allocateDirect(RECORDS_PER_CHUNK * RECORD_SIZE);
+            }
+            long keyOffset = appendKey(key);
+            ByteBuffer chunk = records[account / RECORDS_PER_CHUNK];
+            int position = (account % RECORDS_PER_CHUNK) * RECORD_SIZE;
+            chunk.putLong(position, balance);
+            chunk.putLong(position + 8, (long) currency << CURRENCY_SHIFT | keyOffset);
+            //A RECORD REUSED AFTER clear KEEPS NO EPOCH OF THE PREVIOUS ACCOUNT
+            chunk.putLong(position + EPOCH, 0);
+            chunk.putLong(position + PRE_IMAGE, balance);
+            int slot = hash & indexMask;
+            while (index.getLong(slot * 8) != 0) {
+                slot = (slot + 1) & indexMask;
+            }
+            index.putLong(slot * 8, (long) hash << 32 | (account + 1));
+            size = account + 1;
+            return account;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * BALANCE OF AN ACCOUNT, THE CALLER MUST HOLD THE LOCK THAT GUARDS IT
+     */
+    long balance(int account) {
+        return records[account / RECORDS_PER_CHUNK].getLong((account % RECORDS_PER_CHUNK) * RECORD_SIZE);
+    }
+
+    void balance(int account, long balance) {
+        records[account / RECORDS_PER_CHUNK].putLong((account % RECORDS_PER_CHUNK) * RECORD_SIZE, balance);
+    }
+
+    /**
+     * THIS METHOD KEEP THE BALANCE AS OF THE START OF THE EPOCH BEFORE ITS FIRST CHANGE IN THE EPOCH, THE CALLER MUST
+     * HOLD THE LOCK THAT GUARDS THE BALANCE AND CALL IT BEFORE CHANGING IT
+     *
+     * @param account Dense int
+     * @param current Current epoch
+     */
+    void touch(int account, int current) {
+        ByteBuffer chunk = records[account / RECORDS_PER_CHUNK];
+        int position = (account % RECORDS_PER_CHUNK) * RECORD_SIZE;
+        if (chunk.getInt(position + EPOCH) != current) {
+            chunk.putLong(position + PRE_IMAGE, chunk.getLong(position));
+            chunk.putInt(position + EPOCH, current);
+        }
+    }
+
+    /**
+     * BALANCE OF AN ACCOUNT AS OF THE START OF AN EPOCH, THE CALLER MUST HOLD THE LOCK THAT GUARDS IT
+     */
+    long balanceAt(int account, int snapshot) {
+        ByteBuffer chunk = records[account / RECORDS_PER_CHUNK];
+        int position = (account % RECORDS_PER_CHUNK) * RECORD_SIZE;
+        return chunk.getInt(position + EPOCH) == snapshot ? chunk.getLong(position + PRE_IMAGE) : chunk.getLong(position);
+    }
+
+    /**
+     * NUMERIC CODE OF THE CURRENCY OF AN ACCOUNT, WRITTEN BEFORE THE ACCOUNT IS PUBLISHED AND NEVER CHANGED
+     */
+    int currency(int account) {
+        return (int) (records[account / RECORDS_PER_CHUNK].getLong((account % RECORDS_PER_CHUNK) * RECORD_SIZE + 8)
+                >>> CURRENCY_SHIFT);
+    }
+
+    /**
+     * THIS METHOD RETURN THE ID OF AN ACCOUNT
+     *
+     * @param account Dense int
+     * @return account id
+     */
+    String accountId(int account) {
+        long stamp = lock.readLock();
+        try {
+            long keyOffset = keyOffset(account);
+            ByteBuffer chunk = arena[(int) (keyOffset / ARENA_CHUNK_SIZE)];
+            int position = (int) (keyOffset % ARENA_CHUNK_SIZE);
+            byte[] key = new byte[chunk.getInt(position)];
+            for (int i = 0; i < key.length; i++) {
+                key[i] = chunk.get(position + 4 + i);
+            }
+            return new String(key, StandardCharsets.UTF_8);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * THIS METHOD REMOVE ALL THE ACCOUNTS, KEEPING THE ALLOCATED MEMORY
+     */
+    void clear() {
+        long stamp = lock.writeLock();
+        try {
+            for (int slot = 0; slot <= indexMask; slot++) {
+                index.putLong(slot * 8, 0);
+            }
+            arenaEnd = 0;
+            size = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private int probe(String accountId, int hash) {
+        for (int slot = hash & indexMask; ; slot = (slot + 1) & indexMask) {
+            long entry = index.getLong(slot * 8);
+            if (entry == 0) {
+                return NOT_FOUND;
+            }
+            if ((int) (entry >>> 32) == hash) {
+                int account = (int) entry - 1;
+                if (keyEquals(account, accountId)) {
+                    return account;
+                }
+            }
+        }
+    }
+
+    /**
+     * THIS METHOD COMPARE THE STORED ID WITH THE GIVEN ONE, ASCII IDS ARE COMPARED WITHOUT ENCODING THEM
+     */
+    private boolean keyEquals(int account, String accountId) {
+        long keyOffset = keyOffset(account);
+        ByteBuffer chunk = arena[(int) (keyOffset / ARENA_CHUNK_SIZE)];
+        int position = (int) (keyOffset % ARENA_CHUNK_SIZE);
+        int length = chunk.getInt(position);
+        int chars = accountId.length();
+        boolean ascii = true;
+        if (length == chars) {
+            for (int i = 0; i < chars; i++) {
+                char c = accountId.charAt(i);
+                if (c >= 0x80) {
+                    ascii = false;
+                    break;
+                }
+                if (chunk.get(position + 4 + i) != c) {
+                    return false;
+                }
+            }
+            if (ascii) {
+                return true;
+            }
+        }
+        byte[] key = accountId.getBytes(StandardCharsets.UTF_8);
+        if (key.length != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (chunk.get(position + 4 + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long keyOffset(int account) {
+        return records[account / RECORDS_PER_CHUNK].getLong((account % RECORDS_PER_CHUNK) * RECORD_SIZE + 8)
+                & KEY_OFFSET_MASK;
+    }
+
+    private long appendKey(byte[] key) {
+        if (4 + key.length > ARENA_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Account id too long");
+        }
+        long chunkEnd = (arenaEnd / ARENA_CHUNK_SIZE + 1) * ARENA_CHUNK_SIZE;
+        if (arenaEnd + 4 + key.length > chunkEnd) {
+            //KEYS NEVER CROSS A CHUNK BOUNDARY
+            arenaEnd = chunkEnd;
+        }
+        int chunkIndex = (int) (arenaEnd / ARENA_CHUNK_SIZE);
+        if (chunkIndex == arena.length) {
+            arena = Arrays.copyOf(arena, arena.length + 1);
+            arena[chunkIndex] = ByteBuffer.allocateDirect(ARENA_CHUNK_SIZE);
+        }
+        ByteBuffer chunk = arena[chunkIndex];
+        int position = (int) (arenaEnd % ARENA_CHUNK_SIZE);
+        chunk.putInt(position, key.length);
+        for (int i = 0; i < key.length; i++) {
+            chunk.put(position + 4 + i, key[i]);
+        }
+        long keyOffset = arenaEnd;
+        arenaEnd += 4 + key.length;
+        return keyOffset;
+    }
+
+    /**
+     * THIS METHOD DOUBLE THE INDEX, MUST BE CALLED UNDER THE WRITE LOCK
+     */
+    private void resize() {
+        int slots = (indexMask + 1) * 2;
+        if (slots > MAX_INDEX_SLOTS) {
+            throw new IllegalStateException("Account table is full");
+        }
+        ByteBuffer resized = ByteBuffer.allocateDirect(slots * 8);
+        int mask = slots - 1;
+        for (int slot = 0; slot <= indexMask; slot++) {
+            long entry = index.getLong(slot * 8);
+            if (entry != 0) {
+                int target = (int) (entry >>> 32) & mask;
+                while (resized.getLong(target * 8) != 0) {
+                    target = (target + 1) & mask;
+                }
+                resized.putLong(target * 8, entry);
+            }
+        }
+        index = resized;
+        indexMask = mask;
+    }
+
+    private static int hash(String accountId) {
+        int hash = accountId.hashCode() * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,159 @@
+package com.db.awmd.challenge.repository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+/**
+ * PARTITION OF THE ACCOUNTS OWNED BY A SINGLE THREAD. THE ACCOUNTS ARE ONLY READ AND CHANGED BY TASKS RUN IN ORDER
+ * BY THAT THREAD, SO THEY NEED NO LOCKS; OTHER THREADS, THE OTHER SHARDS INCLUDED, SUBMIT TASKS TO ITS LOCK-FREE
+ * MAILBOX. THE THREAD PARKS WHEN THE MAILBOX IS EMPTY AND IS UNPARKED BY THE NEXT SUBMISSION
+ */
+@Slf4j
+final class Shard {
+
+    /**
+     * ONLY ACCESSED BY THE SHARD THREAD, OR BY THE THREAD THAT PARKED THE SHARD. CONCURRENT SO A SCAN CAN ITERATE
+     * THE ENTRIES FROM ITS OWN THREAD, THEIR BALANCES ARE STILL READ BY THE SHARD THREAD
+     */
+    final Map<String, AccountEntry> accounts = new ConcurrentHashMap<>();
+
+    private final Queue<Runnable> mailbox = new ConcurrentLinkedQueue<>();
+
+    private final LongAdder contended;
+
+    private final Thread thread;
+
+    private volatile boolean waiting;
+
+    private volatile boolean running = true;
+
+    Shard(String name, LongAdder contended) {
+        this.contended = contended;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * THIS METHOD QUEUE A TASK, RUN LATER BY THE SHARD THREAD
+     *
+     * @param task The task
+     */
+    void submit(Runnable task) {
+        //A TASK QUEUED BEHIND OTHERS HAS TO WAIT FOR THEM
+        if (!mailbox.isEmpty()) {
+            contended.increment();
+        }
+        mailbox.offer(task);
+        if (waiting) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * THIS METHOD RUN A TASK IN THE SHARD THREAD AND WAIT FOR ITS RESULT
+     *
+     * @param task The task
+     * @return result of the task
+     */
+    <T> T call(Supplier<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        submit(() -> {
+            try {
+                result.complete(task.get());
+            } catch (Throwable t) {
+                //AN ERROR TOO, OR THE CALLER WOULD WAIT FOREVER
+                result.completeExceptionally(t);
+            }
+        });
+        return await(result);
+    }
+
+    /**
+     * THIS METHOD STOP THE SHARD THREAD BETWEEN TWO TASKS, ONCE IT RETURNS THE CALLER OWNS THE ACCOUNTS UNTIL IT
+     * COUNTS DOWN THE RETURNED LATCH. SHARDS ARE ALWAYS PARKED IN ASCENDING ORDER, SO TWO CALLERS CAN NOT DEADLOCK
+     *
+     * @return latch that resumes the shard thread
+     */
+    CountDownLatch park() {
+        CountDownLatch resume = new CountDownLatch(1);
+        CompletableFuture<Void> parked = new CompletableFuture<>();
+        submit(() -> {
+            parked.complete(null);
+            boolean interrupted = false;
+            while (resume.getCount() > 0) {
+                try {
+                    resume.await();
+                } catch (InterruptedException ie) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        await(parked);
+        return resume;
+    }
+
+    /**
+     * THIS METHOD RUN THE TASKS ALREADY QUEUED AND STOP THE SHARD THREAD
+     */
+    void close() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static <T> T await(CompletableFuture<T> result) {
+        try {
+            return result.join();
+        } catch (CompletionException ce) {
+            if (ce.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ce.getCause();
+            }
+            if (ce.getCause() instanceof Error) {
+                throw (Error) ce.getCause();
+            }
+            throw ce;
+        }
+    }
+
+    private void run() {
+        while (true) {
+            Runnable task = mailbox.poll();
+            if (task == null) {
+                if (!running) {
+                    return;
+                }
+                //PUBLISH THE WAIT BEFORE THE LAST CHECK, A SUBMISSION EITHER IS SEEN HERE OR UNPARKS THE THREAD
+                waiting = true;
+                if (mailbox.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                waiting = false;
+                continue;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                //THE THREAD KEEPS RUNNING THE TASKS OF THE OTHER CALLERS
+                log.error("Task of {} failed", thread.getName(), t);
+            }
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package com.db.awmd.challenge.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * BINARY SNAPSHOT OF THE ACCOUNT TABLE: [MAGIC][VERSION][SEGMENT], ONE [ID LENGTH][ID][CURRENCY][BALANCE] PER ACCOUNT,
+ * THEN [COUNT][CRC32]. SEGMENT IS THE FIRST WRITE-AHEAD LOG SEGMENT NOT COVERED BY THE SNAPSHOT, CURRENCY IS THE
+ * NUMERIC CODE AS A SHORT AND BALANCE IS IN ITS MINOR UNITS.
+ * A SNAPSHOT IS WRITTEN TO A TEMPORARY FILE AND RENAMED ONCE COMPLETE, AND IS LOADED THROUGH MEMORY MAPPED REGIONS
+ */
+final class SnapshotFile {
+
+    private static final String PREFIX = "accounts-";
+
+    private static final String SUFFIX = ".snapshot";
+
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+
+    private static final int MAGIC = 0x41434353;
+
+    private static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+
+    private static final int TRAILER_SIZE = 8 + 4;
+
+    private static final int MAX_REGION_SIZE = 1 << 30;
+
+    private SnapshotFile() {
+    }
+
+    /**
+     * RECEIVES THE ACCOUNTS OF A SNAPSHOT
+     */
+    interface AccountVisitor {
+
+        void account(String accountId, int currency, long balance);
+    }
+
+    /**
+     * THIS METHOD RETURN THE NEWEST COMPLETE SNAPSHOT OF THE DIRECTORY
+     *
+     * @param directory Snapshot directory
+     * @return snapshot, or null if there is none
+     */
+    static Path latest(Path directory) throws IOException {
+        Path latest = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : files) {
+                if (latest == null || file.getFileName().toString().compareTo(latest.getFileName().toString()) > 0) {
+                    latest = file;
+                }
+            }
+        }
+        return latest;
+    }
+
+    /**
+     * THIS METHOD DELETE THE SNAPSHOTS OLDER THAN THE GIVEN ONE AND THE UNFINISHED ONES
+     *
+     * @param directory Snapshot directory
+     * @param keep      Snapshot to keep
+     */
+    static void deleteOthers(Path directory, Path keep) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + "{" + SUFFIX + "," + SUFFIX + TEMPORARY_SUFFIX + "}")) {
+            for (Path file : files) {
+                if (!file.equals(keep)) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+
+    /**
+     * THIS METHOD READ A SNAPSHOT, AFTER CHECKING ITS CRC
+     *
+     * @param file    Snapshot
+     * @param visitor Receives every account
+     * @return first write-ahead log segment to replay after the snapshot
+     */
+    static long load(Path file, AccountVisitor visitor) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE + TRAILER_SIZE) {
+                throw new IOException("Truncated snapshot " + file);
+            }
+            long bodyEnd = size - TRAILER_SIZE;
+            CRC32 crc = new CRC32();
+            for (long position = 0; position < bodyEnd; position += MAX_REGION_SIZE) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(MAX_REGION_SIZE, bodyEnd - position)));
+            }
+            ByteBuffer trailer = channel.map(FileChannel.MapMode.READ_ONLY, bodyEnd, TRAILER_SIZE);
+            long count = trailer.getLong();
+            if (trailer.getInt() != (int) crc.getValue()) {
+                throw new IOException("Corrupt snapshot " + file);
+            }
+
+            Regions regions = new Regions(channel, bodyEnd);
+            ByteBuffer header = regions.next(HEADER_SIZE);
+            if (header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("Unknown snapshot format " + file);
+            }
+            long segment = header.getLong();
+            byte[] id = new byte[64];
+            for (long i = 0; i < count; i++) {
+                int length = regions.next(4).getInt();
+                if (length > id.length) {
+                    id = new byte[length];
+                }
+                ByteBuffer account = regions.next(length + 2 + 8);
+                account.get(id, 0, length);
+                visitor.account(new String(id, 0, length, StandardCharsets.UTF_8), account.getShort(), account.getLong());
+            }
+            return segment;
+        }
+    }
+
+    /**
+     * THIS METHOD START A NEW SNAPSHOT
+     *
+     * @param directory Snapshot directory
+     * @param segment   First write-ahead log segment not covered by the snapshot
+     * @return writer
+     */
+    static Writer create(Path directory, long segment) throws IOException {
+        return new Writer(directory.resolve(String.format("%s%016d%s", PREFIX, segment, SUFFIX)), segment);
+    }
+
+    /**
+     * WRITES THE ACCOUNTS OF A SNAPSHOT THROUGH A BUFFER, THE FILE ONLY GETS ITS FINAL NAME ON commit
+     */
+    static final class Writer implements Closeable {
+
+        private final Path file;
+
+        private final Path temporary;
+
+        private final FileChannel channel;
+
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+
+        private final CRC32 crc = new CRC32();
+
+        private long count;
+
+        private boolean committed;
+
+        private Writer(Path file, long segment) throws IOException {
+            this.file = file;
+            this.temporary = file.resolveSibling(file.getFileName() + TEMPORARY_SUFFIX);
+            this.channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            buffer.putInt(MAGIC).putInt(VERSION).putLong(segment);
+        }
+
+        void write(String accountId, int currency, long balance) throws IOException {
+            byte[] id = accountId.getBytes(StandardCharsets.UTF_8);
+            if (buffer.remaining() < 4 + id.length + 2 + 8) {
+                flush();
+            }
+            buffer.putInt(id.length).put(id).putShort((short) currency).putLong(balance);
+            count++;
+        }
+
+        /**
+         * THIS METHOD WRITE THE TRAILER, FSYNC THE FILE AND GIVE IT ITS FINAL NAME
+         *
+         * @return snapshot
+         */
+        Path commit() throws IOException {
+            flush();
+            buffer.putLong(count).putInt((int) crc.getValue());
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+            channel.close();
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE);
+            committed = true;
+            return file;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (!committed) {
+                channel.close();
+                Files.deleteIfExists(temporary);
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            crc.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+
+    /**
+     * READS A FILE OF ANY SIZE THROUGH MAPPED REGIONS OF AT MOST MAX_REGION_SIZE BYTES
+     */
+    private static final class Regions {
+
+        private final FileChannel channel;
+
+        private final long end;
+
+        private long regionStart;
+
+        private MappedByteBuffer region;
+
+        private Regions(FileChannel channel, long end) throws IOException {
+            this.channel = channel;
+            this.end = end;
+            map(0);
+        }
+
+        /**
+         * THIS METHOD RETURN THE REGION POSITIONED AT THE NEXT length BYTES, MAPPING A NEW ONE IF THEY DO NOT FIT
+         */
+        private ByteBuffer next(int length) throws IOException {
+            if (region.remaining() < length) {
+                map(regionStart + region.position());
+                if (region.remaining() < length) {
+                    throw new IOException("Truncated snapshot record");
+                }
+            }
+            return region;
+        }
+
+        private void map(long start) throws IOException {
+            this.regionStart = start;
+            this.region = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(MAX_REGION_SIZE, end - start));
+        }
+    }
+}
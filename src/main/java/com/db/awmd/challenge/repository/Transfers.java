@@ -0,0 +1,99 @@
+package com.db.awmd.challenge.repository;
+
+import com.db.awmd.challenge.domain.Currencies;
+import com.db.awmd.challenge.domain.FxRates;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+
+import java.math.BigDecimal;
+
+/**
+ * CHECKS SHARED BY THE REPOSITORY IMPLEMENTATIONS BEFORE APPLYING A TRANSFER OF A BATCH
+ */
+final class Transfers {
+
+    private Transfers() {
+    }
+
+    /**
+     * THIS METHOD CHECK EVERYTHING THAT DOES NOT DEPEND ON THE BALANCES
+     *
+     * @param transfer   The transfer
+     * @param fromExists True if the "from" account exists
+     * @param toExists   True if the "to" account exists
+     * @return the failure status, or null if the transfer can be applied
+     */
+    static TransferStatus check(Transfer transfer, boolean fromExists, boolean toExists) {
+        if (isEmpty(transfer.getAccountFromId()) || isEmpty(transfer.getAccountToId())
+                || transfer.getAmount() == null || transfer.getAmount().compareTo(BigDecimal.ONE) < 0) {
+            return TransferStatus.INVALID_TRANSFER;
+        }
+        if (transfer.getAccountFromId().equals(transfer.getAccountToId())) {
+            return TransferStatus.SAME_ACCOUNT;
+        }
+        if (!fromExists) {
+            return toExists ? TransferStatus.FROM_ACCOUNT_NOT_FOUND : TransferStatus.ACCOUNTS_NOT_FOUND;
+        }
+        return toExists ? null : TransferStatus.TO_ACCOUNT_NOT_FOUND;
+    }
+
+    /**
+     * THIS METHOD CHECK THE CURRENCY OF THE TRANSFER, IF IT HAS ONE, AGAINST THE CURRENCY OF THE "FROM" ACCOUNT
+     *
+     * @param transfer     The transfer
+     * @param fromCurrency Numeric code of the currency of the "from" account
+     * @return CURRENCY_MISMATCH, or null if the amount is in the currency of the "from" account
+     */
+    static TransferStatus checkCurrency(Transfer transfer, int fromCurrency) {
+        if (transfer.getCurrency() == null || Currencies.find(transfer.getCurrency()) == fromCurrency) {
+            return null;
+        }
+        return TransferStatus.CURRENCY_MISMATCH;
+    }
+
+    /**
+     * THIS METHOD RETURN THE STATUS OF A FAILED CONVERSION
+     *
+     * @param credit NO_RATE or OUT_OF_RANGE, as returned by FxRates.convert
+     * @return status
+     */
+    static TransferStatus conversionFailure(long credit) {
+        return credit == FxRates.NO_RATE ? TransferStatus.NO_EXCHANGE_RATE : TransferStatus.INVALID_AMOUNT;
+    }
+
+    /**
+     * THIS METHOD RETURN THE RESULT OF AN APPLIED TRANSFER, WITH THE CREDITED AMOUNT WHEN IT IS BETWEEN TWO
+     * CURRENCIES, THE ONLY CASE WHERE IT IS NOT THE AMOUNT. CALLED WITHOUT LOCKS
+     *
+     * @param fromCurrency Numeric code of the currency of the "from" account
+     * @param toCurrency   Numeric code of the currency of the "to" account
+     * @param credit       Credited amount in minor units of the "to" currency
+     * @return result
+     */
+    static TransferResult applied(int fromCurrency, int toCurrency, long credit) {
+        if (fromCurrency == toCurrency) {
+            return TransferResult.applied(fromCurrency);
+        }
+        return TransferResult.converted(fromCurrency, toCurrency, Money.toAmount(credit, Currencies.scale(toCurrency)));
+    }
+
+    private static boolean isEmpty(String accountId) {
+        return accountId == null || accountId.isEmpty();
+    }
+
+    /**
+     * THIS METHOD MARK AS NOT APPLIED EVERY TRANSFER OF AN ABORTED ALL-OR-NOTHING BATCH WITHOUT ITS OWN FAILURE
+     *
+     * @param statuses Statuses, null for the transfers without failure
+     * @return results
+     */
+    static TransferResult[] notApplied(TransferStatus[] statuses) {
+        TransferResult[] results = new TransferResult[statuses.length];
+        for (int i = 0; i < statuses.length; i++) {
+            results[i] = TransferResult.of(statuses[i] == null ? TransferStatus.NOT_APPLIED : statuses[i]);
+        }
+        return results;
+    }
+}
@@ -0,0 +1,417 @@
+package com.db.awmd.challenge.repository;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * APPEND-ONLY LOG OF RECORDS WITH GROUP COMMIT. APPENDERS ONLY COPY THEIR RECORD TO A MEMORY BUFFER, A SINGLE
+ * FLUSHER THREAD WRITES EVERYTHING APPENDED SINCE ITS LAST FLUSH AND COVERS IT WITH ONE fsync, SO THE fsync COST IS
+ * SHARED BY ALL THE RECORDS APPENDED WHILE THE PREVIOUS ONE WAS RUNNING. EVERY RECORD IS STORED AS
+ * [LENGTH][CRC32][PAYLOAD], A TORN RECORD AT THE END OF THE LOG IS DISCARDED ON REPLAY.
+ * THE LOG IS A SEQUENCE OF NUMBERED SEGMENT FILES, A NEW SEGMENT IS STARTED ON roll SO THE OLD ONES CAN BE DELETED
+ * ONCE A SNAPSHOT COVERS THEM.
+ * WAITS USE java.util.concurrent LOCKS, NOT MONITORS, SO A WAITING VIRTUAL THREAD DOES NOT PIN ITS CARRIER
+ */
+@Slf4j
+class WriteAheadLog implements Closeable {
+
+    private static final String SEGMENT_PREFIX = "accounts-";
+
+    private static final String SEGMENT_SUFFIX = ".wal";
+
+    private static final int HEADER_SIZE = 8;
+
+    private static final int INITIAL_BUFFER_SIZE = 1 << 20;
+
+    private final Path directory;
+
+    private final long fsyncIntervalNanos;
+
+    private final int batchSize;
+
+    private FileChannel channel;
+
+    private long segment;
+
+    private final ReentrantLock appendLock = new ReentrantLock();
+
+    private final Condition flushNeeded = appendLock.newCondition();
+
+    private ByteBuffer appending = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+
+    private int pendingRecords;
+
+    private long appendedSequence;
+
+    /**
+     * POSITION OF THE APPENDING BUFFER WHERE THE NEXT SEGMENT STARTS, -1 IF NO ROLL IS PENDING
+     */
+    private int rollPosition = -1;
+
+    private long rollSegment;
+
+    private boolean running = true;
+
+    private final ReentrantLock durableLock = new ReentrantLock();
+
+    private final Condition durable = durableLock.newCondition();
+
+    private volatile long durableSequence;
+
+    private volatile long durableSegment;
+
+    private volatile IOException failure;
+
+    private Thread flusher;
+
+    /**
+     * @param directory     Directory of the segment files, created if it does not exist
+     * @param fsyncInterval Time the flusher waits for more records before a fsync, zero to flush as soon as possible
+     * @param batchSize     Number of pending records that triggers the fsync without waiting for the interval
+     */
+    WriteAheadLog(Path directory, Duration fsyncInterval, int batchSize) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        this.fsyncIntervalNanos = fsyncInterval.toNanos();
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * THIS METHOD READ EVERY VALID RECORD OF THE SEGMENTS FROM THE GIVEN ONE AND CUT THE LAST SEGMENT AFTER ITS LAST
+     * VALID RECORD, OLDER SEGMENTS ARE DELETED. MUST BE CALLED ONCE, BEFORE start
+     *
+     * @param fromSegment First segment to replay, the older ones are covered by a snapshot
+     * @param handler     Receives the payload of every record, in append order
+     * @return number of records replayed
+     */
+    long replay(long fromSegment, Consumer<ByteBuffer> handler) throws IOException {
+        deleteSegmentsBefore(fromSegment);
+        List<Long> segments = segments();
+        long[] records = new long[1];
+        Consumer<ByteBuffer> counting = record -> {
+            records[0]++;
+            handler.accept(record);
+        };
+        for (int i = 0; i < segments.size(); i++) {
+            boolean last = i == segments.size() - 1;
+            try (FileChannel segmentChannel = FileChannel.open(segmentPath(segments.get(i)),
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                long position = replaySegment(segmentChannel, counting);
+                if (position < segmentChannel.size()) {
+                    if (!last) {
+                        throw new IOException("Corrupt record in the middle of the write-ahead log " + segmentPath(segments.get(i)));
+                    }
+                    log.warn("Discarding {} bytes after the last valid record of {}",
+                            segmentChannel.size() - position, segmentPath(segments.get(i)));
+                    segmentChannel.truncate(position);
+                    segmentChannel.force(true);
+                }
+            }
+        }
+        this.segment = segments.isEmpty() ? fromSegment : Math.max(fromSegment, segments.get(segments.size() - 1));
+        this.durableSegment = this.segment;
+        this.channel = openSegment(this.segment);
+        return records[0];
+    }
+
+    /**
+     * @return end of the last valid record
+     */
+    private static long replaySegment(FileChannel segmentChannel, Consumer<ByteBuffer> handler) throws IOException {
+        long size = segmentChannel.size();
+        long position = 0;
+        DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(segmentChannel), 1 << 16));
+        CRC32 crc = new CRC32();
+        try {
+            while (true) {
+                int length = input.readInt();
+                int checksum = input.readInt();
+                if (length < 0 || position + HEADER_SIZE + length > size) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                input.readFully(payload);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                handler.accept(ByteBuffer.wrap(payload));
+                position += HEADER_SIZE + length;
+            }
+        } catch (EOFException eof) {
+            //END OF THE SEGMENT OR TORN RECORD
+        }
+        return position;
+    }
+
+    /**
+     * THIS METHOD START THE FLUSHER THREAD, RECORDS CAN BE APPENDED FROM NOW ON
+     */
+    void start() {
+        this.flusher = new Thread(this::flushLoop, "wal-flusher-" + directory.getFileName());
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * THIS METHOD APPEND A RECORD, IT IS DURABLE ONCE awaitDurable OF THE RETURNED SEQUENCE RETURNS
+     *
+     * @param payload Record
+     * @return sequence of the record
+     */
+    long append(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        int checksum = (int) crc.getValue();
+        appendLock.lock();
+        try {
+            checkFailure();
+            if (appending.remaining() < HEADER_SIZE + payload.length) {
+                appending = grow(appending, HEADER_SIZE + payload.length);
+            }
+            appending.putInt(payload.length).putInt(checksum).put(payload);
+            //THE FIRST PENDING RECORD WAKES UP AN IDLE FLUSHER, A FULL BATCH CUTS THE FSYNC INTERVAL SHORT
+            if (++pendingRecords == 1 || pendingRecords == batchSize) {
+                flushNeeded.signal();
+            }
+            return ++appendedSequence;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * THIS METHOD START A NEW SEGMENT: THE RECORDS APPENDED FROM NOW ON GO TO IT. THE CALLER MUST PREVENT ANY
+     * CONCURRENT APPEND TO KNOW EXACTLY WHICH RECORDS ARE IN THE NEW SEGMENT, AND CAN NOT ROLL AGAIN BEFORE
+     * awaitRolled OF THE RETURNED SEGMENT RETURNS
+     *
+     * @return number of the new segment
+     */
+    long roll() {
+        appendLock.lock();
+        try {
+            checkFailure();
+            rollPosition = appending.position();
+            rollSegment = ++segment;
+            flushNeeded.signal();
+            return rollSegment;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * THIS METHOD WAIT UNTIL THE SEGMENTS BEFORE THE GIVEN ONE ARE COMPLETE ON DISK
+     *
+     * @param rolled Segment returned by roll
+     */
+    void awaitRolled(long rolled) {
+        durableLock.lock();
+        try {
+            while (durableSegment < rolled) {
+                checkFailure();
+                durable.awaitUninterruptibly();
+            }
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    /**
+     * THIS METHOD WAIT UNTIL THE RECORD OF THE SEQUENCE, AND ALL THE PREVIOUS ONES, ARE ON DISK
+     *
+     * @param sequence Sequence returned by append
+     */
+    void awaitDurable(long sequence) {
+        if (durableSequence >= sequence) {
+            return;
+        }
+        durableLock.lock();
+        try {
+            while (durableSequence < sequence) {
+                checkFailure();
+                durable.awaitUninterruptibly();
+            }
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    /**
+     * THIS METHOD DELETE THE SEGMENTS OLDER THAN THE GIVEN ONE, ONCE A SNAPSHOT COVERS THEM
+     *
+     * @param first First segment to keep
+     */
+    void deleteSegmentsBefore(long first) throws IOException {
+        for (long old : segments()) {
+            if (old < first) {
+                Files.delete(segmentPath(old));
+            }
+        }
+    }
+
+    /**
+     * THIS METHOD FLUSH THE PENDING RECORDS, STOP THE FLUSHER AND CLOSE THE FILE
+     */
+    @Override
+    public void close() throws IOException {
+        appendLock.lock();
+        try {
+            running = false;
+            flushNeeded.signal();
+        } finally {
+            appendLock.unlock();
+        }
+        if (flusher != null) {
+            try {
+                flusher.join();
+            } catch (InterruptedException ie) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+
+    private void flushLoop() {
+        ByteBuffer flushing = ByteBuffer.allocateDirect(INITIAL_BUFFER_SIZE);
+        try {
+            while (true) {
+                long sequence;
+                int rollAt;
+                long rollTo;
+                appendLock.lock();
+                try {
+                    while (pendingRecords == 0 && rollPosition < 0) {
+                        if (!running) {
+                            return;
+                        }
+                        flushNeeded.await();
+                    }
+                    long remaining = fsyncIntervalNanos;
+                    while (remaining > 0 && pendingRecords < batchSize && rollPosition < 0 && running) {
+                        remaining = flushNeeded.awaitNanos(remaining);
+                    }
+                    //SWAP THE BUFFERS, APPENDERS CONTINUE ON THE EMPTY ONE WHILE THIS ONE IS WRITTEN
+                    ByteBuffer full = appending;
+                    appending = flushing;
+                    flushing = full;
+                    pendingRecords = 0;
+                    sequence = appendedSequence;
+                    rollAt = rollPosition;
+                    rollTo = rollSegment;
+                    rollPosition = -1;
+                } finally {
+                    appendLock.unlock();
+                }
+                flushing.flip();
+                if (rollAt >= 0) {
+                    //THE RECORDS BEFORE THE ROLL COMPLETE THE CURRENT SEGMENT, THE REST START THE NEW ONE
+                    int end = flushing.limit();
+                    flushing.limit(rollAt);
+                    write(flushing);
+                    channel.close();
+                    channel = openSegment(rollTo);
+                    flushing.limit(end);
+                }
+                write(flushing);
+                flushing.clear();
+                durableLock.lock();
+                try {
+                    durableSequence = sequence;
+                    if (rollAt >= 0) {
+                        durableSegment = rollTo;
+                    }
+                    durable.signalAll();
+                } finally {
+                    durableLock.unlock();
+                }
+            }
+        } catch (IOException ioe) {
+            log.error("Write-ahead log {} failed, no more records are accepted", directory, ioe);
+            fail(ioe);
+        } catch (InterruptedException ie) {
+            fail(new IOException("Write-ahead log flusher interrupted"));
+        }
+    }
+
+    private void write(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        channel.force(false);
+    }
+
+    private FileChannel openSegment(long number) throws IOException {
+        FileChannel segmentChannel = FileChannel.open(segmentPath(number),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentChannel.force(true);
+        return segmentChannel;
+    }
+
+    private Path segmentPath(long number) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private List<Long> segments() throws IOException {
+        List<Long> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(segments);
+        return segments;
+    }
+
+    private void fail(IOException ioe) {
+        durableLock.lock();
+        try {
+            failure = ioe;
+            durable.signalAll();
+        } finally {
+            durableLock.unlock();
+        }
+    }
+
+    private void checkFailure() {
+        if (failure != null) {
+            throw new UncheckedIOException("Write-ahead log " + directory + " is not available", failure);
+        }
+    }
+
+    private static ByteBuffer grow(ByteBuffer buffer, int needed) {
+        int capacity = buffer.capacity();
+        while (capacity - buffer.position() < needed) {
+            capacity <<= 1;
+        }
+        ByteBuffer grown = ByteBuffer.allocateDirect(capacity);
+        buffer.flip();
+        grown.put(buffer);
+        return grown;
+    }
+}
@@ -0,0 +1,117 @@
+package com.db.awmd.challenge.service;
+
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * TOKEN BUCKET PER KEY, AS THE GENERIC CELL RATE ALGORITHM: A BUCKET IS ONLY THE THEORETICAL ARRIVAL TIME OF
+ * THE NEXT REQUEST, EACH ADMITTED REQUEST MOVES IT ONE INTERVAL FORWARD WITH A CAS, AND A REQUEST IS REJECTED
+ * WHEN IT IS MORE THAN burst INTERVALS AHEAD OF NOW. NOTHING IS LOCKED AND NO TIMER REFILLS THE BUCKETS.
+ * <p>
+ * THE BUCKETS ARE IN A FIXED TABLE OF SETS OF FOUR, A KEY CAN ONLY BE IN THE SET OF ITS HASH. A NEW KEY TAKES AN
+ * EMPTY SLOT OF ITS SET OR EVICTS THE MOST IDLE BUCKET: A BUCKET WHOSE TIME IS PAST IS FULL, EVICTING IT LOSES
+ * NOTHING. THE MEMORY IS BOUNDED BY THE TABLE WHATEVER THE NUMBER OF KEYS; ONLY WHEN A WHOLE SET IS ACTIVE IS A
+ * BUCKET EVICTED BEFORE IT REFILLED, ITS KEY THEN GETS A FULL BUCKET AGAIN
+ */
+public class AccountRateLimiter {
+
+    private static final int WAYS = 4;
+
+    private static final AtomicLongFieldUpdater<Bucket> ARRIVAL =
+            AtomicLongFieldUpdater.newUpdater(Bucket.class, "arrival");
+
+    private final AtomicReferenceArray<Bucket> buckets;
+
+    private final int setMask;
+
+    private final long intervalNanos;
+
+    private final long toleranceNanos;
+
+    /**
+     * @param permitsPerSecond Sustained rate of every key
+     * @param burst            Requests a key with a full bucket can send at once
+     * @param capacity         Number of buckets, rounded up to a power of two
+     */
+    public AccountRateLimiter(double permitsPerSecond, int burst, int capacity) {
+        int size = WAYS;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.buckets = new AtomicReferenceArray<>(size);
+        this.setMask = size - WAYS;
+        this.intervalNanos = Math.max(1, (long) (1e9 / permitsPerSecond));
+        this.toleranceNanos = intervalNanos * Math.max(1, burst);
+    }
+
+    /**
+     * THIS METHOD TAKE A PERMIT OF THE KEY
+     *
+     * @param key Key
+     * @param now System.nanoTime()
+     * @return 0 if a permit was taken, otherwise the nanoseconds until the key has one again
+     */
+    public long tryAcquire(String key, long now) {
+        Bucket bucket = bucket(key, now);
+        while (true) {
+            long arrival = bucket.arrival;
+            long next = Math.max(arrival, now) + intervalNanos;
+            long wait = next - now - toleranceNanos;
+            if (wait > 0) {
+                return wait;
+            }
+            if (ARRIVAL.compareAndSet(bucket, arrival, next)) {
+                return 0;
+            }
+        }
+    }
+
+    private Bucket bucket(String key, long now) {
+        int hash = key.hashCode();
+        int set = (hash ^ (hash >>> 16)) * WAYS & setMask;
+        while (true) {
+            int victim = -1;
+            Bucket victimBucket = null;
+            for (int i = set; i < set + WAYS; i++) {
+                Bucket bucket = buckets.get(i);
+                if (bucket == null) {
+                    if (victim < 0 || victimBucket != null) {
+                        victim = i;
+                        victimBucket = null;
+                    }
+                } else if (bucket.hash == hash && bucket.key.equals(key)) {
+                    return bucket;
+                } else if (victim < 0 || (victimBucket != null && bucket.arrival < victimBucket.arrival)) {
+                    victim = i;
+                    victimBucket = bucket;
+                }
+            }
+            //A KEY WHOSE FIRST REQUESTS RACE MAY GET TWO BUCKETS, THE SECOND ONE IS THE NEXT TO BE EVICTED
+            Bucket bucket = new Bucket(key, hash, now);
+            if (buckets.compareAndSet(victim, victimBucket, bucket)) {
+                return bucket;
+            }
+        }
+    }
+
+    private static final class Bucket {
+
+        private final String key;
+
+        /**
+         * HASH OF THE KEY, THE KEYS OF THE OTHER BUCKETS OF A SET ARE NOT READ
+         */
+        private final int hash;
+
+        /**
+         * NOT PRIVATE, THE FIELD UPDATER OF THE OUTER CLASS CAN NOT ACCESS A PRIVATE FIELD BEFORE JAVA 11
+         */
+        volatile long arrival;
+
+        private Bucket(String key, int hash, long arrival) {
+            this.key = key;
+            this.hash = hash;
+            this.arrival = arrival;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+
+/**
+ * SERIALIZED JSON OF THE ACCOUNTS, CACHED PER VERSION.
+ * <p>
+ * THE VERSION OF AN ACCOUNT IS ITS BALANCE AND CURRENCY: THE JSON HAS NOTHING ELSE THAT CHANGES, THE CURRENCY ONLY
+ * WHEN THE ID IS CREATED AGAIN AFTER THE ACCOUNTS WERE CLEARED, AND EVERY APPLIED TRANSFER CHANGES THE BALANCE OF
+ * BOTH ACCOUNTS, SO THE VERSION CHANGES EXACTLY WHEN THE JSON DOES. IT IS READ WITH THE BALANCE, SO IT WORKS THE
+ * SAME WITH EVERY REPOSITORY, COSTS NOTHING TO THE TRANSFERS AND SURVIVES A RESTART
+ */
+@Component
+public class AccountResponseCache {
+
+    private final StripedCache<String, Response> responses;
+
+    private final ObjectMapper objectMapper;
+
+    @Autowired
+    public AccountResponseCache(AccountsProperties properties, ObjectMapper objectMapper) {
+        AccountsProperties.ResponseCache cache = properties.getResponseCache();
+        this.responses = new StripedCache<>(cache.getMaxEntries(), cache.getTtl(), cache.getStripes());
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * THIS METHOD RETURN THE ETAG OF THE CURRENT VERSION OF THE ACCOUNT
+     *
+     * @param account The account
+     * @return strong entity tag, quoted
+     */
+    public static String etag(Account account) {
+        return '"' + account.getBalance().toPlainString() + ' ' + account.getCurrency() + '"';
+    }
+
+    /**
+     * THIS METHOD RETURN THE JSON OF THE ACCOUNT, SERIALIZED ONLY IF THIS VERSION IS NOT CACHED
+     *
+     * @param account The account
+     * @return UTF-8 JSON, must not be modified
+     */
+    public byte[] json(Account account) {
+        Response cached = this.responses.get(account.getAccountId());
+        if (cached != null && cached.balance.equals(account.getBalance())
+                && cached.currency.equals(account.getCurrency())) {
+            return cached.json;
+        }
+        byte[] json;
+        try {
+            json = this.objectMapper.writeValueAsBytes(account);
+        } catch (JsonProcessingException jpe) {
+            throw new IllegalStateException("Account " + account.getAccountId() + " could not be serialized", jpe);
+        }
+        this.responses.put(account.getAccountId(), new Response(account, json));
+        return json;
+    }
+
+    private static final class Response {
+
+        private final BigDecimal balance;
+
+        private final String currency;
+
+        private final byte[] json;
+
+        private Response(Account account, byte[] json) {
+            this.balance = account.getBalance();
+            this.currency = account.getCurrency();
+            this.json = json;
+        }
+    }
+}
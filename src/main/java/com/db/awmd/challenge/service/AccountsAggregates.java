@@ -0,0 +1,331 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Aggregates;
+import com.db.awmd.challenge.domain.Currencies;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.Verification;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * RUNNING AGGREGATES OF THE ACCOUNTS, UPDATED BY THE SERVICE AFTER EVERY CREATE AND APPLIED TRANSFER.
+ * <p>
+ * THE COUNTERS ARE LongAdders, STRIPED PER THREAD, SO THE TRANSFERS DO NOT CONTEND ON THEM. THE BALANCES AND THE
+ * VOLUMES ARE KEPT PER CURRENCY, IN ITS MINOR UNITS. THE TOTAL BALANCE OF A CURRENCY ONLY CHANGES WHEN AN ACCOUNT IS
+ * CREATED OR A TRANSFER BETWEEN TWO CURRENCIES DEBITS ONE AND CREDITS THE OTHER: A TRANSFER MOVES MONEY, IT DOES NOT
+ * CREATE IT, WHICH IS THE INVARIANT THE InvariantVerifier CHECKS. THE TRANSFERS OF THE LAST MINUTE ARE COUNTED IN
+ * ONE BUCKET PER SECOND. THE AGGREGATES START FROM A SCAN OF THE REPOSITORY, THE durable ONE RECOVERS ITS ACCOUNTS
+ * BEFORE.
+ * <p>
+ * EVERY TRANSFER IS BRACKETED BY transferStarted AND transferFinished, COUNTED IN THE PHASE CURRENT WHEN IT STARTED.
+ * awaitTransfers SWITCHES THE PHASE AND WAITS UNTIL THE OLD ONE HAS AS MANY FINISHED TRANSFERS AS STARTED ONES, SO
+ * A VERIFICATION KNOWS EVERY CONVERSION THE REPOSITORY APPLIED DURING ITS SCAN HAS BEEN COUNTED
+ */
+@Component
+public class AccountsAggregates {
+
+    private static final int WINDOW_SECONDS = 60;
+
+    private final AccountsRepository accountsRepository;
+
+    private final LongAdder accounts = new LongAdder();
+
+    private final CurrencyAdders totalBalances = new CurrencyAdders();
+
+    private final LongAdder transfers = new LongAdder();
+
+    private final CurrencyAdders transferVolumes = new CurrencyAdders();
+
+    /**
+     * TRANSFERS BETWEEN TWO CURRENCIES COUNTED IN EACH OF THEM, A SCAN OF A CURRENCY IS ONLY COMPARABLE WITH ITS
+     * TOTAL IF NONE WAS COUNTED WHILE IT RAN
+     */
+    private final CurrencyAdders conversions = new CurrencyAdders();
+
+    private final Second[] window = new Second[WINDOW_SECONDS];
+
+    /**
+     * CREATES STARTED AND FINISHED, A SCAN IS ONLY COMPARABLE WITH THE TOTAL IF NONE STARTED WHILE IT RAN
+     */
+    private final AtomicLong createsStarted = new AtomicLong();
+
+    private final AtomicLong createsFinished = new AtomicLong();
+
+    /**
+     * TRANSFERS STARTED AND FINISHED PER PHASE, ONLY EVER COMPARED ONCE THE PHASE IS NO LONGER CURRENT
+     */
+    private final LongAdder[] transfersStarted = {new LongAdder(), new LongAdder()};
+
+    private final LongAdder[] transfersFinished = {new LongAdder(), new LongAdder()};
+
+    private volatile int phase;
+
+    @Autowired
+    public AccountsAggregates(AccountsRepository accountsRepository, AccountsProperties properties) {
+        this.accountsRepository = accountsRepository;
+        for (int i = 0; i < WINDOW_SECONDS; i++) {
+            this.window[i] = new Second();
+        }
+        rebase();
+    }
+
+    /**
+     * THIS METHOD RESET THE AGGREGATES OF THE ACCOUNTS TO A SCAN OF THE REPOSITORY AND THE TRANSFER COUNTERS TO ZERO,
+     * NOTHING MUST BE CREATED OR TRANSFERRED MEANWHILE. NEEDED AFTER THE ACCOUNTS WERE CLEARED
+     */
+    public void rebase() {
+        long[] scanned = new long[1];
+        long[] balances = new long[Currencies.NUMERIC_CODES];
+        accountsRepository.forEachAccount(account -> {
+            scanned[0]++;
+            int currency = Currencies.numericCode(account.getCurrency());
+            balances[currency] += Money.toMinorUnits(account.getBalance(), Currencies.scale(currency));
+        });
+        accounts.reset();
+        accounts.add(scanned[0]);
+        totalBalances.reset();
+        for (int currency = 0; currency < balances.length; currency++) {
+            if (balances[currency] != 0) {
+                totalBalances.add(currency, balances[currency]);
+            }
+        }
+        transfers.reset();
+        transferVolumes.reset();
+        for (Second second : window) {
+            second.restart(0);
+        }
+    }
+
+    void createStarted() {
+        createsStarted.incrementAndGet();
+    }
+
+    /**
+     * THIS METHOD END A CREATE
+     *
+     * @param account The account, null if it was not created
+     */
+    void createFinished(Account account) {
+        if (account != null) {
+            accounts.increment();
+            int currency = Currencies.numericCode(account.getCurrency());
+            totalBalances.add(currency, Money.toMinorUnits(account.getBalance(), Currencies.scale(currency)));
+        }
+        createsFinished.incrementAndGet();
+    }
+
+    /**
+     * THIS METHOD START A TRANSFER OR A BATCH, BEFORE THE REPOSITORY IS CALLED
+     *
+     * @return phase to give to transferFinished
+     */
+    int transferStarted() {
+        while (true) {
+            int current = phase;
+            transfersStarted[current].increment();
+            //A PHASE SWITCHED MEANWHILE MAY ALREADY BE AWAITED, THE TRANSFER IS COUNTED IN THE NEW ONE
+            if (phase == current) {
+                return current;
+            }
+            transfersFinished[current].increment();
+        }
+    }
+
+    /**
+     * THIS METHOD END A TRANSFER OR A BATCH, ONCE ITS APPLIED TRANSFERS ARE COUNTED, WHETHER IT SUCCEEDED OR NOT
+     *
+     * @param phase Phase returned by transferStarted
+     */
+    void transferFinished(int phase) {
+        transfersFinished[phase].increment();
+    }
+
+    /**
+     * THIS METHOD COUNT AN APPLIED TRANSFER
+     *
+     * @param transfer The transfer
+     * @param result   Its result, with the credited amount
+     * @param now      Time it was applied, System.currentTimeMillis()
+     */
+    void transferred(Transfer transfer, TransferResult result, long now) {
+        int currency = result.getCurrencyNumericCode();
+        long amount = Money.toMinorUnits(transfer.getAmount(), Currencies.scale(currency));
+        if (result.isConverted()) {
+            int creditedCurrency = result.getCreditedCurrencyNumericCode();
+            totalBalances.add(currency, -amount);
+            totalBalances.add(creditedCurrency,
+                    Money.toMinorUnits(result.getCreditedAmount(), Currencies.scale(creditedCurrency)));
+            //AFTER THE TOTALS, A VERIFICATION THAT READ THEM BEFORE SEES THE CONVERSION
+            conversions.add(currency, 1);
+            conversions.add(creditedCurrency, 1);
+        }
+        transfers.increment();
+        transferVolumes.add(currency, amount);
+        long epochSecond = now / 1000;
+        Second second = window[(int) (epochSecond % WINDOW_SECONDS)];
+        if (second.epochSecond != epochSecond) {
+            second.restart(epochSecond);
+        }
+        second.transfers.increment();
+        second.volumes.add(currency, amount);
+    }
+
+    /**
+     * THIS METHOD WAIT UNTIL EVERY TRANSFER STARTED BEFORE THE CALL HAS FINISHED, THE ONES STARTED AFTER ARE NOT
+     * WAITED FOR. CALLED BY ONE VERIFICATION AT A TIME
+     */
+    void awaitTransfers() {
+        int awaited = phase;
+        phase = 1 - awaited;
+        //FINISHED FIRST, A TRANSFER IS ALWAYS STARTED BEFORE IT FINISHES
+        while (transfersFinished[awaited].sum() != transfersStarted[awaited].sum()) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+        }
+    }
+
+    /**
+     * CREATES STARTED SO FAR, OR -1 IF ONE HAS NOT FINISHED YET. THE FINISHED ONES ARE READ FIRST, A CREATE
+     * STARTING BETWEEN THE TWO READS MAKES THEM DIFFER
+     */
+    long quiescentCreates() {
+        long finished = createsFinished.get();
+        long started = createsStarted.get();
+        return started == finished ? started : -1;
+    }
+
+    /**
+     * CONVERSIONS COUNTED SO FAR IN EVERY CURRENCY, BY NUMERIC CODE
+     */
+    long[] conversions() {
+        return conversions.sums();
+    }
+
+    /**
+     * TOTAL BALANCE OF EVERY CURRENCY IN ITS MINOR UNITS, BY NUMERIC CODE
+     */
+    long[] totalBalances() {
+        return totalBalances.sums();
+    }
+
+    /**
+     * THIS METHOD RETURN THE CURRENT AGGREGATES, EVERY COUNTER IS READ ON ITS OWN WHILE TRANSFERS GO ON
+     *
+     * @param verification Last verification, or null
+     * @return aggregates
+     */
+    public Aggregates snapshot(Verification verification) {
+        long now = System.currentTimeMillis() / 1000;
+        long lastMinuteTransfers = 0;
+        long[] lastMinuteVolumes = new long[Currencies.NUMERIC_CODES];
+        Arrays.fill(lastMinuteVolumes, Long.MIN_VALUE);
+        for (Second second : window) {
+            if (now - second.epochSecond < WINDOW_SECONDS) {
+                lastMinuteTransfers += second.transfers.sum();
+                second.volumes.addTo(lastMinuteVolumes);
+            }
+        }
+        return new Aggregates(accounts.sum(), amounts(totalBalances.sums()), transfers.sum(),
+                amounts(transferVolumes.sums()), lastMinuteTransfers, amounts(lastMinuteVolumes), verification);
+    }
+
+    /**
+     * THIS METHOD CONVERT MINOR UNITS BY NUMERIC CODE TO AMOUNTS BY ALPHABETIC CODE, LEAVING OUT THE CURRENCIES
+     * NEVER COUNTED
+     *
+     * @param minorUnits Minor units by numeric code, Long.MIN_VALUE for the currencies never counted
+     * @return amounts sorted by alphabetic code
+     */
+    private static Map<String, BigDecimal> amounts(long[] minorUnits) {
+        Map<String, BigDecimal> amounts = new TreeMap<>();
+        for (int currency = 0; currency < minorUnits.length; currency++) {
+            if (minorUnits[currency] != Long.MIN_VALUE) {
+                amounts.put(Currencies.code(currency), Money.toAmount(minorUnits[currency], Currencies.scale(currency)));
+            }
+        }
+        return amounts;
+    }
+
+    /**
+     * ONE LongAdder PER CURRENCY, CREATED THE FIRST TIME THE CURRENCY IS COUNTED
+     */
+    private static final class CurrencyAdders {
+
+        private final AtomicReferenceArray<LongAdder> adders = new AtomicReferenceArray<>(Currencies.NUMERIC_CODES);
+
+        private void add(int currency, long value) {
+            LongAdder adder = adders.get(currency);
+            if (adder == null) {
+                adders.compareAndSet(currency, null, new LongAdder());
+                adder = adders.get(currency);
+            }
+            adder.add(value);
+        }
+
+        /**
+         * SUM OF EVERY CURRENCY, Long.MIN_VALUE FOR THE ONES NEVER COUNTED
+         */
+        private long[] sums() {
+            long[] sums = new long[Currencies.NUMERIC_CODES];
+            for (int currency = 0; currency < sums.length; currency++) {
+                LongAdder adder = adders.get(currency);
+                sums[currency] = adder == null ? Long.MIN_VALUE : adder.sum();
+            }
+            return sums;
+        }
+
+        /**
+         * THIS METHOD ADD THE SUM OF EVERY CURRENCY COUNTED TO THE ONES OF THE ARRAY, THAT STARTS AT Long.MIN_VALUE
+         * FOR THE CURRENCIES NEVER COUNTED
+         */
+        private void addTo(long[] sums) {
+            for (int currency = 0; currency < sums.length; currency++) {
+                LongAdder adder = adders.get(currency);
+                if (adder != null) {
+                    sums[currency] = (sums[currency] == Long.MIN_VALUE ? 0 : sums[currency]) + adder.sum();
+                }
+            }
+        }
+
+        private void reset() {
+            for (int currency = 0; currency < Currencies.NUMERIC_CODES; currency++) {
+                adders.set(currency, null);
+            }
+        }
+    }
+
+    /**
+     * TRANSFERS OF ONE SECOND OF THE WINDOW. A TRANSFER RACING WITH THE RESTART MAY BE COUNTED IN THE PREVIOUS LAP
+     * OR LOST, THE WINDOW IS APPROXIMATE, THE TOTALS ARE NOT
+     */
+    private static final class Second {
+
+        private volatile long epochSecond;
+
+        private final LongAdder transfers = new LongAdder();
+
+        private final CurrencyAdders volumes = new CurrencyAdders();
+
+        private synchronized void restart(long now) {
+            if (epochSecond != now) {
+                transfers.reset();
+                volumes.reset();
+                epochSecond = now;
+            }
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * METERS OF THE ACCOUNT OPERATIONS, REGISTERED ONCE HERE SO NOTHING IS LOOKED UP ON THE REQUEST PATH.
+ * <p>
+ * EVERY OPERATION IS COUNTED, BUT ONLY ONE IN accounts.metrics.sample-rate IS TIMED: READING THE CLOCK AND
+ * RECORDING COST MORE THAN A TRANSFER IN THE REPOSITORY, TIMING THEM ALL WOULD SLOW DOWN THE TRANSFERS NOTICEABLY.
+ * THE SAMPLED LATENCIES GO TO HDRHISTOGRAM RECORDERS PER LAYER AND OPERATION, PUBLISHED AS PERCENTILE GAUGES. THE
+ * CONTROLLER LAYER IS TIMED BY THE http.server.requests METER OF SPRING BOOT
+ */
+@Component
+public class AccountsMetrics {
+
+    /**
+     * START OF AN OPERATION THAT IS NOT TIMED
+     */
+    static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    final Operation create;
+
+    final Operation get;
+
+    final Operation query;
+
+    final Operation transfer;
+
+    final Operation batch;
+
+    private final int sampleMask;
+
+    private final Counter[] transferRejections = new Counter[TransferStatus.values().length];
+
+    private final Counter duplicateAccounts;
+
+    private final Counter invalidBalances;
+
+    private final Counter invalidCurrencies;
+
+    @Autowired
+    public AccountsMetrics(MeterRegistry registry, AccountsRepository accountsRepository,
+                           NotificationDispatcher notificationDispatcher, AccountsProperties properties) {
+        int sampleRate = 1;
+        while (sampleRate < properties.getMetrics().getSampleRate()) {
+            sampleRate <<= 1;
+        }
+        this.sampleMask = sampleRate - 1;
+        this.create = new Operation(registry, "create");
+        this.get = new Operation(registry, "get");
+        this.query = new Operation(registry, "query");
+        this.transfer = new Operation(registry, "transfer");
+        this.batch = new Operation(registry, "transfers");
+        for (TransferStatus status : TransferStatus.values()) {
+            if (status != TransferStatus.OK) {
+                this.transferRejections[status.ordinal()] = rejections(registry, "transfer", status.name());
+            }
+        }
+        this.duplicateAccounts = rejections(registry, "create", "DUPLICATE_ACCOUNT");
+        this.invalidBalances = rejections(registry, "create", "INVALID_AMOUNT");
+        this.invalidCurrencies = rejections(registry, "create", "INVALID_CURRENCY");
+
+        Gauge.builder("accounts.count", accountsRepository, AccountsRepository::countAccounts)
+                .description("Number of accounts")
+                .register(registry);
+        FunctionCounter.builder("accounts.contention", accountsRepository, AccountsRepository::getContentionCount)
+                .description("Operations that waited for or retried because of a concurrent operation")
+                .register(registry);
+        Gauge.builder("accounts.notifications.queue.depth", notificationDispatcher, NotificationDispatcher::getQueueDepth)
+                .register(registry);
+        Gauge.builder("accounts.notifications.lag", notificationDispatcher, dispatcher -> dispatcher.getDispatchLag(TimeUnit.MILLISECONDS))
+                .baseUnit("milliseconds")
+                .register(registry);
+        FunctionCounter.builder("accounts.notifications.dispatched", notificationDispatcher, NotificationDispatcher::getDispatchedCount)
+                .register(registry);
+        FunctionCounter.builder("accounts.notifications.dropped", notificationDispatcher, NotificationDispatcher::getDroppedCount)
+                .register(registry);
+        FunctionCounter.builder("accounts.notifications.spilled", notificationDispatcher, NotificationDispatcher::getSpilledCount)
+                .register(registry);
+    }
+
+    /**
+     * THIS METHOD START AN OPERATION
+     *
+     * @return start time to give to the operation, or NOT_SAMPLED
+     */
+    long start() {
+        if ((ThreadLocalRandom.current().nextInt() & sampleMask) != 0) {
+            return NOT_SAMPLED;
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * THIS METHOD START THE REPOSITORY CALL OF AN OPERATION, TIMED ONLY IF THE OPERATION IS
+     *
+     * @param started Value returned by start
+     * @return start time to give to repositoryDone, or NOT_SAMPLED
+     */
+    long startRepository(long started) {
+        return started == NOT_SAMPLED ? NOT_SAMPLED : System.nanoTime();
+    }
+
+    /**
+     * THIS METHOD COUNT A REJECTED TRANSFER
+     *
+     * @param status Reason of the rejection, anything but OK
+     */
+    void rejected(TransferStatus status) {
+        this.transferRejections[status.ordinal()].increment();
+    }
+
+    void duplicateAccount() {
+        this.duplicateAccounts.increment();
+    }
+
+    void invalidBalance() {
+        this.invalidBalances.increment();
+    }
+
+    void invalidCurrency() {
+        this.invalidCurrencies.increment();
+    }
+
+    private static Counter rejections(MeterRegistry registry, String operation, String reason) {
+        return Counter.builder("accounts.rejections")
+                .description("Rejected account operations per reason")
+                .tag("operation", operation)
+                .tag("reason", reason.toLowerCase(Locale.ROOT))
+                .register(registry);
+    }
+
+    /**
+     * COUNT AND LATENCIES OF AN OPERATION, IN THE SERVICE AND IN THE REPOSITORY
+     */
+    static final class Operation {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LatencyHistogram service = new LatencyHistogram();
+
+        private final LatencyHistogram repository = new LatencyHistogram();
+
+        private Operation(MeterRegistry registry, String operation) {
+            FunctionCounter.builder("accounts.operations", count, LongAdder::sum)
+                    .description("Account operations")
+                    .tag("operation", operation)
+                    .register(registry);
+            register(registry, operation, "service", service);
+            register(registry, operation, "repository", repository);
+        }
+
+        /**
+         * THIS METHOD END THE REPOSITORY CALL OF AN OPERATION
+         *
+         * @param started Value returned by startRepository
+         */
+        void repositoryDone(long started) {
+            if (started != NOT_SAMPLED) {
+                repository.record(System.nanoTime() - started);
+            }
+        }
+
+        /**
+         * THIS METHOD END AN OPERATION
+         *
+         * @param started Value returned by start
+         */
+        void done(long started) {
+            count.increment();
+            if (started != NOT_SAMPLED) {
+                service.record(System.nanoTime() - started);
+            }
+        }
+
+        private static void register(MeterRegistry registry, String operation, String layer, LatencyHistogram latencies) {
+            for (double quantile : QUANTILES) {
+                Gauge.builder("accounts.operation.latency", latencies, histogram -> histogram.percentile(quantile))
+                        .description("Sampled latency percentiles of the account operations per layer")
+                        .tag("operation", operation)
+                        .tag("layer", layer)
+                        .tag("quantile", Double.toString(quantile))
+                        .baseUnit("seconds")
+                        .register(registry);
+            }
+            Gauge.builder("accounts.operation.latency.max", latencies, LatencyHistogram::max)
+                    .tag("operation", operation)
+                    .tag("layer", layer)
+                    .baseUnit("seconds")
+                    .register(registry);
+        }
+    }
+}
@@ -1,15 +1,27 @@
 package com.db.awmd.challenge.service;
 
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.config.FxRateCache;
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Currencies;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferPage;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.InvalidAccountException;
+import com.db.awmd.challenge.exception.InvalidBalanceException;
+import com.db.awmd.challenge.exception.InvalidBatchException;
+import com.db.awmd.challenge.exception.InvalidCurrencyException;
 import com.db.awmd.challenge.repository.AccountsRepository;
 import lombok.Getter;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 
 @Service
@@ -18,53 +30,252 @@ public class AccountsService {
     @Getter
     private final AccountsRepository accountsRepository;
 
+    private final NotificationDispatcher notificationDispatcher;
+
+    @Getter
+    private final TransferJournal transferJournal;
+
+    @Getter
+    private final AccountsAggregates accountsAggregates;
+
+    private final AccountsMetrics metrics;
+
+    private final FxRateCache fxRateCache;
+
+    private final int maxBatchSize;
+
+    private final int maxQuerySize;
+
     @Autowired
-    public AccountsService(AccountsRepository accountsRepository) {
+    public AccountsService(AccountsRepository accountsRepository, NotificationDispatcher notificationDispatcher,
+                           TransferJournal transferJournal, AccountsAggregates accountsAggregates,
+                           AccountsMetrics metrics, FxRateCache fxRateCache, AccountsProperties properties) {
         this.accountsRepository = accountsRepository;
+        this.notificationDispatcher = notificationDispatcher;
+        this.transferJournal = transferJournal;
+        this.accountsAggregates = accountsAggregates;
+        this.metrics = metrics;
+        this.fxRateCache = fxRateCache;
+        this.maxBatchSize = properties.getMaxBatchSize();
+        this.maxQuerySize = properties.getMaxQuerySize();
     }
 
+    /**
+     * THE CREATE METHOD, AN ACCOUNT CAN ONLY BE IN A CURRENCY WITH AN EXCHANGE RATE
+     *
+     * @param account The account
+     */
     public void createAccount(Account account) {
-        this.accountsRepository.createAccount(account);
+        long started = this.metrics.start();
+        long repositoryStarted = AccountsMetrics.NOT_SAMPLED;
+        Account created = null;
+        this.accountsAggregates.createStarted();
+        try {
+            if (!this.fxRateCache.current().has(Currencies.find(account.getCurrency()))) {
+                throw new InvalidCurrencyException("no exchange rate for currency " + account.getCurrency());
+            }
+            repositoryStarted = this.metrics.startRepository(started);
+            this.accountsRepository.createAccount(account);
+            created = account;
+        } catch (DuplicateAccountIdException daie) {
+            this.metrics.duplicateAccount();
+            throw daie;
+        } catch (InvalidBalanceException ibe) {
+            this.metrics.invalidBalance();
+            throw ibe;
+        } catch (InvalidCurrencyException ice) {
+            this.metrics.invalidCurrency();
+            throw ice;
+        } finally {
+            this.accountsAggregates.createFinished(created);
+            this.metrics.create.repositoryDone(repositoryStarted);
+            this.metrics.create.done(started);
+        }
     }
 
     public Account getAccount(String accountId) {
-        return this.accountsRepository.getAccount(accountId);
+        long started = this.metrics.start();
+        long repositoryStarted = this.metrics.startRepository(started);
+        try {
+            return this.accountsRepository.getAccount(accountId);
+        } finally {
+            this.metrics.get.repositoryDone(repositoryStarted);
+            this.metrics.get.done(started);
+        }
     }
 
     /**
-     * THE TRANSFER OBJECT METHOD
+     * THE TRANSFER OBJECT METHOD, THE REPOSITORY VALIDATES THE ACCOUNTS WITH THE SAME LOOKUP THAT APPLIES THE TRANSFER
      *
      * @param transfer The transfer object
      */
     public void transfer(Transfer transfer) {
-        //VALIDATE ACCOUNTS
-        if (transfer.getAccountFromId() != null && transfer.getAccountToId() != null) {
-            accountsTransferValidations(transfer.getAccountFromId(), transfer.getAccountToId());
-        } else {
-            throw new InvalidAccountException("Account can not be null");
+        long started = this.metrics.start();
+        try {
+            TransferResult result;
+            long now;
+            int phase = this.accountsAggregates.transferStarted();
+            long repositoryStarted = this.metrics.startRepository(started);
+            try {
+                result = this.accountsRepository.transfer(transfer);
+                now = System.currentTimeMillis();
+                if (result.getStatus() == TransferStatus.OK) {
+                    this.accountsAggregates.transferred(transfer, result, now);
+                }
+            } catch (InvalidBalanceException ibe) {
+                this.metrics.rejected(TransferStatus.INVALID_AMOUNT);
+                throw ibe;
+            } finally {
+                this.accountsAggregates.transferFinished(phase);
+                this.metrics.transfer.repositoryDone(repositoryStarted);
+            }
+            if (result.getStatus() != TransferStatus.OK) {
+                this.metrics.rejected(result.getStatus());
+                throw transferFailure(transfer, result.getStatus());
+            }
+            this.transferJournal.append(transfer, result, now);
+            //NOTIFY TRANSFER WAS SUCCESSFUL, THE NOTIFICATIONS ARE SENT BY THE DISPATCHER WORKERS
+            this.notificationDispatcher.notifyAboutTransfer(transfer.getAccountFromId(), transfer.getAccountToId());
+        } finally {
+            this.metrics.transfer.done(started);
         }
-        this.accountsRepository.transfer(transfer);
     }
 
     /**
-     * THIS METHOD VALIDATE THE TRANSFER ACCOUNTS
+     * THE MULTI-GET METHOD, THE ACCOUNTS ARE READ AT ONE POINT IN TIME
      *
-     * @param fromAccountId Account from where the money is transferred
-     * @param toAccountId Account to which the money is transferred
-     * @return message
+     * @param accountIds The account ids
+     * @return the accounts that exist, in the order of the ids
      */
-    private void accountsTransferValidations(String fromAccountId, String toAccountId) {
-        String message = null;
-        //CHECK IF "FROM "ACCOUNT AND "TO" ACCOUNT ARE THE SAME
-        if (fromAccountId.equals(toAccountId)) {
-            message = "From and To Accounts are the same";
+    public List<Account> getAccounts(Collection<String> accountIds) {
+        if (accountIds.size() > maxQuerySize) {
+            throw new InvalidBatchException("query must have at most " + maxQuerySize + " account ids");
         }
-        //CHECK IF ACCOUNTS EXIST
-        if (message == null) {
-            message = this.existAccount(Arrays.asList(fromAccountId, toAccountId));
+        long started = this.metrics.start();
+        long repositoryStarted = this.metrics.startRepository(started);
+        try {
+            return this.accountsRepository.getAccounts(accountIds);
+        } finally {
+            this.metrics.query.repositoryDone(repositoryStarted);
+            this.metrics.query.done(started);
         }
-        if (message != null) {
-            throw new InvalidAccountException(message);
+    }
+
+    /**
+     * THE EXPORT METHOD, EVERY ACCOUNT AS OF ONE POINT IN TIME
+     *
+     * @param consumer Receives the accounts, from the calling thread
+     */
+    public void exportAccounts(Consumer<Account> consumer) {
+        this.accountsRepository.forEachAccount(consumer);
+    }
+
+    /**
+     * THE CLEAR METHOD, REMOVES EVERY ACCOUNT WITH ITS HISTORY AND RESETS THE AGGREGATES. NOTHING MUST BE CREATED OR
+     * TRANSFERRED MEANWHILE
+     */
+    public void clearAccounts() {
+        this.accountsRepository.clearAccounts();
+        this.transferJournal.clear();
+        this.accountsAggregates.rebase();
+    }
+
+    /**
+     * THE STATEMENT METHOD, A PAGE OF THE TRANSFERS OF AN ACCOUNT FROM THE TRANSFER JOURNAL
+     *
+     * @param accountId The account id
+     * @param from      Cursor, 0 for the first page
+     * @param limit     Maximum number of transfers
+     * @return page, oldest transfer first, or null if the account does not exist
+     */
+    public TransferPage getTransfers(String accountId, long from, int limit) {
+        if (this.accountsRepository.getAccount(accountId) == null) {
+            return null;
+        }
+        return this.transferJournal.statement(accountId, from, limit);
+    }
+
+    /**
+     * THE BATCH TRANSFER METHOD, EVERY TRANSFER IS VALIDATED BY THE REPOSITORY AND GETS ITS OWN STATUS
+     *
+     * @param transfers The transfers
+     * @param atomic    All-or-nothing
+     * @return the status of every transfer, in the same order
+     */
+    public List<TransferStatus> transfer(List<Transfer> transfers, boolean atomic) {
+        if (transfers.isEmpty() || transfers.size() > maxBatchSize) {
+            throw new InvalidBatchException("batch must have between 1 and " + maxBatchSize + " transfers");
+        }
+        long started = this.metrics.start();
+        try {
+            TransferResult[] results;
+            long now;
+            int phase = this.accountsAggregates.transferStarted();
+            long repositoryStarted = this.metrics.startRepository(started);
+            try {
+                results = this.accountsRepository.transfer(transfers, atomic);
+                now = System.currentTimeMillis();
+                for (int i = 0; i < results.length; i++) {
+                    if (results[i].getStatus() == TransferStatus.OK) {
+                        this.accountsAggregates.transferred(transfers.get(i), results[i], now);
+                    }
+                }
+            } finally {
+                this.accountsAggregates.transferFinished(phase);
+                this.metrics.batch.repositoryDone(repositoryStarted);
+            }
+            TransferStatus[] statuses = new TransferStatus[results.length];
+            for (int i = 0; i < results.length; i++) {
+                statuses[i] = results[i].getStatus();
+                if (statuses[i] == TransferStatus.OK) {
+                    this.transferJournal.append(transfers.get(i), results[i], now);
+                    this.notificationDispatcher.notifyAboutTransfer(transfers.get(i).getAccountFromId(), transfers.get(i).getAccountToId());
+                } else {
+                    this.metrics.rejected(statuses[i]);
+                }
+            }
+            return Arrays.asList(statuses);
+        } finally {
+            this.metrics.batch.done(started);
+        }
+    }
+
+    /**
+     * THIS METHOD BUILD THE EXCEPTION OF A REJECTED TRANSFER, MESSAGES ARE ONLY FORMATTED ON THIS FAILURE PATH
+     *
+     * @param transfer The rejected transfer
+     * @param status   Reason of the rejection
+     * @return exception
+     */
+    private static RuntimeException transferFailure(Transfer transfer, TransferStatus status) {
+        switch (status) {
+            case INVALID_TRANSFER:
+                if (transfer.getAccountFromId() == null || transfer.getAccountFromId().isEmpty()
+                        || transfer.getAccountToId() == null || transfer.getAccountToId().isEmpty()) {
+                    return new InvalidAccountException("Account can not be null");
+                }
+                return new InvalidBalanceException("Transfer must be greater than 0.");
+            case SAME_ACCOUNT:
+                return new InvalidAccountException("From and To Accounts are the same");
+            case FROM_ACCOUNT_NOT_FOUND:
+                return new InvalidAccountException("account: " + transfer.getAccountFromId() + " not exist");
+            case TO_ACCOUNT_NOT_FOUND:
+                return new InvalidAccountException("account: " + transfer.getAccountToId() + " not exist");
+            case ACCOUNTS_NOT_FOUND:
+                return new InvalidAccountException("account: " + transfer.getAccountFromId()
+                        + " and account: " + transfer.getAccountToId() + " not exist");
+            case INSUFFICIENT_FUNDS:
+                return new InvalidBalanceException("account balance can not be negative");
+            case INVALID_AMOUNT:
+                return new InvalidBalanceException("account balance out of range");
+            case CURRENCY_MISMATCH:
+                return new InvalidCurrencyException("currency " + transfer.getCurrency() + " is not the one of account: "
+                        + transfer.getAccountFromId());
+            case NO_EXCHANGE_RATE:
+                return new InvalidCurrencyException("no exchange rate between account: " + transfer.getAccountFromId()
+                        + " and account: " + transfer.getAccountToId());
+            default:
+                return new IllegalStateException("Unexpected transfer status " + status);
         }
     }
 
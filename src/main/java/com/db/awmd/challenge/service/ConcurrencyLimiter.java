@@ -0,0 +1,86 @@
+package com.db.awmd.challenge.service;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LIMIT OF THE REQUESTS IN PROGRESS THAT ADAPTS TO THEIR LATENCY, ADDITIVE INCREASE AND MULTIPLICATIVE DECREASE:
+ * EVERY REQUEST FASTER THAN THE THRESHOLD RAISES THE LIMIT BY 1/limit, ONE PER LIMIT OF REQUESTS, AND A SLOWER
+ * ONE CUTS IT BY 10%, AT MOST ONCE PER THRESHOLD SO THE REQUESTS OF A SINGLE STALL DO NOT CUT IT TO THE MINIMUM.
+ * WHEN THE REPOSITORY SLOWS DOWN THE LIMIT SHRINKS AND THE EXCESS IS REJECTED AT ONCE INSTEAD OF QUEUEING BEHIND
+ * THE ACCOUNT LOCKS. THE LIMIT IS FIXED POINT IN A SINGLE AtomicLong, NOTHING IS LOCKED
+ */
+public class ConcurrencyLimiter {
+
+    private static final int FRACTION_BITS = 10;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private final AtomicLong limit;
+
+    private final AtomicLong lastDecrease;
+
+    private final long minLimit;
+
+    private final long maxLimit;
+
+    private final long thresholdNanos;
+
+    /**
+     * @param initial        Limit at start
+     * @param min            Lowest limit
+     * @param max            Highest limit
+     * @param thresholdNanos Latency above which the limit decreases
+     */
+    public ConcurrencyLimiter(int initial, int min, int max, long thresholdNanos) {
+        this.minLimit = (long) Math.max(1, min) << FRACTION_BITS;
+        this.maxLimit = (long) Math.max(max, Math.max(1, min)) << FRACTION_BITS;
+        this.limit = new AtomicLong(Math.min(maxLimit, Math.max(minLimit, (long) initial << FRACTION_BITS)));
+        this.thresholdNanos = thresholdNanos;
+        //THE FIRST SLOW REQUEST ALREADY DECREASES THE LIMIT
+        this.lastDecrease = new AtomicLong(System.nanoTime() - thresholdNanos - 1);
+    }
+
+    /**
+     * THIS METHOD TAKE A PLACE FOR A REQUEST, WHICH MUST RELEASE IT IF IT WAS TAKEN
+     *
+     * @return false if the limit is reached
+     */
+    public boolean tryAcquire() {
+        if (inflight.incrementAndGet() > (limit.get() >> FRACTION_BITS)) {
+            inflight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * THIS METHOD RELEASE THE PLACE OF A REQUEST AND ADAPT THE LIMIT TO ITS LATENCY
+     *
+     * @param started Start of the request, System.nanoTime()
+     * @param now     End of the request, System.nanoTime()
+     */
+    public void release(long started, long now) {
+        inflight.decrementAndGet();
+        if (now - started > thresholdNanos) {
+            long last = lastDecrease.get();
+            if (now - last > thresholdNanos && lastDecrease.compareAndSet(last, now)) {
+                limit.getAndUpdate(current -> Math.max(minLimit, current - current / 10));
+            }
+        } else {
+            long current = limit.get();
+            if (current < maxLimit) {
+                //A LOST RACE LOSES AN INCREMENT, THE NEXT REQUEST RAISES IT
+                limit.compareAndSet(current, Math.min(maxLimit, current + (1L << 2 * FRACTION_BITS) / current));
+            }
+        }
+    }
+
+    public int getLimit() {
+        return (int) (limit.get() >> FRACTION_BITS);
+    }
+
+    public int getInflight() {
+        return inflight.get();
+    }
+}
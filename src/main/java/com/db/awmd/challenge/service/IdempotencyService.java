@@ -0,0 +1,69 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.exception.IdempotencyKeyInProgressException;
+import com.db.awmd.challenge.exception.IdempotencyKeyReusedException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.function.Supplier;
+
+/**
+ * REMEMBERS THE OUTCOME OF THE RECENT REQUESTS SENT WITH AN IDEMPOTENCY KEY, SO A RETRY GETS THE ORIGINAL OUTCOME
+ * INSTEAD OF RUNNING THE OPERATION AGAIN. KEYS ARE KEPT IN A BOUNDED CACHE, A KEY EVICTED OR EXPIRED IS NEW AGAIN
+ */
+@Service
+public class IdempotencyService {
+
+    private final StripedCache<String, Outcome> outcomes;
+
+    @Autowired
+    public IdempotencyService(AccountsProperties properties) {
+        AccountsProperties.Idempotency idempotency = properties.getIdempotency();
+        this.outcomes = new StripedCache<>(idempotency.getMaxKeys(), idempotency.getTtl(), idempotency.getStripes());
+    }
+
+    /**
+     * THIS METHOD RUN THE OPERATION ONCE PER KEY AND RETURN ITS RESULT TO EVERY REQUEST WITH THE SAME KEY
+     *
+     * @param key       Idempotency key sent by the client
+     * @param request   The request, a retry must be equal to the original one
+     * @param operation The operation of the request
+     * @return result of the operation, the cached one for a retry
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Object request, Supplier<T> operation) {
+        Outcome outcome = new Outcome(request);
+        Outcome previous = this.outcomes.putIfAbsent(key, outcome);
+        if (previous != null) {
+            if (!previous.request.equals(request)) {
+                throw new IdempotencyKeyReusedException("Idempotency-Key " + key + " was used with another request");
+            }
+            if (previous.result == null) {
+                throw new IdempotencyKeyInProgressException("Request with Idempotency-Key " + key + " is in progress");
+            }
+            return (T) previous.result;
+        }
+        T result;
+        try {
+            result = operation.get();
+        } catch (RuntimeException re) {
+            //AN UNEXPECTED FAILURE HAS NO OUTCOME TO REPEAT, THE CLIENT CAN RETRY WITH THE SAME KEY
+            this.outcomes.remove(key);
+            throw re;
+        }
+        outcome.result = result;
+        return result;
+    }
+
+    private static final class Outcome {
+
+        private final Object request;
+
+        private volatile Object result;
+
+        private Outcome(Object request) {
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Currencies;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Verification;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BACKGROUND CHECK THAT NO TRANSFER CREATED OR LOST MONEY: THE BALANCES OF THE ACCOUNTS OF EACH CURRENCY, READ AS OF
+ * ONE POINT IN TIME BY forEachAccount, MUST ADD UP TO THE RUNNING TOTAL OF THE CURRENCY IN THE AccountsAggregates.
+ * <p>
+ * A SUM CAN NOT BE CHECKED ON A SAMPLE OF THE ACCOUNTS, SO EVERY VERIFICATION SCANS THEM ALL, FROM A SINGLE
+ * THREAD OF MINIMUM PRIORITY EVERY accounts.aggregates.verify-interval. TRANSFERS ONLY WAIT FOR THE SCAN AS
+ * LONG AS forEachAccount OF THE REPOSITORY BLOCKS THEM. A VERIFICATION DURING WHICH ACCOUNTS WERE CREATED IS
+ * INCONCLUSIVE, THE NEXT ONE TRIES AGAIN. SO IS THE ONE OF A CURRENCY IN WHICH A TRANSFER BETWEEN TWO CURRENCIES WAS
+ * COUNTED, AS IT CHANGES THE TOTALS AFTER THE REPOSITORY APPLIED IT: THE VERIFICATION AWAITS THE TRANSFERS IN
+ * PROGRESS AT THE END OF THE SCAN, SO ONE APPLIED DURING THE SCAN IS ALWAYS COUNTED BEFORE THE CHECK. THE TRANSFERS
+ * WITHIN ONE CURRENCY DO NOT CHANGE ITS TOTAL AND NEVER MAKE IT INCONCLUSIVE. THE STATUS OF THE VERIFICATION IS THE
+ * WORST ONE OF ITS CURRENCIES
+ */
+@Component
+@Slf4j
+public class InvariantVerifier {
+
+    private final AccountsRepository accountsRepository;
+
+    private final AccountsAggregates aggregates;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final Counter[] verifications = new Counter[Verification.Status.values().length];
+
+    private volatile Verification last;
+
+    @Autowired
+    public InvariantVerifier(AccountsRepository accountsRepository, AccountsAggregates aggregates,
+                             MeterRegistry registry, AccountsProperties properties) {
+        this.accountsRepository = accountsRepository;
+        this.aggregates = aggregates;
+        for (Verification.Status status : Verification.Status.values()) {
+            this.verifications[status.ordinal()] = Counter.builder("accounts.invariant.verifications")
+                    .description("Verifications of the total balance per outcome")
+                    .tag("status", status.name().toLowerCase(Locale.ROOT))
+                    .register(registry);
+        }
+        Duration interval = properties.getAggregates().getVerifyInterval();
+        if (interval.isZero()) {
+            this.scheduler = null;
+        } else {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+                Thread thread = new Thread(task, "accounts-invariant-verifier");
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            });
+            this.scheduler.scheduleWithFixedDelay(this::scheduledVerify, interval.toMillis(), interval.toMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * THIS METHOD SCAN EVERY ACCOUNT AND COMPARE THE SUM OF THE BALANCES OF EACH CURRENCY WITH ITS RUNNING TOTAL
+     *
+     * @return the verification, also kept as the last one
+     */
+    public synchronized Verification verify() {
+        long started = System.nanoTime();
+        long creates = aggregates.quiescentCreates();
+        //CONVERSIONS FIRST, THE AGGREGATES COUNT THEM AFTER THEIR TOTALS
+        long[] conversions = aggregates.conversions();
+        long[] expected = aggregates.totalBalances();
+        long[] scanned = new long[Currencies.NUMERIC_CODES];
+        boolean[] held = new boolean[Currencies.NUMERIC_CODES];
+        long[] accounts = new long[1];
+        accountsRepository.forEachAccount(account -> {
+            accounts[0]++;
+            int currency = Currencies.numericCode(account.getCurrency());
+            scanned[currency] += Money.toMinorUnits(account.getBalance(), Currencies.scale(currency));
+            held[currency] = true;
+        });
+        //EVERY TRANSFER THE REPOSITORY APPLIED DURING THE SCAN IS COUNTED ONCE THE ONES IN PROGRESS HAVE FINISHED
+        aggregates.awaitTransfers();
+        long[] convertedSince = aggregates.conversions();
+        boolean createdSince = creates < 0 || aggregates.quiescentCreates() != creates;
+        Map<String, Verification.Status> statuses = new TreeMap<>();
+        Map<String, BigDecimal> expectedTotals = new TreeMap<>();
+        Map<String, BigDecimal> scannedTotals = new TreeMap<>();
+        Verification.Status status = Verification.Status.CONSISTENT;
+        for (int currency = 0; currency < Currencies.NUMERIC_CODES; currency++) {
+            boolean counted = expected[currency] != Long.MIN_VALUE;
+            if (!counted && !held[currency]) {
+                continue;
+            }
+            long expectedTotal = counted ? expected[currency] : 0;
+            Verification.Status currencyStatus;
+            if (createdSince || convertedSince[currency] != conversions[currency]) {
+                currencyStatus = Verification.Status.INCONCLUSIVE;
+            } else {
+                currencyStatus = scanned[currency] == expectedTotal ? Verification.Status.CONSISTENT
+                        : Verification.Status.VIOLATED;
+            }
+            String code = Currencies.code(currency);
+            int scale = Currencies.scale(currency);
+            statuses.put(code, currencyStatus);
+            expectedTotals.put(code, Money.toAmount(expectedTotal, scale));
+            scannedTotals.put(code, Money.toAmount(scanned[currency], scale));
+            if (currencyStatus == Verification.Status.VIOLATED || status == Verification.Status.CONSISTENT) {
+                status = currencyStatus;
+            }
+        }
+        Verification verification = new Verification(Instant.now(), status, statuses, expectedTotals, scannedTotals,
+                accounts[0], TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        verifications[status.ordinal()].increment();
+        if (status == Verification.Status.VIOLATED) {
+            log.error("Total balances of {} accounts are {}, expected {}", accounts[0],
+                    verification.getScannedTotal(), verification.getExpectedTotal());
+        }
+        last = verification;
+        return verification;
+    }
+
+    /**
+     * LAST VERIFICATION, NULL BEFORE THE FIRST ONE
+     */
+    public Verification getLastVerification() {
+        return last;
+    }
+
+    private void scheduledVerify() {
+        try {
+            Verification verification = verify();
+            log.debug("Verification {} of {} accounts in {} ms", verification.getStatus(),
+                    verification.getScannedAccounts(), verification.getDurationMillis());
+        } catch (RuntimeException re) {
+            log.error("Verification of the total balance failed", re);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.db.awmd.challenge.service;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * LATENCIES OF AN OPERATION IN AN HDRHISTOGRAM RECORDER: RECORDING IS WAIT-FREE AND DOES NOT ALLOCATE, READING
+ * SWAPS THE RECORDER'S INTERVAL HISTOGRAM. THE PERCENTILES ARE THOSE OF THE LATENCIES RECORDED BETWEEN THE LAST
+ * TWO REFRESHES, A REFRESH HAPPENS WHEN THEY ARE READ AND THE LAST ONE IS OLDER THAN A SECOND, SO ALL THE
+ * PERCENTILES OF A SCRAPE COME FROM THE SAME INTERVAL
+ */
+final class LatencyHistogram {
+
+    private static final long REFRESH_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    private final Recorder recorder = new Recorder(3);
+
+    /**
+     * GUARDED BY this
+     */
+    private Histogram interval;
+
+    private long refreshedAt;
+
+    void record(long nanos) {
+        recorder.recordValue(Math.max(0, nanos));
+    }
+
+    /**
+     * THIS METHOD RETURN A PERCENTILE OF THE LAST INTERVAL
+     *
+     * @param quantile Quantile, between 0 and 1
+     * @return latency in seconds, 0 if nothing was recorded
+     */
+    synchronized double percentile(double quantile) {
+        refresh();
+        return interval.getValueAtPercentile(quantile * 100) / NANOS_PER_SECOND;
+    }
+
+    synchronized double max() {
+        refresh();
+        return interval.getMaxValue() / NANOS_PER_SECOND;
+    }
+
+    private void refresh() {
+        long now = System.nanoTime();
+        if (interval == null || now - refreshedAt > REFRESH_NANOS) {
+            interval = recorder.getIntervalHistogram(interval);
+            refreshedAt = now;
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * TAKES THE TRANSFER NOTIFICATIONS OFF THE TRANSFER PATH: A TRANSFER ONLY PUTS TWO SMALL EVENTS IN A BOUNDED
+ * LOCK-FREE RING BUFFER, DEDICATED WORKERS DRAIN IT IN BATCHES, COALESCE THE EVENTS OF THE SAME ACCOUNT AND CALL
+ * THE NOTIFICATION SERVICE ONCE PER ACCOUNT. WHEN THE BUFFER IS FULL THE CONFIGURED BACKPRESSURE POLICY APPLIES
+ */
+@Slf4j
+@Service
+public class NotificationDispatcher {
+
+    private final NotificationService notificationService;
+
+    private final AccountsRepository accountsRepository;
+
+    private final AccountsProperties.Backpressure backpressure;
+
+    private final int batchSize;
+
+    private final RingBuffer<Event> queue;
+
+    private final List<Thread> workers = new ArrayList<>();
+
+    /**
+     * WORKERS PARKED ON AN EMPTY QUEUE, A PRODUCER UNPARKS ONE OF THEM AFTER QUEUEING
+     */
+    private final Queue<Thread> idleWorkers = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean running = true;
+
+    private final Path spillFile;
+
+    private final ReentrantLock spillLock = new ReentrantLock();
+
+    private DataOutputStream spillOutput;
+
+    /**
+     * NUMBER OF THE LAST RELOAD, GUARDED BY spillLock. EVERY RELOAD MOVES THE SPILL FILE TO ITS OWN NAME, SO A
+     * CONCURRENT RELOAD NEVER REPLACES OR DELETES THE FILE ANOTHER WORKER IS READING
+     */
+    private long reloads;
+
+    private volatile boolean spillPending;
+
+    private final LongAdder dispatched = new LongAdder();
+
+    private final LongAdder dropped = new LongAdder();
+
+    private final LongAdder spilled = new LongAdder();
+
+    private final AtomicLong dispatchLagNanos = new AtomicLong();
+
+    @Autowired
+    public NotificationDispatcher(NotificationService notificationService, AccountsRepository accountsRepository,
+                                  AccountsProperties properties) {
+        AccountsProperties.Notifications notifications = properties.getNotifications();
+        this.notificationService = notificationService;
+        this.accountsRepository = accountsRepository;
+        this.backpressure = notifications.getBackpressure();
+        this.batchSize = notifications.getBatchSize();
+        this.queue = new RingBuffer<>(notifications.getQueueCapacity());
+        this.spillFile = notifications.getSpillFile().isEmpty()
+                ? Paths.get(properties.getWal().getDirectory(), "notifications.spill")
+                : Paths.get(notifications.getSpillFile());
+        //NOTIFICATIONS SPILLED BEFORE A RESTART ARE DELIVERED FIRST
+        this.spillPending = Files.exists(spillFile);
+        for (int i = 0; i < notifications.getWorkers(); i++) {
+            Thread worker = new Thread(this::dispatchLoop, "notification-dispatcher-" + i);
+            worker.setDaemon(true);
+            worker.start();
+            this.workers.add(worker);
+        }
+    }
+
+    /**
+     * THIS METHOD QUEUE THE NOTIFICATIONS OF A SUCCESSFUL TRANSFER, THE DESCRIPTIONS ARE ONLY BUILT BY THE WORKERS
+     *
+     * @param accountFromId Account from where the money is transferred
+     * @param accountToId   Account to which the money is transferred
+     */
+    public void notifyAboutTransfer(String accountFromId, String accountToId) {
+        long now = System.nanoTime();
+        enqueue(new Event(accountFromId, accountToId, true, now));
+        enqueue(new Event(accountToId, accountFromId, false, now));
+    }
+
+    private void enqueue(Event event) {
+        if (queue.offer(event)) {
+            wakeWorker();
+            return;
+        }
+        switch (backpressure) {
+            case BLOCK:
+                while (!queue.offer(event)) {
+                    LockSupport.parkNanos(1000);
+                }
+                break;
+            case DROP_OLDEST:
+                while (!queue.offer(event)) {
+                    if (queue.poll() != null) {
+                        dropped.increment();
+                    }
+                }
+                break;
+            case SPILL:
+            default:
+                spill(event);
+                break;
+        }
+        wakeWorker();
+    }
+
+    /**
+     * THIS METHOD UNPARK AN IDLE WORKER, A BUSY PRODUCER ONLY PAYS THE EMPTINESS CHECK
+     */
+    private void wakeWorker() {
+        if (!idleWorkers.isEmpty()) {
+            Thread worker = idleWorkers.poll();
+            if (worker != null) {
+                LockSupport.unpark(worker);
+            }
+        }
+    }
+
+    /**
+     * NOTIFICATIONS WAITING IN THE QUEUE
+     */
+    public int getQueueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * TIME THE OLDEST NOTIFICATION OF THE LAST DISPATCHED BATCH SPENT IN THE QUEUE
+     */
+    public long getDispatchLag(TimeUnit unit) {
+        return unit.convert(dispatchLagNanos.get(), TimeUnit.NANOSECONDS);
+    }
+
+    public long getDispatchedCount() {
+        return dispatched.sum();
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    public long getSpilledCount() {
+        return spilled.sum();
+    }
+
+    @PreDestroy
+    public void close() throws InterruptedException {
+        running = false;
+        for (Thread worker : workers) {
+            LockSupport.unpark(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join(TimeUnit.SECONDS.toMillis(5));
+        }
+        spillLock.lock();
+        try {
+            closeSpillOutput();
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    private void dispatchLoop() {
+        List<Event> batch = new ArrayList<>(batchSize);
+        Thread self = Thread.currentThread();
+        while (running || queue.size() > 0) {
+            Event event;
+            while (batch.size() < batchSize && (event = queue.poll()) != null) {
+                batch.add(event);
+            }
+            if (!batch.isEmpty()) {
+                dispatch(batch);
+                batch.clear();
+            } else if (spillPending) {
+                reloadSpill();
+            } else {
+                //PUBLISH THE WAIT BEFORE THE LAST CHECK, AN EVENT EITHER IS SEEN HERE OR ITS PRODUCER UNPARKS A WORKER
+                idleWorkers.offer(self);
+                if (running && queue.size() == 0 && !spillPending) {
+                    LockSupport.park(this);
+                }
+                idleWorkers.remove(self);
+            }
+        }
+    }
+
+    /**
+     * THIS METHOD COALESCE THE EVENTS OF A BATCH BY ACCOUNT AND SEND ONE NOTIFICATION PER ACCOUNT
+     *
+     * @param batch Events in queue order
+     */
+    private void dispatch(List<Event> batch) {
+        dispatchLagNanos.set(System.nanoTime() - batch.get(0).queuedAt);
+        Map<String, StringBuilder> descriptions = new LinkedHashMap<>();
+        for (Event event : batch) {
+            StringBuilder description = descriptions.get(event.accountId);
+            if (description == null) {
+                descriptions.put(event.accountId, description = new StringBuilder());
+            } else {
+                description.append("; ");
+            }
+            description.append(event.outgoing ? "transfers to account " : "transfers from account ")
+                    .append(event.counterpartyId).append(" finish successfully");
+        }
+        for (Map.Entry<String, StringBuilder> entry : descriptions.entrySet()) {
+            try {
+                Account account = accountsRepository.getAccount(entry.getKey());
+                if (account != null) {
+                    notificationService.notifyAboutTransfer(account, entry.getValue().toString());
+                }
+            } catch (RuntimeException re) {
+                log.error("Notification to owner of {} failed", entry.getKey(), re);
+            }
+        }
+        dispatched.add(batch.size());
+    }
+
+    private void spill(Event event) {
+        spillLock.lock();
+        try {
+            if (spillOutput == null) {
+                Path directory = spillFile.toAbsolutePath().getParent();
+                if (directory != null) {
+                    Files.createDirectories(directory);
+                }
+                spillOutput = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spillFile,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)));
+            }
+            spillOutput.writeUTF(event.accountId);
+            spillOutput.writeUTF(event.counterpartyId);
+            spillOutput.writeBoolean(event.outgoing);
+            spillOutput.flush();
+            spillPending = true;
+            spilled.increment();
+        } catch (IOException ioe) {
+            log.error("Notification to owner of {} could not be spilled", event.accountId, ioe);
+            dropped.increment();
+        } finally {
+            spillLock.unlock();
+        }
+    }
+
+    /**
+     * THIS METHOD MOVE THE SPILLED EVENTS BACK TO THE QUEUE, THE ONES THAT DO NOT FIT ARE SPILLED AGAIN
+     */
+    private void reloadSpill() {
+        Path reloading;
+        spillLock.lock();
+        try {
+            if (!spillPending) {
+                return;
+            }
+            closeSpillOutput();
+            reloading = spillFile.resolveSibling(spillFile.getFileName() + ".reloading-" + ++reloads);
+            Files.move(spillFile, reloading, StandardCopyOption.REPLACE_EXISTING);
+            spillPending = false;
+        } catch (IOException ioe) {
+            log.error("Spilled notifications could not be reloaded", ioe);
+            return;
+        } finally {
+            spillLock.unlock();
+        }
+        long now = System.nanoTime();
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(Files.newInputStream(reloading)))) {
+            while (true) {
+                enqueue(new Event(input.readUTF(), input.readUTF(), input.readBoolean(), now));
+            }
+        } catch (EOFException eof) {
+            //END OF THE SPILL FILE
+        } catch (IOException ioe) {
+            log.error("Spilled notifications could not be reloaded", ioe);
+        }
+        try {
+            Files.deleteIfExists(reloading);
+        } catch (IOException ioe) {
+            log.error("Spill file {} could not be deleted", reloading, ioe);
+        }
+    }
+
+    private void closeSpillOutput() {
+        if (spillOutput != null) {
+            try {
+                spillOutput.close();
+            } catch (IOException ioe) {
+                log.error("Spill file {} could not be closed", spillFile, ioe);
+            }
+            spillOutput = null;
+        }
+    }
+
+    /**
+     * ONE SIDE OF A SUCCESSFUL TRANSFER
+     */
+    private static final class Event {
+
+        private final String accountId;
+
+        private final String counterpartyId;
+
+        private final boolean outgoing;
+
+        private final long queuedAt;
+
+        private Event(String accountId, String counterpartyId, boolean outgoing, long queuedAt) {
+            this.accountId = accountId;
+            this.counterpartyId = counterpartyId;
+            this.outgoing = outgoing;
+            this.queuedAt = queuedAt;
+        }
+    }
+}
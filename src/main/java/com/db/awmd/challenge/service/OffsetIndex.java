@@ -0,0 +1,138 @@
+package com.db.awmd.challenge.service;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * APPEND-ONLY LIST OF JOURNAL OFFSETS OF AN ACCOUNT. THE OFFSETS ARE KEPT IN PRIMITIVE CHUNKS, EACH ONE TWICE AS
+ * BIG AS THE PREVIOUS ONE UP TO 2^16 OFFSETS, SO AN APPEND NEVER COPIES WHAT IS ALREADY THERE AND ANY POSITION IS
+ * FOUND WITH A SHIFT. THE CHUNKS WHOSE TRANSFERS THE JOURNAL EVICTED ARE RELEASED, A POSITION KEEPS ITS NUMBER.
+ * APPENDS ARE SERIALIZED BY A ReentrantLock OF THE INDEX, NOT ITS MONITOR, SO A HOT ACCOUNT DOES NOT PIN THE VIRTUAL
+ * THREADS OR INFLATE A MONITOR. READS DO NOT LOCK: AN OFFSET IS WRITTEN BEFORE THE VOLATILE SIZE THAT PUBLISHES IT
+ */
+final class OffsetIndex {
+
+    private static final int FIRST_CHUNK_BITS = 4;
+
+    private static final int MAX_CHUNK_BITS = 16;
+
+    /**
+     * CHUNK k < 12 HOLDS THE POSITIONS FROM 16 * (2^k - 1), THE NEXT ONES 2^16 POSITIONS EACH FROM FIXED_START
+     */
+    private static final int DOUBLING_CHUNKS = MAX_CHUNK_BITS - FIRST_CHUNK_BITS;
+
+    private static final long FIXED_START = ((1L << DOUBLING_CHUNKS) - 1) << FIRST_CHUNK_BITS;
+
+    /**
+     * CHUNKS BY NUMBER, A RELEASED ONE IS NULL. REPLACED BY A BIGGER COPY WHEN FULL, ONE REFERENCE PER 2^16 OFFSETS
+     */
+    private volatile long[][] chunks = new long[DOUBLING_CHUNKS + 1][];
+
+    private final String accountId;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * CHUNK THE NEXT OFFSET GOES TO AND ITS FIRST POSITION, AN APPEND ONLY TOUCHES THIS OBJECT AND THAT CHUNK
+     */
+    private long[] tail;
+
+    private long tailStart;
+
+    private long tailEnd;
+
+    private volatile long size;
+
+    /**
+     * FIRST POSITION WHOSE CHUNK IS NOT RELEASED
+     */
+    private volatile long start;
+
+    OffsetIndex(String accountId) {
+        this.accountId = accountId;
+    }
+
+    /**
+     * THIS METHOD APPEND AN OFFSET AND RELEASE THE FIRST CHUNKS IF THEY ONLY HOLD EVICTED OFFSETS
+     *
+     * @param offset Journal offset
+     * @param oldest Oldest offset the journal still holds
+     */
+    void add(long offset, long oldest) {
+        lock.lock();
+        try {
+            long position = size;
+            release(position, oldest);
+            if (position == tailEnd) {
+                int chunk = chunk(position);
+                long[][] current = chunks;
+                if (chunk == current.length) {
+                    current = Arrays.copyOf(current, current.length * 2);
+                }
+                tail = new long[chunk < DOUBLING_CHUNKS ? 1 << (chunk + FIRST_CHUNK_BITS) : 1 << MAX_CHUNK_BITS];
+                tailStart = position;
+                tailEnd = position + tail.length;
+                current[chunk] = tail;
+                chunks = current;
+            }
+            tail[(int) (position - tailStart)] = offset;
+            size = position + 1;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * THIS METHOD RETURN THE OFFSET AT A POSITION
+     *
+     * @param position Position, lower than a size read before
+     * @return offset, or -1 if its chunk was released
+     */
+    long get(long position) {
+        int chunk = chunk(position);
+        long[] offsets = chunks[chunk];
+        return offsets == null ? -1 : offsets[(int) (position - first(chunk))];
+    }
+
+    String getAccountId() {
+        return accountId;
+    }
+
+    long size() {
+        return size;
+    }
+
+    long start() {
+        return start;
+    }
+
+    /**
+     * THE OFFSETS OF AN ACCOUNT ARE APPENDED ALMOST IN ORDER, A FULL CHUNK WHOSE LAST OFFSET IS EVICTED IS RELEASED
+     */
+    private void release(long position, long oldest) {
+        long[][] current = chunks;
+        while (true) {
+            int chunk = chunk(start);
+            long end = first(chunk + 1);
+            if (end > position || current[chunk][(int) (end - 1 - first(chunk))] >= oldest) {
+                return;
+            }
+            current[chunk] = null;
+            start = end;
+        }
+    }
+
+    private static int chunk(long position) {
+        if (position < FIXED_START) {
+            return 31 - Integer.numberOfLeadingZeros((int) (position >>> FIRST_CHUNK_BITS) + 1);
+        }
+        return DOUBLING_CHUNKS + (int) ((position - FIXED_START) >>> MAX_CHUNK_BITS);
+    }
+
+    private static long first(int chunk) {
+        if (chunk <= DOUBLING_CHUNKS) {
+            return ((1L << chunk) - 1) << FIRST_CHUNK_BITS;
+        }
+        return FIXED_START + ((long) (chunk - DOUBLING_CHUNKS) << MAX_CHUNK_BITS);
+    }
+}
@@ -0,0 +1,169 @@
+package com.db.awmd.challenge.service;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * BOUNDED CONCURRENT CACHE WITH TIME EVICTION. THE KEYS ARE SPREAD OVER INDEPENDENT STRIPES, EVERY STRIPE IS AN
+ * ACCESS ORDERED HASH MAP WITH ITS OWN LOCK AND A FIXED SHARE OF THE CAPACITY, SO OPERATIONS ARE O(1), THE NUMBER
+ * OF ENTRIES NEVER EXCEEDS THE CAPACITY AND THREADS ONLY CONTEND WHEN THEIR KEYS SHARE A STRIPE. WHEN A STRIPE IS
+ * FULL ITS LEAST RECENTLY USED ENTRY IS EVICTED, EXPIRED ENTRIES ARE DROPPED WHEN THEY ARE FOUND
+ *
+ * @param <K> Key type
+ * @param <V> Value type
+ */
+public class StripedCache<K, V> {
+
+    private final Stripe<K, V>[] stripes;
+
+    private final int mask;
+
+    private final long ttlNanos;
+
+    /**
+     * @param maxEntries Maximum number of entries, shared evenly by the stripes
+     * @param ttl        Time an entry is kept since it was written
+     * @param stripes    Number of stripes, rounded up to a power of two
+     */
+    public StripedCache(int maxEntries, Duration ttl, int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        int stripeCapacity = Math.max(1, maxEntries / size);
+        //AN ARRAY OF A GENERIC TYPE CAN ONLY BE CREATED WITH WILDCARDS, EVERY ELEMENT IS A Stripe<K, V>
+        @SuppressWarnings("unchecked")
+        Stripe<K, V>[] created = (Stripe<K, V>[]) new Stripe<?, ?>[size];
+        for (int i = 0; i < size; i++) {
+            created[i] = new Stripe<>(stripeCapacity);
+        }
+        this.stripes = created;
+        this.mask = size - 1;
+        this.ttlNanos = ttl.toNanos();
+    }
+
+    /**
+     * THIS METHOD RETURN THE VALUE OF THE KEY
+     *
+     * @param key Key
+     * @return value, or null if it is not cached or expired
+     */
+    public V get(K key) {
+        Stripe<K, V> stripe = stripeOf(key);
+        stripe.lock.lock();
+        try {
+            return stripe.live(key, System.nanoTime());
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * THIS METHOD CACHE THE VALUE IF THE KEY HAS NO LIVE VALUE
+     *
+     * @param key   Key
+     * @param value Value
+     * @return the current live value, or null if the given one was cached
+     */
+    public V putIfAbsent(K key, V value) {
+        Stripe<K, V> stripe = stripeOf(key);
+        long now = System.nanoTime();
+        stripe.lock.lock();
+        try {
+            V current = stripe.live(key, now);
+            if (current == null) {
+                stripe.entries.put(key, new Entry<>(value, now + ttlNanos));
+            }
+            return current;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public void put(K key, V value) {
+        Stripe<K, V> stripe = stripeOf(key);
+        long now = System.nanoTime();
+        stripe.lock.lock();
+        try {
+            stripe.entries.put(key, new Entry<>(value, now + ttlNanos));
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public void remove(K key) {
+        Stripe<K, V> stripe = stripeOf(key);
+        stripe.lock.lock();
+        try {
+            stripe.entries.remove(key);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * NUMBER OF CACHED ENTRIES, EXPIRED ONES THAT WERE NOT FOUND YET INCLUDED
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe<K, V> stripe : stripes) {
+            stripe.lock.lock();
+            try {
+                size += stripe.entries.size();
+            } finally {
+                stripe.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    private Stripe<K, V> stripeOf(K key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & mask];
+    }
+
+    private static final class Stripe<K, V> {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Map<K, Entry<V>> entries;
+
+        private Stripe(int capacity) {
+            this.entries = new LinkedHashMap<K, Entry<V>>(capacity * 4 / 3 + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        /**
+         * MUST BE CALLED UNDER THE STRIPE LOCK
+         */
+        private V live(K key, long now) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (now - entry.expiresAt > 0) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+
+        private final long expiresAt;
+
+        private Entry(V value, long expiresAt) {
+            this.value = value;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+
+/**
+ * ADMISSION OF THE TRANSFERS BEFORE ANY REPOSITORY WORK: A RATE LIMIT PER SOURCE ACCOUNT, SO ONE CLIENT CAN NOT
+ * TAKE THE LOCKS OF EVERYONE ELSE, AND AN ADAPTIVE LIMIT OF THE TRANSFERS IN PROGRESS, SO A SLOW REPOSITORY SHEDS
+ * THE EXCESS INSTEAD OF QUEUEING IT. A REJECTED TRANSFER COSTS A HASH LOOKUP AND A CAS
+ */
+@Component
+public class TransferAdmission {
+
+    private final AccountRateLimiter rateLimiter;
+
+    private final ConcurrencyLimiter concurrencyLimiter;
+
+    private final Counter rateLimited;
+
+    private final Counter concurrencyLimited;
+
+    @Autowired
+    public TransferAdmission(MeterRegistry registry, AccountsProperties properties) {
+        AccountsProperties.Admission admission = properties.getAdmission();
+        this.rateLimiter = admission.getAccountRate() > 0
+                ? new AccountRateLimiter(admission.getAccountRate(), admission.getAccountBurst(), admission.getBuckets())
+                : null;
+        this.concurrencyLimiter = admission.getMaxConcurrency() > 0
+                ? new ConcurrencyLimiter(admission.getInitialConcurrency(), admission.getMinConcurrency(),
+                admission.getMaxConcurrency(), admission.getLatencyThreshold().toNanos())
+                : null;
+        this.rateLimited = rejections(registry, "rate_limited");
+        this.concurrencyLimited = rejections(registry, "concurrency_limited");
+        if (concurrencyLimiter != null) {
+            Gauge.builder("accounts.admission.limit", concurrencyLimiter, ConcurrencyLimiter::getLimit)
+                    .description("Transfers allowed in progress")
+                    .register(registry);
+            Gauge.builder("accounts.admission.inflight", concurrencyLimiter, ConcurrencyLimiter::getInflight)
+                    .description("Transfers in progress")
+                    .register(registry);
+        }
+    }
+
+    /**
+     * THIS METHOD ADMIT A TRANSFER, WHICH MUST BE RELEASED ONCE DONE
+     *
+     * @param accountFromId Source account of the transfer
+     * @return value for release
+     * @throws TooManyRequestsException if the transfer is rejected
+     */
+    public long acquire(String accountFromId) {
+        //ONE CLOCK READ FOR BOTH LIMITS
+        long now = System.nanoTime();
+        if (rateLimiter != null) {
+            rateLimit(accountFromId, now);
+        }
+        limitConcurrency();
+        return now;
+    }
+
+    /**
+     * THIS METHOD ADMIT A BATCH OF TRANSFERS, WHICH MUST BE RELEASED ONCE DONE. EVERY SOURCE ACCOUNT TAKES A PERMIT,
+     * THE BATCH TAKES ONE SLOT OF THE TRANSFERS IN PROGRESS. THE PERMITS TAKEN BEFORE A REJECTION ARE NOT GIVEN BACK
+     *
+     * @param accountFromIds Distinct source accounts of the transfers
+     * @return value for release
+     * @throws TooManyRequestsException if the batch is rejected
+     */
+    public long acquire(Collection<String> accountFromIds) {
+        long now = System.nanoTime();
+        if (rateLimiter != null) {
+            for (String accountFromId : accountFromIds) {
+                rateLimit(accountFromId, now);
+            }
+        }
+        limitConcurrency();
+        return now;
+    }
+
+    /**
+     * THIS METHOD RELEASE AN ADMITTED TRANSFER
+     *
+     * @param admitted Value returned by acquire
+     */
+    public void release(long admitted) {
+        if (concurrencyLimiter != null) {
+            concurrencyLimiter.release(admitted, System.nanoTime());
+        }
+    }
+
+    private void rateLimit(String accountFromId, long now) {
+        long wait = rateLimiter.tryAcquire(accountFromId, now);
+        if (wait > 0) {
+            rateLimited.increment();
+            throw new TooManyRequestsException("account: " + accountFromId + " sends too many transfers", wait);
+        }
+    }
+
+    private void limitConcurrency() {
+        if (concurrencyLimiter != null && !concurrencyLimiter.tryAcquire()) {
+            concurrencyLimited.increment();
+            throw new TooManyRequestsException("too many transfers in progress", 0);
+        }
+    }
+
+    private static Counter rejections(MeterRegistry registry, String reason) {
+        return Counter.builder("accounts.rejections")
+                .description("Rejected account operations per reason")
+                .tag("operation", "transfer")
+                .tag("reason", reason)
+                .register(registry);
+    }
+}
@@ -0,0 +1,246 @@
+package com.db.awmd.challenge.service;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Currencies;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferPage;
+import com.db.awmd.challenge.domain.TransferRecord;
+import com.db.awmd.challenge.domain.TransferResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * JOURNAL OF THE APPLIED TRANSFERS, IN MEMORY, WITH AN INDEX OF OFFSETS PER ACCOUNT.
+ * <p>
+ * A TRANSFER IS APPENDED BY THE SERVICE ONCE THE REPOSITORY APPLIED IT, OUTSIDE OF THE ACCOUNT LOCKS: THE OFFSET IS
+ * TAKEN FROM A COUNTER, THE TRANSFER IS WRITTEN TO THE COLUMNS OF A FIXED-SIZE CHUNK AND THE OFFSET IS ADDED TO THE
+ * INDEX OF BOTH ACCOUNTS, NOTHING IS EVER COPIED OR MOVED. THE COLUMNS ARE PRIMITIVE ARRAYS AND REFERENCES TO THE
+ * INDEXES, AN APPENDED TRANSFER LEAVES NO OBJECT BEHIND FOR THE GARBAGE COLLECTOR TO TRACE, AROUND 52 BYTES. THE
+ * AMOUNTS ARE KEPT IN THE MINOR UNITS OF THEIR CURRENCY, WHOSE NUMERIC CODE IS A COLUMN TOO.
+ * A STATEMENT PAGE READS ITS OFFSETS FROM THE INDEX OF THE ACCOUNT AND THE TRANSFERS FROM THEIR CHUNKS, ITS COST
+ * DEPENDS ON THE PAGE SIZE ONLY, NOT ON THE HISTORY OF THE ACCOUNT.
+ * <p>
+ * THE TRANSFERS OF AN ACCOUNT ARE IN THE ORDER THEY WERE APPENDED TO ITS INDEX, TWO CONCURRENT TRANSFERS MAY BE
+ * APPENDED IN A DIFFERENT ORDER THAN THE ONE THEY WERE APPLIED IN. THE JOURNAL IS NOT DURABLE, IT STARTS EMPTY.
+ * <p>
+ * THE CHUNKS ARE A RING: ONCE accounts.journal.max-transfers ARE KEPT, THE NEXT CHUNK REPLACES THE OLDEST ONE, SO AN
+ * APPEND, CALLED ONCE THE TRANSFER IS APPLIED, NEVER FAILS AND THE MEMORY STAYS BOUNDED. A STATEMENT PAGE SKIPS THE
+ * EVICTED TRANSFERS AND SAYS SO WITH ITS truncated FLAG
+ */
+@Component
+@Slf4j
+public class TransferJournal {
+
+    private static final int CHUNK_BITS = 16;
+
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    /**
+     * AROUND 2^31 TRANSFERS, THE MOST max-transfers KEEPS
+     */
+    private static final long MAX_CHUNKS = 1 << 15;
+
+    private final boolean enabled;
+
+    private final int maxPageSize;
+
+    /**
+     * CHUNKS OF THE RING, ENOUGH FOR max-transfers PLUS THE ONE BEING FILLED. CHUNK n IS AT n % ringSize
+     */
+    private final int ringSize;
+
+    private final AtomicLong next = new AtomicLong();
+
+    /**
+     * NUMBER OF THE NEWEST CHUNK IN THE RING, THE ONES ringSize OR MORE BEFORE IT ARE EVICTED
+     */
+    private final AtomicLong newestChunk = new AtomicLong();
+
+    private final AtomicReferenceArray<Chunk> chunks;
+
+    private final ConcurrentHashMap<String, OffsetIndex> accounts = new ConcurrentHashMap<>();
+
+    @Autowired
+    public TransferJournal(AccountsProperties properties) {
+        this.enabled = properties.getJournal().isEnabled();
+        this.maxPageSize = properties.getJournal().getMaxPageSize();
+        long maxTransfers = Math.max(1, Math.min(properties.getJournal().getMaxTransfers(), MAX_CHUNKS << CHUNK_BITS));
+        this.ringSize = (int) ((maxTransfers + CHUNK_MASK) >>> CHUNK_BITS) + 1;
+        this.chunks = new AtomicReferenceArray<>(ringSize);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    /**
+     * THIS METHOD APPEND AN APPLIED TRANSFER
+     *
+     * @param transfer The transfer
+     * @param result   Its result, with the credited amount
+     * @param now      Time it was applied, System.currentTimeMillis()
+     */
+    public void append(Transfer transfer, TransferResult result, long now) {
+        if (!enabled) {
+            return;
+        }
+        long offset = next.getAndIncrement();
+        long number = offset >>> CHUNK_BITS;
+        int ringIndex = (int) (number % ringSize);
+        Chunk chunk = chunks.get(ringIndex);
+        while (chunk == null || chunk.number < number) {
+            //THE FIRST APPEND OF THE CHUNK EVICTS THE OLDEST ONE
+            Chunk fresh = new Chunk(number);
+            if (chunks.compareAndSet(ringIndex, chunk, fresh)) {
+                newestChunk.accumulateAndGet(number, Math::max);
+                if (number == ringSize) {
+                    log.info("Transfer journal is full, the oldest transfers are evicted");
+                }
+                chunk = fresh;
+            } else {
+                chunk = chunks.get(ringIndex);
+            }
+        }
+        if (chunk.number != number) {
+            //THE RING WENT ROUND WHILE THIS APPEND WAS PAUSED, ITS TRANSFER IS ALREADY EVICTED
+            return;
+        }
+        OffsetIndex from = index(transfer.getAccountFromId());
+        OffsetIndex to = index(transfer.getAccountToId());
+        int slot = (int) offset & CHUNK_MASK;
+        chunk.from[slot] = from;
+        chunk.to[slot] = to;
+        int currency = result.getCurrencyNumericCode();
+        int creditedCurrency = result.getCreditedCurrencyNumericCode();
+        chunk.currencies[slot] = (short) currency;
+        chunk.creditedCurrencies[slot] = (short) creditedCurrency;
+        chunk.amounts[slot] = Money.toMinorUnits(transfer.getAmount(), Currencies.scale(currency));
+        chunk.credits[slot] = result.isConverted()
+                ? Money.toMinorUnits(result.getCreditedAmount(), Currencies.scale(creditedCurrency))
+                : chunk.amounts[slot];
+        chunk.timestamps[slot] = now;
+        //THE INDEX PUBLISHES THE TRANSFER TO THE READERS OF THE ACCOUNT
+        long oldest = oldest();
+        from.add(offset, oldest);
+        to.add(offset, oldest);
+    }
+
+    /**
+     * THIS METHOD RETURN A PAGE OF THE TRANSFERS OF AN ACCOUNT, OLDEST FIRST. THE CURSOR IS A POSITION IN THE HISTORY
+     * OF THE ACCOUNT, THE EVICTED TRANSFERS ARE SKIPPED AND MAKE THE PAGE TRUNCATED
+     *
+     * @param accountId Account id
+     * @param from      Cursor, 0 for the first page
+     * @param limit     Maximum number of transfers, between 1 and the maximum page size
+     * @return page, empty if the account has no transfers
+     */
+    public TransferPage statement(String accountId, long from, int limit) {
+        OffsetIndex index = accounts.get(accountId);
+        long size = index == null ? 0 : index.size();
+        if (from >= size) {
+            return new TransferPage(Collections.emptyList(), null, false);
+        }
+        long start = index.start();
+        boolean truncated = from < start;
+        long position = Math.max(from, start);
+        List<TransferRecord> transfers = new ArrayList<>(limit);
+        for (; position < size && transfers.size() < limit; position++) {
+            long offset = index.get(position);
+            Chunk chunk = offset < 0 ? null : chunks.get((int) ((offset >>> CHUNK_BITS) % ringSize));
+            if (chunk == null || chunk.number != offset >>> CHUNK_BITS) {
+                truncated = true;
+                continue;
+            }
+            int slot = (int) offset & CHUNK_MASK;
+            int currency = chunk.currencies[slot];
+            int creditedCurrency = chunk.creditedCurrencies[slot];
+            transfers.add(new TransferRecord(offset, chunk.from[slot].getAccountId(), chunk.to[slot].getAccountId(),
+                    Money.toAmount(chunk.amounts[slot], Currencies.scale(currency)), Currencies.code(currency),
+                    Money.toAmount(chunk.credits[slot], Currencies.scale(creditedCurrency)),
+                    Currencies.code(creditedCurrency), Instant.ofEpochMilli(chunk.timestamps[slot])));
+        }
+        return new TransferPage(transfers, position < size ? position : null, truncated);
+    }
+
+    /**
+     * NUMBER OF TRANSFERS KEPT
+     */
+    public long size() {
+        return next.get() - oldest();
+    }
+
+    /**
+     * NUMBER OF TRANSFERS EVICTED
+     */
+    public long evicted() {
+        return oldest();
+    }
+
+    /**
+     * THIS METHOD EMPTY THE JOURNAL, NOTHING MUST BE APPENDED MEANWHILE
+     */
+    public void clear() {
+        accounts.clear();
+        for (int i = 0; i < ringSize; i++) {
+            chunks.set(i, null);
+        }
+        next.set(0);
+        newestChunk.set(0);
+    }
+
+    /**
+     * FIRST OFFSET STILL IN THE RING
+     */
+    private long oldest() {
+        return Math.max(0, newestChunk.get() - ringSize + 1) << CHUNK_BITS;
+    }
+
+    private OffsetIndex index(String accountId) {
+        OffsetIndex index = accounts.get(accountId);
+        return index != null ? index : accounts.computeIfAbsent(accountId, OffsetIndex::new);
+    }
+
+    /**
+     * COLUMNS OF 2^16 TRANSFERS, THE ACCOUNTS ARE THE INDEXES THAT HOLD THEIR IDS. A CHUNK IS NEVER REUSED, A READER
+     * STILL HOLDING AN EVICTED ONE READS CONSISTENT COLUMNS
+     */
+    private static final class Chunk {
+
+        /**
+         * OFFSET OF ITS FIRST TRANSFER SHIFTED BY CHUNK_BITS
+         */
+        private final long number;
+
+        private final OffsetIndex[] from = new OffsetIndex[1 << CHUNK_BITS];
+
+        private final OffsetIndex[] to = new OffsetIndex[1 << CHUNK_BITS];
+
+        private final long[] amounts = new long[1 << CHUNK_BITS];
+
+        private final long[] credits = new long[1 << CHUNK_BITS];
+
+        private final short[] currencies = new short[1 << CHUNK_BITS];
+
+        private final short[] creditedCurrencies = new short[1 << CHUNK_BITS];
+
+        private final long[] timestamps = new long[1 << CHUNK_BITS];
+
+        private Chunk(long number) {
+            this.number = number;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SAMPLED ACCESS LOG, ONE key=value LINE PER LOGGED REQUEST TO THE "accounts.access" LOGGER. ONE REQUEST IN
+ * accounts.access-log.sample-rate IS LOGGED, SERVER ERRORS ALWAYS ARE. THE COUNTS AND LATENCIES OF ALL THE REQUESTS
+ * ARE IN THE http.server.requests METRIC
+ */
+@Component
+public class AccessLogFilter extends OncePerRequestFilter {
+
+    private static final Logger ACCESS_LOG = LoggerFactory.getLogger("accounts.access");
+
+    /**
+     * -1 WHEN THE ACCESS LOG IS OFF
+     */
+    private final int sampleMask;
+
+    @Autowired
+    public AccessLogFilter(AccountsProperties properties) {
+        int configured = properties.getAccessLog().getSampleRate();
+        int sampleRate = 1;
+        while (sampleRate < configured) {
+            sampleRate <<= 1;
+        }
+        this.sampleMask = configured <= 0 ? -1 : sampleRate - 1;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        if (sampleMask < 0 || !ACCESS_LOG.isInfoEnabled()) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long started = System.nanoTime();
+        boolean failed = false;
+        try {
+            chain.doFilter(request, response);
+        } catch (Throwable t) {
+            //THE CONTAINER TURNS IT INTO A SERVER ERROR AFTER THIS FILTER, THE RESPONSE STILL SAYS 200
+            failed = true;
+            throw t;
+        } finally {
+            int status = failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+            if (status >= 500 || (ThreadLocalRandom.current().nextInt() & sampleMask) == 0) {
+                ACCESS_LOG.info("method={} uri={} status={} micros={}", request.getMethod(), request.getRequestURI(),
+                        status, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - started));
+            }
+        }
+    }
+}
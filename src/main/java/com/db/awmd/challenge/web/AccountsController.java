@@ -1,61 +1,290 @@
 package com.db.awmd.challenge.web;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Aggregates;
 import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferPage;
+import com.db.awmd.challenge.domain.TransferStatus;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
+import com.db.awmd.challenge.exception.IdempotencyKeyInProgressException;
+import com.db.awmd.challenge.exception.IdempotencyKeyReusedException;
 import com.db.awmd.challenge.exception.InvalidAccountException;
+import com.db.awmd.challenge.exception.InvalidBatchException;
 import com.db.awmd.challenge.exception.InvalidBalanceException;
+import com.db.awmd.challenge.exception.InvalidCurrencyException;
+import com.db.awmd.challenge.exception.TooManyRequestsException;
+import com.db.awmd.challenge.service.AccountResponseCache;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.IdempotencyService;
+import com.db.awmd.challenge.service.InvariantVerifier;
+import com.db.awmd.challenge.service.TransferAdmission;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.validation.annotation.Validated;
-import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import javax.validation.Valid;
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 @RestController
 @RequestMapping("/v1/accounts")
 @Slf4j
-@Validated
 public class AccountsController {
 
+    /**
+     * REQUEST BODIES ARE ACCEPTED IN JSON, CBOR AND SMILE, RESPONSES FOLLOW THE Accept HEADER
+     */
+    private static final String APPLICATION_CBOR = "application/cbor";
+
+    private static final String APPLICATION_SMILE = "application/x-jackson-smile";
+
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+
     private final AccountsService accountsService;
 
+    private final IdempotencyService idempotencyService;
+
+    private final AccountResponseCache accountResponseCache;
+
+    private final InvariantVerifier invariantVerifier;
+
+    private final TransferAdmission transferAdmission;
+
+    private final ObjectMapper objectMapper;
+
     @Autowired
-    public AccountsController(AccountsService accountsService) {
+    public AccountsController(AccountsService accountsService, IdempotencyService idempotencyService,
+                              AccountResponseCache accountResponseCache, InvariantVerifier invariantVerifier,
+                              TransferAdmission transferAdmission, ObjectMapper objectMapper) {
         this.accountsService = accountsService;
+        this.idempotencyService = idempotencyService;
+        this.accountResponseCache = accountResponseCache;
+        this.invariantVerifier = invariantVerifier;
+        this.transferAdmission = transferAdmission;
+        this.objectMapper = objectMapper;
     }
 
 
-    @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> createAccount(@RequestBody @Valid Account account) {
-        log.info("Creating account {}", account);
+    @PostMapping(consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_CBOR, APPLICATION_SMILE})
+    public ResponseEntity<Object> createAccount(@RequestBody Account account) {
+        log.debug("Creating account {}", account.getAccountId());
+        Map<String, String> errors = RequestValidation.errors(account);
+        if (!errors.isEmpty()) {
+            return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
+        }
 
         try {
             this.accountsService.createAccount(account);
         } catch (DuplicateAccountIdException daie) {
             return new ResponseEntity<>(daie.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (InvalidBalanceException ibe) {
+            return new ResponseEntity<>(ibe.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (InvalidCurrencyException ice) {
+            return new ResponseEntity<>(ice.getMessage(), HttpStatus.BAD_REQUEST);
         }
 
         return new ResponseEntity<>(HttpStatus.CREATED);
     }
 
+    /**
+     * ACCOUNT WITH ITS ETAG. A CLIENT SENDING THE ETAG OF THE CURRENT VERSION IN If-None-Match GETS NOT_MODIFIED,
+     * WITHOUT THE ACCOUNT BEING SERIALIZED. JSON COMES FROM THE RESPONSE CACHE, CBOR AND SMILE ARE SERIALIZED BY THE
+     * MESSAGE CONVERTERS AND GET THE WEAK ETAG OF THE VERSION
+     *
+     * @param accountId Account id
+     * @param request   The request, for Accept and If-None-Match
+     * @return the account, NOT_MODIFIED, or OK with no body if the account does not exist
+     */
     @GetMapping(path = "/{accountId}")
-    public Account getAccount(@PathVariable String accountId) {
-        log.info("Retrieving account for id {}", accountId);
-        return this.accountsService.getAccount(accountId);
+    public ResponseEntity<Object> getAccount(@PathVariable String accountId, WebRequest request) {
+        log.debug("Retrieving account for id {}", accountId);
+        Account account = this.accountsService.getAccount(accountId);
+        if (account == null) {
+            return ResponseEntity.ok().build();
+        }
+        String etag = AccountResponseCache.etag(account);
+        boolean json = acceptsJson(request.getHeader(HttpHeaders.ACCEPT));
+        if (!json) {
+            //SAME VERSION, NOT THE SAME BYTES
+            etag = "W/" + etag;
+        }
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
+        if (!json) {
+            return ResponseEntity.ok().eTag(etag).body(account);
+        }
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(etag)
+                .body(this.accountResponseCache.json(account));
     }
 
-    @PostMapping(value = "/transfer", consumes = MediaType.APPLICATION_JSON_VALUE)
-    public ResponseEntity<Object> transfer(@RequestBody @Valid Transfer transfer) {
+    /**
+     * STATEMENT OF AN ACCOUNT, ITS TRANSFERS OLDEST FIRST. THE next CURSOR OF A PAGE IS THE from OF THE FOLLOWING ONE,
+     * A PAGE DOES NOT CHANGE WHEN NEWER TRANSFERS ARE APPENDED
+     *
+     * @param accountId Account id
+     * @param from      Cursor, 0 for the first page
+     * @param limit     Maximum number of transfers of the page
+     * @return the page, OK with no body if the account does not exist, BAD_REQUEST if from or limit are out of range,
+     * or NOT_IMPLEMENTED if the journal is disabled
+     */
+    @GetMapping(path = "/{accountId}/transfers")
+    public ResponseEntity<Object> getTransfers(@PathVariable String accountId,
+                                               @RequestParam(defaultValue = "0") long from,
+                                               @RequestParam(defaultValue = "100") int limit) {
+        log.debug("Transfers of account {} from {}", accountId, from);
+        if (!this.accountsService.getTransferJournal().isEnabled()) {
+            return new ResponseEntity<>("transfer journal is disabled", HttpStatus.NOT_IMPLEMENTED);
+        }
+        int maxPageSize = this.accountsService.getTransferJournal().getMaxPageSize();
+        if (from < 0 || limit < 1 || limit > maxPageSize) {
+            return new ResponseEntity<>("from must not be negative and limit must be between 1 and " + maxPageSize,
+                    HttpStatus.BAD_REQUEST);
+        }
+        TransferPage page = this.accountsService.getTransfers(accountId, from, limit);
+        if (page == null) {
+            return ResponseEntity.ok().build();
+        }
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * ACCOUNTS READ AT ONE POINT IN TIME, SO THEY ARE ALL READ BEFORE THE FIRST ONE IS WRITTEN: accounts.max-query-size
+     * BOUNDS THEM. THE RESPONSE IS WRITTEN TO THE CLIENT AS IT IS SERIALIZED, ITS BYTES ARE NEVER BUILT IN MEMORY
+     *
+     * @param accountIds The account ids
+     * @return JSON array of the accounts that exist, in the order of the ids, or BAD_REQUEST if there are too many ids
+     */
+    @PostMapping(value = "/query", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_CBOR, APPLICATION_SMILE})
+    public ResponseEntity<StreamingResponseBody> query(@RequestBody List<String> accountIds) {
+        log.debug("Query of {} accounts", accountIds.size());
+        List<Account> accounts = this.accountsService.getAccounts(accountIds);
+        StreamingResponseBody body = output -> {
+            try (JsonGenerator generator = this.objectMapper.getFactory().createGenerator(output)) {
+                //THE CONTAINER CLOSES THE RESPONSE STREAM
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                generator.writeStartArray();
+                for (Account account : accounts) {
+                    generator.writeObject(account);
+                }
+                generator.writeEndArray();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
 
-        log.info("Transfer {} from {} to {}", transfer.getAmount(), transfer.getAccountFromId(), transfer.getAccountToId());
+    /**
+     * RUNNING AGGREGATES OF THE ACCOUNTS AND THE TRANSFERS, WITH THE LAST BACKGROUND VERIFICATION OF THE TOTAL
+     * BALANCE. NOTHING IS SCANNED
+     *
+     * @return aggregates
+     */
+    @GetMapping(path = "/aggregates")
+    public Aggregates getAggregates() {
+        return this.accountsService.getAccountsAggregates().snapshot(this.invariantVerifier.getLastVerification());
+    }
+
+    /**
+     * EVERY ACCOUNT AS OF ONE POINT IN TIME, ONE PER LINE, WRITTEN TO THE CLIENT AS THE ACCOUNTS ARE READ
+     *
+     * @param format "ndjson" (ONE JSON ACCOUNT PER LINE) OR "csv" (accountId,balance,currency WITH A HEADER)
+     * @return the accounts, or BAD_REQUEST if the format is unknown
+     */
+    @GetMapping(path = "/export")
+    public ResponseEntity<StreamingResponseBody> export(@RequestParam(defaultValue = "ndjson") String format) {
+        boolean csv = format.equalsIgnoreCase("csv");
+        if (!csv && !format.equalsIgnoreCase("ndjson")) {
+            return ResponseEntity.badRequest().build();
+        }
+        log.debug("Export of the accounts as {}", format);
+        StreamingResponseBody body = output -> {
+            try (JsonGenerator generator = this.objectMapper.getFactory().createGenerator(output)) {
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                //ONE ACCOUNT PER LINE, WITHOUT THE SPACE JACKSON PUTS BETWEEN ROOT VALUES
+                generator.setRootValueSeparator(null);
+                if (csv) {
+                    generator.writeRaw("accountId,balance,currency\n");
+                }
+                this.accountsService.exportAccounts(account -> {
+                    try {
+                        if (csv) {
+                            generator.writeRaw(csvField(account.getAccountId()));
+                            generator.writeRaw(',');
+                            generator.writeRaw(account.getBalance().toPlainString());
+                            generator.writeRaw(',');
+                            generator.writeRaw(account.getCurrency());
+                        } else {
+                            generator.writeObject(account);
+                        }
+                        generator.writeRaw('\n');
+                    } catch (IOException ioe) {
+                        throw new UncheckedIOException(ioe);
+                    }
+                });
+            } catch (UncheckedIOException uioe) {
+                throw uioe.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(csv ? TEXT_CSV : APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * TRANSFER BETWEEN TWO ACCOUNTS. A RETRY WITH THE SAME Idempotency-Key GETS THE ORIGINAL RESPONSE AND IS NOT APPLIED AGAIN.
+     * THE TRANSFER IS ADMITTED BEFORE ANYTHING ELSE IS DONE, A SOURCE ACCOUNT ABOVE ITS RATE OR A REPOSITORY OVERLOADED
+     * GET TOO_MANY_REQUESTS
+     *
+     * @param transfer       The transfer
+     * @param idempotencyKey Optional key identifying the transfer across retries
+     * @return OK, BAD_REQUEST with the reason the transfer was rejected, or TOO_MANY_REQUESTS with a Retry-After
+     */
+    @PostMapping(value = "/transfer", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_CBOR, APPLICATION_SMILE})
+    public ResponseEntity<Object> transfer(@RequestBody Transfer transfer,
+                                           @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+
+        log.debug("Transfer {} from {} to {}", transfer.getAmount(), transfer.getAccountFromId(), transfer.getAccountToId());
+        Map<String, String> errors = RequestValidation.errors(transfer);
+        if (!errors.isEmpty()) {
+            return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
+        }
+        long admitted;
+        try {
+            admitted = this.transferAdmission.acquire(transfer.getAccountFromId());
+        } catch (TooManyRequestsException tmre) {
+            return tooManyRequests(tmre);
+        }
+        try {
+            if (idempotencyKey == null) {
+                return transfer(transfer);
+            }
+            return this.idempotencyService.execute(idempotencyKey, transfer, () -> transfer(transfer));
+        } catch (IdempotencyKeyInProgressException ikipe) {
+            return new ResponseEntity<>(ikipe.getMessage(), HttpStatus.CONFLICT);
+        } catch (IdempotencyKeyReusedException ikre) {
+            return new ResponseEntity<>(ikre.getMessage(), HttpStatus.UNPROCESSABLE_ENTITY);
+        } finally {
+            this.transferAdmission.release(admitted);
+        }
+    }
+
+    private ResponseEntity<Object> transfer(Transfer transfer) {
         try {
             //IF ACCOUNTS ARE VALID CALL SERVICE METHOD TRANSFER, CHECKING THE FINAL "FROM" ACCOUNT BALANCE,
             // IF IT IS NOT CORRECT THE METHOD THROWS AN INVALIDBALANCEEXCEPTION OR INVALIDACCOUNTEXCEPTION, IF IS OK SEND NOTIFICATIONS TO BOTH ACCOUNTS
@@ -64,26 +293,112 @@ public class AccountsController {
             return new ResponseEntity<>(ibe.getMessage(), HttpStatus.BAD_REQUEST);
         } catch (InvalidAccountException iae) {
             return new ResponseEntity<>(iae.getMessage(), HttpStatus.BAD_REQUEST);
+        } catch (InvalidCurrencyException ice) {
+            return new ResponseEntity<>(ice.getMessage(), HttpStatus.BAD_REQUEST);
         }
 
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
     /**
-     * THIS METHOD TRANSFORM THE MethodArgumentNotValidException MESSAGE INTO A MORE FRIENDLY LIST OF ERRORS
+     * BATCH OF TRANSFERS, APPLIED ALL-OR-NOTHING BY DEFAULT OR ONE BY ONE WITH atomic=false.
+     * THE RESPONSE IS THE STATUS OF EVERY TRANSFER, IN THE ORDER OF THE REQUEST. THE BATCH IS ADMITTED LIKE ONE
+     * TRANSFER FROM EVERY SOURCE ACCOUNT
      *
-     * @param ex Exception
-     * @return errors List of formatted errors
+     * @param transfers The transfers
+     * @param atomic    All-or-nothing
+     * @return statuses, with BAD_REQUEST if an all-or-nothing batch was not applied, or BAD_REQUEST with the errors
+     * per index if a transfer is invalid, or TOO_MANY_REQUESTS with a Retry-After
      */
-    @ResponseStatus(HttpStatus.BAD_REQUEST)
-    @ExceptionHandler(MethodArgumentNotValidException.class)
-    public Map<String, String> handleMethodArgumentNotValid(MethodArgumentNotValidException ex) {
-        Map<String, String> errors = new HashMap<>();
+    @PostMapping(value = "/transfers", consumes = {MediaType.APPLICATION_JSON_VALUE, APPLICATION_CBOR, APPLICATION_SMILE})
+    public ResponseEntity<Object> transfers(@RequestBody List<Transfer> transfers,
+                                            @RequestParam(defaultValue = "true") boolean atomic) {
+        log.debug("Batch of {} transfers, atomic {}", transfers.size(), atomic);
+        Map<String, String> errors = RequestValidation.errors(transfers);
+        if (!errors.isEmpty()) {
+            return new ResponseEntity<>(errors, HttpStatus.BAD_REQUEST);
+        }
+        Set<String> accountFromIds = new HashSet<>();
+        for (Transfer transfer : transfers) {
+            accountFromIds.add(transfer.getAccountFromId());
+        }
+        long admitted;
+        try {
+            admitted = this.transferAdmission.acquire(accountFromIds);
+        } catch (TooManyRequestsException tmre) {
+            return tooManyRequests(tmre);
+        }
+        List<TransferStatus> statuses;
+        try {
+            statuses = this.accountsService.transfer(transfers, atomic);
+        } catch (InvalidBatchException ibe) {
+            return new ResponseEntity<>(ibe.getMessage(), HttpStatus.BAD_REQUEST);
+        } finally {
+            this.transferAdmission.release(admitted);
+        }
+        //AN ALL-OR-NOTHING BATCH IS EITHER ALL OK OR NOT APPLIED AT ALL
+        boolean rejected = atomic && statuses.get(0) != TransferStatus.OK;
+        return new ResponseEntity<>(statuses, rejected ? HttpStatus.BAD_REQUEST : HttpStatus.OK);
+    }
 
-        ex.getBindingResult().getFieldErrors().forEach(error ->
-                errors.put(error.getField(), error.getDefaultMessage()));
+    /**
+     * THIS METHOD BUILD THE RESPONSE OF A REJECTED ADMISSION
+     *
+     * @param tmre Exception
+     * @return TOO_MANY_REQUESTS with a Retry-After
+     */
+    private static ResponseEntity<Object> tooManyRequests(TooManyRequestsException tmre) {
+        //RETRY-AFTER IS IN WHOLE SECONDS, ROUNDED UP
+        long retryAfter = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(tmre.getRetryAfterNanos() + 999_999_999L));
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter))
+                .body(tmre.getMessage());
+    }
+
+    /**
+     * THIS METHOD TELL IF JSON IS ACCEPTED, WITHOUT PARSING THE COMMON HEADERS
+     *
+     * @param accept Accept header, null if there is none
+     * @return true if the response can be JSON
+     */
+    private static boolean acceptsJson(String accept) {
+        if (accept == null || accept.isEmpty() || accept.contains("json") || accept.contains("*/*")) {
+            return true;
+        }
+        for (MediaType mediaType : MediaType.parseMediaTypes(accept)) {
+            if (mediaType.isCompatibleWith(MediaType.APPLICATION_JSON)) {
+                return true;
+            }
+        }
+        return false;
+    }
 
-        return errors;
+    /**
+     * THIS METHOD QUOTE A CSV FIELD IF IT HAS A SEPARATOR, A QUOTE OR A LINE BREAK
+     *
+     * @param value Field value
+     * @return field
+     */
+    private static String csvField(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                return '"' + value.replace("\"", "\"\"") + '"';
+            }
+        }
+        return value;
+    }
+
+    /**
+     * THIS METHOD RETURN THE MESSAGE OF A QUERY WITH TOO MANY ACCOUNT IDS
+     *
+     * @param ibe Exception
+     * @return message
+     */
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    @ExceptionHandler(InvalidBatchException.class)
+    public String handleInvalidBatch(InvalidBatchException ibe) {
+        return ibe.getMessage();
     }
 
 }
@@ -0,0 +1,105 @@
+package com.db.awmd.challenge.web;
+
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Currencies;
+import com.db.awmd.challenge.domain.Transfer;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * CHECKS OF THE REQUEST BODIES, WRITTEN BY HAND INSTEAD OF BEAN VALIDATION SO NO ANNOTATION IS READ AND NO
+ * CONSTRAINT VIOLATION IS BUILT ON EVERY REQUEST. THE ERRORS ARE A MAP FROM FIELD TO MESSAGE, AS RETURNED TO THE CLIENT
+ */
+final class RequestValidation {
+
+    private static final String NULL = "must not be null";
+
+    private static final String EMPTY = "must not be empty";
+
+    private static final String UNKNOWN_CURRENCY = "unknown currency";
+
+    private RequestValidation() {
+    }
+
+    /**
+     * THIS METHOD CHECK AN ACCOUNT TO CREATE
+     *
+     * @param account The account
+     * @return errors per field, empty if the account is valid
+     */
+    static Map<String, String> errors(Account account) {
+        Map<String, String> errors = Collections.emptyMap();
+        errors = notEmpty(errors, "accountId", account.getAccountId());
+        if (account.getBalance() == null) {
+            errors = error(errors, "balance", NULL);
+        } else if (account.getBalance().signum() < 0) {
+            errors = error(errors, "balance", "Initial balance must be positive.");
+        }
+        if (Currencies.find(account.getCurrency()) == 0) {
+            errors = error(errors, "currency", UNKNOWN_CURRENCY);
+        }
+        return errors;
+    }
+
+    /**
+     * THIS METHOD CHECK A TRANSFER
+     *
+     * @param transfer The transfer
+     * @return errors per field, empty if the transfer is valid
+     */
+    static Map<String, String> errors(Transfer transfer) {
+        Map<String, String> errors = Collections.emptyMap();
+        errors = notEmpty(errors, "accountFromId", transfer.getAccountFromId());
+        errors = notEmpty(errors, "accountToId", transfer.getAccountToId());
+        if (transfer.getAmount() == null) {
+            errors = error(errors, "amount", NULL);
+        } else if (transfer.getAmount().compareTo(BigDecimal.ONE) < 0) {
+            errors = error(errors, "amount", "Transfer must be greater than 0.");
+        }
+        if (transfer.getCurrency() != null && Currencies.find(transfer.getCurrency()) == 0) {
+            errors = error(errors, "currency", UNKNOWN_CURRENCY);
+        }
+        return errors;
+    }
+
+    /**
+     * THIS METHOD CHECK EVERY TRANSFER OF A BATCH, THE FIELDS OF AN INVALID ONE ARE PREFIXED WITH ITS INDEX
+     *
+     * @param transfers The transfers
+     * @return errors per field, as "[1].amount", empty if every transfer is valid
+     */
+    static Map<String, String> errors(List<Transfer> transfers) {
+        Map<String, String> errors = Collections.emptyMap();
+        for (int i = 0; i < transfers.size(); i++) {
+            Transfer transfer = transfers.get(i);
+            if (transfer == null) {
+                errors = error(errors, "[" + i + "]", NULL);
+                continue;
+            }
+            for (Map.Entry<String, String> error : errors(transfer).entrySet()) {
+                errors = error(errors, "[" + i + "]." + error.getKey(), error.getValue());
+            }
+        }
+        return errors;
+    }
+
+    private static Map<String, String> notEmpty(Map<String, String> errors, String field, String value) {
+        if (value == null) {
+            return error(errors, field, NULL);
+        }
+        return value.isEmpty() ? error(errors, field, EMPTY) : errors;
+    }
+
+    /**
+     * THE MAP IS ONLY ALLOCATED FOR THE FIRST ERROR, A VALID REQUEST SHARES THE EMPTY ONE
+     */
+    private static Map<String, String> error(Map<String, String> errors, String field, String message) {
+        Map<String, String> result = errors.isEmpty() ? new HashMap<>() : errors;
+        result.put(field, message);
+        return result;
+    }
+}
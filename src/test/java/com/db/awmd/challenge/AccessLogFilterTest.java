@@ -0,0 +1,81 @@
+package com.db.awmd.challenge;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.web.AccessLogFilter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AccessLogFilterTest {
+
+    private final Logger accessLog = (Logger) LoggerFactory.getLogger("accounts.access");
+
+    private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+    @Before
+    public void attachAppender() {
+        appender.start();
+        accessLog.addAppender(appender);
+    }
+
+    @After
+    public void detachAppender() {
+        accessLog.detachAppender(appender);
+    }
+
+    @Test
+    public void logEveryRequest() throws Exception {
+        AccessLogFilter filter = filter(1);
+        filter.doFilter(new MockHttpServletRequest("GET", "/v1/accounts/Id-1"), new MockHttpServletResponse(),
+                new MockFilterChain());
+
+        assertThat(appender.list).hasSize(1);
+        assertThat(appender.list.get(0).getFormattedMessage())
+                .startsWith("method=GET uri=/v1/accounts/Id-1 status=200 micros=");
+    }
+
+    /**
+     * WITH THE ACCESS LOG OFF NOTHING IS LOGGED, NOT EVEN THE SERVER ERRORS
+     */
+    @Test
+    public void accessLogOff() throws Exception {
+        AccessLogFilter filter = filter(0);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setStatus(500);
+        filter.doFilter(new MockHttpServletRequest("GET", "/v1/accounts/Id-1"), response, new MockFilterChain());
+
+        assertThat(appender.list).isEmpty();
+    }
+
+    /**
+     * AN UNHANDLED EXCEPTION IS LOGGED AS A SERVER ERROR, WHATEVER THE SAMPLE, AND STILL THROWN
+     */
+    @Test
+    public void logUnhandledException() {
+        AccessLogFilter filter = filter(1 << 30);
+        assertThatThrownBy(() -> filter.doFilter(new MockHttpServletRequest("POST", "/v1/accounts/transfer"),
+                new MockHttpServletResponse(), (request, response) -> {
+                    throw new IllegalStateException("failed");
+                })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(appender.list).hasSize(1);
+        assertThat(appender.list.get(0).getFormattedMessage())
+                .startsWith("method=POST uri=/v1/accounts/transfer status=500 micros=");
+    }
+
+    private static AccessLogFilter filter(int sampleRate) {
+        AccountsProperties properties = new AccountsProperties();
+        properties.getAccessLog().setSampleRate(sampleRate);
+        return new AccessLogFilter(properties);
+    }
+}
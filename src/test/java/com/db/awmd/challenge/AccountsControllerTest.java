@@ -1,7 +1,13 @@
 package com.db.awmd.challenge;
 
 import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.exception.TooManyRequestsException;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.TransferAdmission;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -11,19 +17,26 @@ import org.springframework.http.MediaType;
 import org.springframework.test.context.junit4.SpringRunner;
 import org.springframework.test.context.web.WebAppConfiguration;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.context.WebApplicationContext;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 import static org.springframework.test.web.servlet.setup.MockMvcBuilders.webAppContextSetup;
 
 @RunWith(SpringRunner.class)
-@SpringBootTest
+@SpringBootTest(properties = "accounts.journal.enabled=true")
 @WebAppConfiguration
 public class AccountsControllerTest {
 
@@ -32,6 +45,9 @@ public class AccountsControllerTest {
     @Autowired
     private AccountsService accountsService;
 
+    @Autowired
+    private TransferAdmission transferAdmission;
+
     @Autowired
     private WebApplicationContext webApplicationContext;
 
@@ -40,7 +56,7 @@ public class AccountsControllerTest {
         this.mockMvc = webAppContextSetup(this.webApplicationContext).build();
 
         // Reset the existing accounts before each test.
-        accountsService.getAccountsRepository().clearAccounts();
+        accountsService.clearAccounts();
     }
 
     @Test
@@ -86,12 +102,34 @@ public class AccountsControllerTest {
                 .content("{\"accountId\":\"Id-123\",\"balance\":-1000}")).andExpect(status().isBadRequest());
     }
 
+    @Test
+    public void createAccountTooManyDecimals() throws Exception {
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-123\",\"balance\":10.001}")).andExpect(status().isBadRequest());
+    }
+
     @Test
     public void createAccountEmptyAccountId() throws Exception {
         this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
                 .content("{\"accountId\":\"\",\"balance\":1000}")).andExpect(status().isBadRequest());
     }
 
+    /**
+     * AN ACCOUNT CAN NOT BE CREATED IN AN UNKNOWN CURRENCY, NOR IN ONE WITHOUT EXCHANGE RATE
+     */
+    @Test
+    public void createAccountInvalidCurrency() throws Exception {
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-123\",\"balance\":1000,\"currency\":\"XYZ\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.currency").value("unknown currency"));
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-123\",\"balance\":1000,\"currency\":\"USD\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("no exchange rate for currency USD"));
+        assertThat(accountsService.getAccount("Id-123")).isNull();
+    }
+
     @Test
     public void getAccount() throws Exception {
         String uniqueAccountId = "Id-" + System.currentTimeMillis();
@@ -99,8 +137,105 @@ public class AccountsControllerTest {
         this.accountsService.createAccount(account);
         this.mockMvc.perform(get("/v1/accounts/" + uniqueAccountId))
                 .andExpect(status().isOk())
-                .andExpect(
-                        content().string("{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45}"));
+                .andExpect(content().string(
+                        "{\"accountId\":\"" + uniqueAccountId + "\",\"balance\":123.45,\"currency\":\"EUR\"}"));
+    }
+
+    /**
+     * THE QUERY RETURNS THE EXISTING ACCOUNTS IN THE ORDER OF THE IDS
+     */
+    @Test
+    public void queryAccounts() throws Exception {
+        this.accountsService.createAccount(new Account("Id-123", new BigDecimal("1000")));
+        this.accountsService.createAccount(new Account("Id-1234", new BigDecimal("20.5")));
+        MvcResult result = this.mockMvc.perform(post("/v1/accounts/query").contentType(MediaType.APPLICATION_JSON)
+                .content("[\"Id-1234\",\"Id-missing\",\"Id-123\"]"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        this.mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[{\"accountId\":\"Id-1234\",\"balance\":20.5,\"currency\":\"EUR\"},"
+                        + "{\"accountId\":\"Id-123\",\"balance\":1000,\"currency\":\"EUR\"}]"));
+    }
+
+    @Test
+    public void exportAccounts() throws Exception {
+        this.accountsService.createAccount(new Account("Id-123", new BigDecimal("1000")));
+        this.accountsService.createAccount(new Account("Id,\"1234", new BigDecimal("20.5")));
+        MvcResult ndjson = this.mockMvc.perform(get("/v1/accounts/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        String lines = this.mockMvc.perform(asyncDispatch(ndjson))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(lines.split("\n")).containsExactlyInAnyOrder(
+                "{\"accountId\":\"Id-123\",\"balance\":1000,\"currency\":\"EUR\"}",
+                "{\"accountId\":\"Id,\\\"1234\",\"balance\":20.5,\"currency\":\"EUR\"}");
+
+        MvcResult csv = this.mockMvc.perform(get("/v1/accounts/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        lines = this.mockMvc.perform(asyncDispatch(csv))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        assertThat(lines).startsWith("accountId,balance,currency\n");
+        assertThat(lines.split("\n")).containsExactlyInAnyOrder("accountId,balance,currency", "Id-123,1000,EUR",
+                "\"Id,\"\"1234\",20.5,EUR");
+
+        this.mockMvc.perform(get("/v1/accounts/export").param("format", "xml"))
+                .andExpect(status().isBadRequest());
+    }
+
+    /**
+     * CBOR AND SMILE BODIES ARE VALIDATED AND APPLIED LIKE JSON ONES
+     */
+    @Test
+    public void transferBinaryFormats() throws Exception {
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+        ObjectMapper smile = new ObjectMapper(new SmileFactory());
+        this.mockMvc.perform(post("/v1/accounts").contentType("application/cbor")
+                .content(cbor.writeValueAsBytes(new Account("Id-123", new BigDecimal("1000")))))
+                .andExpect(status().isCreated());
+        this.mockMvc.perform(post("/v1/accounts").contentType("application/x-jackson-smile")
+                .content(smile.writeValueAsBytes(new Account("Id-1234", new BigDecimal("2000")))))
+                .andExpect(status().isCreated());
+
+        this.mockMvc.perform(post("/v1/accounts/transfer").contentType("application/cbor")
+                .content(cbor.writeValueAsBytes(new Transfer("Id-123", "Id-1234", new BigDecimal("10")))))
+                .andExpect(status().isOk());
+        this.mockMvc.perform(post("/v1/accounts/transfer").contentType("application/x-jackson-smile")
+                .content(smile.writeValueAsBytes(new Transfer("Id-123", "", new BigDecimal("10")))))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("{\"accountToId\":\"must not be empty\"}"));
+
+        byte[] body = this.mockMvc.perform(get("/v1/accounts/Id-123").accept("application/cbor"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+        assertThat(cbor.readValue(body, Account.class).getBalance()).isEqualByComparingTo("990");
+    }
+
+    /**
+     * THE ETAG OF THE CURRENT VERSION GETS NOT_MODIFIED, A TRANSFER CHANGES THE VERSION
+     */
+    @Test
+    public void getAccountNotModified() throws Exception {
+        this.accountsService.createAccount(new Account("Id-123", new BigDecimal("1000")));
+        this.accountsService.createAccount(new Account("Id-1234", new BigDecimal("2000")));
+        String etag = this.mockMvc.perform(get("/v1/accounts/Id-123"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+        assertThat(etag).isNotNull();
+
+        this.mockMvc.perform(get("/v1/accounts/Id-123").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-1234\",\"amount\":1}"))
+                .andExpect(status().isOk());
+        this.mockMvc.perform(get("/v1/accounts/Id-123").header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(content().string("{\"accountId\":\"Id-123\",\"balance\":999,\"currency\":\"EUR\"}"));
     }
 
     /**
@@ -225,4 +360,224 @@ public class AccountsControllerTest {
         assertThat(account1.getBalance()).isEqualByComparingTo("999");
         assertThat(account2.getBalance()).isEqualByComparingTo("2001");
     }
+
+    /**
+     * A TRANSFER IN ANOTHER CURRENCY THAN THE ONE OF THE "FROM" ACCOUNT IS REJECTED
+     */
+    @Test
+    public void transferCurrencyMismatch() throws Exception {
+        this.accountsService.createAccount(new Account("Id-123", new BigDecimal("1000")));
+        this.accountsService.createAccount(new Account("Id-1234", new BigDecimal("2000")));
+        this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-1234\",\"amount\":1,\"currency\":\"XYZ\"}"))
+                .andExpect(status().isBadRequest());
+        this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-1234\",\"amount\":1,\"currency\":\"GBP\"}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("currency GBP is not the one of account: Id-123"));
+        this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-1234\",\"amount\":1,\"currency\":\"EUR\"}"))
+                .andExpect(status().isOk());
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("999");
+    }
+
+    /**
+     * TEST THE STATEMENT OF AN ACCOUNT IS PAGED WITH THE next CURSOR, REJECTED TRANSFERS ARE NOT IN IT
+     */
+    @Test
+    public void getTransfers() throws Exception {
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-1234\",\"balance\":2000}")).andExpect(status().isCreated());
+        for (String amount : new String[]{"1", "5000", "2", "3"}) {
+            this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                    .content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-1234\",\"amount\":" + amount + "}"));
+        }
+
+        this.mockMvc.perform(get("/v1/accounts/Id-1234/transfers?limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transfers.length()").value(2))
+                .andExpect(jsonPath("$.transfers[0].accountFromId").value("Id-123"))
+                .andExpect(jsonPath("$.transfers[0].amount").value(1))
+                .andExpect(jsonPath("$.transfers[1].amount").value(2))
+                .andExpect(jsonPath("$.next").value(2));
+        this.mockMvc.perform(get("/v1/accounts/Id-123/transfers?from=2&limit=2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.transfers.length()").value(1))
+                .andExpect(jsonPath("$.transfers[0].amount").value(3))
+                .andExpect(jsonPath("$.next").doesNotExist());
+        this.mockMvc.perform(get("/v1/accounts/Id-123/transfers?limit=0")).andExpect(status().isBadRequest());
+        this.mockMvc.perform(get("/v1/accounts/Id-999/transfers")).andExpect(status().isOk())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    public void getAggregates() throws Exception {
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-1234\",\"balance\":2000.5}")).andExpect(status().isCreated());
+        this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-1234\",\"amount\":10}")).andExpect(status().isOk());
+
+        this.mockMvc.perform(get("/v1/accounts/aggregates"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.accounts").value(2))
+                .andExpect(jsonPath("$.totalBalance.EUR").value(3000.5))
+                .andExpect(jsonPath("$.transfers").value(1))
+                .andExpect(jsonPath("$.transferVolume.EUR").value(10))
+                .andExpect(jsonPath("$.lastMinuteTransfers").value(1));
+    }
+
+    /**
+     * TEST A RETRIED TRANSFER WITH THE SAME IDEMPOTENCY KEY IS APPLIED ONLY ONCE
+     *
+     * @throws Exception
+     */
+    @Test
+    public void transferIdempotent() throws Exception {
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-1234\",\"balance\":2000}")).andExpect(status().isCreated());
+        String key = "transfer-" + System.nanoTime();
+        for (int i = 0; i < 2; i++) {
+            this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON).header("Idempotency-Key", key)
+                    .content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-1234\",\"amount\":600}")).andExpect(status().isOk());
+        }
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("400");
+        assertThat(accountsService.getAccount("Id-1234").getBalance()).isEqualByComparingTo("2600");
+
+        //THE SAME KEY WITH ANOTHER TRANSFER IS REJECTED
+        this.mockMvc.perform(post("/v1/accounts/transfer").contentType(MediaType.APPLICATION_JSON).header("Idempotency-Key", key)
+                .content("{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-1234\",\"amount\":1}"))
+                .andExpect(status().isUnprocessableEntity());
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("400");
+    }
+
+    /**
+     * TEST A VALID ALL-OR-NOTHING BATCH OF TRANSFERS
+     *
+     * @throws Exception
+     */
+    @Test
+    public void transfers() throws Exception {
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-1234\",\"balance\":0}")).andExpect(status().isCreated());
+        //THE SECOND TRANSFER IS ONLY POSSIBLE AFTER THE FIRST ONE
+        this.mockMvc.perform(post("/v1/accounts/transfers").contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-1234\",\"amount\":100},"
+                        + "{\"accountFromId\":\"Id-1234\",\"accountToId\":\"Id-123\",\"amount\":40}]"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[\"OK\",\"OK\"]"));
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("940");
+        assertThat(accountsService.getAccount("Id-1234").getBalance()).isEqualByComparingTo("60");
+    }
+
+    /**
+     * TEST AN ALL-OR-NOTHING BATCH WITH ONE INVALID TRANSFER, NOTHING IS APPLIED
+     *
+     * @throws Exception
+     */
+    @Test
+    public void transfersAtomicRejected() throws Exception {
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-1234\",\"balance\":0}")).andExpect(status().isCreated());
+        this.mockMvc.perform(post("/v1/accounts/transfers").contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-1234\",\"amount\":100},"
+                        + "{\"accountFromId\":\"Id-1234\",\"accountToId\":\"Id-123\",\"amount\":400}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string("[\"NOT_APPLIED\",\"INSUFFICIENT_FUNDS\"]"));
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("1000");
+        assertThat(accountsService.getAccount("Id-1234").getBalance()).isEqualByComparingTo("0");
+    }
+
+    /**
+     * TEST A BATCH OF INDEPENDENT TRANSFERS, EVERY VALID TRANSFER IS APPLIED
+     *
+     * @throws Exception
+     */
+    @Test
+    public void transfersIndependent() throws Exception {
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-1234\",\"balance\":0}")).andExpect(status().isCreated());
+        this.mockMvc.perform(post("/v1/accounts/transfers?atomic=false").contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-1234\",\"amount\":100},"
+                        + "{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-9999\",\"amount\":10},"
+                        + "{\"accountFromId\":\"Id-1234\",\"accountToId\":\"Id-123\",\"amount\":400}]"))
+                .andExpect(status().isOk())
+                .andExpect(content().string("[\"OK\",\"TO_ACCOUNT_NOT_FOUND\",\"INSUFFICIENT_FUNDS\"]"));
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("900");
+        assertThat(accountsService.getAccount("Id-1234").getBalance()).isEqualByComparingTo("100");
+    }
+
+    /**
+     * TEST AN EMPTY BATCH OF TRANSFERS
+     *
+     * @throws Exception
+     */
+    @Test
+    public void transfersEmpty() throws Exception {
+        this.mockMvc.perform(post("/v1/accounts/transfers").contentType(MediaType.APPLICATION_JSON)
+                .content("[]")).andExpect(status().isBadRequest());
+    }
+
+    /**
+     * TEST A BATCH WITH A NULL AND AN INVALID TRANSFER IS REJECTED WITH THEIR INDEXES, NOTHING IS APPLIED
+     *
+     * @throws Exception
+     */
+    @Test
+    public void transfersInvalid() throws Exception {
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-1234\",\"balance\":0}")).andExpect(status().isCreated());
+        this.mockMvc.perform(post("/v1/accounts/transfers?atomic=false").contentType(MediaType.APPLICATION_JSON)
+                .content("[{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-1234\",\"amount\":100},"
+                        + "null,"
+                        + "{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-1234\",\"amount\":-1}]"))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$['[1]']").value("must not be null"))
+                .andExpect(jsonPath("$['[2].amount']").exists());
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("1000");
+    }
+
+    /**
+     * TEST A BATCH IS NOT APPLIED WHEN THE TRANSFERS IN PROGRESS ARE AT THEIR LIMIT
+     *
+     * @throws Exception
+     */
+    @Test
+    public void transfersTooManyRequests() throws Exception {
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-123\",\"balance\":1000}")).andExpect(status().isCreated());
+        this.mockMvc.perform(post("/v1/accounts").contentType(MediaType.APPLICATION_JSON)
+                .content("{\"accountId\":\"Id-1234\",\"balance\":0}")).andExpect(status().isCreated());
+        List<Long> admitted = new ArrayList<>();
+        try {
+            //EVERY SLOT IS TAKEN, EACH BY ANOTHER ACCOUNT SO THE RATE LIMIT IS NOT REACHED
+            try {
+                while (true) {
+                    admitted.add(this.transferAdmission.acquire("Id-Busy-" + admitted.size()));
+                }
+            } catch (TooManyRequestsException tmre) {
+                //LIMIT REACHED
+            }
+            this.mockMvc.perform(post("/v1/accounts/transfers").contentType(MediaType.APPLICATION_JSON)
+                    .content("[{\"accountFromId\":\"Id-123\",\"accountToId\":\"Id-1234\",\"amount\":100}]"))
+                    .andExpect(status().isTooManyRequests())
+                    .andExpect(header().exists("Retry-After"));
+        } finally {
+            admitted.forEach(this.transferAdmission::release);
+        }
+        assertThat(accountsService.getAccount("Id-123").getBalance()).isEqualByComparingTo("1000");
+    }
 }
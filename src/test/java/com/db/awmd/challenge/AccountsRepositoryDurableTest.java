@@ -0,0 +1,263 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.repository.AccountsRepositoryDurable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class AccountsRepositoryDurableTest {
+
+    private File directory;
+
+    static File temporaryDirectory() throws IOException {
+        return Files.createTempDirectory("accounts").toFile();
+    }
+
+    static AccountsProperties properties(File directory) {
+        AccountsProperties properties = AccountsRepositoryTest.properties();
+        properties.getWal().setDirectory(directory.getPath());
+        properties.getWal().setSnapshotInterval(Duration.ZERO);
+        return properties;
+    }
+
+    static void delete(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    @Before
+    public void createDirectory() throws IOException {
+        this.directory = temporaryDirectory();
+    }
+
+    @After
+    public void deleteDirectory() {
+        delete(this.directory);
+    }
+
+    @Test
+    public void replay() throws IOException {
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties(directory))) {
+            repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+            repository.createAccount(new Account("Id-2", new BigDecimal("50.25")));
+            repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal(30)));
+            repository.transfer(Arrays.asList(
+                    new Transfer("Id-2", "Id-1", new BigDecimal(10)),
+                    new Transfer("Id-1", "Id-2", new BigDecimal(1000))), false);
+            //REJECTED, SO NOT IN THE LOG
+            repository.transfer(Arrays.asList(
+                    new Transfer("Id-2", "Id-1", new BigDecimal(10)),
+                    new Transfer("Id-1", "Id-2", new BigDecimal(1000))), true);
+        }
+
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties(directory))) {
+            assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("80");
+            assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("70.25");
+            assertThat(repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal(80))).getStatus()).isEqualTo(TransferStatus.OK);
+        }
+    }
+
+    /**
+     * THE CREDITS OF CONVERTED TRANSFERS ARE REPLAYED AS LOGGED, WITHOUT THE RATES, AND THE CURRENCIES SURVIVE A
+     * SNAPSHOT
+     */
+    @Test
+    public void replayCurrencies() throws IOException {
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties(directory))) {
+            repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+            repository.createAccount(new Account("Id-2", new BigDecimal(0), "USD"));
+            repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal("1.02")));
+            repository.transfer(Arrays.asList(
+                    new Transfer("Id-1", "Id-2", new BigDecimal(10)),
+                    new Transfer("Id-2", "Id-1", new BigDecimal("2.5"))), false);
+        }
+
+        AccountsProperties withoutRates = properties(directory);
+        withoutRates.getFx().setRatesFile("");
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(withoutRates)) {
+            assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("90.98");
+            assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("11.28");
+            assertThat(repository.getAccount("Id-2").getCurrency()).isEqualTo("USD");
+            repository.snapshot();
+        }
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties(directory))) {
+            assertThat(repository.getAccount("Id-1").getCurrency()).isEqualTo("EUR");
+            assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("11.28");
+            assertThat(repository.getAccount("Id-2").getCurrency()).isEqualTo("USD");
+        }
+    }
+
+    @Test
+    public void replayTornRecord() throws IOException {
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties(directory))) {
+            repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+            repository.createAccount(new Account("Id-2", new BigDecimal(0)));
+            repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal(30)));
+        }
+        //CUT THE LAST RECORD AS A CRASH IN THE MIDDLE OF THE WRITE WOULD
+        File[] segments = directory.listFiles((dir, name) -> name.endsWith(".wal"));
+        assertThat(segments).hasSize(1);
+        try (RandomAccessFile file = new RandomAccessFile(segments[0], "rw")) {
+            file.setLength(file.length() - 3);
+        }
+
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties(directory))) {
+            assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+            assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+            repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal(10)));
+        }
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties(directory))) {
+            assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("90");
+        }
+    }
+
+    @Test
+    public void clearAccounts() throws IOException {
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties(directory))) {
+            repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+            repository.clearAccounts();
+            repository.createAccount(new Account("Id-1", new BigDecimal(5)));
+        }
+
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties(directory))) {
+            assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("5");
+        }
+    }
+
+    @Test
+    public void snapshot() throws IOException {
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties(directory))) {
+            repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+            repository.createAccount(new Account("Id-2", new BigDecimal(0)));
+            repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal(30)));
+            Path snapshot = repository.snapshot();
+            repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal(5)));
+            repository.createAccount(new Account("Id-3", new BigDecimal(7)));
+
+            //THE SNAPSHOT REPLACES THE SEGMENT IT COVERS
+            assertThat(directory.list()).containsExactlyInAnyOrder(snapshot.getFileName().toString(),
+                    "accounts-0000000000000001.wal");
+        }
+
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties(directory))) {
+            assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("65");
+            assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("35");
+            assertThat(repository.getAccount("Id-3").getBalance()).isEqualByComparingTo("7");
+        }
+    }
+
+    /**
+     * SNAPSHOTS TAKEN WHILE TRANSFERS RUN, THE RECOVERED STATE MUST BE THE STATE AT CLOSE
+     */
+    @Test
+    public void snapshotConcurrentTransfers() throws Exception {
+        int accounts = 20;
+        BigDecimal[] balances = new BigDecimal[accounts];
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties(directory))) {
+            for (int i = 0; i < accounts; i++) {
+                repository.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+            }
+            AtomicBoolean running = new AtomicBoolean(true);
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    Random random = new Random(seed);
+                    while (running.get()) {
+                        int from = random.nextInt(accounts);
+                        int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                        repository.transfer(new Transfer("Id-" + from, "Id-" + to, new BigDecimal(1 + random.nextInt(50))));
+                    }
+                }));
+            }
+            for (int i = 0; i < 5; i++) {
+                repository.snapshot();
+            }
+            running.set(false);
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            executor.shutdown();
+            for (int i = 0; i < accounts; i++) {
+                balances[i] = repository.getAccount("Id-" + i).getBalance();
+            }
+        }
+
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties(directory))) {
+            for (int i = 0; i < accounts; i++) {
+                assertThat(repository.getAccount("Id-" + i).getBalance()).isEqualByComparingTo(balances[i]);
+            }
+        }
+    }
+
+    /**
+     * TEST A FAILED LOG REJECTS THE CHANGES WITHOUT APPLYING THEM IN MEMORY
+     */
+    @Test
+    public void failedLog() throws Exception {
+        AccountsProperties properties = properties(directory);
+        properties.getHotAccounts().setIds(Collections.singletonList("Merchant"));
+        try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties)) {
+            repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+            repository.createAccount(new Account("Id-2", new BigDecimal(0)));
+            repository.createAccount(new Account("Merchant", new BigDecimal(0)));
+            //AN INTERRUPTED FLUSHER FAILS THE LOG BEFORE IT STOPS
+            for (Thread thread : Thread.getAllStackTraces().keySet()) {
+                if (thread.getName().equals("wal-flusher-" + directory.getName())) {
+                    thread.interrupt();
+                    thread.join();
+                }
+            }
+
+            assertThatThrownBy(() -> repository.createAccount(new Account("Id-3", new BigDecimal(10))))
+                    .isInstanceOf(UncheckedIOException.class);
+            assertThat(repository.getAccount("Id-3")).isNull();
+
+            assertThatThrownBy(() -> repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal(30))))
+                    .isInstanceOf(UncheckedIOException.class);
+            assertThatThrownBy(() -> repository.transfer(new Transfer("Id-1", "Merchant", new BigDecimal(30))))
+                    .isInstanceOf(UncheckedIOException.class);
+            assertThatThrownBy(() -> repository.transfer(Arrays.asList(
+                    new Transfer("Id-1", "Id-2", new BigDecimal(10)),
+                    new Transfer("Id-1", "Merchant", new BigDecimal(10))), false))
+                    .isInstanceOf(UncheckedIOException.class);
+            assertThatThrownBy(repository::clearAccounts).isInstanceOf(UncheckedIOException.class);
+
+            assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+            assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+            assertThat(repository.getAccount("Merchant").getBalance()).isEqualByComparingTo("0");
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.repository.AccountsRepositoryDurable;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccountsRepositoryHotAccountTest {
+
+    /**
+     * MOST TRANSFERS CREDIT THE HOT ACCOUNT, WHICH ALSO PAYS BACK. MONEY MUST BE CONSERVED AND NO BALANCE NEGATIVE
+     */
+    @Test
+    public void concurrentTransfersToHotAccount() throws Exception {
+        AccountsProperties properties = new AccountsProperties();
+        properties.getHotAccounts().setIds(Collections.singletonList("Merchant"));
+        AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(properties);
+        int accounts = 10;
+        repository.createAccount(new Account("Merchant", new BigDecimal(0)));
+        for (int i = 0; i < accounts; i++) {
+            repository.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 20000; i++) {
+                    String account = "Id-" + random.nextInt(accounts);
+                    BigDecimal amount = new BigDecimal(1 + random.nextInt(20));
+                    if (i % 10 == 0) {
+                        repository.transfer(Arrays.asList(new Transfer("Merchant", account, amount),
+                                new Transfer(account, "Merchant", BigDecimal.ONE)), true);
+                    } else if (i % 3 == 0) {
+                        repository.transfer(new Transfer("Merchant", account, amount));
+                    } else {
+                        repository.transfer(new Transfer(account, "Merchant", amount));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        BigDecimal total = repository.getAccount("Merchant").getBalance();
+        assertThat(total.signum()).isGreaterThanOrEqualTo(0);
+        for (int i = 0; i < accounts; i++) {
+            BigDecimal balance = repository.getAccount("Id-" + i).getBalance();
+            assertThat(balance.signum()).isGreaterThanOrEqualTo(0);
+            total = total.add(balance);
+        }
+        assertThat(total).isEqualByComparingTo(new BigDecimal(accounts * 1000));
+    }
+
+    /**
+     * A CREDIT THAT WOULD OVERFLOW THE BALANCE OF A HOT ACCOUNT IS REJECTED, WHETHER THE EARLIER CREDITS ARE STILL
+     * IN THE CELLS OR ALREADY FOLDED INTO THE BALANCE
+     */
+    @Test
+    public void transferToHotAccountOverflow() {
+        AccountsProperties properties = new AccountsProperties();
+        properties.getHotAccounts().setIds(Collections.singletonList("Merchant"));
+        AccountsRepositoryInMemory repository = new AccountsRepositoryInMemory(properties);
+        repository.createAccount(new Account("Merchant", new BigDecimal(0)));
+        repository.createAccount(new Account("Rich", new BigDecimal("92233720368547758.00")));
+        repository.createAccount(new Account("Id-1", new BigDecimal(1000)));
+        assertThat(repository.transfer(new Transfer("Rich", "Merchant", new BigDecimal("92233720368547750.00")))
+                .getStatus()).isEqualTo(TransferStatus.OK);
+        assertThat(repository.transfer(new Transfer("Id-1", "Merchant", BigDecimal.TEN)).getStatus())
+                .isEqualTo(TransferStatus.INVALID_AMOUNT);
+        //THE DEBIT FOLDS THE CELLS INTO THE BALANCE
+        assertThat(repository.transfer(new Transfer("Merchant", "Id-1", BigDecimal.ONE)).getStatus())
+                .isEqualTo(TransferStatus.OK);
+        assertThat(repository.transfer(new Transfer("Id-1", "Merchant", BigDecimal.TEN)).getStatus())
+                .isEqualTo(TransferStatus.INVALID_AMOUNT);
+        assertThat(repository.transfer(new Transfer("Id-1", "Merchant", new BigDecimal(5))).getStatus())
+                .isEqualTo(TransferStatus.OK);
+        assertThat(repository.getAccount("Merchant").getBalance())
+                .isEqualByComparingTo("92233720368547754.00");
+    }
+
+    /**
+     * CREDITS STILL IN THE CELLS MUST BE IN THE SNAPSHOT OR IN THE LOG, NEVER IN BOTH
+     */
+    @Test
+    public void snapshotHotAccount() throws IOException {
+        File directory = AccountsRepositoryDurableTest.temporaryDirectory();
+        AccountsProperties properties = AccountsRepositoryDurableTest.properties(directory);
+        properties.getHotAccounts().setIds(Collections.singletonList("Merchant"));
+        try {
+            try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties)) {
+                repository.createAccount(new Account("Merchant", new BigDecimal(0)));
+                repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+                repository.transfer(new Transfer("Id-1", "Merchant", new BigDecimal(30)));
+                repository.snapshot();
+                repository.transfer(new Transfer("Id-1", "Merchant", new BigDecimal(5)));
+                assertThat(repository.transfer(new Transfer("Merchant", "Id-1", new BigDecimal(36))).getStatus())
+                        .isEqualTo(TransferStatus.INSUFFICIENT_FUNDS);
+                assertThat(repository.transfer(new Transfer("Merchant", "Id-1", new BigDecimal(10))).getStatus())
+                        .isEqualTo(TransferStatus.OK);
+                repository.transfer(new Transfer("Id-1", "Merchant", new BigDecimal(2)));
+            }
+
+            try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties)) {
+                assertThat(repository.getAccount("Merchant").getBalance()).isEqualByComparingTo("27");
+                assertThat(repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("73");
+                repository.snapshot();
+            }
+
+            try (AccountsRepositoryDurable repository = new AccountsRepositoryDurable(properties)) {
+                assertThat(repository.getAccount("Merchant").getBalance()).isEqualByComparingTo("27");
+            }
+        } finally {
+            AccountsRepositoryDurableTest.delete(directory);
+        }
+    }
+}
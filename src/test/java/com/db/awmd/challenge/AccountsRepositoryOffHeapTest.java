@@ -0,0 +1,49 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.repository.AccountsRepositoryOffHeap;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class AccountsRepositoryOffHeapTest {
+
+    @Test
+    public void growBeyondExpectedAccounts() {
+        AccountsProperties properties = new AccountsProperties();
+        properties.getOffHeap().setExpectedAccounts(4);
+        AccountsRepositoryOffHeap repository = new AccountsRepositoryOffHeap(properties);
+        for (int i = 0; i < 10000; i++) {
+            repository.createAccount(new Account("Id-" + i, new BigDecimal(i)));
+        }
+        repository.createAccount(new Account("Cuenta-ñ", new BigDecimal("1.5")));
+
+        assertThat(repository.getAccount("Id-0").getBalance()).isEqualByComparingTo("0");
+        assertThat(repository.getAccount("Id-9999").getBalance()).isEqualByComparingTo("9999");
+        assertThat(repository.getAccount("Cuenta-ñ").getBalance()).isEqualByComparingTo("1.5");
+        assertThat(repository.getAccount("Cuenta-n")).isNull();
+        assertThat(repository.getAccount("Id-10000")).isNull();
+    }
+
+    @Test
+    public void transferByDenseInt() {
+        AccountsRepositoryOffHeap repository = new AccountsRepositoryOffHeap(new AccountsProperties());
+        repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+        repository.createAccount(new Account("Id-2", new BigDecimal(0)));
+        int from = repository.intern("Id-1");
+        int to = repository.intern("Id-2");
+
+        assertThat(repository.intern("Id-3")).isEqualTo(-1);
+        assertThat(repository.transfer(from, to, 3000)).isEqualTo(TransferStatus.OK);
+        assertThat(repository.transfer(from, to, 50)).isEqualTo(TransferStatus.INVALID_TRANSFER);
+        assertThat(repository.transfer(from, from, 100)).isEqualTo(TransferStatus.SAME_ACCOUNT);
+        assertThat(repository.transfer(from, 2, 100)).isEqualTo(TransferStatus.TO_ACCOUNT_NOT_FOUND);
+        assertThat(repository.transfer(from, to, 8000)).isEqualTo(TransferStatus.INSUFFICIENT_FUNDS);
+        assertThat(repository.balance(from)).isEqualTo(7000);
+        assertThat(repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("30");
+    }
+}
@@ -0,0 +1,468 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Money;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.domain.TransferStatus;
+import com.db.awmd.challenge.exception.InvalidBalanceException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryDurable;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.repository.AccountsRepositoryOffHeap;
+import com.db.awmd.challenge.repository.AccountsRepositoryOptimistic;
+import com.db.awmd.challenge.repository.AccountsRepositorySharded;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * TESTS SHARED BY EVERY ACCOUNTS REPOSITORY IMPLEMENTATION
+ */
+@RunWith(Parameterized.class)
+public class AccountsRepositoryTest {
+
+    @Parameterized.Parameter(0)
+    public String name;
+
+    @Parameterized.Parameter(1)
+    public Supplier<AccountsRepository> factory;
+
+    private AccountsRepository repository;
+
+    private static final String RATES_FILE = ratesFile();
+
+    /**
+     * PROPERTIES OF THE REPOSITORIES UNDER TEST, WITH EXCHANGE RATES 1 EUR = 1.25 USD = 0.8 GBP = 160 JPY AND NONE
+     * FOR CHF
+     */
+    static AccountsProperties properties() {
+        AccountsProperties properties = new AccountsProperties();
+        properties.getFx().setRatesFile(RATES_FILE);
+        properties.getFx().setRefreshInterval(Duration.ZERO);
+        return properties;
+    }
+
+    private static String ratesFile() {
+        try {
+            Path file = Files.createTempFile("rates", ".properties");
+            file.toFile().deleteOnExit();
+            Files.write(file, Arrays.asList("USD=1.25", "GBP=0.8", "JPY=160"), StandardCharsets.UTF_8);
+            return file.toString();
+        } catch (IOException ioe) {
+            throw new UncheckedIOException(ioe);
+        }
+    }
+
+    @Parameterized.Parameters(name = "{0}")
+    public static Collection<Object[]> repositories() {
+        Supplier<AccountsRepository> locking = () -> new AccountsRepositoryInMemory(properties());
+        Supplier<AccountsRepository> optimistic = () -> new AccountsRepositoryOptimistic(properties());
+        Supplier<AccountsRepository> durable = () -> {
+            try {
+                return new AccountsRepositoryDurable(AccountsRepositoryDurableTest.properties(
+                        AccountsRepositoryDurableTest.temporaryDirectory()));
+            } catch (IOException ioe) {
+                throw new UncheckedIOException(ioe);
+            }
+        };
+        Supplier<AccountsRepository> offHeap = () -> new AccountsRepositoryOffHeap(properties());
+        Supplier<AccountsRepository> sharded = () -> new AccountsRepositorySharded(properties());
+        return Arrays.asList(new Object[][]{{"locking", locking}, {"optimistic", optimistic}, {"durable", durable},
+                {"offheap", offHeap}, {"sharded", sharded}});
+    }
+
+    @Before
+    public void createRepository() {
+        this.repository = factory.get();
+    }
+
+    @After
+    public void closeRepository() throws IOException {
+        if (this.repository instanceof Closeable) {
+            ((Closeable) this.repository).close();
+        }
+    }
+
+    @Test
+    public void transfer() {
+        this.repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+        this.repository.createAccount(new Account("Id-2", new BigDecimal(50)));
+
+        assertThat(this.repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal(30))).getStatus()).isEqualTo(TransferStatus.OK);
+
+        assertThat(this.repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("70");
+        assertThat(this.repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("80");
+    }
+
+    @Test
+    public void transferInvalidBalance() {
+        this.repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+        this.repository.createAccount(new Account("Id-2", new BigDecimal(50)));
+        assertThat(this.repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal(101))).getStatus())
+                .isEqualTo(TransferStatus.INSUFFICIENT_FUNDS);
+        assertThat(this.repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+        assertThat(this.repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("50");
+    }
+
+    @Test
+    public void transferTooManyDecimals() {
+        this.repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+        this.repository.createAccount(new Account("Id-2", new BigDecimal(50)));
+        try {
+            this.repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal("1.005")));
+            fail("Should have failed when the amount can not be represented in minor units");
+        } catch (InvalidBalanceException ex) {
+            assertThat(ex.getMessage()).isEqualTo("amount 1.005 can not have more than 2 decimals");
+        }
+        assertThat(this.repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+    }
+
+    @Test
+    public void transferBalanceOverflow() {
+        this.repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+        this.repository.createAccount(new Account("Id-2", Money.toAmount(Long.MAX_VALUE, 2)));
+        assertThat(this.repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal(1))).getStatus())
+                .isEqualTo(TransferStatus.INVALID_AMOUNT);
+        assertThat(this.repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+    }
+
+    @Test
+    public void transferAccountsNotFound() {
+        this.repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+
+        assertThat(this.repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal(1))).getStatus())
+                .isEqualTo(TransferStatus.TO_ACCOUNT_NOT_FOUND);
+        assertThat(this.repository.transfer(new Transfer("Id-2", "Id-1", new BigDecimal(1))).getStatus())
+                .isEqualTo(TransferStatus.FROM_ACCOUNT_NOT_FOUND);
+        assertThat(this.repository.transfer(new Transfer("Id-2", "Id-3", new BigDecimal(1))).getStatus())
+                .isEqualTo(TransferStatus.ACCOUNTS_NOT_FOUND);
+        assertThat(this.repository.transfer(new Transfer("Id-1", "Id-1", new BigDecimal(1))).getStatus())
+                .isEqualTo(TransferStatus.SAME_ACCOUNT);
+    }
+
+    /**
+     * THE "TO" ACCOUNT IS CREDITED THE AMOUNT CONVERTED TO ITS CURRENCY, ROUNDED HALF UP TO THE MINOR UNIT
+     */
+    @Test
+    public void transferBetweenCurrencies() {
+        this.repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+        this.repository.createAccount(new Account("Id-2", new BigDecimal(0), "USD"));
+        this.repository.createAccount(new Account("Id-3", new BigDecimal(0), "GBP"));
+        this.repository.createAccount(new Account("Id-4", new BigDecimal(0)));
+
+        TransferResult converted = this.repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal(10)));
+        assertThat(converted.getStatus()).isEqualTo(TransferStatus.OK);
+        assertThat(converted.getCreditedAmount()).isEqualByComparingTo("12.5");
+        assertThat(converted.getCurrency()).isEqualTo("EUR");
+        assertThat(converted.getCreditedCurrency()).isEqualTo("USD");
+        assertThat(this.repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal("1.02"))).getStatus())
+                .isEqualTo(TransferStatus.OK);
+        assertThat(this.repository.transfer(new Transfer("Id-2", "Id-3", new BigDecimal("5"), "USD")).getStatus())
+                .isEqualTo(TransferStatus.OK);
+        TransferResult sameCurrency = this.repository.transfer(new Transfer("Id-1", "Id-4", new BigDecimal(1)));
+        assertThat(sameCurrency.getStatus()).isEqualTo(TransferStatus.OK);
+        assertThat(sameCurrency.isConverted()).isFalse();
+
+        assertThat(this.repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("87.98");
+        assertThat(this.repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("8.78");
+        assertThat(this.repository.getAccount("Id-2").getCurrency()).isEqualTo("USD");
+        assertThat(this.repository.getAccount("Id-3").getBalance()).isEqualByComparingTo("3.2");
+        assertThat(this.repository.getAccount("Id-3").getCurrency()).isEqualTo("GBP");
+    }
+
+    /**
+     * EVERY CURRENCY KEEPS THE DECIMALS OF ITS MINOR UNIT, JPY HAS NONE
+     */
+    @Test
+    public void transferBetweenScales() {
+        this.repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+        this.repository.createAccount(new Account("Id-2", new BigDecimal(0), "JPY"));
+        try {
+            this.repository.createAccount(new Account("Id-3", new BigDecimal("0.5"), "JPY"));
+            fail("Should have failed with a yen balance with decimals");
+        } catch (InvalidBalanceException ex) {
+            assertThat(ex.getMessage()).isEqualTo("amount 0.5 can not have more than 0 decimals");
+        }
+
+        TransferResult converted = this.repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal("10.01")));
+        assertThat(converted.getStatus()).isEqualTo(TransferStatus.OK);
+        assertThat(converted.getCreditedAmount()).isEqualByComparingTo("1602");
+        try {
+            this.repository.transfer(new Transfer("Id-2", "Id-1", new BigDecimal("1.5")));
+            fail("Should have failed when the amount can not be represented in yen");
+        } catch (InvalidBalanceException ex) {
+            assertThat(ex.getMessage()).isEqualTo("amount 1.5 can not have more than 0 decimals");
+        }
+        assertThat(this.repository.transfer(Arrays.asList(
+                new Transfer("Id-2", "Id-1", new BigDecimal(160)),
+                new Transfer("Id-2", "Id-1", new BigDecimal("1.5"))), false)).extracting(TransferResult::getStatus)
+                .containsExactly(TransferStatus.OK, TransferStatus.INVALID_AMOUNT);
+
+        assertThat(this.repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("90.99");
+        assertThat(this.repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("1442");
+        assertThat(this.repository.getAccounts(Arrays.asList("Id-1", "Id-2"))).extracting(Account::getBalance)
+                .usingElementComparator(BigDecimal::compareTo).containsExactly(new BigDecimal("90.99"), new BigDecimal(1442));
+    }
+
+    @Test
+    public void transferCurrencyRejected() {
+        this.repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+        this.repository.createAccount(new Account("Id-2", new BigDecimal(0), "CHF"));
+        this.repository.createAccount(new Account("Id-3", new BigDecimal(0), "USD"));
+
+        assertThat(this.repository.transfer(new Transfer("Id-1", "Id-3", new BigDecimal(1), "USD")).getStatus())
+                .isEqualTo(TransferStatus.CURRENCY_MISMATCH);
+        assertThat(this.repository.transfer(new Transfer("Id-1", "Id-2", new BigDecimal(1))).getStatus())
+                .isEqualTo(TransferStatus.NO_EXCHANGE_RATE);
+        assertThat(this.repository.transfer(Arrays.asList(
+                new Transfer("Id-1", "Id-3", new BigDecimal(1)),
+                new Transfer("Id-1", "Id-2", new BigDecimal(1))), true)).extracting(TransferResult::getStatus)
+                .containsExactly(TransferStatus.NOT_APPLIED, TransferStatus.NO_EXCHANGE_RATE);
+        assertThat(this.repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+        assertThat(this.repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+        assertThat(this.repository.getAccount("Id-3").getBalance()).isEqualByComparingTo("0");
+    }
+
+    /**
+     * AN ALL-OR-NOTHING BATCH TAKES BACK THE CONVERTED CREDITS OF THE TRANSFERS IT UNDOES
+     */
+    @Test
+    public void transferBatchBetweenCurrencies() {
+        this.repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+        this.repository.createAccount(new Account("Id-2", new BigDecimal(0), "USD"));
+
+        assertThat(this.repository.transfer(Arrays.asList(
+                new Transfer("Id-1", "Id-2", new BigDecimal(10)),
+                new Transfer("Id-2", "Id-1", new BigDecimal(13))), true)).extracting(TransferResult::getStatus)
+                .containsExactly(TransferStatus.NOT_APPLIED, TransferStatus.INSUFFICIENT_FUNDS);
+        assertThat(this.repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+        assertThat(this.repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+
+        List<Transfer> transfers = Arrays.asList(
+                new Transfer("Id-1", "Id-2", new BigDecimal(10)),
+                new Transfer("Id-2", "Id-1", new BigDecimal("2.5")));
+        TransferResult[] results = this.repository.transfer(transfers, false);
+        assertThat(results).extracting(TransferResult::getStatus).containsExactly(TransferStatus.OK, TransferStatus.OK);
+        assertThat(results[1].getCreditedAmount()).isEqualByComparingTo("2");
+        assertThat(this.repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("92");
+        assertThat(this.repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("10");
+    }
+
+    @Test
+    public void transferBatchAtomic() {
+        this.repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+        this.repository.createAccount(new Account("Id-2", new BigDecimal(0)));
+        this.repository.createAccount(new Account("Id-3", new BigDecimal(0)));
+
+        TransferResult[] results = this.repository.transfer(Arrays.asList(
+                new Transfer("Id-1", "Id-2", new BigDecimal(60)),
+                new Transfer("Id-2", "Id-3", new BigDecimal(50)),
+                new Transfer("Id-3", "Id-1", new BigDecimal(51))), true);
+
+        assertThat(results).extracting(TransferResult::getStatus).containsExactly(TransferStatus.NOT_APPLIED, TransferStatus.NOT_APPLIED, TransferStatus.INSUFFICIENT_FUNDS);
+        assertThat(this.repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("100");
+        assertThat(this.repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("0");
+        assertThat(this.repository.getAccount("Id-3").getBalance()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    public void transferBatchIndependent() {
+        this.repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+        this.repository.createAccount(new Account("Id-2", new BigDecimal(0)));
+        this.repository.createAccount(new Account("Id-3", new BigDecimal(0)));
+
+        TransferResult[] results = this.repository.transfer(Arrays.asList(
+                new Transfer("Id-1", "Id-2", new BigDecimal(60)),
+                new Transfer("Id-2", "Id-2", new BigDecimal(1)),
+                new Transfer("Id-2", "Id-3", new BigDecimal(50)),
+                new Transfer("Id-3", "Id-1", new BigDecimal(51))), false);
+
+        assertThat(results).extracting(TransferResult::getStatus).containsExactly(TransferStatus.OK, TransferStatus.SAME_ACCOUNT, TransferStatus.OK, TransferStatus.INSUFFICIENT_FUNDS);
+        assertThat(this.repository.getAccount("Id-1").getBalance()).isEqualByComparingTo("40");
+        assertThat(this.repository.getAccount("Id-2").getBalance()).isEqualByComparingTo("10");
+        assertThat(this.repository.getAccount("Id-3").getBalance()).isEqualByComparingTo("50");
+    }
+
+    /**
+     * CONCURRENT TRANSFERS IN BOTH DIRECTIONS, MONEY MUST BE CONSERVED AND NO BALANCE CAN BE NEGATIVE
+     */
+    @Test
+    public void concurrentTransfers() throws Exception {
+        int accounts = 10;
+        for (int i = 0; i < accounts; i++) {
+            this.repository.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 20000; i++) {
+                    int from = random.nextInt(accounts);
+                    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                    Transfer transfer = new Transfer("Id-" + from, "Id-" + to, new BigDecimal(1 + random.nextInt(50)));
+                    if (i % 10 == 0) {
+                        //EVERY TENTH OPERATION IS A BATCH, BACK AND FORTH PLUS A THIRD ACCOUNT
+                        repository.transfer(Arrays.asList(transfer,
+                                new Transfer("Id-" + to, "Id-" + from, new BigDecimal(1 + random.nextInt(50))),
+                                new Transfer("Id-" + to, "Id-" + (to + 1) % accounts, new BigDecimal(1))), i % 20 == 0);
+                        continue;
+                    }
+                    //INSUFFICIENT_FUNDS IS EXPECTED WHEN THE RANDOM AMOUNT IS BIGGER THAN THE BALANCE
+                    repository.transfer(transfer);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < accounts; i++) {
+            BigDecimal balance = this.repository.getAccount("Id-" + i).getBalance();
+            assertThat(balance.signum()).isGreaterThanOrEqualTo(0);
+            total = total.add(balance);
+        }
+        assertThat(total).isEqualByComparingTo(new BigDecimal(accounts * 1000));
+    }
+
+    /**
+     * EVERY MULTI-GET DURING CONCURRENT TRANSFERS SEES THE TOTAL OF THE MONEY, MISSING ACCOUNTS ARE LEFT OUT
+     */
+    @Test
+    public void getAccountsConsistent() throws Exception {
+        int accounts = 10;
+        List<String> accountIds = new ArrayList<>();
+        for (int i = 0; i < accounts; i++) {
+            this.repository.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+            accountIds.add("Id-" + i);
+        }
+        accountIds.add(1, "Missing");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 20000; i++) {
+                    int from = random.nextInt(accounts);
+                    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                    repository.transfer(new Transfer("Id-" + from, "Id-" + to, new BigDecimal(1 + random.nextInt(50))));
+                }
+            }));
+        }
+        for (int read = 0; read < 2000; read++) {
+            List<Account> view = this.repository.getAccounts(accountIds);
+            assertThat(view).hasSize(accounts);
+            assertThat(view.get(1).getAccountId()).isEqualTo("Id-1");
+            BigDecimal total = BigDecimal.ZERO;
+            for (Account account : view) {
+                total = total.add(account.getBalance());
+            }
+            assertThat(total).isEqualByComparingTo(new BigDecimal(accounts * 1000));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * AN EXPORT DURING CONCURRENT TRANSFERS SEES EVERY ACCOUNT ONCE AND THE TOTAL OF THE MONEY
+     */
+    @Test
+    public void forEachAccountConsistent() throws Exception {
+        int accounts = 1000;
+        for (int i = 0; i < accounts; i++) {
+            this.repository.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int seed = t;
+            futures.add(executor.submit(() -> {
+                Random random = new Random(seed);
+                for (int i = 0; i < 20000; i++) {
+                    int from = random.nextInt(accounts);
+                    int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                    repository.transfer(new Transfer("Id-" + from, "Id-" + to, new BigDecimal(1 + random.nextInt(50))));
+                }
+            }));
+        }
+        for (int export = 0; export < 20; export++) {
+            Set<String> accountIds = new HashSet<>();
+            BigDecimal[] total = {BigDecimal.ZERO};
+            this.repository.forEachAccount(account -> {
+                accountIds.add(account.getAccountId());
+                total[0] = total[0].add(account.getBalance());
+                //A SLOW CONSUMER, SO THE TRANSFERS GO ON DURING THE SCAN
+                if (accountIds.size() % 100 == 0) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                }
+            });
+            assertThat(accountIds).hasSize(accounts);
+            assertThat(total[0]).isEqualByComparingTo(new BigDecimal(accounts * 1000));
+        }
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        executor.shutdown();
+    }
+
+    /**
+     * AN ACCOUNT CREATED DURING AN EXPORT IS NOT EXPORTED, THE TOTAL IS THE ONE OF THE ACCOUNTS WHEN IT STARTED
+     */
+    @Test
+    public void forEachAccountSkipsCreatedAccounts() {
+        int accounts = 10;
+        for (int i = 0; i < accounts; i++) {
+            this.repository.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+        }
+        Set<String> accountIds = new HashSet<>();
+        BigDecimal[] total = {BigDecimal.ZERO};
+        this.repository.forEachAccount(account -> {
+            if (accountIds.isEmpty()) {
+                for (int i = accounts; i < 2 * accounts; i++) {
+                    repository.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+                }
+            }
+            accountIds.add(account.getAccountId());
+            total[0] = total[0].add(account.getBalance());
+        });
+        assertThat(accountIds).hasSize(accounts);
+        assertThat(total[0]).isEqualByComparingTo(new BigDecimal(accounts * 1000));
+        this.repository.forEachAccount(account -> accountIds.add(account.getAccountId()));
+        assertThat(accountIds).hasSize(2 * accounts);
+    }
+}
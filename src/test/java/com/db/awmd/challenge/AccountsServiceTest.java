@@ -5,7 +5,11 @@ import com.db.awmd.challenge.domain.Transfer;
 import com.db.awmd.challenge.exception.DuplicateAccountIdException;
 import com.db.awmd.challenge.exception.InvalidAccountException;
 import com.db.awmd.challenge.exception.InvalidBalanceException;
+import com.db.awmd.challenge.domain.Aggregates;
+import com.db.awmd.challenge.domain.Verification;
 import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.InvariantVerifier;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.Before;
 import org.junit.Test;
@@ -15,9 +19,17 @@ import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.junit4.SpringRunner;
 
 import java.math.BigDecimal;
-import java.sql.Timestamp;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.Assert.fail;
@@ -30,11 +42,15 @@ public class AccountsServiceTest {
     @Autowired
     private AccountsService accountsService;
 
-    private Boolean thread1Startbefore;
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private InvariantVerifier invariantVerifier;
 
     @Before
     public void setupMock() {
-        accountsService.getAccountsRepository().clearAccounts();
+        accountsService.clearAccounts();
     }
 
     @Test
@@ -60,6 +76,42 @@ public class AccountsServiceTest {
         }
     }
 
+    /**
+     * REJECTED TRANSFERS ARE COUNTED PER REASON, EVERY TRANSFER IS COUNTED
+     */
+    @Test
+    public void transferMetrics() {
+        this.accountsService.createAccount(new Account("Id-1", new BigDecimal(100)));
+        double sameAccount = rejections("same_account");
+        double notFound = rejections("to_account_not_found");
+        double transfers = this.meterRegistry.get("accounts.operations").tag("operation", "transfer")
+                .functionCounter().count();
+
+        this.accountsService.transfer(Collections.singletonList(new Transfer("Id-1", "Id-1", new BigDecimal(10))), false);
+        for (Transfer transfer : new Transfer[]{new Transfer("Id-1", "Id-1", new BigDecimal(10)),
+                new Transfer("Id-1", "Id-404", new BigDecimal(10))}) {
+            try {
+                this.accountsService.transfer(transfer);
+                fail("Should have failed");
+            } catch (InvalidAccountException ex) {
+                //EXPECTED
+            }
+        }
+
+        assertThat(rejections("same_account")).isEqualTo(sameAccount + 2);
+        assertThat(rejections("to_account_not_found")).isEqualTo(notFound + 1);
+        assertThat(this.meterRegistry.get("accounts.operations").tag("operation", "transfer")
+                .functionCounter().count()).isEqualTo(transfers + 2);
+        assertThat(this.meterRegistry.get("accounts.operation.latency").tag("operation", "transfer")
+                .tag("layer", "repository").tag("quantile", "0.99").gauge().value()).isGreaterThanOrEqualTo(0);
+        assertThat(this.meterRegistry.get("accounts.count").gauge().value()).isEqualTo(1);
+    }
+
+    private double rejections(String reason) {
+        return this.meterRegistry.get("accounts.rejections").tag("operation", "transfer").tag("reason", reason)
+                .counter().count();
+    }
+
     /**
      * TEST IF A LIST OF ACCOUNTS EXISTS
      *
@@ -166,54 +218,135 @@ public class AccountsServiceTest {
     }
 
     /**
-     * TEST THREAD-SAFE VALID TRANSFERS
+     * STRESS TEST: MANY THREADS TRANSFER RANDOM AMOUNTS BETWEEN A SMALL SET OF ACCOUNTS, IN BOTH DIRECTIONS.
+     * THE TOTAL MONEY MUST BE CONSERVED, NO BALANCE CAN BE NEGATIVE AND THE TEST MUST NOT DEADLOCK
      */
     @Test
     public void transfer() throws Exception {
-        Account account = new Account("Id-123");
-        account.setBalance(new BigDecimal(1000));
-        this.accountsService.createAccount(account);
-        Account account2 = new Account("Id-1234");
-        account2.setBalance(new BigDecimal(2000));
-        this.accountsService.createAccount(account2);
-        Transfer transfer = new Transfer(account.getAccountId(), account2.getAccountId(), new BigDecimal(1));
-        Transfer transfer2 = new Transfer(account2.getAccountId(), account.getAccountId(), new BigDecimal(2001));
-        //START TWO THREADS (FROM 1 TO 2, FROM 2 TO 1) TO TEST THREAD-SAFE AND DEADLOCKS
-        new Thread(() -> {
-            log.info("thread 1 start : " + new Timestamp(System.currentTimeMillis()));
-            thread1Startbefore=true;
-            accountsService.transfer(transfer);
-        }).start();
+        int accounts = 50;
+        int threads = 16;
+        int transfersPerThread = 2000;
+        for (int i = 0; i < accounts; i++) {
+            this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+        }
+        AtomicInteger rejected = new AtomicInteger();
+        long elapsed = runConcurrently(threads, thread -> {
+            Random random = new Random(thread);
+            for (int i = 0; i < transfersPerThread; i++) {
+                int from = random.nextInt(accounts);
+                int to = (from + 1 + random.nextInt(accounts - 1)) % accounts;
+                try {
+                    accountsService.transfer(new Transfer("Id-" + from, "Id-" + to, new BigDecimal(1 + random.nextInt(100))));
+                } catch (InvalidBalanceException ex) {
+                    rejected.incrementAndGet();
+                }
+            }
+        });
+        log.info("random transfers: {} transfers/s, {} rejected for balance",
+                threads * transfersPerThread * 1000L / Math.max(1, elapsed), rejected.get());
 
-        new Thread(() -> {
-            log.info("thread 2 start : " + new Timestamp(System.currentTimeMillis()));
-            try {
-                accountsService.transfer(transfer2);
-            } catch (InvalidBalanceException ex) {
-                //IF THREAD 2 TRANSFER START BEFORE THREAD 1 TRANSFER, THE BALANCES ARE INVALID, THREAD 2 TRANSFER CAN NOT BE PROCESSED
-                thread1Startbefore=false;
-                assertThat(ex.getMessage()).isEqualTo("account balance can not be negative");
+        BigDecimal total = BigDecimal.ZERO;
+        for (int i = 0; i < accounts; i++) {
+            BigDecimal balance = this.accountsService.getAccount("Id-" + i).getBalance();
+            assertThat(balance.signum()).isGreaterThanOrEqualTo(0);
+            total = total.add(balance);
+        }
+        assertThat(total).isEqualByComparingTo(new BigDecimal(accounts * 1000));
+    }
+
+    /**
+     * TEST THE TOTAL BALANCE IS VERIFIED WHILE TRANSFERS RUN, AND MONEY ADDED BEHIND THE SERVICE'S BACK IS DETECTED
+     */
+    @Test
+    public void verifyTotalBalance() throws Exception {
+        int accounts = 20;
+        for (int i = 0; i < accounts; i++) {
+            this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1000)));
+        }
+        List<Verification.Status> statuses = Collections.synchronizedList(new ArrayList<>());
+        runConcurrently(5, thread -> {
+            if (thread == 0) {
+                for (int i = 0; i < 50; i++) {
+                    statuses.add(invariantVerifier.verify().getStatus());
+                }
+                return;
             }
-        }).start();
-        //WAIT UNTIL THREADS FINISHED, TO CHECK THE BALANCES
-        try {
-            Thread.sleep(2 * 1000);
-        } catch (InterruptedException ie) {
-            Thread.currentThread().interrupt();
+            Random random = new Random(thread);
+            for (int i = 0; i < 2000; i++) {
+                int from = random.nextInt(accounts);
+                try {
+                    accountsService.transfer(new Transfer("Id-" + from, "Id-" + (from + 1) % accounts, new BigDecimal(1 + random.nextInt(10))));
+                } catch (InvalidBalanceException ex) {
+                    //INSUFFICIENT FUNDS
+                }
+            }
+        });
+        assertThat(statuses).containsOnly(Verification.Status.CONSISTENT);
+        Aggregates aggregates = this.accountsService.getAccountsAggregates().snapshot(null);
+        assertThat(aggregates.getAccounts()).isEqualTo(accounts);
+        assertThat(aggregates.getTotalBalance().get("EUR")).isEqualByComparingTo(new BigDecimal(accounts * 1000));
+        assertThat(aggregates.getTransfers()).isEqualTo(aggregates.getLastMinuteTransfers()).isPositive();
+
+        this.accountsService.getAccountsRepository().createAccount(new Account("Id-forged", new BigDecimal(5)));
+        Verification verification = invariantVerifier.verify();
+        assertThat(verification.getStatus()).isEqualTo(Verification.Status.VIOLATED);
+        assertThat(verification.getScannedTotal().get("EUR").subtract(verification.getExpectedTotal().get("EUR"))).isEqualByComparingTo("5");
+    }
+
+    /**
+     * STRESS TEST: EVERY THREAD TRANSFERS BACK AND FORTH BETWEEN ITS OWN PAIR OF ACCOUNTS, PAIRS NEVER SHARE ACCOUNTS
+     */
+    @Test
+    public void transferDisjointPairs() throws Exception {
+        int threads = 16;
+        int transfersPerThread = 2000;
+        for (int i = 0; i < threads; i++) {
+            this.accountsService.createAccount(new Account("Id-" + i + "-a", new BigDecimal(100)));
+            this.accountsService.createAccount(new Account("Id-" + i + "-b", new BigDecimal(100)));
+        }
+        long elapsed = runConcurrently(threads, thread -> {
+            Transfer aToB = new Transfer("Id-" + thread + "-a", "Id-" + thread + "-b", new BigDecimal(7));
+            Transfer bToA = new Transfer("Id-" + thread + "-b", "Id-" + thread + "-a", new BigDecimal(7));
+            for (int i = 0; i < transfersPerThread; i++) {
+                accountsService.transfer(i % 2 == 0 ? aToB : bToA);
+            }
+        });
+        log.info("disjoint pair transfers: {} transfers/s", threads * transfersPerThread * 1000L / Math.max(1, elapsed));
+
+        for (int i = 0; i < threads; i++) {
+            assertThat(this.accountsService.getAccount("Id-" + i + "-a").getBalance()).isEqualByComparingTo("100");
+            assertThat(this.accountsService.getAccount("Id-" + i + "-b").getBalance()).isEqualByComparingTo("100");
+        }
+    }
+
+    /**
+     * THIS METHOD RUN THE TASK IN N THREADS STARTING AT THE SAME TIME, FAILS IF ANY THREAD FAILS OR HANGS
+     *
+     * @param threads Number of threads
+     * @param task    Task receiving the thread number
+     * @return elapsed milliseconds
+     */
+    private long runConcurrently(int threads, IntConsumer task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            int thread = i;
+            futures.add(executor.submit(() -> {
+                start.await();
+                task.accept(thread);
+                return null;
+            }));
         }
-        //IF THREAD 1 TRANSFER START BEFORE THREAD 2 TRANSFER THE BALANCES ARE CORRECT
-        Account acc = this.accountsService.getAccount("Id-123");
-        Account acc2 = this.accountsService.getAccount("Id-1234");
-        log.info("balance after thread-safe :" + acc.getBalance());
-        log.info("balance after thread-safe :" + acc2.getBalance());
-        if(thread1Startbefore){
-            log.info("thread 1 start before thread 2, both transfers are done");
-            assertThat(acc.getBalance()).isEqualByComparingTo("3000");
-            assertThat(acc2.getBalance()).isEqualByComparingTo("0");
-        }else{
-            log.info("thread 2 start before thread 1, only transfer 1 done, transfer 2 has invalid balance");
-            assertThat(acc.getBalance()).isEqualByComparingTo("999");
-            assertThat(acc2.getBalance()).isEqualByComparingTo("2001");
+        long begin = System.nanoTime();
+        start.countDown();
+        try {
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
         }
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - begin);
     }
 }
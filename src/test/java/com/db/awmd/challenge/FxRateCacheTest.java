@@ -0,0 +1,148 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.config.FxRateCache;
+import com.db.awmd.challenge.domain.Currencies;
+import com.db.awmd.challenge.domain.FxRates;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class FxRateCacheTest {
+
+    private static final int EUR = Currencies.numericCode("EUR");
+
+    private static final int USD = Currencies.numericCode("USD");
+
+    private static final int JPY = Currencies.numericCode("JPY");
+
+    private static final int CHF = Currencies.numericCode("CHF");
+
+    private Path file;
+
+    @Before
+    public void createFile() throws IOException {
+        this.file = Files.createTempFile("rates", ".properties");
+    }
+
+    @After
+    public void deleteFile() throws IOException {
+        Files.deleteIfExists(this.file);
+    }
+
+    /**
+     * THE FIXED-POINT CONVERSION, AND THE BigInteger ONE OF THE AMOUNTS TOO BIG FOR IT, GIVE THE MULTIPLIER TIMES THE
+     * AMOUNT ROUNDED HALF UP. THE MULTIPLIER CONVERTS BETWEEN MINOR UNITS, JPY HAS NONE
+     */
+    @Test
+    public void convert() {
+        Map<String, BigDecimal> rates = new HashMap<>();
+        rates.put("USD", new BigDecimal("1.0842"));
+        rates.put("JPY", new BigDecimal("161.37"));
+        FxRates fxRates = FxRates.of(rates);
+
+        assertThat(fxRates.convert(1000, EUR, EUR)).isEqualTo(1000);
+        assertThat(fxRates.convert(10000, EUR, USD)).isEqualTo(10842);
+        assertThat(fxRates.convert(10842, USD, EUR)).isEqualTo(10000);
+        assertThat(fxRates.convert(100, EUR, JPY)).isEqualTo(161);
+        assertThat(fxRates.convert(1, EUR, JPY)).isEqualTo(2);
+        assertThat(fxRates.convert(16137, JPY, EUR)).isEqualTo(10000);
+        assertThat(fxRates.convert(Long.MAX_VALUE, EUR, JPY)).isEqualTo(FxRates.OUT_OF_RANGE);
+        assertThat(fxRates.convert(1, EUR, CHF)).isEqualTo(FxRates.NO_RATE);
+        assertThat(fxRates.has(CHF)).isFalse();
+
+        int[] currencies = {EUR, USD, JPY};
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            int from = currencies[random.nextInt(currencies.length)];
+            int to = currencies[random.nextInt(currencies.length)];
+            long amount = i % 2 == 0 ? random.nextInt(Integer.MAX_VALUE)
+                    : random.nextLong() >>> (1 + random.nextInt(20));
+            long converted = fxRates.convert(amount, from, to);
+            if (from == to) {
+                assertThat(converted).isEqualTo(amount);
+                continue;
+            }
+            BigInteger expected = BigInteger.valueOf(amount).multiply(multiplier(fxRates, from, to))
+                    .add(BigInteger.ONE.shiftLeft(FxRates.FRACTION_BITS - 1)).shiftRight(FxRates.FRACTION_BITS);
+            assertThat(converted)
+                    .isEqualTo(expected.bitLength() < Long.SIZE ? expected.longValue() : FxRates.OUT_OF_RANGE);
+        }
+    }
+
+    @Test
+    public void invalidRates() {
+        for (String[] rate : new String[][]{{"XYZ", "1"}, {"USD", "0"}, {"USD", "-1"}, {"EUR", "2"}}) {
+            try {
+                FxRates.of(Collections.singletonMap(rate[0], new BigDecimal(rate[1])));
+                fail("Should have failed with rate " + rate[0] + "=" + rate[1]);
+            } catch (IllegalArgumentException iae) {
+                assertThat(iae.getMessage()).contains(rate[0]);
+            }
+        }
+    }
+
+    /**
+     * A REFRESH ONLY REPLACES THE RATES WHEN THE FILE CHANGED, AN INVALID FILE KEEPS THE CURRENT ONES
+     */
+    @Test
+    public void refresh() throws IOException {
+        Files.write(this.file, Arrays.asList("USD=1.25"), StandardCharsets.UTF_8);
+        AccountsProperties properties = new AccountsProperties();
+        properties.getFx().setRatesFile(this.file.toString());
+        properties.getFx().setRefreshInterval(Duration.ZERO);
+        try (FxRateCache cache = new FxRateCache(properties)) {
+            FxRates loaded = cache.current();
+            assertThat(loaded.convert(100, EUR, USD)).isEqualTo(125);
+            assertThat(cache.refresh()).isFalse();
+
+            Files.write(this.file, Arrays.asList("USD=1.5", "CHF=0.95"), StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(this.file, FileTime.fromMillis(System.currentTimeMillis() + 1000));
+            assertThat(cache.refresh()).isTrue();
+            assertThat(cache.current().convert(100, EUR, USD)).isEqualTo(150);
+            assertThat(cache.current().has(CHF)).isTrue();
+            //A TRANSFER THAT READ THE OLD TABLE KEEPS CONVERTING WITH IT
+            assertThat(loaded.convert(100, EUR, USD)).isEqualTo(125);
+
+            Files.write(this.file, Arrays.asList("USD=abc"), StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(this.file, FileTime.fromMillis(System.currentTimeMillis() + 2000));
+            try {
+                cache.refresh();
+                fail("Should have failed with an invalid rate");
+            } catch (IllegalArgumentException iae) {
+                assertThat(cache.current().convert(100, EUR, USD)).isEqualTo(150);
+            }
+        }
+    }
+
+    /**
+     * THE MULTIPLIER THE TABLE SHOULD HAVE, THE CROSS RATE BETWEEN MINOR UNITS ROUNDED HALF UP TO FRACTION_BITS
+     * BINARY DECIMALS
+     */
+    private static BigInteger multiplier(FxRates fxRates, int from, int to) {
+        BigDecimal cross = fxRates.getRates().get(Currencies.code(to))
+                .divide(fxRates.getRates().get(Currencies.code(from)), MathContext.DECIMAL128)
+                .scaleByPowerOfTen(Currencies.scale(to) - Currencies.scale(from));
+        return cross.multiply(new BigDecimal(BigInteger.ONE.shiftLeft(FxRates.FRACTION_BITS)))
+                .setScale(0, RoundingMode.HALF_UP).toBigIntegerExact();
+    }
+}
@@ -0,0 +1,119 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.config.FxRateCache;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.Verification;
+import com.db.awmd.challenge.exception.InvalidBalanceException;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.AccountsAggregates;
+import com.db.awmd.challenge.service.AccountsMetrics;
+import com.db.awmd.challenge.service.AccountsService;
+import com.db.awmd.challenge.service.InvariantVerifier;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.TransferJournal;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InvariantVerifierTest {
+
+    private static final String[] CURRENCIES = {"EUR", "USD", "JPY"};
+
+    private FxRateCache fxRateCache;
+
+    private NotificationDispatcher notificationDispatcher;
+
+    private AccountsService accountsService;
+
+    private InvariantVerifier invariantVerifier;
+
+    @Before
+    public void createService() {
+        AccountsProperties properties = AccountsRepositoryTest.properties();
+        properties.getNotifications().setBackpressure(AccountsProperties.Backpressure.DROP_OLDEST);
+        this.fxRateCache = FxRateCache.loadOnce(properties);
+        AccountsRepository repository = new AccountsRepositoryInMemory(properties, fxRateCache);
+        this.notificationDispatcher = new NotificationDispatcher((account, transferDescription) -> {
+        }, repository, properties);
+        AccountsAggregates aggregates = new AccountsAggregates(repository, properties);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        this.accountsService = new AccountsService(repository, notificationDispatcher, new TransferJournal(properties),
+                aggregates, new AccountsMetrics(registry, repository, notificationDispatcher, properties),
+                fxRateCache, properties);
+        this.invariantVerifier = new InvariantVerifier(repository, aggregates, registry, properties);
+    }
+
+    @After
+    public void closeService() throws InterruptedException {
+        this.invariantVerifier.close();
+        this.notificationDispatcher.close();
+        this.fxRateCache.close();
+    }
+
+    /**
+     * TEST A TRANSFER BETWEEN TWO CURRENCIES, APPLIED DURING A SCAN AND COUNTED AFTER IT, NEVER MAKES A VERIFICATION
+     * VIOLATED, AND THE TRANSFERS WITHIN ONE CURRENCY NEVER MAKE IT INCONCLUSIVE
+     */
+    @Test
+    public void verifyDuringConversions() throws Exception {
+        int accounts = 30;
+        for (int i = 0; i < accounts; i++) {
+            this.accountsService.createAccount(new Account("Id-" + i, new BigDecimal(1000), CURRENCIES[i % 3]));
+            this.accountsService.createAccount(new Account("Local-" + i, new BigDecimal(1000), "GBP"));
+        }
+        List<Verification> verifications = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean transferring = new AtomicBoolean(true);
+        Thread verifier = new Thread(() -> {
+            while (transferring.get()) {
+                verifications.add(invariantVerifier.verify());
+            }
+        });
+        verifier.start();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            Random random = new Random(t);
+            String prefix = t % 2 == 0 ? "Id-" : "Local-";
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 5000; i++) {
+                    int from = random.nextInt(accounts);
+                    try {
+                        accountsService.transfer(new Transfer(prefix + from, prefix + (from + 1) % accounts,
+                                new BigDecimal(1 + random.nextInt(10))));
+                    } catch (InvalidBalanceException ibe) {
+                        //INSUFFICIENT FUNDS
+                    }
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        transferring.set(false);
+        verifier.join();
+
+        assertThat(verifications).isNotEmpty();
+        for (Verification verification : verifications) {
+            assertThat(verification.getStatus()).isNotEqualTo(Verification.Status.VIOLATED);
+            assertThat(verification.getCurrencies()).containsKeys("EUR", "USD", "JPY", "GBP")
+                    .containsEntry("GBP", Verification.Status.CONSISTENT);
+        }
+        Verification verification = this.invariantVerifier.verify();
+        assertThat(verification.getStatus()).isEqualTo(Verification.Status.CONSISTENT);
+        assertThat(verification.getScannedTotal()).isEqualTo(verification.getExpectedTotal());
+        assertThat(verification.getScannedTotal().get("GBP")).isEqualByComparingTo(new BigDecimal(accounts * 1000));
+    }
+}
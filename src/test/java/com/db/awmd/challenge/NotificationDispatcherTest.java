@@ -0,0 +1,91 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Account;
+import com.db.awmd.challenge.repository.AccountsRepository;
+import com.db.awmd.challenge.repository.AccountsRepositoryInMemory;
+import com.db.awmd.challenge.service.NotificationDispatcher;
+import com.db.awmd.challenge.service.NotificationService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class NotificationDispatcherTest {
+
+    private final List<String> notifications = new CopyOnWriteArrayList<>();
+
+    private final NotificationService notificationService =
+            (account, transferDescription) -> notifications.add(account.getAccountId() + ": " + transferDescription);
+
+    private AccountsRepository repository;
+
+    private AccountsProperties properties;
+
+    private NotificationDispatcher dispatcher;
+
+    @Before
+    public void createRepository() throws IOException {
+        this.repository = new AccountsRepositoryInMemory(new AccountsProperties());
+        this.repository.createAccount(new Account("Id-1", new BigDecimal(100)));
+        this.repository.createAccount(new Account("Id-2", new BigDecimal(100)));
+        this.properties = new AccountsProperties();
+        this.properties.getNotifications().setSpillFile(File.createTempFile("notifications", ".spill").getPath());
+        new File(this.properties.getNotifications().getSpillFile()).delete();
+    }
+
+    @After
+    public void stopDispatcher() throws InterruptedException {
+        this.dispatcher.close();
+    }
+
+    @Test
+    public void notifyAboutTransfer() throws InterruptedException {
+        this.dispatcher = new NotificationDispatcher(notificationService, repository, properties);
+
+        this.dispatcher.notifyAboutTransfer("Id-1", "Id-2");
+
+        awaitDispatched(2);
+        assertThat(notifications).containsExactly(
+                "Id-1: transfers to account Id-2 finish successfully",
+                "Id-2: transfers from account Id-1 finish successfully");
+    }
+
+    @Test
+    public void notifyAboutTransferSpill() throws InterruptedException {
+        //NO WORKERS WHILE QUEUEING, SO EVERYTHING AFTER THE FIRST TWO NOTIFICATIONS IS SPILLED
+        this.properties.getNotifications().setQueueCapacity(2);
+        this.properties.getNotifications().setWorkers(0);
+        NotificationDispatcher producer = new NotificationDispatcher(notificationService, repository, properties);
+        for (int i = 0; i < 5; i++) {
+            producer.notifyAboutTransfer("Id-1", "Id-2");
+        }
+        producer.close();
+        assertThat(producer.getSpilledCount()).isEqualTo(8);
+
+        //A NEW DISPATCHER DELIVERS THE SPILLED NOTIFICATIONS
+        this.properties.getNotifications().setQueueCapacity(16);
+        this.properties.getNotifications().setWorkers(1);
+        this.dispatcher = new NotificationDispatcher(notificationService, repository, properties);
+
+        awaitDispatched(8);
+        assertThat(notifications).hasSize(2);
+        assertThat(notifications.get(0)).startsWith("Id-1: transfers to account Id-2 finish successfully; ");
+    }
+
+    private void awaitDispatched(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (dispatcher.getDispatchedCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(dispatcher.getDispatchedCount()).isEqualTo(count);
+    }
+}
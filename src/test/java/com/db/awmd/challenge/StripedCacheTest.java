@@ -0,0 +1,43 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.service.StripedCache;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class StripedCacheTest {
+
+    @Test
+    public void putIfAbsent() {
+        StripedCache<String, String> cache = new StripedCache<>(16, Duration.ofMinutes(1), 4);
+
+        assertThat(cache.putIfAbsent("key", "first")).isNull();
+        assertThat(cache.putIfAbsent("key", "second")).isEqualTo("first");
+        assertThat(cache.get("key")).isEqualTo("first");
+    }
+
+    @Test
+    public void boundedSize() {
+        StripedCache<Integer, Integer> cache = new StripedCache<>(64, Duration.ofMinutes(1), 4);
+        for (int i = 0; i < 10000; i++) {
+            cache.put(i, i);
+        }
+
+        assertThat(cache.size()).isLessThanOrEqualTo(64);
+        assertThat(cache.get(9999)).isEqualTo(9999);
+        assertThat(cache.get(0)).isNull();
+    }
+
+    @Test
+    public void expiry() throws InterruptedException {
+        StripedCache<String, String> cache = new StripedCache<>(16, Duration.ofMillis(20), 4);
+        cache.put("key", "value");
+
+        Thread.sleep(50);
+
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.putIfAbsent("key", "again")).isNull();
+    }
+}
@@ -0,0 +1,87 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.exception.TooManyRequestsException;
+import com.db.awmd.challenge.service.AccountRateLimiter;
+import com.db.awmd.challenge.service.ConcurrencyLimiter;
+import com.db.awmd.challenge.service.TransferAdmission;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.fail;
+
+public class TransferAdmissionTest {
+
+    @Test
+    public void rateLimitPerAccount() {
+        AccountRateLimiter limiter = new AccountRateLimiter(100, 3, 16);
+        long now = 0;
+        for (int i = 0; i < 3; i++) {
+            assertThat(limiter.tryAcquire("Id-1", now)).isZero();
+        }
+
+        assertThat(limiter.tryAcquire("Id-1", now)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(10));
+        assertThat(limiter.tryAcquire("Id-2", now)).isZero();
+
+        now += TimeUnit.MILLISECONDS.toNanos(10);
+        assertThat(limiter.tryAcquire("Id-1", now)).isZero();
+        assertThat(limiter.tryAcquire("Id-1", now)).isPositive();
+    }
+
+    @Test
+    public void evictsMostIdleBucket() {
+        //A SINGLE SET OF FOUR BUCKETS
+        AccountRateLimiter limiter = new AccountRateLimiter(1.0 / 3600, 1, 4);
+        assertThat(limiter.tryAcquire("Id-0", 0)).isZero();
+        assertThat(limiter.tryAcquire("Id-0", 0)).isPositive();
+        for (int i = 1; i <= 4; i++) {
+            assertThat(limiter.tryAcquire("Id-" + i, i)).isZero();
+        }
+
+        assertThat(limiter.tryAcquire("Id-0", 5)).isZero();
+        assertThat(limiter.tryAcquire("Id-4", 5)).isPositive();
+    }
+
+    @Test
+    public void concurrencyLimitAdaptsToLatency() {
+        long threshold = TimeUnit.MILLISECONDS.toNanos(100);
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 1, 4, threshold);
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+
+        long now = System.nanoTime();
+        limiter.release(now, now + threshold);
+        for (int i = 0; i < 10; i++) {
+            assertThat(limiter.tryAcquire()).isTrue();
+            limiter.release(now, now);
+        }
+        assertThat(limiter.getLimit()).isEqualTo(4);
+
+        limiter.release(now, now + 2 * threshold);
+        assertThat(limiter.getLimit()).isEqualTo(3);
+        assertThat(limiter.getInflight()).isZero();
+    }
+
+    @Test
+    public void rejectedTransfersAreCounted() {
+        AccountsProperties properties = new AccountsProperties();
+        properties.getAdmission().setAccountRate(1);
+        properties.getAdmission().setAccountBurst(1);
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        TransferAdmission admission = new TransferAdmission(registry, properties);
+        admission.release(admission.acquire("Id-1"));
+
+        try {
+            admission.acquire("Id-1");
+            fail("Should have been rate limited");
+        } catch (TooManyRequestsException tmre) {
+            assertThat(tmre.getRetryAfterNanos()).isPositive();
+        }
+        assertThat(registry.get("accounts.rejections").tag("reason", "rate_limited").counter().count())
+                .isEqualTo(1.0);
+    }
+}
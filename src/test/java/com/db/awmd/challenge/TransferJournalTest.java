@@ -0,0 +1,131 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.AccountsProperties;
+import com.db.awmd.challenge.domain.Currencies;
+import com.db.awmd.challenge.domain.Transfer;
+import com.db.awmd.challenge.domain.TransferPage;
+import com.db.awmd.challenge.domain.TransferRecord;
+import com.db.awmd.challenge.domain.TransferResult;
+import com.db.awmd.challenge.service.TransferJournal;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TransferJournalTest {
+
+    private static final TransferResult APPLIED = TransferResult.applied(Currencies.DEFAULT_NUMERIC_CODE);
+
+    private final TransferJournal journal = new TransferJournal(properties(10_000_000));
+
+    private static AccountsProperties properties(long maxTransfers) {
+        AccountsProperties properties = new AccountsProperties();
+        properties.getJournal().setEnabled(true);
+        properties.getJournal().setMaxTransfers(maxTransfers);
+        return properties;
+    }
+
+    /**
+     * TEST THE PAGES OF AN ACCOUNT FOLLOW EACH OTHER WITHOUT GAPS OR DUPLICATES, ACROSS THE CHUNKS OF ITS INDEX
+     */
+    @Test
+    public void statementPages() {
+        for (int i = 0; i < 100_000; i++) {
+            journal.append(new Transfer("Id-1", i % 2 == 0 ? "Id-2" : "Id-3", new BigDecimal(i + 1)), APPLIED,
+                    System.currentTimeMillis());
+        }
+
+        List<TransferRecord> transfers = new ArrayList<>();
+        Long from = 0L;
+        while (from != null) {
+            TransferPage page = journal.statement("Id-2", from, 999);
+            transfers.addAll(page.getTransfers());
+            from = page.getNext();
+        }
+        assertThat(transfers).hasSize(50_000);
+        for (int i = 0; i < transfers.size(); i++) {
+            assertThat(transfers.get(i).getId()).isEqualTo(2L * i);
+            assertThat(transfers.get(i).getAmount()).isEqualByComparingTo(new BigDecimal(2 * i + 1));
+            assertThat(transfers.get(i).getAccountToId()).isEqualTo("Id-2");
+        }
+        assertThat(journal.statement("Id-1", 99_990, 1000).getTransfers()).hasSize(10);
+        assertThat(journal.statement("Id-1", 99_990, 1000).getNext()).isNull();
+        assertThat(journal.statement("Id-4", 0, 1000).getTransfers()).isEmpty();
+    }
+
+    /**
+     * TEST CONCURRENT APPENDS TO THE SAME ACCOUNT ARE ALL IN ITS STATEMENT, EACH ONE ONCE
+     */
+    @Test
+    public void concurrentAppends() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int thread = 0; thread < 4; thread++) {
+            String to = "Id-" + (thread + 2);
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    journal.append(new Transfer("Id-1", to, BigDecimal.ONE), APPLIED, System.currentTimeMillis());
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+
+        assertThat(journal.size()).isEqualTo(80_000);
+        boolean[] seen = new boolean[80_000];
+        Long from = 0L;
+        while (from != null) {
+            TransferPage page = journal.statement("Id-1", from, 1000);
+            for (TransferRecord transfer : page.getTransfers()) {
+                assertThat(seen[(int) transfer.getId()]).isFalse();
+                seen[(int) transfer.getId()] = true;
+            }
+            from = page.getNext();
+        }
+        for (boolean s : seen) {
+            assertThat(s).isTrue();
+        }
+    }
+
+    /**
+     * TEST THE JOURNAL EVICTS ITS OLDEST CHUNK ONCE FULL, A PAGE FROM AN EVICTED CURSOR STARTS AT THE OLDEST TRANSFER
+     * KEPT AND IS TRUNCATED
+     */
+    @Test
+    public void evictOldest() {
+        //TWO CHUNKS OF 65536 IN THE RING, THE FOURTH ONE EVICTS THE FIRST TWO
+        TransferJournal ring = new TransferJournal(properties(65_536));
+        for (int i = 0; i < 200_000; i++) {
+            ring.append(new Transfer("Id-1", "Id-2", new BigDecimal(i + 1)), APPLIED, System.currentTimeMillis());
+        }
+
+        assertThat(ring.evicted()).isEqualTo(131_072);
+        assertThat(ring.size()).isEqualTo(200_000 - 131_072);
+        TransferPage page = ring.statement("Id-2", 0, 1000);
+        assertThat(page.isTruncated()).isTrue();
+        assertThat(page.getTransfers()).hasSize(1000);
+        assertThat(page.getTransfers().get(0).getId()).isEqualTo(131_072);
+        assertThat(page.getTransfers().get(0).getAmount()).isEqualByComparingTo("131073");
+        page = ring.statement("Id-2", page.getNext(), 1000);
+        assertThat(page.isTruncated()).isFalse();
+        assertThat(page.getTransfers().get(0).getId()).isEqualTo(132_072);
+        page = ring.statement("Id-1", 199_990, 1000);
+        assertThat(page.isTruncated()).isFalse();
+        assertThat(page.getTransfers()).hasSize(10);
+        assertThat(page.getNext()).isNull();
+
+        ring.clear();
+        ring.append(new Transfer("Id-1", "Id-3", BigDecimal.ONE), APPLIED, System.currentTimeMillis());
+        assertThat(ring.size()).isEqualTo(1);
+        assertThat(ring.evicted()).isZero();
+        assertThat(ring.statement("Id-2", 0, 1000).getTransfers()).isEmpty();
+    }
+}
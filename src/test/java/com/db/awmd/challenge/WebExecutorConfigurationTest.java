@@ -0,0 +1,44 @@
+package com.db.awmd.challenge;
+
+import com.db.awmd.challenge.config.WebExecutorConfiguration;
+import org.junit.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class WebExecutorConfigurationTest {
+
+    /**
+     * TASKS RUN ON VIRTUAL THREADS FROM JAVA 21, OLDER JVMS REFUSE TO START IN THIS MODE
+     */
+    @Test
+    public void virtualThreadExecutor() throws Exception {
+        if (!virtualThreads()) {
+            assertThatThrownBy(WebExecutorConfiguration::newVirtualThreadPerTaskExecutor)
+                    .isInstanceOf(IllegalStateException.class)
+                    .hasMessageContaining("Java 21");
+            return;
+        }
+        ExecutorService executor = WebExecutorConfiguration.newVirtualThreadPerTaskExecutor();
+        try {
+            Object virtual = executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread()))
+                    .get(10, TimeUnit.SECONDS);
+            assertThat(virtual).isEqualTo(true);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static boolean virtualThreads() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+}